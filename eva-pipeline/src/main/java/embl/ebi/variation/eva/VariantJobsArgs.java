@@ -15,6 +15,17 @@
  */
 package embl.ebi.variation.eva;
 
+import embl.ebi.variation.eva.pipeline.async.AsyncProcessingConfiguration;
+import embl.ebi.variation.eva.pipeline.async.PrefetchingItemReader;
+import embl.ebi.variation.eva.pipeline.cache.StepOutputCache;
+import embl.ebi.variation.eva.pipeline.configuration.PartitionWorkerConfiguration;
+import embl.ebi.variation.eva.pipeline.configuration.PipelineDaemonConfiguration;
+import embl.ebi.variation.eva.pipeline.jobs.VariantConfiguration;
+import embl.ebi.variation.eva.pipeline.jobs.VariantJobArgsConfig;
+import embl.ebi.variation.eva.pipeline.jobs.VariantMultiFileConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsExportListener;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
+import embl.ebi.variation.eva.pipeline.partition.ManifestPartitioner;
 import embl.ebi.variation.eva.pipeline.steps.*;
 import org.opencb.biodata.models.variant.VariantSource;
 import org.opencb.biodata.models.variant.VariantStudy;
@@ -44,6 +55,7 @@ public class VariantJobsArgs {
 
     ////common
     @Value("${input:}") private String input;
+    @Value("${manifest:}") private String manifest;
     @Value("${compressExtension}") private String compressExtension;
 
     ////opencga
@@ -70,11 +82,15 @@ public class VariantJobsArgs {
     @Value("${dbName}") private String dbName;
     @Value("${dbCollectionVariantsName}") private String dbCollectionVariantsName;
     @Value("${dbCollectionFilesName}") private String dbCollectionFilesName;
+    @Value("${dbCollectionSummaryName:summary}") private String dbCollectionSummaryName;
     @Value("${readPreference}") private String readPreference;
 
     ////pipeline
     @Value("${outputDir}") private String outputDir;
     @Value("${pedigree}") private String pedigree;
+    @Value("${cohorts:}") private String cohorts;
+    @Value("${aggregatedMappingFile:}") private String aggregatedMappingFile;
+    @Value("${summaryWindowSize:1000000}") private int summaryWindowSize;
 
     //steps
     @Value("${skipLoad:false}") private boolean skipLoad;
@@ -91,8 +107,32 @@ public class VariantJobsArgs {
     @Value("${vepSpecies}") private String vepSpecies;
     @Value("${vepFasta}") private String vepFasta;
     @Value("${vepNumForks}") private String vepNumForks;
+    @Value("${annotLoadSkipLimit:50}") private int annotLoadSkipLimit;
+    @Value("${annotDeadLetterFile:}") private String annotDeadLetterFile;
 
     @Value("${allowStartIfComplete}") private boolean allowStartIfComplete;
+    @Value("${chunkSize:1000}") private int chunkSize;
+    @Value("${processingThreads:1}") private int processingThreads;
+    @Value("${prefetchSize:1000}") private int prefetchSize;
+    @Value("${maxConcurrentFlows:2}") private int maxConcurrentFlows;
+    @Value("${maxConcurrentFiles:4}") private int maxConcurrentFiles;
+    @Value("${remotePartitioning:false}") private boolean remotePartitioning;
+    @Value("${partitionPollInterval:5000}") private long partitionPollInterval;
+    @Value("${partitionTimeout:86400000}") private long partitionTimeout;
+    @Value("${workerPollInterval:2000}") private long workerPollInterval;
+    @Value("${workerIdleTimeout:0}") private long workerIdleTimeout;
+    @Value("${daemonSpoolDir:}") private String daemonSpoolDir;
+    @Value("${daemonPort:0}") private int daemonPort;
+    @Value("${daemonPollInterval:2000}") private long daemonPollInterval;
+    @Value("${daemonCpus:0}") private int daemonCpus;
+    @Value("${daemonMongoWriters:4}") private int daemonMongoWriters;
+    @Value("${daemonVepProcesses:8}") private int daemonVepProcesses;
+    @Value("${daemonTokenFile:}") private String daemonTokenFile;
+    @Value("${daemonAllowedOptions:}") private String daemonAllowedOptions;
+    @Value("${metricsFormat:none}") private String metricsFormat;
+    @Value("${latencyWarningThreshold:5000}") private long latencyWarningThreshold;
+    @Value("${stepCacheDir:}") private String stepCacheDir;
+    @Value("${stepCacheMaxSize:10240}") private long stepCacheMaxSize;
 
     private ObjectMap variantOptions  = new ObjectMap();
     private ObjectMap pipelineOptions  = new ObjectMap();
@@ -135,14 +175,19 @@ public class VariantJobsArgs {
 
     private void loadPipelineOptions(){
         pipelineOptions.put("input", input);
+        pipelineOptions.put(ManifestPartitioner.MANIFEST, manifest);
         pipelineOptions.put("compressExtension", compressExtension);
         pipelineOptions.put("outputDir", outputDir);
         pipelineOptions.put("pedigree", pedigree);
+        pipelineOptions.put(VariantsStatsCreate.COHORTS, cohorts);
+        pipelineOptions.put(VariantsAggregatedStatsLoad.AGGREGATED_MAPPING_FILE, aggregatedMappingFile);
         pipelineOptions.put("dbHosts", dbHosts);
         pipelineOptions.put("dbAuthenticationDb", dbAuthenticationDb);
         pipelineOptions.put(VariantStorageManager.DB_NAME, dbName);
         pipelineOptions.put("dbCollectionVariantsName", dbCollectionVariantsName);
         pipelineOptions.put("dbCollectionFilesName", dbCollectionFilesName);
+        pipelineOptions.put(VariantsLoad.SUMMARY_COLLECTION, dbCollectionSummaryName);
+        pipelineOptions.put(VariantsLoad.SUMMARY_WINDOW_SIZE, summaryWindowSize);
         pipelineOptions.put("dbUser", dbUser);
         pipelineOptions.put("dbPassword", dbPassword);
         pipelineOptions.put("readPreference", readPreference);
@@ -158,7 +203,31 @@ public class VariantJobsArgs {
         pipelineOptions.put("vepSpecies", vepSpecies);
         pipelineOptions.put("vepFasta", vepFasta);
         pipelineOptions.put("vepNumForks", vepNumForks);
+        pipelineOptions.put(VariantsAnnotLoad.SKIP_LIMIT, annotLoadSkipLimit);
+        pipelineOptions.put(VariantsAnnotLoad.DEAD_LETTER_FILE, annotDeadLetterFile);
         pipelineOptions.put("allowStartIfComplete", allowStartIfComplete);
+        pipelineOptions.put(VariantJobArgsConfig.CHUNK_SIZE, chunkSize);
+        pipelineOptions.put(AsyncProcessingConfiguration.PROCESSING_THREADS, processingThreads);
+        pipelineOptions.put(PrefetchingItemReader.PREFETCH_SIZE, prefetchSize);
+        pipelineOptions.put(VariantConfiguration.MAX_CONCURRENT_FLOWS, maxConcurrentFlows);
+        pipelineOptions.put(VariantMultiFileConfiguration.MAX_CONCURRENT_FILES, maxConcurrentFiles);
+        pipelineOptions.put(VariantMultiFileConfiguration.REMOTE_PARTITIONING, remotePartitioning);
+        pipelineOptions.put(VariantMultiFileConfiguration.PARTITION_POLL_INTERVAL, partitionPollInterval);
+        pipelineOptions.put(VariantMultiFileConfiguration.PARTITION_TIMEOUT, partitionTimeout);
+        pipelineOptions.put(PartitionWorkerConfiguration.WORKER_POLL_INTERVAL, workerPollInterval);
+        pipelineOptions.put(PartitionWorkerConfiguration.WORKER_IDLE_TIMEOUT, workerIdleTimeout);
+        pipelineOptions.put(PipelineDaemonConfiguration.DAEMON_SPOOL_DIR, daemonSpoolDir);
+        pipelineOptions.put(PipelineDaemonConfiguration.DAEMON_PORT, daemonPort);
+        pipelineOptions.put(PipelineDaemonConfiguration.DAEMON_POLL_INTERVAL, daemonPollInterval);
+        pipelineOptions.put(PipelineDaemonConfiguration.DAEMON_CPUS, daemonCpus);
+        pipelineOptions.put(PipelineDaemonConfiguration.DAEMON_MONGO_WRITERS, daemonMongoWriters);
+        pipelineOptions.put(PipelineDaemonConfiguration.DAEMON_VEP_PROCESSES, daemonVepProcesses);
+        pipelineOptions.put(PipelineDaemonConfiguration.DAEMON_TOKEN_FILE, daemonTokenFile);
+        pipelineOptions.put(PipelineDaemonConfiguration.DAEMON_ALLOWED_OPTIONS, daemonAllowedOptions);
+        pipelineOptions.put(MetricsExportListener.METRICS_FORMAT, metricsFormat);
+        pipelineOptions.put(StepMetricsListener.LATENCY_WARNING_THRESHOLD, latencyWarningThreshold);
+        pipelineOptions.put(StepOutputCache.CACHE_DIR, stepCacheDir);
+        pipelineOptions.put(StepOutputCache.CACHE_MAX_SIZE, stepCacheMaxSize);
 
         logger.debug("Using as pipelineOptions: {}", pipelineOptions.entrySet().toString());
     }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline;
+
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+
+/**
+ * Like {@link OptionalDecider}, but also skips the step if the file is not aggregated, as there are no statistics in
+ * its INFO column to take.
+ */
+public class AggregatedStatsDecider extends OptionalDecider {
+
+    private ObjectMap variantOptions;
+
+    public AggregatedStatsDecider(ObjectMap pipelineOptions, ObjectMap variantOptions, String skipStep) {
+        super(pipelineOptions, skipStep);
+        this.variantOptions = variantOptions;
+    }
+
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        VariantSource source = variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class);
+        if (source.getAggregation() == VariantSource.Aggregation.NONE) {
+            return decision(jobExecution, SKIP_STEP, "the file is not aggregated");
+        }
+        return super.decide(jobExecution, stepExecution);
+    }
+}
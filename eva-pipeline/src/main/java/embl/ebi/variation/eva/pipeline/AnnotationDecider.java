@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Skips the annotation flow if all the variants of the files of the job are already annotated, so there would be
+ * nothing to send to VEP. Only the variants of those files are checked, through the index of "files.sid" and
+ * "files.fid", instead of scanning the whole collection. By default the file is the one of the job, jobs that load
+ * several files (like the ones of a manifest) must provide their fileIds. Each step of the flow can still be skipped
+ * on its own with "skipAnnotGenerateInput", "skipAnnotCreate" and "skipAnnotLoad".
+ */
+public class AnnotationDecider extends OptionalDecider {
+
+    private ObjectMap pipelineOptions;
+    private ObjectMap variantOptions;
+    private MongoClient mongoClient;
+    private Supplier<List<String>> fileIds;
+
+    public AnnotationDecider(ObjectMap pipelineOptions, ObjectMap variantOptions, MongoClient mongoClient) {
+        this(pipelineOptions, variantOptions, mongoClient, () -> Collections.singletonList(
+                variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class).getFileId()));
+    }
+
+    /**
+     * @param fileIds the files whose variants are checked, in the study of the job. Only called when deciding, once
+     *                the files are known.
+     */
+    public AnnotationDecider(ObjectMap pipelineOptions, ObjectMap variantOptions, MongoClient mongoClient,
+                             Supplier<List<String>> fileIds) {
+        super(pipelineOptions, null, "annotation");
+        this.pipelineOptions = pipelineOptions;
+        this.variantOptions = variantOptions;
+        this.mongoClient = mongoClient;
+        this.fileIds = fileIds;
+    }
+
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        if (!hasVariantsWithoutAnnotation()) {
+            return decision(jobExecution, SKIP_STEP, "all the variants of the files are already annotated");
+        }
+        return decision(jobExecution, DO_STEP, "there are variants without annotation");
+    }
+
+    protected boolean hasVariantsWithoutAnnotation() {
+        return MongoDBHelper.getMongoOperations(mongoClient, pipelineOptions)
+                .getCollection(pipelineOptions.getString("dbCollectionVariantsName"))
+                .findOne(notAnnotatedQuery(), new BasicDBObject("_id", 1)) != null;
+    }
+
+    /**
+     * @return the condition checked by the decider, same as the reader of the VEP input in the variants of the files
+     */
+    public DBObject notAnnotatedQuery() {
+        VariantSource source = variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class);
+        return notAnnotatedQuery(source.getStudyId(), fileIds.get());
+    }
+
+    static DBObject notAnnotatedQuery(String studyId, List<String> fileIds) {
+        Object fileIdCondition = fileIds.size() == 1 ? fileIds.get(0) : new BasicDBObject("$in", fileIds);
+        return new BasicDBObject("files", new BasicDBObject("$elemMatch",
+                new BasicDBObject("sid", studyId).append("fid", fileIdCondition)))
+                .append("annot", new BasicDBObject("$exists", false));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline;
+
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.steps.VariantsLoad;
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+
+/**
+ * Like {@link OptionalDecider} with "skipLoad", but also skips the load if the file is already in the files
+ * collection with the checksum of the same VCF, which is only set when a load of that VCF finished.
+ */
+public class LoadDecider extends OptionalDecider {
+
+    private ObjectMap pipelineOptions;
+    private ObjectMap variantOptions;
+    private MongoClient mongoClient;
+
+    public LoadDecider(ObjectMap pipelineOptions, ObjectMap variantOptions, MongoClient mongoClient) {
+        super(pipelineOptions, VariantsLoad.SKIP_LOAD, "load");
+        this.pipelineOptions = pipelineOptions;
+        this.variantOptions = variantOptions;
+        this.mongoClient = mongoClient;
+    }
+
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        FlowExecutionStatus status = super.decide(jobExecution, stepExecution);
+        if (status.getName().equals(SKIP_STEP)) {
+            return status;
+        }
+
+        String loadedChecksum = loadedFileState().getChecksum();
+        if (loadedChecksum == null) {
+            return decision(jobExecution, DO_STEP, "the file is not loaded yet");
+        }
+
+        String input = pipelineOptions.getString("input");
+        String checksum;
+        try {
+            checksum = LoadedFileState.checksum(Paths.get(VariantsLoad.createUri(input).getPath()), jobExecution);
+        } catch (IOException | URISyntaxException e) {
+            throw new IllegalStateException("Could not read the checksum of " + input, e);
+        }
+        if (checksum.equals(loadedChecksum)) {
+            return decision(jobExecution, SKIP_STEP, "the file is already loaded from the same VCF");
+        }
+        return decision(jobExecution, DO_STEP, "the file was loaded from a different VCF");
+    }
+
+    protected LoadedFileState loadedFileState() {
+        return LoadedFileState.fromOptions(mongoClient, pipelineOptions, variantOptions);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.cache.StepOutputCache;
+import embl.ebi.variation.eva.pipeline.steps.VariantsStatsCreate;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Marks kept in the document of a file in the files collection, to know what was already done with its data:
+ * - "sha256": checksum of the VCF, set when its variants are completely loaded
+ * - "statsSha256": checksum of the loaded VCF and the cohorts, set when its statistics are completely loaded
+ *
+ * A document without marks (e.g. loaded by a previous version of the pipeline) is never considered up to date.
+ */
+public class LoadedFileState {
+
+    public static final String CHECKSUM_FIELD = "sha256";
+    public static final String STATS_CHECKSUM_FIELD = "statsSha256";
+
+    /** prefix of the keys of the job ExecutionContext where the checksums of the input files are kept */
+    public static final String INPUT_CHECKSUM_PREFIX = "checksum.";
+
+    private final DBCollection filesCollection;
+    private final DBObject fileQuery;
+
+    public LoadedFileState(DBCollection filesCollection, VariantSource source) {
+        this.filesCollection = filesCollection;
+        this.fileQuery = new BasicDBObject("sid", source.getStudyId()).append("fid", source.getFileId());
+    }
+
+    /**
+     * @return the state of the file described by the variantOptions, in the database where it is loaded
+     */
+    public static LoadedFileState fromOptions(MongoClient mongoClient, ObjectMap pipelineOptions,
+                                              ObjectMap variantOptions) {
+        DBCollection filesCollection = MongoDBHelper
+                .getMongoOperations(mongoClient, variantOptions.getString(VariantStorageManager.DB_NAME),
+                                    pipelineOptions)
+                .getCollection(pipelineOptions.getString("dbCollectionFilesName"));
+        return new LoadedFileState(filesCollection,
+                variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class));
+    }
+
+    public static String checksum(Path vcf) throws IOException {
+        return StepOutputCache.key("vcf").addFile(vcf).toString();
+    }
+
+    /**
+     * Same as {@link #checksum(Path)}, but the VCF is only read once per job: the checksum is kept in the job
+     * ExecutionContext, along with the size and modification time of the file, so a restart after the file changed
+     * doesn't use the old one
+     */
+    public static String checksum(Path vcf, JobExecution jobExecution) throws IOException {
+        ExecutionContext context = jobExecution.getExecutionContext();
+        String key = INPUT_CHECKSUM_PREFIX + vcf.toAbsolutePath();
+        String version = Files.size(vcf) + ":" + Files.getLastModifiedTime(vcf).toMillis() + ":";
+
+        String kept = context.containsKey(key) ? context.getString(key) : null;
+        if (kept != null && kept.startsWith(version)) {
+            return kept.substring(version.length());
+        }
+        String checksum = checksum(vcf);
+        context.putString(key, version + checksum);
+        return checksum;
+    }
+
+    /**
+     * @return checksum of the statistics that would be calculated for a loaded file with the given checksum
+     */
+    public static String statsChecksum(String fileChecksum, ObjectMap pipelineOptions) throws IOException {
+        return StepOutputCache.key("stats")
+                .addOption(CHECKSUM_FIELD, fileChecksum)
+                .addFileOrOption(VariantsStatsCreate.COHORTS, pipelineOptions.getString(VariantsStatsCreate.COHORTS))
+                .addFileOrOption("pedigree", pipelineOptions.getString("pedigree"))
+                .toString();
+    }
+
+    /**
+     * @return the checksum of the loaded VCF, or null if the file is not loaded or was loaded without it
+     */
+    public String getChecksum() {
+        return getField(CHECKSUM_FIELD);
+    }
+
+    public String getStatsChecksum() {
+        return getField(STATS_CHECKSUM_FIELD);
+    }
+
+    public void setChecksum(String checksum) {
+        setField(CHECKSUM_FIELD, checksum);
+    }
+
+    public void setStatsChecksum(String statsChecksum) {
+        setField(STATS_CHECKSUM_FIELD, statsChecksum);
+    }
+
+    private String getField(String field) {
+        DBObject file = filesCollection.findOne(fileQuery, new BasicDBObject(field, 1));
+        return file == null ? null : (String) file.get(field);
+    }
+
+    private void setField(String field, String value) {
+        filesCollection.update(fileQuery, new BasicDBObject("$set", new BasicDBObject(field, value)));
+    }
+}
@@ -16,6 +16,7 @@
 
 package embl.ebi.variation.eva.pipeline;
 
+import com.mongodb.MongoClient;
 import com.mongodb.ReadPreference;
 import embl.ebi.variation.eva.utils.ConnectionHelper;
 import org.opencb.commons.utils.CryptoUtils;
@@ -33,37 +34,44 @@ import java.net.UnknownHostException;
  */
 public class MongoDBHelper {
 
-    public static MongoOperations getMongoOperationsFromPipelineOptions(ObjectMap pipelineOptions) {
-        MongoTemplate mongoTemplate;
+    /**
+     * @return a client for the hosts and credentials of the pipelineOptions. Every client keeps its own pool of
+     * connections until it is closed, so a job should only create one, see
+     * {@link embl.ebi.variation.eva.pipeline.jobs.VariantJobArgsConfig#mongoClient()}
+     */
+    public static MongoClient getMongoClientFromPipelineOptions(ObjectMap pipelineOptions) {
         try {
-            mongoTemplate = getMongoTemplate(pipelineOptions);
-        } catch (UnknownHostException e) {
-            throw new RuntimeException("Unable to initialize MongoDB", e);
-        }
-        return mongoTemplate;
-    }
-
-    private static MongoTemplate getMongoTemplate(ObjectMap pipelineOptions) throws UnknownHostException {
-        MongoTemplate mongoTemplate;
-        if(pipelineOptions.getString("dbAuthenticationDb").isEmpty()){
-            mongoTemplate = ConnectionHelper.getMongoTemplate(
-                    pipelineOptions.getString(VariantStorageManager.DB_NAME)
-            );
-        }else {
-            mongoTemplate = ConnectionHelper.getMongoTemplate(
-                    pipelineOptions.getString(VariantStorageManager.DB_NAME),
+            if (pipelineOptions.getString("dbAuthenticationDb").isEmpty()) {
+                return ConnectionHelper.getMongoClient();
+            }
+            return ConnectionHelper.getMongoClient(
                     pipelineOptions.getString("dbHosts"),
                     pipelineOptions.getString("dbAuthenticationDb"),
                     pipelineOptions.getString("dbUser"),
-                    pipelineOptions.getString("dbPassword").toCharArray()
-            );
+                    pipelineOptions.getString("dbPassword").toCharArray());
+        } catch (UnknownHostException e) {
+            throw new RuntimeException("Unable to initialize MongoDB", e);
         }
+    }
 
+    /**
+     * @return operations on a database through a shared client, with the read preference of the pipelineOptions
+     */
+    public static MongoOperations getMongoOperations(MongoClient mongoClient, String dbName,
+                                                     ObjectMap pipelineOptions) {
+        MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, dbName);
         mongoTemplate.setReadPreference(getMongoTemplateReadPreferences(pipelineOptions.getString("readPreference")));
-
         return mongoTemplate;
     }
 
+    /**
+     * @return operations on the database "dbName" of the pipelineOptions, through a shared client
+     */
+    public static MongoOperations getMongoOperations(MongoClient mongoClient, ObjectMap pipelineOptions) {
+        return getMongoOperations(mongoClient, pipelineOptions.getString(VariantStorageManager.DB_NAME),
+                                  pipelineOptions);
+    }
+
     private static ReadPreference getMongoTemplateReadPreferences(String readPreference){
         switch (readPreference){
             case "primary":
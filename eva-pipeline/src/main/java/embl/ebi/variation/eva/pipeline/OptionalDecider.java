@@ -32,11 +32,15 @@ public class OptionalDecider implements JobExecutionDecider {
     private static final Logger logger = LoggerFactory.getLogger(OptionalDecider.class);
 
     private String skipStep;
+    private String name;
     private ObjectMap pipelineOptions;
 
     public static final String SKIP_STEP = "SKIP_STEP";
     public static String DO_STEP = "DO_STEP";
 
+    /** prefix of the keys of the job ExecutionContext where every decision and its reason are recorded */
+    public static final String DECISION_PREFIX = "decision.";
+
     /**
      * @param pipelineOptions ObjectMap that will have a boolean for .get(skipStep), telling whether to skip or not
      * @param skipStep name of the key that the user sets to skip a step, e.g. "skipAnnotCreate"
@@ -44,20 +48,38 @@ public class OptionalDecider implements JobExecutionDecider {
      * misspelling mistakes.
      */
     public OptionalDecider(ObjectMap pipelineOptions, String skipStep) {
+        this(pipelineOptions, skipStep, skipStep);
+    }
+
+    /**
+     * @param skipStep may be null if the user can't skip the step, only the data state decides
+     * @param name of the decision in the job ExecutionContext
+     */
+    protected OptionalDecider(ObjectMap pipelineOptions, String skipStep, String name) {
         this.skipStep = skipStep;
+        this.name = name;
         this.pipelineOptions = pipelineOptions;
     }
 
     @Override
     public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
 
-        if (Boolean.parseBoolean(pipelineOptions.getString(skipStep))) {
-            logger.info("Skipping step because {} is enabled", skipStep);
-            return new FlowExecutionStatus(SKIP_STEP);
+        if (skipStep != null && Boolean.parseBoolean(pipelineOptions.getString(skipStep))) {
+            return decision(jobExecution, SKIP_STEP, skipStep + " is enabled");
         }
 
-        logger.info("Running step because {} is disabled", skipStep);
-        return new FlowExecutionStatus(DO_STEP);
+        return decision(jobExecution, DO_STEP, skipStep == null ? "no reason to skip it" : skipStep + " is disabled");
+    }
+
+    /**
+     * Logs the decision and records it, with its reason, in the job ExecutionContext as "decision.name" and
+     * "decision.name.reason", so it can be checked after the job finished
+     */
+    protected FlowExecutionStatus decision(JobExecution jobExecution, String status, String reason) {
+        logger.info("{} step ({}) because {}", status.equals(SKIP_STEP) ? "Skipping" : "Running", name, reason);
+        jobExecution.getExecutionContext().putString(DECISION_PREFIX + name, status);
+        jobExecution.getExecutionContext().putString(DECISION_PREFIX + name + ".reason", reason);
+        return new FlowExecutionStatus(status);
     }
 
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline;
+
+import com.mongodb.MongoClient;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Skips the creation and load of the statistics if they were already loaded for the same variants and cohorts, i.e.
+ * no variant of the file changed since the last statistics. Each of those steps can still be skipped on its own with
+ * "skipStatsCreate" and "skipStatsLoad".
+ *
+ * With "overwriteStats" the statistics are always calculated again.
+ */
+public class StatsDecider extends OptionalDecider {
+
+    private ObjectMap pipelineOptions;
+    private ObjectMap variantOptions;
+    private MongoClient mongoClient;
+
+    public StatsDecider(ObjectMap pipelineOptions, ObjectMap variantOptions, MongoClient mongoClient) {
+        super(pipelineOptions, null, "stats");
+        this.pipelineOptions = pipelineOptions;
+        this.variantOptions = variantOptions;
+        this.mongoClient = mongoClient;
+    }
+
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        if (variantOptions.getBoolean(VariantStorageManager.OVERWRITE_STATS)) {
+            return decision(jobExecution, DO_STEP, VariantStorageManager.OVERWRITE_STATS + " is enabled");
+        }
+
+        LoadedFileState fileState = loadedFileState();
+        String fileChecksum = fileState.getChecksum();
+        if (fileChecksum == null) {
+            return decision(jobExecution, DO_STEP, "the loaded variants have no checksum to compare with");
+        }
+
+        String statsChecksum;
+        try {
+            statsChecksum = LoadedFileState.statsChecksum(fileChecksum, pipelineOptions);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the cohorts", e);
+        }
+        if (statsChecksum.equals(fileState.getStatsChecksum())) {
+            return decision(jobExecution, SKIP_STEP,
+                    "the statistics of the same variants and cohorts are already loaded");
+        }
+        return decision(jobExecution, DO_STEP, "the variants or the cohorts changed since the last statistics");
+    }
+
+    protected LoadedFileState loadedFileState() {
+        return LoadedFileState.fromOptions(mongoClient, pipelineOptions, variantOptions);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.async;
+
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs the delegate processor in a {@link TaskExecutor}, so the items of a chunk are processed by several threads.
+ * It returns a {@link Future} per item that must be written by an {@link AsyncItemWriter}, which waits for them.
+ *
+ * Any exception of the delegate is thrown when writing, so the step sees it as a write failure, and the "process"
+ * latency of the step only includes submitting the task.
+ */
+public class AsyncItemProcessor<I, O> implements ItemProcessor<I, Future<O>> {
+
+    private final ItemProcessor<I, O> delegate;
+    private final TaskExecutor taskExecutor;
+
+    public AsyncItemProcessor(ItemProcessor<I, O> delegate, TaskExecutor taskExecutor) {
+        this.delegate = delegate;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @Override
+    public Future<O> process(I item) throws Exception {
+        FutureTask<O> task = new FutureTask<>(() -> delegate.process(item));
+        taskExecutor.execute(task);
+        return task;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.async;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Waits for the items processed by an {@link AsyncItemProcessor} and writes them with the delegate, in the same order
+ * they were read, skipping the ones filtered out (null). The first exception of the processor is thrown as it was,
+ * so the skip and retry policies of the step apply to it.
+ *
+ * As the whole chunk is processed before its transaction commits, restarting a step works as if the processor was
+ * synchronous. The delegate is opened, updated and closed with this writer if it is an {@link ItemStream}.
+ */
+public class AsyncItemWriter<T> implements ItemWriter<Future<T>>, ItemStream {
+
+    private final ItemWriter<T> delegate;
+
+    public AsyncItemWriter(ItemWriter<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void write(List<? extends Future<T>> futures) throws Exception {
+        List<T> items = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            T item;
+            try {
+                item = future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            }
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        delegate.write(items);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).open(executionContext);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).close();
+        }
+    }
+}
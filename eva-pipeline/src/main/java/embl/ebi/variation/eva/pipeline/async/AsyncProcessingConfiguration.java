@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.async;
+
+import embl.ebi.variation.eva.pipeline.jobs.VariantJobArgsConfig;
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pool shared by the chunk oriented steps that process their items with an {@link AsyncItemProcessor}.
+ */
+@Configuration
+@Import({VariantJobArgsConfig.class})
+public class AsyncProcessingConfiguration {
+
+    /**
+     * Threads processing the items of the annotation steps. With 1 (default) the items are processed synchronously
+     * by the thread of the step, as usual.
+     */
+    public static final String PROCESSING_THREADS = "processingThreads";
+
+    @Autowired
+    private ObjectMap pipelineOptions;
+
+    @Bean
+    public ThreadPoolTaskExecutor itemProcessingTaskExecutor() {
+        int threads = Math.max(1, pipelineOptions.getInt(PROCESSING_THREADS, 1));
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setThreadNamePrefix("item-processing-");
+        taskExecutor.setCorePoolSize(threads);
+        taskExecutor.setMaxPoolSize(threads);
+        taskExecutor.setDaemon(true);
+        return taskExecutor;
+    }
+
+    /**
+     * @return whether the steps should use an {@link AsyncItemProcessor} and {@link AsyncItemWriter}
+     */
+    public static boolean isAsync(ObjectMap pipelineOptions) {
+        return pipelineOptions.getInt(PROCESSING_THREADS, 1) > 1;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.async;
+
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.LineMapper;
+
+/**
+ * Maps a {@link NumberedLine} with the LineMapper a {@link org.springframework.batch.item.file.FlatFileItemReader}
+ * would use, failing with the same {@link FlatFileParseException}, so the steps can skip it as before.
+ */
+public class LineMappingProcessor<T> implements ItemProcessor<NumberedLine, T> {
+
+    private final LineMapper<T> lineMapper;
+
+    public LineMappingProcessor(LineMapper<T> lineMapper) {
+        this.lineMapper = lineMapper;
+    }
+
+    @Override
+    public T process(NumberedLine item) throws Exception {
+        try {
+            return lineMapper.mapLine(item.getLine(), item.getLineNumber());
+        } catch (FlatFileParseException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new FlatFileParseException("Parsing error at line: " + item.getLineNumber() + ", input=["
+                                                     + item.getLine() + "]", e, item.getLine(), item.getLineNumber());
+        }
+    }
+}
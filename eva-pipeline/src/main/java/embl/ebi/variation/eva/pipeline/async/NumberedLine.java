@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.async;
+
+import org.springframework.batch.item.file.LineMapper;
+
+/**
+ * A raw line of a flat file and its line number, so it can be parsed by an {@link AsyncItemProcessor} instead of the
+ * reader thread without losing where it came from. See {@link LineMappingProcessor}.
+ */
+public class NumberedLine {
+
+    public static final LineMapper<NumberedLine> MAPPER = NumberedLine::new;
+
+    private final String line;
+    private final int lineNumber;
+
+    public NumberedLine(String line, int lineNumber) {
+        this.line = line;
+        this.lineNumber = lineNumber;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public String toString() {
+        return lineNumber + ": " + line;
+    }
+}
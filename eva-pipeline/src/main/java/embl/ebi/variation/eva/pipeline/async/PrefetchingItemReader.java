@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.async;
+
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads ahead from the delegate in a background thread, keeping up to a fixed number of items in a queue, so the step
+ * doesn't wait for every page or network round trip of the delegate (e.g. a MongoItemReader).
+ *
+ * The state of the delegate is captured after every item it reads, and the one saved by {@link #update} is the state
+ * after the last item actually returned by {@link #read}, not after the last one prefetched. It is saved under the
+ * keys of the delegate, so a step can be restarted with or without prefetching.
+ *
+ * Exceptions of the delegate are thrown by {@link #read} in the same position, and the background thread keeps
+ * reading after them, as a step with a skip policy would. Only one thread may call {@link #read}.
+ */
+public class PrefetchingItemReader<T> implements ItemStreamReader<T> {
+
+    /**
+     * Items read ahead by the readers of the annotation steps, 0 to disable prefetching
+     */
+    public static final String PREFETCH_SIZE = "prefetchSize";
+
+    /**
+     * Milliseconds the background thread waits for space in the queue before checking again if the reader was closed
+     */
+    private static final long OFFER_TIMEOUT = 100;
+
+    private final ItemStreamReader<T> delegate;
+    private final int capacity;
+
+    private BlockingQueue<Prefetched<T>> queue;
+    private Thread fetcher;
+    private volatile boolean stopped;
+    private boolean exhausted;
+    private ExecutionContext consumedState;
+
+    public PrefetchingItemReader(ItemStreamReader<T> delegate, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The prefetch capacity must be positive, not " + capacity);
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the reader wrapped in a PrefetchingItemReader, or the reader itself if "prefetchSize" is 0
+     */
+    public static <T> ItemStreamReader<T> fromOptions(ItemStreamReader<T> reader, ObjectMap pipelineOptions) {
+        int prefetchSize = pipelineOptions.getInt(PREFETCH_SIZE, 0);
+        return prefetchSize > 0 ? new PrefetchingItemReader<>(reader, prefetchSize) : reader;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        delegate.open(executionContext);
+        consumedState = captureDelegateState();
+        queue = new ArrayBlockingQueue<>(capacity);
+        stopped = false;
+        exhausted = false;
+
+        fetcher = new Thread(this::fetch, "prefetch-" + delegate.getClass().getSimpleName());
+        fetcher.setDaemon(true);
+        fetcher.start();
+    }
+
+    private void fetch() {
+        try {
+            while (!stopped) {
+                Prefetched<T> prefetched;
+                try {
+                    T item = delegate.read();
+                    prefetched = new Prefetched<>(item, null, captureDelegateState());
+                } catch (Exception e) {
+                    prefetched = new Prefetched<>(null, e, captureDelegateState());
+                }
+                // the delegate may swallow the interrupt of close(), so the queue is not waited on indefinitely
+                while (!queue.offer(prefetched, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    if (stopped) {
+                        return;
+                    }
+                }
+                if (prefetched.item == null && prefetched.exception == null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed while waiting for space in the queue
+        }
+    }
+
+    @Override
+    public T read() throws Exception {
+        if (exhausted) {
+            return null;
+        }
+        Prefetched<T> prefetched = queue.take();
+        consumedState = prefetched.state;
+        if (prefetched.exception != null) {
+            throw prefetched.exception;
+        }
+        if (prefetched.item == null) {
+            exhausted = true;
+        }
+        return prefetched.item;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        for (Map.Entry<String, Object> entry : consumedState.entrySet()) {
+            executionContext.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        stopped = true;
+        if (fetcher != null) {
+            fetcher.interrupt();
+            queue.clear();
+            try {
+                fetcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            fetcher = null;
+        }
+        queue = null;
+        delegate.close();
+    }
+
+    private ExecutionContext captureDelegateState() {
+        ExecutionContext state = new ExecutionContext();
+        delegate.update(state);
+        return state;
+    }
+
+    private static class Prefetched<T> {
+        private final T item;
+        private final Exception exception;
+        private final ExecutionContext state;
+
+        Prefetched(T item, Exception exception, ExecutionContext state) {
+            this.item = item;
+            this.exception = exception;
+            this.state = state;
+        }
+    }
+}
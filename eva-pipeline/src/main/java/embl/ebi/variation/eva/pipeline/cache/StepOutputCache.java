@@ -0,0 +1,287 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.cache;
+
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.datastore.core.ObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Keeps copies of the output files of a step, addressed by a hash of the content of its input files and of the options
+ * that change its result, so a rerun with the same data and options can restore the outputs instead of doing the work
+ * again.
+ *
+ * Every entry is a folder named after its key, with the outputs inside. Entries are written in a temporary folder and
+ * moved into place when complete, so a failed or concurrent store never leaves a partial entry. The modification time
+ * of the folder is updated on every hit, and the least recently used entries are deleted when the cache grows over
+ * its maximum size.
+ *
+ * Outputs are copied, not linked, so a step overwriting its output in place can't corrupt the cache.
+ */
+public class StepOutputCache {
+    private static final Logger logger = LoggerFactory.getLogger(StepOutputCache.class);
+
+    public static final String CACHE_DIR = "stepCacheDir";
+    public static final String CACHE_MAX_SIZE = "stepCacheMaxSize";
+
+    private static final String TEMPORARY_PREFIX = ".tmp-";
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** the steps of parallel partitions may share the cache folder */
+    private static final Object EVICTION_LOCK = new Object();
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public StepOutputCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cache configured with "stepCacheDir" and "stepCacheMaxSize" (in MB), or null if there is no cache
+     * folder
+     */
+    public static StepOutputCache fromOptions(ObjectMap pipelineOptions) throws IOException {
+        String cacheDir = pipelineOptions.getString(CACHE_DIR);
+        if (cacheDir == null || cacheDir.isEmpty()) {
+            return null;
+        }
+        Path directory = Files.createDirectories(Paths.get(cacheDir));
+        return new StepOutputCache(directory, pipelineOptions.getLong(CACHE_MAX_SIZE) * 1024 * 1024);
+    }
+
+    /**
+     * @param stepName included in the key, so different steps with the same inputs don't share entries
+     */
+    public static Key key(String stepName) {
+        return new Key(stepName);
+    }
+
+    /**
+     * Copies the outputs of the entry into the given paths. The files of an entry are matched by file name.
+     *
+     * @return true if the entry was found and all the outputs were restored
+     */
+    public boolean restore(Key key, List<Path> outputs) throws IOException {
+        Path entry = directory.resolve(key.toString());
+        if (!Files.isDirectory(entry)) {
+            return false;
+        }
+        for (Path output : outputs) {
+            if (!Files.isRegularFile(entry.resolve(output.getFileName().toString()))) {
+                logger.warn("Cache entry {} doesn't have {}, ignoring it", entry, output.getFileName());
+                return false;
+            }
+        }
+
+        try {
+            for (Path output : outputs) {
+                Files.copy(entry.resolve(output.getFileName().toString()), output,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            logger.warn("Cache entry {} was evicted while being restored", entry);
+            return false;
+        }
+        logger.info("Restored {} outputs from cache entry {}", outputs.size(), entry);
+        return true;
+    }
+
+    /**
+     * Copies the outputs into a new entry, and evicts the least recently used entries if needed. Storing an entry
+     * that already exists does nothing.
+     */
+    public void store(Key key, List<Path> outputs) throws IOException {
+        Path entry = directory.resolve(key.toString());
+        if (Files.exists(entry)) {
+            return;
+        }
+
+        Path temporary = Files.createTempDirectory(directory, TEMPORARY_PREFIX);
+        try {
+            for (Path output : outputs) {
+                Files.copy(output, temporary.resolve(output.getFileName().toString()));
+            }
+            Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Stored {} outputs in cache entry {}", outputs.size(), entry);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            logger.debug("Cache entry {} was stored concurrently", entry);
+        } finally {
+            if (Files.exists(temporary)) {
+                delete(temporary);
+            }
+        }
+
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is not bigger than its maximum size. Entries being
+     * written are not counted.
+     */
+    void evict() throws IOException {
+        synchronized (EVICTION_LOCK) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    private void evictLeastRecentlyUsed() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> children = Files.list(directory)) {
+            children.filter(child -> Files.isDirectory(child)
+                    && !child.getFileName().toString().startsWith(TEMPORARY_PREFIX))
+                    .forEach(entries::add);
+        }
+
+        long totalBytes = 0;
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, FileTime> accessTimes = new HashMap<>();
+        for (Path entry : entries) {
+            long size = size(entry);
+            sizes.put(entry, size);
+            accessTimes.put(entry, Files.getLastModifiedTime(entry));
+            totalBytes += size;
+        }
+
+        entries.sort(Comparator.comparing(accessTimes::get));
+        for (Path entry : entries) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            logger.info("Evicting cache entry {} ({} bytes)", entry, sizes.get(entry));
+            delete(entry);
+            totalBytes -= sizes.get(entry);
+        }
+    }
+
+    private static long size(Path entry) throws IOException {
+        try (Stream<Path> files = Files.walk(entry)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sum();
+        }
+    }
+
+    private static void delete(Path folder) throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            List<Path> paths = new ArrayList<>();
+            files.forEach(paths::add);
+            // children before their parents
+            for (int i = paths.size() - 1; i >= 0; i--) {
+                Files.deleteIfExists(paths.get(i));
+            }
+        }
+    }
+
+    /**
+     * SHA-256 of everything that determines the outputs of a step. The order of the additions matters.
+     */
+    public static class Key {
+
+        private final MessageDigest digest;
+        private String hex;
+
+        private Key(String stepName) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+            addOption("step", stepName);
+        }
+
+        /**
+         * Adds the content of the file, but not its name or location
+         */
+        public Key addFile(Path file) throws IOException {
+            checkIncomplete();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream input = Files.newInputStream(file)) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            digest.update((byte) 0);
+            return this;
+        }
+
+        /**
+         * Adds the content of the file if the value is the path of a file, or the value itself otherwise
+         */
+        public Key addFileOrOption(String name, String value) throws IOException {
+            if (value != null && !value.isEmpty() && Files.isRegularFile(Paths.get(value))) {
+                addOption(name, "file");
+                return addFile(Paths.get(value));
+            }
+            return addOption(name, value);
+        }
+
+        public Key addOption(String name, Object value) {
+            checkIncomplete();
+            digest.update((name + "=" + value + "\n").getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        /**
+         * Adds the options of the file: ids, name, type and aggregation
+         */
+        public Key addSource(VariantSource source) {
+            return addOption("fileName", source.getFileName())
+                    .addOption("fileId", source.getFileId())
+                    .addOption("studyId", source.getStudyId())
+                    .addOption("studyName", source.getStudyName())
+                    .addOption("studyType", source.getType())
+                    .addOption("aggregation", source.getAggregation());
+        }
+
+        private void checkIncomplete() {
+            if (hex != null) {
+                throw new IllegalStateException("The key is already complete");
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (hex == null) {
+                StringBuilder builder = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    builder.append(String.format("%02x", b));
+                }
+                hex = builder.toString();
+            }
+            return hex;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.configuration;
+
+import embl.ebi.variation.eva.pipeline.partition.PartitionWorker;
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Turns this JVM into a worker that runs the partitions left in the job repository by a manager running a job with
+ * "remotePartitioning". No job is launched, see "application-partition-worker.properties".
+ *
+ * The worker must be started with the same parameters as the manager (database, output folder, study...) except the
+ * ones of each file, which are in the partitions, and must share its job repository database.
+ */
+@Configuration
+@Profile("partition-worker")
+public class PartitionWorkerConfiguration {
+
+    public static final String WORKER_POLL_INTERVAL = "workerPollInterval";
+    public static final String WORKER_IDLE_TIMEOUT = "workerIdleTimeout";
+
+    @Autowired
+    private JobExplorer jobExplorer;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private List<Step> steps;
+    @Autowired
+    private ObjectMap pipelineOptions;
+
+    @Bean
+    public PartitionWorker partitionWorker() {
+        // pid@hostname
+        String workerName = ManagementFactory.getRuntimeMXBean().getName();
+        return new PartitionWorker(jobExplorer, dataSource, steps, workerName);
+    }
+
+    @Bean
+    public CommandLineRunner partitionWorkerRunner() {
+        return args -> partitionWorker().run(pipelineOptions.getLong(WORKER_POLL_INTERVAL),
+                pipelineOptions.getLong(WORKER_IDLE_TIMEOUT));
+    }
+}
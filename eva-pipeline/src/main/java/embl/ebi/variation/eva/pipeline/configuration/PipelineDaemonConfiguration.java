@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.configuration;
+
+import embl.ebi.variation.eva.pipeline.daemon.LocalSubmissionServer;
+import embl.ebi.variation.eva.pipeline.daemon.PipelineScheduler;
+import embl.ebi.variation.eva.pipeline.daemon.ResourceBudget;
+import embl.ebi.variation.eva.pipeline.daemon.ResourceDemand;
+import embl.ebi.variation.eva.pipeline.daemon.SpoolDirectory;
+import embl.ebi.variation.eva.pipeline.daemon.SpringJobRunner;
+import org.opencb.datastore.core.ObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Turns this JVM into a resident service that runs the jobs submitted into a spool folder ("daemonSpoolDir") or
+ * through a local HTTP API ("daemonPort"), see {@link SpoolDirectory} and {@link LocalSubmissionServer}. No job is
+ * launched at startup, see "application-daemon.properties".
+ *
+ * The jobs share a global budget of cores, MongoDB writers and VEP processes, and the studies share it fairly, see
+ * {@link PipelineScheduler}.
+ *
+ * When the context is closed, e.g. the JVM gets a SIGTERM, the daemon stops accepting submissions and waits a bit for
+ * the running jobs. The ones that don't finish are submitted again from the spool folder when the next daemon starts.
+ */
+@Configuration
+@Profile(PipelineDaemonConfiguration.PROFILE)
+public class PipelineDaemonConfiguration {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineDaemonConfiguration.class);
+
+    public static final String PROFILE = "daemon";
+
+    public static final String DAEMON_SPOOL_DIR = "daemonSpoolDir";
+    public static final String DAEMON_PORT = "daemonPort";
+    public static final String DAEMON_POLL_INTERVAL = "daemonPollInterval";
+    public static final String DAEMON_CPUS = "daemonCpus";
+    public static final String DAEMON_MONGO_WRITERS = "daemonMongoWriters";
+    public static final String DAEMON_VEP_PROCESSES = "daemonVepProcesses";
+    public static final String DAEMON_TOKEN_FILE = "daemonTokenFile";
+    public static final String DAEMON_ALLOWED_OPTIONS = "daemonAllowedOptions";
+
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+
+    @Autowired
+    private ObjectMap pipelineOptions;
+    @Autowired
+    private Environment environment;
+    @Autowired
+    private ApplicationArguments applicationArguments;
+
+    private volatile boolean stopped;
+    private PipelineScheduler scheduler;
+    private LocalSubmissionServer server;
+
+    @Bean
+    public PipelineScheduler pipelineScheduler() {
+        int cpus = pipelineOptions.getInt(DAEMON_CPUS);
+        ResourceDemand total = new ResourceDemand(
+                cpus > 0 ? cpus : Runtime.getRuntime().availableProcessors(),
+                pipelineOptions.getInt(DAEMON_MONGO_WRITERS),
+                pipelineOptions.getInt(DAEMON_VEP_PROCESSES));
+        logger.info("Resource budget of the daemon: {}", total);
+        return new PipelineScheduler(new ResourceBudget(total), jobRunner(), pipelineOptions);
+    }
+
+    private SpringJobRunner jobRunner() {
+        Map<String, String> daemonOptions = new LinkedHashMap<>();
+        for (String name : applicationArguments.getOptionNames()) {
+            List<String> values = applicationArguments.getOptionValues(name);
+            daemonOptions.put(name, values.isEmpty() ? "" : values.get(values.size() - 1));
+        }
+        daemonOptions.remove("spring.profiles.active");
+
+        String jobProfiles = Arrays.stream(environment.getActiveProfiles())
+                .filter(profile -> !profile.equals(PROFILE))
+                .collect(Collectors.joining(","));
+        String outputDir = pipelineOptions.getString("outputDir");
+        Path submissionsDir = outputDir == null || outputDir.isEmpty() ? Paths.get(System.getProperty("java.io.tmpdir"))
+                                                                     : Paths.get(outputDir);
+        return new SpringJobRunner(daemonOptions, jobProfiles, submissionsDir);
+    }
+
+    @Bean
+    public CommandLineRunner pipelineDaemonRunner() {
+        return args -> {
+            scheduler = pipelineScheduler();
+
+            String spoolDir = pipelineOptions.getString(DAEMON_SPOOL_DIR);
+            SpoolDirectory spool = null;
+            if (spoolDir != null && !spoolDir.isEmpty()) {
+                spool = new SpoolDirectory(Paths.get(spoolDir));
+                scheduler.addFinishListener(spool::finished);
+                logger.info("Accepting submissions in {}", spoolDir);
+            }
+
+            int port = pipelineOptions.getInt(DAEMON_PORT);
+            if (port > 0) {
+                String tokenFile = pipelineOptions.getString(DAEMON_TOKEN_FILE);
+                if (tokenFile == null || tokenFile.isEmpty()) {
+                    throw new IllegalArgumentException("The API of the daemon needs a " + DAEMON_TOKEN_FILE);
+                }
+                server = new LocalSubmissionServer(port, scheduler, Paths.get(tokenFile));
+                server.start();
+                logger.info("Requests to the API must carry the token written into {}", tokenFile);
+            }
+
+            if (spool == null && server == null) {
+                throw new IllegalArgumentException("The daemon needs " + DAEMON_SPOOL_DIR + " or " + DAEMON_PORT
+                                                           + " to receive jobs");
+            }
+
+            long pollInterval = pipelineOptions.getLong(DAEMON_POLL_INTERVAL);
+            try {
+                while (!stopped && !Thread.currentThread().isInterrupted()) {
+                    if (spool != null) {
+                        spool.poll(scheduler);
+                    }
+                    scheduler.startEligible();
+                    scheduler.awaitChange(pollInterval);
+                }
+            } finally {
+                stop();
+            }
+        };
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        logger.info("Stopping the daemon");
+        if (server != null) {
+            server.stop();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown(SHUTDOWN_TIMEOUT);
+        }
+    }
+}
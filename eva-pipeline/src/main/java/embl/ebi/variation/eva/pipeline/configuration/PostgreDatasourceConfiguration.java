@@ -15,17 +15,26 @@
  */
 package embl.ebi.variation.eva.pipeline.configuration;
 
-import javax.sql.DataSource;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.jmx.ConnectionPool;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.SQLException;
 
 /**
  * Configuration will be loaded from the file "application-production.properties".
+ *
+ * The job repository is updated at least once per chunk, so the connections are pooled instead of opening a new one
+ * (TCP and authentication handshakes included) for every update. The repository always runs the same few queries, so
+ * the prepared statements are cached per connection as well.
+ *
+ * The pool is exported through JMX (active, idle and waiting connections...), and queries slower than
+ * "job.repository.pool.slowQueryThreshold" milliseconds are logged and exported as notifications.
  */
 @Configuration
 @Profile("production")
@@ -37,12 +46,38 @@ public class PostgreDatasourceConfiguration {
     @Bean
     @Primary
     public DataSource postgreDataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        DataSource dataSource = new DataSource();
         dataSource.setDriverClassName(env.getProperty("job.repository.driverClassName"));
         dataSource.setUrl(env.getProperty("job.repository.url"));
         dataSource.setUsername(env.getProperty("job.repository.username"));
         dataSource.setPassword(env.getProperty("job.repository.password"));
+
+        int maxActive = env.getProperty("job.repository.pool.maxActive", Integer.class, 10);
+        dataSource.setMaxActive(maxActive);
+        dataSource.setMaxIdle(maxActive);
+        dataSource.setInitialSize(env.getProperty("job.repository.pool.initialSize", Integer.class, 2));
+        dataSource.setMinIdle(env.getProperty("job.repository.pool.minIdle", Integer.class, 2));
+        dataSource.setMaxWait(env.getProperty("job.repository.pool.maxWait", Integer.class, 30000));
+
+        // connections may be dropped by the server or a firewall during long steps
+        dataSource.setTestOnBorrow(true);
+        dataSource.setValidationQuery("SELECT 1");
+        dataSource.setValidationInterval(30000);
+
+        dataSource.setJdbcInterceptors(String.format(
+                "StatementCache(prepared=true,callable=false,max=%d);SlowQueryReportJmx(threshold=%d)",
+                env.getProperty("job.repository.pool.statementCacheSize", Integer.class, 50),
+                env.getProperty("job.repository.pool.slowQueryThreshold", Integer.class, 1000)));
+        dataSource.setJmxEnabled(true);
         return dataSource;
     }
 
+    /**
+     * The MBean of the pool, registered by the Spring JMX exporter.
+     */
+    @Bean
+    public ConnectionPool postgreDataSourcePool() throws SQLException {
+        return postgreDataSource().createPool().getJmxPool();
+    }
+
 }
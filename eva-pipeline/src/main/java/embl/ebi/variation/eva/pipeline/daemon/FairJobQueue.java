@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Queue of submissions with a queue per study. The next submission is the one with the highest priority among the
+ * first of every study; with the same priority, the one of the study with fewer running jobs, and then the one of the
+ * study served longest ago, so a study submitting many files doesn't delay the others. Within a study, submissions
+ * are taken by priority and then in order of arrival.
+ *
+ * Not thread safe, {@link PipelineScheduler} synchronizes its use.
+ */
+class FairJobQueue {
+
+    private static final Comparator<JobSubmission> WITHIN_STUDY =
+            Comparator.comparingInt(JobSubmission::getPriority).reversed().thenComparingLong(JobSubmission::getId);
+
+    private final Map<String, PriorityQueue<JobSubmission>> queues = new HashMap<>();
+    private final Map<String, Integer> running = new HashMap<>();
+    private final Map<String, Long> lastStarted = new HashMap<>();
+    private long clock;
+
+    void add(JobSubmission submission) {
+        queues.computeIfAbsent(submission.getStudy(), study -> new PriorityQueue<>(WITHIN_STUDY)).add(submission);
+    }
+
+    /**
+     * @return the submission that should start next, or null if there are none
+     */
+    JobSubmission peekNext() {
+        JobSubmission next = null;
+        for (PriorityQueue<JobSubmission> queue : queues.values()) {
+            JobSubmission candidate = queue.peek();
+            if (candidate != null && (next == null || isBefore(candidate, next))) {
+                next = candidate;
+            }
+        }
+        return next;
+    }
+
+    private boolean isBefore(JobSubmission candidate, JobSubmission other) {
+        if (candidate.getPriority() != other.getPriority()) {
+            return candidate.getPriority() > other.getPriority();
+        }
+        int candidateRunning = running.getOrDefault(candidate.getStudy(), 0);
+        int otherRunning = running.getOrDefault(other.getStudy(), 0);
+        if (candidateRunning != otherRunning) {
+            return candidateRunning < otherRunning;
+        }
+        long candidateServed = lastStarted.getOrDefault(candidate.getStudy(), 0L);
+        long otherServed = lastStarted.getOrDefault(other.getStudy(), 0L);
+        if (candidateServed != otherServed) {
+            return candidateServed < otherServed;
+        }
+        return candidate.getId() < other.getId();
+    }
+
+    /**
+     * Removes the submission, which must be the one returned by {@link #peekNext}, and counts it as running
+     */
+    void start(JobSubmission submission) {
+        PriorityQueue<JobSubmission> queue = queues.get(submission.getStudy());
+        if (queue == null || queue.peek() != submission) {
+            throw new IllegalStateException(submission + " is not the next one of its study");
+        }
+        queue.poll();
+        if (queue.isEmpty()) {
+            queues.remove(submission.getStudy());
+        }
+        running.merge(submission.getStudy(), 1, Integer::sum);
+        lastStarted.put(submission.getStudy(), ++clock);
+    }
+
+    void finished(JobSubmission submission) {
+        running.computeIfPresent(submission.getStudy(), (study, jobs) -> jobs > 1 ? jobs - 1 : null);
+    }
+
+    int size() {
+        int size = 0;
+        for (PriorityQueue<JobSubmission> queue : queues.values()) {
+            size += queue.size();
+        }
+        return size;
+    }
+}
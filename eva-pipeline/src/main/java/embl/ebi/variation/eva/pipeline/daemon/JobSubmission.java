@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import embl.ebi.variation.eva.pipeline.configuration.PipelineDaemonConfiguration;
+import org.opencb.datastore.core.ObjectMap;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * A job submitted to the daemon: the same options that would be given in the command line, as properties, e.g.
+ *
+ * spring.batch.job.names=variantJob
+ * input=/data/study1/file1.vcf.gz
+ * fileId=1
+ * studyId=study1
+ * priority=10
+ *
+ * "spring.batch.job.names" (a single job) is mandatory. "priority" (default 0, higher first) and the
+ * "demand.*" options of {@link ResourceDemand} are only used by the scheduler. Jobs are shared fairly between the
+ * values of "studyId".
+ *
+ * The rest of the options must be listed in the "daemonAllowedOptions" of the daemon, so a submission can't change
+ * e.g. the VEP executable, the output folder or the Spring configuration that the jobs run with.
+ */
+public class JobSubmission {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    public static final String JOB_NAMES = "spring.batch.job.names";
+    public static final String PRIORITY = "priority";
+    public static final String STUDY_ID = "studyId";
+
+    private final long id;
+    private final String source;
+    private final Properties options;
+    private final String jobName;
+    private final String study;
+    private final int priority;
+    private final ResourceDemand demand;
+    private volatile Status status;
+
+    private JobSubmission(long id, String source, Properties options, String jobName, String study, int priority,
+                          ResourceDemand demand) {
+        this.id = id;
+        this.source = source;
+        this.options = options;
+        this.jobName = jobName;
+        this.study = study;
+        this.priority = priority;
+        this.demand = demand;
+        this.status = Status.QUEUED;
+    }
+
+    /**
+     * @param source where the submission came from, e.g. the path of its file in the spool directory
+     * @param pipelineOptions of the daemon, used for the options that the submission doesn't set
+     */
+    public static JobSubmission parse(long id, String source, Properties options, ObjectMap pipelineOptions) {
+        Set<String> allowedOptions = new HashSet<>();
+        for (String option : pipelineOptions.getString(PipelineDaemonConfiguration.DAEMON_ALLOWED_OPTIONS, "")
+                                            .split(",")) {
+            allowedOptions.add(option.trim());
+        }
+        for (String key : options.stringPropertyNames()) {
+            if (!key.equals(JOB_NAMES) && !key.equals(PRIORITY) && !key.startsWith(ResourceDemand.DEMAND_PREFIX)
+                    && !allowedOptions.contains(key)) {
+                throw new IllegalArgumentException("A submission can't set '" + key + "', it is not in "
+                                                           + PipelineDaemonConfiguration.DAEMON_ALLOWED_OPTIONS);
+            }
+        }
+
+        String jobName = options.getProperty(JOB_NAMES, "").trim();
+        if (jobName.isEmpty() || jobName.contains(",")) {
+            throw new IllegalArgumentException("A submission must set one job in " + JOB_NAMES + ", not '"
+                                                       + jobName + "'");
+        }
+
+        int priority;
+        try {
+            priority = Integer.parseInt(options.getProperty(PRIORITY, "0").trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The priority must be a number, not " + options.getProperty(PRIORITY));
+        }
+
+        String study = options.getProperty(STUDY_ID);
+        if (study == null && pipelineOptions.containsKey(STUDY_ID)) {
+            study = String.valueOf(pipelineOptions.get(STUDY_ID));
+        }
+
+        return new JobSubmission(id, source, options, jobName, study == null ? "" : study, priority,
+                                 ResourceDemand.of(jobName, options, pipelineOptions));
+    }
+
+    /**
+     * @return the options of the job, without the ones that only the scheduler uses
+     */
+    public Map<String, String> getJobOptions() {
+        Map<String, String> jobOptions = new LinkedHashMap<>();
+        for (String key : options.stringPropertyNames()) {
+            if (!key.equals(PRIORITY) && !key.startsWith(ResourceDemand.DEMAND_PREFIX)) {
+                jobOptions.put(key, options.getProperty(key));
+            }
+        }
+        return jobOptions;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public String getStudy() {
+        return study;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public ResourceDemand getDemand() {
+        return demand;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return "submission " + id + " (" + jobName + ", study '" + study + "', priority " + priority + ")";
+    }
+}
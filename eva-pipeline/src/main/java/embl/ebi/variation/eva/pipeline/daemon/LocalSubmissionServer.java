@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Properties;
+
+/**
+ * Minimal HTTP API of the daemon, only listening in the loopback interface. Any local user can connect to it, so the
+ * requests must carry the random token that the daemon writes at startup into a file that only its user can read:
+ *
+ * - POST /jobs with a submission as properties (see {@link JobSubmission}) in the body: queues it and answers its id
+ * - GET /jobs: one line per submission, as "id status jobName study priority source", tab separated
+ * - GET /budget: total and available resources
+ *
+ * e.g. curl -H "Authorization: Bearer $(cat ~/.eva-pipeline-daemon.token)" --data-binary @file1.properties \
+ *          http://localhost:8090/jobs
+ */
+public class LocalSubmissionServer {
+    private static final Logger logger = LoggerFactory.getLogger(LocalSubmissionServer.class);
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final HttpServer server;
+    private final PipelineScheduler scheduler;
+    private final Path tokenFile;
+    private final byte[] authorization;
+
+    /**
+     * @param port 0 to use any free one, see {@link #getPort()}
+     * @param tokenFile replaced by a new one, readable and writable only by the user of the daemon
+     */
+    public LocalSubmissionServer(int port, PipelineScheduler scheduler, Path tokenFile) throws IOException {
+        this.scheduler = scheduler;
+        this.tokenFile = tokenFile;
+        this.authorization = ("Bearer " + writeToken(tokenFile)).getBytes(StandardCharsets.US_ASCII);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/jobs", this::handleJobs);
+        server.createContext("/budget", this::handleBudget);
+    }
+
+    private static String writeToken(Path tokenFile) throws IOException {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+
+        // a new file, so it is never created through a link or with the permissions of an old one
+        Files.deleteIfExists(tokenFile);
+        Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        Files.write(tokenFile, token.toString().getBytes(StandardCharsets.US_ASCII));
+        return token.toString();
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Accepting submissions in http://{}/jobs", server.getAddress());
+    }
+
+    public void stop() {
+        server.stop(0);
+        try {
+            Files.deleteIfExists(tokenFile);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", tokenFile, e.getMessage());
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private boolean authorized(HttpExchange exchange) throws IOException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header != null && MessageDigest.isEqual(authorization, header.getBytes(StandardCharsets.US_ASCII))) {
+            return true;
+        }
+        logger.warn("Unauthorized request from {}", exchange.getRemoteAddress());
+        respond(exchange, 401, "Missing or wrong token\n");
+        return false;
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorized(exchange)) {
+                return;
+            }
+            if ("POST".equals(exchange.getRequestMethod())) {
+                Properties options = new Properties();
+                try (Reader body = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                    options.load(body);
+                }
+                try {
+                    JobSubmission submission = scheduler.submit("api:" + exchange.getRemoteAddress(), options);
+                    respond(exchange, 201, submission.getId() + "\n");
+                } catch (IllegalArgumentException e) {
+                    respond(exchange, 400, e.getMessage() + "\n");
+                }
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                StringBuilder response = new StringBuilder();
+                for (JobSubmission submission : scheduler.getSubmissions()) {
+                    response.append(String.join("\t", String.valueOf(submission.getId()),
+                                                submission.getStatus().toString(), submission.getJobName(),
+                                                submission.getStudy(), String.valueOf(submission.getPriority()),
+                                                submission.getSource()))
+                            .append('\n');
+                }
+                respond(exchange, 200, response.toString());
+            } else {
+                respond(exchange, 405, "Use GET or POST\n");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleBudget(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorized(exchange)) {
+                return;
+            }
+            ResourceBudget budget = scheduler.getBudget();
+            respond(exchange, 200, "total\t" + budget.getTotal() + "\navailable\t" + budget.getAvailable() + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import org.opencb.datastore.core.ObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Starts the submitted jobs when the {@link ResourceBudget} has room for them, in the order given by a
+ * {@link FairJobQueue}. If the next submission doesn't fit, nothing else starts until it does, so big jobs are not
+ * starved by a stream of small ones.
+ *
+ * Every job runs in its own thread through a {@link JobRunner}. Only the last {@link #MAX_FINISHED_SUBMISSIONS}
+ * finished submissions are kept.
+ */
+public class PipelineScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineScheduler.class);
+
+    public static final int MAX_FINISHED_SUBMISSIONS = 1000;
+
+    /**
+     * Runs a submission until it finishes
+     */
+    public interface JobRunner {
+        /**
+         * @return whether the job completed successfully
+         */
+        boolean run(JobSubmission submission) throws Exception;
+    }
+
+    private final ResourceBudget budget;
+    private final JobRunner jobRunner;
+    private final ObjectMap pipelineOptions;
+    private final FairJobQueue queue;
+    private final Map<Long, JobSubmission> submissions;
+    private final Deque<Long> finishedIds;
+    private final List<Consumer<JobSubmission>> finishListeners;
+    private final AtomicLong lastId;
+    private final ExecutorService executor;
+
+    public PipelineScheduler(ResourceBudget budget, JobRunner jobRunner, ObjectMap pipelineOptions) {
+        this.budget = budget;
+        this.jobRunner = jobRunner;
+        this.pipelineOptions = pipelineOptions;
+        this.queue = new FairJobQueue();
+        this.submissions = new ConcurrentSkipListMap<>();
+        this.finishedIds = new ArrayDeque<>();
+        this.finishListeners = new CopyOnWriteArrayList<>();
+        this.lastId = new AtomicLong();
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "daemon-job-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @throws IllegalArgumentException if the options are not a valid submission
+     */
+    public synchronized JobSubmission submit(String source, Properties options) {
+        JobSubmission submission = JobSubmission.parse(lastId.incrementAndGet(), source, options, pipelineOptions);
+        submissions.put(submission.getId(), submission);
+        queue.add(submission);
+        logger.info("Queued {} from {}, needing {}", submission, source, submission.getDemand());
+        notifyAll();
+        return submission;
+    }
+
+    public void addFinishListener(Consumer<JobSubmission> listener) {
+        finishListeners.add(listener);
+    }
+
+    /**
+     * Starts all the queued submissions that fit in the budget right now
+     * @return how many were started
+     */
+    public synchronized int startEligible() {
+        int started = 0;
+        if (executor.isShutdown()) {
+            return started;
+        }
+        JobSubmission next;
+        while ((next = queue.peekNext()) != null && budget.tryAcquire(next.getDemand())) {
+            queue.start(next);
+            next.setStatus(JobSubmission.Status.RUNNING);
+            logger.info("Starting {}, {} still queued", next, queue.size());
+            final JobSubmission submission = next;
+            executor.execute(() -> execute(submission));
+            started++;
+        }
+        return started;
+    }
+
+    private void execute(JobSubmission submission) {
+        boolean completed = false;
+        try {
+            completed = jobRunner.run(submission);
+        } catch (Exception e) {
+            logger.error("Could not run " + submission, e);
+        } finally {
+            synchronized (this) {
+                budget.release(submission.getDemand());
+                queue.finished(submission);
+                submission.setStatus(completed ? JobSubmission.Status.COMPLETED : JobSubmission.Status.FAILED);
+                finishedIds.add(submission.getId());
+                while (finishedIds.size() > MAX_FINISHED_SUBMISSIONS) {
+                    submissions.remove(finishedIds.remove());
+                }
+                notifyAll();
+            }
+            logger.info("Finished {} as {}", submission, submission.getStatus());
+            for (Consumer<JobSubmission> listener : finishListeners) {
+                listener.accept(submission);
+            }
+        }
+    }
+
+    /**
+     * Waits until a submission arrives or a job finishes, or the timeout expires
+     */
+    public synchronized void awaitChange(long timeoutMillis) throws InterruptedException {
+        wait(timeoutMillis);
+    }
+
+    public List<JobSubmission> getSubmissions() {
+        return new ArrayList<>(submissions.values());
+    }
+
+    public ResourceBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Stops accepting work and waits for the running jobs
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        synchronized (this) {
+            executor.shutdown();
+            notifyAll();
+        }
+        executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+/**
+ * Global budget of cores, MongoDB writers and VEP processes shared by all the jobs of the daemon. All the resources
+ * of a job are taken at once or not at all, so jobs waiting for resources never hold part of them.
+ */
+public class ResourceBudget {
+
+    private final ResourceDemand total;
+    private int cpus;
+    private int mongoWriters;
+    private int vepProcesses;
+
+    public ResourceBudget(ResourceDemand total) {
+        this.total = total;
+        this.cpus = total.getCpus();
+        this.mongoWriters = total.getMongoWriters();
+        this.vepProcesses = total.getVepProcesses();
+    }
+
+    public synchronized boolean tryAcquire(ResourceDemand demand) {
+        ResourceDemand limited = demand.limitTo(total);
+        if (limited.getCpus() > cpus || limited.getMongoWriters() > mongoWriters
+                || limited.getVepProcesses() > vepProcesses) {
+            return false;
+        }
+        cpus -= limited.getCpus();
+        mongoWriters -= limited.getMongoWriters();
+        vepProcesses -= limited.getVepProcesses();
+        return true;
+    }
+
+    public synchronized void release(ResourceDemand demand) {
+        ResourceDemand limited = demand.limitTo(total);
+        cpus += limited.getCpus();
+        mongoWriters += limited.getMongoWriters();
+        vepProcesses += limited.getVepProcesses();
+    }
+
+    public synchronized ResourceDemand getAvailable() {
+        return new ResourceDemand(cpus, mongoWriters, vepProcesses);
+    }
+
+    public ResourceDemand getTotal() {
+        return total;
+    }
+}
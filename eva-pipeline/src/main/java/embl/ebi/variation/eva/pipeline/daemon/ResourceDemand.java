@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import embl.ebi.variation.eva.pipeline.async.AsyncProcessingConfiguration;
+import embl.ebi.variation.eva.pipeline.jobs.VariantAnnotConfiguration;
+import embl.ebi.variation.eva.pipeline.jobs.VariantConfiguration;
+import embl.ebi.variation.eva.pipeline.jobs.VariantMultiFileConfiguration;
+import embl.ebi.variation.eva.pipeline.steps.VariantsAnnotCreate;
+import org.opencb.datastore.core.ObjectMap;
+
+import java.util.Properties;
+
+/**
+ * Resources that a job needs while it runs: cores, concurrent MongoDB writers and VEP processes.
+ *
+ * It is estimated from the job and its options, and can be raised in a submission with "demand.cpus",
+ * "demand.mongoWriters" and "demand.vepProcesses", e.g. for jobs heavier than their options suggest. A demand lower
+ * than the estimate is rejected, so a submission can't take more of the budget than it declares.
+ */
+public class ResourceDemand {
+
+    public static final String DEMAND_PREFIX = "demand.";
+
+    private final int cpus;
+    private final int mongoWriters;
+    private final int vepProcesses;
+
+    public ResourceDemand(int cpus, int mongoWriters, int vepProcesses) {
+        this.cpus = cpus;
+        this.mongoWriters = mongoWriters;
+        this.vepProcesses = vepProcesses;
+    }
+
+    /**
+     * @param options of the submission, the ones missing are taken from the pipelineOptions of the daemon
+     */
+    public static ResourceDemand of(String jobName, Properties options, ObjectMap pipelineOptions) {
+        boolean multiFile = VariantMultiFileConfiguration.jobName.equals(jobName);
+
+        int mongoWriters = 1;
+        if (multiFile) {
+            mongoWriters = getInt(VariantMultiFileConfiguration.MAX_CONCURRENT_FILES, options, pipelineOptions, 1);
+        } else if (VariantConfiguration.jobName.equals(jobName)) {
+            mongoWriters = getInt(VariantConfiguration.MAX_CONCURRENT_FLOWS, options, pipelineOptions, 1);
+        }
+
+        boolean runsVep = (multiFile || VariantConfiguration.jobName.equals(jobName)
+                || VariantAnnotConfiguration.jobName.equals(jobName))
+                && !Boolean.parseBoolean(getOption(VariantsAnnotCreate.SKIP_ANNOT_CREATE, options, pipelineOptions));
+        int vepProcesses = runsVep ? getInt("vepNumForks", options, pipelineOptions, 1) : 0;
+
+        // every writer thread, the extra processing threads and every VEP fork keep a core busy
+        int processingThreads = getInt(AsyncProcessingConfiguration.PROCESSING_THREADS, options, pipelineOptions, 1);
+        int cpus = mongoWriters + Math.max(0, processingThreads - 1) + vepProcesses;
+
+        return new ResourceDemand(getDemand("cpus", options, pipelineOptions, cpus),
+                                  getDemand("mongoWriters", options, pipelineOptions, mongoWriters),
+                                  getDemand("vepProcesses", options, pipelineOptions, vepProcesses));
+    }
+
+    private static int getDemand(String resource, Properties options, ObjectMap pipelineOptions, int estimate) {
+        int demand = getInt(DEMAND_PREFIX + resource, options, pipelineOptions, estimate);
+        if (demand < estimate) {
+            throw new IllegalArgumentException(String.format(
+                    "%s%s=%d is lower than the %d estimated from the options of the job", DEMAND_PREFIX, resource,
+                    demand, estimate));
+        }
+        return demand;
+    }
+
+    private static String getOption(String key, Properties options, ObjectMap pipelineOptions) {
+        String value = options.getProperty(key);
+        if (value == null && pipelineOptions.containsKey(key)) {
+            value = String.valueOf(pipelineOptions.get(key));
+        }
+        return value;
+    }
+
+    private static int getInt(String key, Properties options, ObjectMap pipelineOptions, int defaultValue) {
+        String value = getOption(key, options, pipelineOptions);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option " + key + " must be a number, not " + value, e);
+        }
+    }
+
+    /**
+     * @return this demand reduced to fit in the total, so a job bigger than the budget can still run alone
+     */
+    public ResourceDemand limitTo(ResourceDemand total) {
+        return new ResourceDemand(Math.min(cpus, total.cpus), Math.min(mongoWriters, total.mongoWriters),
+                                  Math.min(vepProcesses, total.vepProcesses));
+    }
+
+    public int getCpus() {
+        return cpus;
+    }
+
+    public int getMongoWriters() {
+        return mongoWriters;
+    }
+
+    public int getVepProcesses() {
+        return vepProcesses;
+    }
+
+    @Override
+    public String toString() {
+        return "cpus=" + cpus + ", mongoWriters=" + mongoWriters + ", vepProcesses=" + vepProcesses;
+    }
+}
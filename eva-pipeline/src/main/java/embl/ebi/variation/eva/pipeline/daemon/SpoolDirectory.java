@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Folder where submissions are dropped as "*.properties" files (see {@link JobSubmission}). To avoid reading half
+ * written files, write them with another extension and rename them at the end.
+ *
+ * Accepted files are moved into "running", with a unique prefix so a new file with the name of a running one
+ * doesn't replace it, and then into "done" or "failed" when their job finishes. Files that are not valid submissions
+ * go straight into "failed". Files left in "running" by a daemon that was stopped are submitted again when the next
+ * one starts.
+ */
+public class SpoolDirectory {
+    private static final Logger logger = LoggerFactory.getLogger(SpoolDirectory.class);
+
+    public static final String SUFFIX = ".properties";
+
+    private final Path directory;
+    private final Path running;
+    private final Path done;
+    private final Path failed;
+
+    private final List<Path> interrupted;
+    private long lastAccepted;
+
+    public SpoolDirectory(Path directory) throws IOException {
+        this.directory = directory;
+        this.running = Files.createDirectories(directory.resolve("running"));
+        this.done = Files.createDirectories(directory.resolve("done"));
+        this.failed = Files.createDirectories(directory.resolve("failed"));
+
+        this.interrupted = list(running);
+        this.lastAccepted = System.currentTimeMillis();
+    }
+
+    /**
+     * Submits the files left in "running" by a previous daemon, and then the new files in order of modification.
+     * A file that can't be accepted doesn't stop the rest.
+     */
+    public void poll(PipelineScheduler scheduler) {
+        for (Path file : interrupted) {
+            logger.warn("Submitting again {}, that was running when the daemon stopped", file);
+            submit(scheduler, file);
+        }
+        interrupted.clear();
+
+        List<Path> files;
+        try {
+            files = list(directory);
+        } catch (IOException e) {
+            logger.error("Could not look for submissions in " + directory + ": " + e.getMessage());
+            return;
+        }
+
+        for (Path file : files) {
+            Path accepted;
+            try {
+                accepted = Files.move(file, acceptedPath(file), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.error("Could not accept submission " + file + ": " + e.getMessage());
+                continue;
+            }
+            submit(scheduler, accepted);
+        }
+    }
+
+    /**
+     * @return a path in "running" that no other file uses, prefixing the name with a number that grows with every
+     * accepted file
+     */
+    private Path acceptedPath(Path file) {
+        Path accepted;
+        do {
+            accepted = running.resolve(++lastAccepted + "-" + file.getFileName());
+        } while (Files.exists(accepted, LinkOption.NOFOLLOW_LINKS));
+        return accepted;
+    }
+
+    private void submit(PipelineScheduler scheduler, Path accepted) {
+        Properties options = new Properties();
+        try (Reader reader = Files.newBufferedReader(accepted, StandardCharsets.UTF_8)) {
+            options.load(reader);
+            scheduler.submit(accepted.toString(), options);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Rejected submission " + accepted + ": " + e.getMessage());
+            moveInto(accepted, failed);
+        }
+    }
+
+    /**
+     * Moves the file of a finished submission into "done" or "failed"
+     */
+    public void finished(JobSubmission submission) {
+        if (submission.getSource() == null || !submission.getSource().startsWith(running.toString())) {
+            return;
+        }
+        Path file = Paths.get(submission.getSource());
+        moveInto(file, submission.getStatus() == JobSubmission.Status.COMPLETED ? done : failed);
+    }
+
+    private static void moveInto(Path file, Path folder) {
+        try {
+            Files.move(file, folder.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Could not move " + file + " into " + folder + ": " + e.getMessage());
+        }
+    }
+
+    private static List<Path> list(Path folder) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(SpoolDirectory::lastModified));
+        return files;
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import embl.ebi.variation.eva.Application;
+import embl.ebi.variation.eva.pipeline.steps.VariantsAnnotLoad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every submission as the command line would, in a new application context of this JVM: the job options are
+ * singletons of the context, so each job needs its own, but the JVM, the loaded classes and the JIT compiled code are
+ * reused, instead of paying a whole "java -jar" per file.
+ *
+ * The jobs get the options given to the daemon in its command line, overridden by the ones of the submission, which
+ * {@link JobSubmission} restricts to the "daemonAllowedOptions".
+ *
+ * Several jobs run at the same time, so the files that every job would otherwise write in the same place (the VEP
+ * input and output, and the dead-letter file of the annotation) are kept in a new folder per submission, inside
+ * submissionsDir.
+ */
+public class SpringJobRunner implements PipelineScheduler.JobRunner {
+    private static final Logger logger = LoggerFactory.getLogger(SpringJobRunner.class);
+
+    static final String VEP_INPUT = "vepInput";
+    static final String VEP_OUTPUT = "vepOutput";
+
+    private final Map<String, String> daemonOptions;
+    private final String profiles;
+    private final Path submissionsDir;
+
+    /**
+     * @param daemonOptions command line options of the daemon, without the leading "--"
+     * @param profiles active profiles for the jobs, without the one of the daemon
+     * @param submissionsDir where the folder of every submission is created
+     */
+    public SpringJobRunner(Map<String, String> daemonOptions, String profiles, Path submissionsDir) {
+        this.daemonOptions = daemonOptions;
+        this.profiles = profiles;
+        this.submissionsDir = submissionsDir;
+    }
+
+    @Override
+    public boolean run(JobSubmission submission) throws Exception {
+        Map<String, String> options = getOptions(submission);
+
+        List<String> arguments = new ArrayList<>();
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            arguments.add("--" + option.getKey() + "=" + option.getValue());
+        }
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .web(false)
+                .bannerMode(Banner.Mode.OFF)
+                .run(arguments.toArray(new String[arguments.size()]));
+
+        // closes the context; non zero if the job failed
+        return SpringApplication.exit(context) == 0;
+    }
+
+    /**
+     * @return the options of the job, with the files of the annotation in a new folder for the submission. The folder
+     * is unique even if the ids of the submissions start again when the daemon is restarted.
+     */
+    Map<String, String> getOptions(JobSubmission submission) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>(daemonOptions);
+        options.putAll(submission.getJobOptions());
+        options.put("spring.profiles.active", profiles);
+        options.put("spring.batch.job.enabled", "true");
+
+        Files.createDirectories(submissionsDir);
+        Path submissionDir = Files.createTempDirectory(submissionsDir, "submission-" + submission.getId() + "-");
+        Path vepOutput = submissionDir.resolve("variants_annotation.tsv.gz");
+        options.put(VEP_INPUT, submissionDir.resolve("variants_to_annotate.tsv.gz").toString());
+        options.put(VEP_OUTPUT, vepOutput.toString());
+        options.put(VariantsAnnotLoad.DEAD_LETTER_FILE, vepOutput + ".deadletter.json");
+        logger.info("The annotation files of {} are written into {}", submission, submissionDir);
+        return options;
+    }
+}
@@ -15,7 +15,16 @@
  */
 package embl.ebi.variation.eva.pipeline.jobs;
 
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.AggregatedStatsDecider;
+import embl.ebi.variation.eva.pipeline.LoadDecider;
+import embl.ebi.variation.eva.pipeline.OptionalDecider;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsExportListener;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
+import embl.ebi.variation.eva.pipeline.steps.VariantsAggregatedStatsLoad;
 import embl.ebi.variation.eva.pipeline.steps.VariantsLoad;
+import embl.ebi.variation.eva.pipeline.steps.VariantsStatsLoad;
 import embl.ebi.variation.eva.pipeline.steps.VariantsTransform;
 import org.opencb.datastore.core.ObjectMap;
 import org.slf4j.Logger;
@@ -26,11 +35,13 @@ import org.springframework.batch.core.configuration.annotation.EnableBatchProces
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
 import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.core.step.builder.TaskletStepBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -42,7 +53,7 @@ import java.nio.file.Paths;
 
 @Configuration
 @EnableBatchProcessing
-@Import(VariantJobArgsConfig.class)
+@Import({VariantJobArgsConfig.class, VariantsAggregatedStatsLoad.class, MetricsConfiguration.class})
 public class VariantAggregatedConfiguration {
 
     private static final Logger logger = LoggerFactory.getLogger(VariantAggregatedConfiguration.class);
@@ -58,19 +69,40 @@ public class VariantAggregatedConfiguration {
     Environment environment;
     @Autowired
     private ObjectMap pipelineOptions;
+    @Autowired
+    private MongoClient mongoClient;
+    @Autowired
+    private StepMetricsListener stepMetricsListener;
+    @Autowired
+    private MetricsExportListener metricsExportListener;
+    @Autowired
+    private ObjectMap variantOptions;
+
+    @Qualifier("aggregatedStatsLoadBatchStep")
+    @Autowired
+    private Step aggregatedStatsLoadBatchStep;
 
     @Bean
     public Job aggregatedVariantJob() {
         JobBuilder jobBuilder = jobBuilderFactory
                 .get(jobName)
-                .incrementer(new RunIdIncrementer());
+                .incrementer(new RunIdIncrementer())
+                .listener(metricsExportListener);
+
+        // the statistics are already in the INFO column, so there is no statsCreate, they are just loaded
+        JobExecutionDecider statsDecider = new AggregatedStatsDecider(pipelineOptions, variantOptions,
+                VariantsStatsLoad.SKIP_STATS_LOAD);
+
+        JobExecutionDecider loadDecider = new LoadDecider(pipelineOptions, variantOptions, mongoClient);
 
         return jobBuilder
-                .start(transform())
-                .next(load())
-//                .next(statsCreate())
-//                .next(statsLoad())
+                .flow(transform())
+                .next(loadDecider).on(OptionalDecider.DO_STEP).to(load())
+                .next(statsDecider).on(OptionalDecider.DO_STEP).to(aggregatedStatsLoadBatchStep)
+                .from(statsDecider).on(OptionalDecider.SKIP_STEP).end()
+                .from(loadDecider).on(OptionalDecider.SKIP_STEP).to(statsDecider)
 //                .next(annotation(stepBuilderFactory));
+                .end()
                 .build();
     }
 
@@ -117,6 +149,8 @@ public class VariantAggregatedConfiguration {
         // true: every job execution will do this step, even if this step is already COMPLETED
         // false(default): if the job was aborted and is relaunched, this step will NOT be done again
         tasklet.allowStartIfComplete(allowStartIfComplete);
+
+        tasklet.listener(stepMetricsListener);
     }
 
 
@@ -16,6 +16,12 @@
 
 package embl.ebi.variation.eva.pipeline.jobs;
 
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.AnnotationDecider;
+import embl.ebi.variation.eva.pipeline.OptionalDecider;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsExportListener;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
 import embl.ebi.variation.eva.pipeline.steps.VariantsAnnotGenerateInput;
 import embl.ebi.variation.eva.pipeline.steps.VariantsAnnotLoad;
 import embl.ebi.variation.eva.pipeline.steps.VariantsAnnotCreate;
@@ -28,6 +34,7 @@ import org.springframework.batch.core.configuration.annotation.StepBuilderFactor
 import org.springframework.batch.core.job.builder.FlowBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.core.step.builder.TaskletStepBuilder;
@@ -55,7 +62,7 @@ import org.springframework.context.annotation.Import;
 
 @Configuration
 @EnableBatchProcessing
-@Import({VariantsAnnotGenerateInput.class, VariantsAnnotLoad.class, VariantJobArgsConfig.class})
+@Import({VariantsAnnotGenerateInput.class, VariantsAnnotLoad.class, VariantJobArgsConfig.class, MetricsConfiguration.class})
 public class VariantAnnotConfiguration {
     public static final String jobName = "variantAnnotBatchJob";
 
@@ -65,6 +72,14 @@ public class VariantAnnotConfiguration {
 
     @Autowired private ObjectMap pipelineOptions;
 
+    @Autowired private ObjectMap variantOptions;
+
+    @Autowired private MongoClient mongoClient;
+
+    @Autowired private StepMetricsListener stepMetricsListener;
+
+    @Autowired private MetricsExportListener metricsExportListener;
+
     @Qualifier("variantsAnnotGenerateInputBatchStep")
     @Autowired public Step variantsAnnotGenerateInputBatchStep;
 
@@ -78,17 +93,26 @@ public class VariantAnnotConfiguration {
     public Job variantAnnotationBatchJob(){
         JobBuilder jobBuilder = jobBuilderFactory
                 .get(jobName)
-                .incrementer(new RunIdIncrementer());
+                .incrementer(new RunIdIncrementer())
+                .listener(metricsExportListener);
 
         return jobBuilder.start(variantAnnotationFlow()).build().build();
     }
 
     @Bean
     public Flow variantAnnotationFlow(){
+        return annotationFlow(new AnnotationDecider(pipelineOptions, variantOptions, mongoClient));
+    }
+
+    /**
+     * @param annotationDecider decides if the steps are run, so other jobs can choose the variants it checks
+     */
+    public Flow annotationFlow(JobExecutionDecider annotationDecider) {
         Flow annotationFlow = new FlowBuilder<Flow>("annotationFlow")
-                .start(variantsAnnotGenerateInputBatchStep)
+                .start(annotationDecider).on(OptionalDecider.DO_STEP).to(variantsAnnotGenerateInputBatchStep)
                 .next(annotationCreate)
                 .next(variantAnnotLoadBatchStep)
+                .from(annotationDecider).on(OptionalDecider.SKIP_STEP).end()
                 .build();
         return annotationFlow;
     }
@@ -118,6 +142,8 @@ public class VariantAnnotConfiguration {
         // true: every job execution will do this step, even if this step is already COMPLETED
         // false(default): if the job was aborted and is relaunched, this step will NOT be done again
         tasklet.allowStartIfComplete(allowStartIfComplete);
+
+        tasklet.listener(stepMetricsListener);
     }
 
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.jobs;
+
+import embl.ebi.variation.eva.pipeline.annotation.load.VariantAnnotationLineMapper;
+import embl.ebi.variation.eva.pipeline.listener.DeadLetterLineMapper;
+import embl.ebi.variation.eva.pipeline.listener.DeadLetterSkipListener;
+import embl.ebi.variation.eva.pipeline.listener.SkipCheckingListener;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsExportListener;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
+import embl.ebi.variation.eva.pipeline.steps.VariantsAnnotLoad;
+import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Loads again the VEP output lines that were skipped by variantAnnotLoadBatchStep, once the reason they failed is
+ * fixed. Only the dead-letter file ("annotDeadLetterFile", by default next to the VEP output) is read.
+ *
+ * The lines that fail again are written into a new dead-letter file that replaces the replayed one when the job
+ * finishes, so the job can be launched again until the file is gone.
+ */
+@Configuration
+@EnableBatchProcessing
+@Import({VariantsAnnotLoad.class, VariantJobArgsConfig.class, MetricsConfiguration.class})
+public class VariantAnnotReplayConfiguration {
+    public static final String jobName = "variantAnnotReplayJob";
+
+    @Autowired private JobBuilderFactory jobBuilderFactory;
+
+    @Autowired private StepBuilderFactory stepBuilderFactory;
+
+    @Autowired private ObjectMap pipelineOptions;
+
+    @Autowired private StepMetricsListener stepMetricsListener;
+
+    @Autowired private MetricsExportListener metricsExportListener;
+
+    @Autowired private ItemWriter<VariantAnnotation> variantAnnotationWriter;
+
+    @Autowired private SkipCheckingListener skipCheckingListener;
+
+    @Bean
+    public Job variantAnnotReplayJob() {
+        return jobBuilderFactory
+                .get(jobName)
+                .incrementer(new RunIdIncrementer())
+                .listener(metricsExportListener)
+                .start(variantAnnotReplayBatchStep())
+                .build();
+    }
+
+    public Step variantAnnotReplayBatchStep() {
+        Path deadLetterFile = VariantsAnnotLoad.getDeadLetterFile(pipelineOptions);
+        Path remainingFile = Paths.get(deadLetterFile + ".remaining");
+
+        return stepBuilderFactory.get("variantAnnotReplayBatchStep")
+                .<VariantAnnotation, VariantAnnotation>chunk(pipelineOptions.getInt(VariantJobArgsConfig.CHUNK_SIZE))
+                .reader(deadLetterReader(deadLetterFile))
+                .writer(variantAnnotationWriter)
+                .faultTolerant().skipLimit(pipelineOptions.getInt(VariantsAnnotLoad.SKIP_LIMIT))
+                .skip(FlatFileParseException.class)
+                .listener(skipCheckingListener)
+                .listener(new DeadLetterSkipListener(remainingFile, deadLetterFile))
+                .listener(stepMetricsListener)
+                .build();
+    }
+
+    /**
+     * The reader is not strict: the dead-letter file is only written when something is skipped, so a missing file
+     * means there is nothing to replay, not an error.
+     */
+    static FlatFileItemReader<VariantAnnotation> deadLetterReader(Path deadLetterFile) {
+        FlatFileItemReader<VariantAnnotation> reader = new FlatFileItemReader<>();
+        reader.setResource(new FileSystemResource(deadLetterFile.toFile()));
+        reader.setLineMapper(new DeadLetterLineMapper<>(new VariantAnnotationLineMapper()));
+        reader.setStrict(false);
+        return reader;
+    }
+}
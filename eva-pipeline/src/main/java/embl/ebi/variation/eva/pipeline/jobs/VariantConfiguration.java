@@ -15,6 +15,13 @@
  */
 package embl.ebi.variation.eva.pipeline.jobs;
 
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.LoadDecider;
+import embl.ebi.variation.eva.pipeline.OptionalDecider;
+import embl.ebi.variation.eva.pipeline.StatsDecider;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsExportListener;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
 import embl.ebi.variation.eva.pipeline.steps.*;
 import org.opencb.datastore.core.ObjectMap;
 import org.slf4j.Logger;
@@ -25,7 +32,9 @@ import org.springframework.batch.core.configuration.annotation.EnableBatchProces
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.builder.FlowBuilder;
 import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
 import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.step.builder.StepBuilder;
@@ -36,14 +45,17 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 
 @Configuration
 @EnableBatchProcessing
-@Import({VariantJobArgsConfig.class, VariantAnnotConfiguration.class})
+@Import({VariantJobArgsConfig.class, VariantAnnotConfiguration.class, MetricsConfiguration.class})
 public class VariantConfiguration {
 
     private static final Logger logger = LoggerFactory.getLogger(VariantConfiguration.class);
     public static final String jobName = "variantJob";
+    public static final String MAX_CONCURRENT_FLOWS = "maxConcurrentFlows";
 
     @Autowired
     JobBuilderFactory jobBuilderFactory;
@@ -56,6 +68,14 @@ public class VariantConfiguration {
     @Autowired
     private ObjectMap pipelineOptions;
     @Autowired
+    private MongoClient mongoClient;
+    @Autowired
+    private ObjectMap variantOptions;
+    @Autowired
+    private StepMetricsListener stepMetricsListener;
+    @Autowired
+    private MetricsExportListener metricsExportListener;
+    @Autowired
     Flow variantAnnotationFlow;
 
     @Bean
@@ -64,15 +84,47 @@ public class VariantConfiguration {
 
         JobBuilder jobBuilder = jobBuilderFactory
                 .get(jobName)
-                .incrementer(new RunIdIncrementer());
+                .incrementer(new RunIdIncrementer())
+                .listener(metricsExportListener);
+
+        // the statistics and annotation check by themselves whether there is something new to do
+        JobExecutionDecider loadDecider = new LoadDecider(pipelineOptions, variantOptions, mongoClient);
+        Flow statsAndAnnotationFlow = statsAndAnnotationFlow();
 
         return jobBuilder
                 .flow(transform())
-                .next(load())
-                .next(statsCreate())
-                .next(statsLoad())
-                .next(variantAnnotationFlow)
-                .build().build();
+                .next(loadDecider).on(OptionalDecider.DO_STEP).to(load()).next(statsAndAnnotationFlow)
+                .from(loadDecider).on(OptionalDecider.SKIP_STEP).to(statsAndAnnotationFlow)
+                .end()
+                .build();
+    }
+
+    /**
+     * Statistics and annotation only need the loaded variants, so both branches run at the same time. The job
+     * finishes when the slowest one does.
+     */
+    public Flow statsAndAnnotationFlow() {
+        JobExecutionDecider statsDecider = new StatsDecider(pipelineOptions, variantOptions, mongoClient);
+        Flow statsFlow = new FlowBuilder<Flow>("statsFlow")
+                .start(statsDecider).on(OptionalDecider.DO_STEP).to(statsCreate()).next(statsLoad())
+                .from(statsDecider).on(OptionalDecider.SKIP_STEP).end()
+                .build();
+
+        return new FlowBuilder<Flow>("statsAndAnnotationFlow")
+                .split(flowsTaskExecutor())
+                .add(statsFlow, variantAnnotationFlow)
+                .build();
+    }
+
+    /**
+     * Runs each branch of a split in its own thread, with at most "maxConcurrentFlows" branches at once, so the
+     * number of steps writing into Mongo at the same time is bounded. A limit of 1 runs the branches one after another.
+     */
+    @Bean
+    public TaskExecutor flowsTaskExecutor() {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("variantJob-flow-");
+        taskExecutor.setConcurrencyLimit(pipelineOptions.getInt(MAX_CONCURRENT_FLOWS));
+        return taskExecutor;
     }
 
     @Bean
@@ -134,6 +186,8 @@ public class VariantConfiguration {
         // true: every job execution will do this step, even if this step is already COMPLETED
         // false(default): if the job was aborted and is relaunched, this step will NOT be done again
         tasklet.allowStartIfComplete(allowStartIfComplete);
+
+        tasklet.listener(stepMetricsListener);
     }
 
 }
@@ -15,7 +15,9 @@
  */
 package embl.ebi.variation.eva.pipeline.jobs;
 
+import com.mongodb.MongoClient;
 import embl.ebi.variation.eva.VariantJobsArgs;
+import embl.ebi.variation.eva.pipeline.MongoDBHelper;
 import org.opencb.datastore.core.ObjectMap;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -30,6 +32,12 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class VariantJobArgsConfig {
 
+    /**
+     * Items per chunk of the chunk oriented steps. The job repository is updated once per chunk, so bigger chunks
+     * mean fewer round trips to its database.
+     */
+    public static final String CHUNK_SIZE = "chunkSize";
+
     @Bean(initMethod = "loadArgs")
     public VariantJobsArgs variantJobsArgs(){
         return new VariantJobsArgs();
@@ -45,5 +53,14 @@ public class VariantJobArgsConfig {
         return variantJobsArgs().getPipelineOptions();
     }
 
+    /**
+     * Client shared by the steps and deciders that access MongoDB directly instead of through OpenCGA, closed with
+     * the context
+     */
+    @Bean
+    public MongoClient mongoClient() {
+        return MongoDBHelper.getMongoClientFromPipelineOptions(pipelineOptions());
+    }
+
 
 }
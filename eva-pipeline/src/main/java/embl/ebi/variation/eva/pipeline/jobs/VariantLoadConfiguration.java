@@ -15,6 +15,12 @@
  */
 package embl.ebi.variation.eva.pipeline.jobs;
 
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.LoadDecider;
+import embl.ebi.variation.eva.pipeline.OptionalDecider;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsExportListener;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
 import embl.ebi.variation.eva.pipeline.steps.VariantsLoad;
 import org.opencb.datastore.core.ObjectMap;
 import org.slf4j.Logger;
@@ -24,7 +30,10 @@ import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.job.builder.FlowBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
 import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.step.builder.StepBuilder;
@@ -37,7 +46,7 @@ import org.springframework.core.env.Environment;
 
 @Configuration
 @EnableBatchProcessing
-@Import(VariantJobArgsConfig.class)
+@Import({VariantJobArgsConfig.class, MetricsConfiguration.class})
 public class VariantLoadConfiguration {
 
     private static final Logger logger = LoggerFactory.getLogger(VariantLoadConfiguration.class);
@@ -53,15 +62,32 @@ public class VariantLoadConfiguration {
     Environment environment;
     @Autowired
     private ObjectMap pipelineOptions;
+    @Autowired
+    private MongoClient mongoClient;
+    @Autowired
+    private ObjectMap variantOptions;
+    @Autowired
+    private StepMetricsListener stepMetricsListener;
+    @Autowired
+    private MetricsExportListener metricsExportListener;
 
     @Bean
     public Job variantLoadJob() {
         JobBuilder jobBuilder = jobBuilderFactory
                 .get(jobName)
-                .incrementer(new RunIdIncrementer());
+                .incrementer(new RunIdIncrementer())
+                .listener(metricsExportListener);
+
+        JobExecutionDecider loadDecider = new LoadDecider(pipelineOptions, variantOptions, mongoClient);
+
+        Flow loadFlow = new FlowBuilder<Flow>("loadFlow")
+                .start(loadDecider).on(OptionalDecider.DO_STEP).to(load())
+                .from(loadDecider).on(OptionalDecider.SKIP_STEP).end()
+                .build();
 
         return jobBuilder
-                .start(load())
+                .start(loadFlow)
+                .end()
                 .build();
     }
 
@@ -88,6 +114,8 @@ public class VariantLoadConfiguration {
         // true: every job execution will do this step, even if this step is already COMPLETED
         // false(default): if the job was aborted and is relaunched, this step will NOT be done again
         tasklet.allowStartIfComplete(allowStartIfComplete);
+
+        tasklet.listener(stepMetricsListener);
     }
 
 }
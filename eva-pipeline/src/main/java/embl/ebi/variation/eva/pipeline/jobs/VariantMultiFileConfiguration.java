@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.jobs;
+
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.AnnotationDecider;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsExportListener;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
+import embl.ebi.variation.eva.pipeline.partition.JobRepositoryPartitionHandler;
+import embl.ebi.variation.eva.pipeline.partition.ManifestPartitioner;
+import embl.ebi.variation.eva.pipeline.steps.*;
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.job.builder.FlowBuilder;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.step.builder.PartitionStepBuilder;
+import org.springframework.batch.core.step.builder.TaskletStepBuilder;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+
+/**
+ * Job to ingest all the files of a study listed in a manifest (see {@link ManifestPartitioner}):
+ * 1) transform and load every file, in a partition per file, with at most "maxConcurrentFiles" files at once
+ * 2) statistics of every file, also partitioned, at the same time as the annotation of the new variants, which is
+ * done once for the whole study
+ *
+ * The rest of the parameters (study, database, output folder...) are the same as in {@link VariantConfiguration}.
+ *
+ * With "remotePartitioning" the partitions are not run by this JVM, they are left in the job repository for the
+ * workers started with the "partition-worker" profile, see {@link JobRepositoryPartitionHandler}.
+ */
+@Configuration
+@EnableBatchProcessing
+@Import({VariantJobArgsConfig.class, VariantAnnotConfiguration.class, MetricsConfiguration.class})
+public class VariantMultiFileConfiguration {
+
+    public static final String jobName = "multiFileVariantJob";
+    public static final String MAX_CONCURRENT_FILES = "maxConcurrentFiles";
+    public static final String REMOTE_PARTITIONING = "remotePartitioning";
+    public static final String PARTITION_POLL_INTERVAL = "partitionPollInterval";
+    public static final String PARTITION_TIMEOUT = "partitionTimeout";
+
+    @Autowired
+    private JobBuilderFactory jobBuilderFactory;
+    @Autowired
+    private StepBuilderFactory stepBuilderFactory;
+    @Autowired
+    private JobExplorer jobExplorer;
+    @Autowired
+    private ObjectMap pipelineOptions;
+    @Autowired
+    private StepMetricsListener stepMetricsListener;
+    @Autowired
+    private MetricsExportListener metricsExportListener;
+    @Autowired
+    private ObjectMap variantOptions;
+    @Autowired
+    private MongoClient mongoClient;
+    @Autowired
+    private VariantAnnotConfiguration variantAnnotConfiguration;
+
+    @Bean
+    @Qualifier("multiFileVariantJob")
+    public Job multiFileVariantJob() {
+        JobBuilder jobBuilder = jobBuilderFactory
+                .get(jobName)
+                .incrementer(new RunIdIncrementer())
+                .listener(metricsExportListener);
+
+        Flow statsFlow = new FlowBuilder<Flow>("filesStatsFlow")
+                .start(partitionedStep(statsCreateFileStep()))
+                .next(partitionedStep(statsLoadFileStep()))
+                .build();
+
+        Flow statsAndAnnotationFlow = new FlowBuilder<Flow>("filesStatsAndAnnotationFlow")
+                .split(multiFileFlowsTaskExecutor())
+                .add(statsFlow, filesAnnotationFlow())
+                .build();
+
+        return jobBuilder
+                .flow(partitionedStep(transformFileStep()))
+                .next(partitionedStep(loadFileStep()))
+                .next(statsAndAnnotationFlow)
+                .build().build();
+    }
+
+    @Bean
+    public Flow filesAnnotationFlow() {
+        return variantAnnotConfiguration.annotationFlow(filesAnnotationDecider());
+    }
+
+    /**
+     * Checks the variants of all the files of the manifest, not the ones of the fileId of the job
+     */
+    @Bean
+    public AnnotationDecider filesAnnotationDecider() {
+        return new AnnotationDecider(pipelineOptions, variantOptions, mongoClient, manifestPartitioner()::getFileIds);
+    }
+
+    @Bean
+    public ManifestPartitioner manifestPartitioner() {
+        return new ManifestPartitioner(pipelineOptions, variantOptions);
+    }
+
+    /**
+     * Runs every partition in its own thread, at most "maxConcurrentFiles" at the same time. The rest wait for a
+     * free slot.
+     */
+    @Bean
+    public TaskExecutor filesTaskExecutor() {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("multiFileVariantJob-file-");
+        taskExecutor.setConcurrencyLimit(pipelineOptions.getInt(MAX_CONCURRENT_FILES));
+        return taskExecutor;
+    }
+
+    @Bean
+    public TaskExecutor multiFileFlowsTaskExecutor() {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("multiFileVariantJob-flow-");
+        taskExecutor.setConcurrencyLimit(pipelineOptions.getInt(VariantConfiguration.MAX_CONCURRENT_FLOWS));
+        return taskExecutor;
+    }
+
+    @Bean
+    public VariantsTransform variantsTransform() {
+        return new VariantsTransform();
+    }
+
+    @Bean
+    public VariantsLoad variantsLoad() {
+        return new VariantsLoad();
+    }
+
+    @Bean
+    public VariantsStatsCreate variantsStatsCreate() {
+        return new VariantsStatsCreate();
+    }
+
+    @Bean
+    public VariantsStatsLoad variantsStatsLoad() {
+        return new VariantsStatsLoad();
+    }
+
+    /*
+     * The steps run for every file. They are beans so the partition workers can find them by name.
+     */
+
+    @Bean
+    public Step transformFileStep() {
+        return fileStep("transform", variantsTransform());
+    }
+
+    @Bean
+    public Step loadFileStep() {
+        return fileStep("load", variantsLoad());
+    }
+
+    @Bean
+    public Step statsCreateFileStep() {
+        return fileStep("statsCreate", variantsStatsCreate());
+    }
+
+    @Bean
+    public Step statsLoadFileStep() {
+        return fileStep("statsLoad", variantsStatsLoad());
+    }
+
+    private Step fileStep(String stepName, Tasklet tasklet) {
+        TaskletStepBuilder fileStep = stepBuilderFactory.get(stepName).tasklet(tasklet);
+        initStep(fileStep);
+        return fileStep.build();
+    }
+
+    /**
+     * @return a step that runs the file step once per file of the manifest. The step executions of each file are
+     * named "stepName:file-fileId" in the job repository, so a failed file can be restarted on its own.
+     */
+    private Step partitionedStep(Step fileStep) {
+        PartitionStepBuilder partitionStep = stepBuilderFactory.get(fileStep.getName() + "Files")
+                .partitioner(fileStep.getName(), manifestPartitioner())
+                .step(fileStep);
+
+        if (pipelineOptions.getBoolean(REMOTE_PARTITIONING)) {
+            partitionStep.partitionHandler(new JobRepositoryPartitionHandler(jobExplorer,
+                    pipelineOptions.getLong(PARTITION_POLL_INTERVAL), pipelineOptions.getLong(PARTITION_TIMEOUT)));
+        } else {
+            partitionStep.taskExecutor(filesTaskExecutor());
+        }
+        return partitionStep.build();
+    }
+
+    /**
+     * Initialize a Step with common configuration
+     * @param tasklet to be initialized with common configuration
+     */
+    private void initStep(TaskletStepBuilder tasklet) {
+
+        boolean allowStartIfComplete  = pipelineOptions.getBoolean("allowStartIfComplete");
+
+        // true: every job execution will do this step, even if this step is already COMPLETED
+        // false(default): if the job was aborted and is relaunched, this step will NOT be done again
+        tasklet.allowStartIfComplete(allowStartIfComplete);
+
+        tasklet.listener(stepMetricsListener);
+    }
+
+}
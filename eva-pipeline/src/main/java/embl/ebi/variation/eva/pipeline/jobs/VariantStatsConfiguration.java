@@ -15,6 +15,12 @@
  */
 package embl.ebi.variation.eva.pipeline.jobs;
 
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.OptionalDecider;
+import embl.ebi.variation.eva.pipeline.StatsDecider;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsExportListener;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
 import embl.ebi.variation.eva.pipeline.steps.VariantsStatsCreate;
 import embl.ebi.variation.eva.pipeline.steps.VariantsStatsLoad;
 import org.opencb.datastore.core.ObjectMap;
@@ -25,7 +31,10 @@ import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.job.builder.FlowBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
 import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.step.builder.StepBuilder;
@@ -38,7 +47,7 @@ import org.springframework.core.env.Environment;
 
 @Configuration
 @EnableBatchProcessing
-@Import(VariantJobArgsConfig.class)
+@Import({VariantJobArgsConfig.class, MetricsConfiguration.class})
 public class VariantStatsConfiguration {
 
     private static final Logger logger = LoggerFactory.getLogger(VariantStatsConfiguration.class);
@@ -54,16 +63,32 @@ public class VariantStatsConfiguration {
     Environment environment;
     @Autowired
     private ObjectMap pipelineOptions;
+    @Autowired
+    private MongoClient mongoClient;
+    @Autowired
+    private ObjectMap variantOptions;
+    @Autowired
+    private StepMetricsListener stepMetricsListener;
+    @Autowired
+    private MetricsExportListener metricsExportListener;
 
     @Bean
     public Job variantStatsJob() {
         JobBuilder jobBuilder = jobBuilderFactory
                 .get(jobName)
-                .incrementer(new RunIdIncrementer());
+                .incrementer(new RunIdIncrementer())
+                .listener(metricsExportListener);
+
+        JobExecutionDecider statsDecider = new StatsDecider(pipelineOptions, variantOptions, mongoClient);
+
+        Flow statsFlow = new FlowBuilder<Flow>("statsFlow")
+                .start(statsDecider).on(OptionalDecider.DO_STEP).to(statsCreate()).next(statsLoad())
+                .from(statsDecider).on(OptionalDecider.SKIP_STEP).end()
+                .build();
 
         return jobBuilder
-                .start(statsCreate())
-                .next(statsLoad())
+                .start(statsFlow)
+                .end()
                 .build();
     }
 
@@ -102,5 +127,7 @@ public class VariantStatsConfiguration {
         // true: every job execution will do this step, even if this step is already COMPLETED
         // false(default): if the job was aborted and is relaunched, this step will NOT be done again
         tasklet.allowStartIfComplete(allowStartIfComplete);
+
+        tasklet.listener(stepMetricsListener);
     }
 }
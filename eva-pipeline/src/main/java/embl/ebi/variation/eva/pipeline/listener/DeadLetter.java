@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.listener;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.batch.item.file.FlatFileParseException;
+
+/**
+ * An item skipped by a fault tolerant step, as written in a dead-letter file (one JSON object per line).
+ *
+ * Items skipped while reading keep their raw line and line number, so they can be replayed with
+ * {@link DeadLetterLineMapper} once the cause is fixed. Items skipped while processing or writing only keep their
+ * string representation, for reference.
+ */
+public class DeadLetter {
+
+    public static final String READ = "read";
+    public static final String PROCESS = "process";
+    public static final String WRITE = "write";
+
+    private String phase;
+    private int lineNumber;
+    private String input;
+    private String exception;
+    private String message;
+
+    public DeadLetter() {
+    }
+
+    public DeadLetter(String phase, int lineNumber, String input, Throwable t) {
+        this.phase = phase;
+        this.lineNumber = lineNumber;
+        this.input = input;
+        this.exception = t.getClass().getName();
+        this.message = t.getMessage();
+    }
+
+    /**
+     * A line that could not be parsed is recorded as a read skip with its raw line, also when it was parsed by an
+     * asynchronous processor and its failure was only seen when writing.
+     */
+    static DeadLetter fromSkip(String phase, Object item, Throwable t) {
+        if (t instanceof DeadLetterLineMapper.ReplayException) {
+            return ((DeadLetterLineMapper.ReplayException) t).getDeadLetter();
+        }
+        if (t instanceof FlatFileParseException) {
+            FlatFileParseException parseException = (FlatFileParseException) t;
+            return new DeadLetter(READ, parseException.getLineNumber(), parseException.getInput(), t);
+        }
+        return new DeadLetter(phase, 0, item == null ? null : String.valueOf(item), t);
+    }
+
+    /**
+     * @return whether the raw line is known, so it can be read again
+     */
+    @JsonIgnore
+    public boolean isReplayable() {
+        return READ.equals(phase) && input != null;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public void setLineNumber(int lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public void setInput(String input) {
+        this.input = input;
+    }
+
+    public String getException() {
+        return exception;
+    }
+
+    public void setException(String exception) {
+        this.exception = exception;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.LineMapper;
+
+import java.io.IOException;
+
+/**
+ * Reads a dead-letter file written by {@link DeadLetterSkipListener}, mapping the original raw line of every entry
+ * with the same {@link LineMapper} that failed the first time.
+ *
+ * Entries that fail again, or that can't be replayed because their raw line is unknown, are thrown as a
+ * {@link ReplayException} that keeps their original line number and input, so the replaying step can write them
+ * unchanged into its own dead-letter file.
+ */
+public class DeadLetterLineMapper<T> implements LineMapper<T> {
+
+    private final LineMapper<T> delegate;
+    private final ObjectMapper jsonObjectMapper;
+
+    public DeadLetterLineMapper(LineMapper<T> delegate) {
+        this.delegate = delegate;
+        this.jsonObjectMapper = new ObjectMapper();
+    }
+
+    @Override
+    public T mapLine(String line, int lineNumber) throws Exception {
+        DeadLetter deadLetter;
+        try {
+            deadLetter = jsonObjectMapper.readValue(line, DeadLetter.class);
+        } catch (IOException e) {
+            throw new FlatFileParseException("Malformed dead-letter entry: " + e.getMessage(), e, line, lineNumber);
+        }
+
+        if (!deadLetter.isReplayable()) {
+            throw new ReplayException("The " + deadLetter.getPhase() + " of this item can't be replayed", null,
+                                      deadLetter);
+        }
+
+        try {
+            return delegate.mapLine(deadLetter.getInput(), deadLetter.getLineNumber());
+        } catch (Exception e) {
+            Throwable cause = e instanceof FlatFileParseException && e.getCause() != null ? e.getCause() : e;
+            throw new ReplayException(e.getMessage(), e, new DeadLetter(DeadLetter.READ, deadLetter.getLineNumber(),
+                                                                        deadLetter.getInput(), cause));
+        }
+    }
+
+    /**
+     * A dead-letter entry that could not be replayed, to be written again
+     */
+    public static class ReplayException extends FlatFileParseException {
+
+        private final DeadLetter deadLetter;
+
+        public ReplayException(String message, Throwable cause, DeadLetter deadLetter) {
+            super(message, cause, deadLetter.getInput(), deadLetter.getLineNumber());
+            this.deadLetter = deadLetter;
+        }
+
+        public DeadLetter getDeadLetter() {
+            return deadLetter;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.annotation.AfterChunk;
+import org.springframework.batch.core.annotation.AfterStep;
+import org.springframework.batch.core.annotation.BeforeStep;
+import org.springframework.batch.core.annotation.OnSkipInProcess;
+import org.springframework.batch.core.annotation.OnSkipInRead;
+import org.springframework.batch.core.annotation.OnSkipInWrite;
+import org.springframework.batch.core.scope.context.ChunkContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes every item skipped by a fault tolerant step into a dead-letter file, one {@link DeadLetter} per line, so the
+ * skip limit can be high without losing data: the file can be replayed later with {@link DeadLetterLineMapper}.
+ *
+ * The file is truncated when the step starts, and appended to when a failed step is restarted, as the skips of the
+ * committed chunks are not read again. The number of dead letters is kept in the step ExecutionContext as
+ * {@link #DEAD_LETTER_COUNT}.
+ *
+ * When replaying, the letters that fail again are written into a new file that replaces the replayed one if the
+ * step completes, so replaying again only retries what is still missing.
+ */
+public class DeadLetterSkipListener {
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterSkipListener.class);
+
+    public static final String DEAD_LETTER_COUNT = "deadLetterCount";
+
+    private final Path deadLetterFile;
+    private final Path replayedFile;
+    private final ObjectWriter jsonWriter;
+
+    private StepExecution stepExecution;
+    private BufferedWriter writer;
+    private long count;
+
+    public DeadLetterSkipListener(Path deadLetterFile) {
+        this(deadLetterFile, null);
+    }
+
+    /**
+     * @param replayedFile dead-letter file read by the step, replaced by deadLetterFile when the step completes
+     */
+    public DeadLetterSkipListener(Path deadLetterFile, Path replayedFile) {
+        this.deadLetterFile = deadLetterFile;
+        this.replayedFile = replayedFile;
+        this.jsonWriter = new ObjectMapper().writerFor(DeadLetter.class);
+    }
+
+    @BeforeStep
+    public void beforeStep(StepExecution stepExecution) {
+        this.stepExecution = stepExecution;
+        this.count = stepExecution.getExecutionContext().getLong(DEAD_LETTER_COUNT, 0);
+        if (!stepExecution.getExecutionContext().containsKey(DEAD_LETTER_COUNT)) {
+            try {
+                Files.deleteIfExists(deadLetterFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not remove the previous dead-letter file " + deadLetterFile, e);
+            }
+            stepExecution.getExecutionContext().putLong(DEAD_LETTER_COUNT, 0);
+        }
+    }
+
+    @OnSkipInRead
+    public void onSkipInRead(Throwable t) {
+        write(DeadLetter.fromSkip(DeadLetter.READ, null, t));
+    }
+
+    @OnSkipInProcess
+    public void onSkipInProcess(Object item, Throwable t) {
+        write(DeadLetter.fromSkip(DeadLetter.PROCESS, item, t));
+    }
+
+    @OnSkipInWrite
+    public void onSkipInWrite(Object item, Throwable t) {
+        write(DeadLetter.fromSkip(DeadLetter.WRITE, item, t));
+    }
+
+    /**
+     * The skip callbacks run just before the chunk is committed, so the letters are flushed with it
+     */
+    @AfterChunk
+    public void afterChunk(ChunkContext chunkContext) {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write into the dead-letter file " + deadLetterFile, e);
+            }
+        }
+    }
+
+    @AfterStep
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        close();
+        if (count > 0) {
+            logger.warn("{} items skipped by step {} were written into {}", count, stepExecution.getStepName(),
+                        deadLetterFile);
+        }
+
+        if (replayedFile != null && stepExecution.getStatus() == BatchStatus.COMPLETED) {
+            try {
+                if (Files.exists(deadLetterFile)) {
+                    Files.move(deadLetterFile, replayedFile, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    Files.deleteIfExists(replayedFile);
+                    logger.info("All the items in {} were replayed", replayedFile);
+                }
+            } catch (IOException e) {
+                logger.error("Could not replace the replayed dead-letter file " + replayedFile, e);
+                return ExitStatus.FAILED;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void write(DeadLetter deadLetter) {
+        try {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(deadLetterFile, StandardCharsets.UTF_8,
+                                                 StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(jsonWriter.writeValueAsString(deadLetter));
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write into the dead-letter file " + deadLetterFile, e);
+        }
+        count++;
+        stepExecution.getExecutionContext().putLong(DEAD_LETTER_COUNT, count);
+    }
+
+    private synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.error("Could not close the dead-letter file " + deadLetterFile, e);
+            }
+            writer = null;
+        }
+    }
+}
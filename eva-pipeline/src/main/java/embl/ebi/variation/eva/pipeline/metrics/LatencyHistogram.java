@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.metrics;
+
+/**
+ * Histogram of latencies in microseconds with a fixed array of log-linear buckets: every power of 2 is split in
+ * {@link #SUB_BUCKETS} buckets of the same width, so the relative error of any bucket is below 1/32 (~3%). Recording
+ * a value is a couple of bit operations and an increment, without allocations.
+ *
+ * Values over ~2^40 microseconds (12 days) are counted in the last bucket. Instances are not thread safe.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts[bucketOf(micros)]++;
+        count++;
+        sum += micros;
+        if (micros > max) {
+            max = micros;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return sum of all the recorded values, in microseconds
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return maximum recorded value, in microseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return how many values were lower than or equal to the given one, with the precision of the buckets
+     */
+    public long countAtOrBelow(long micros) {
+        long below = 0;
+        int lastBucket = bucketOf(micros);
+        for (int bucket = 0; bucket <= lastBucket; bucket++) {
+            below += counts[bucket];
+        }
+        return below;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99
+     * @return the value below which that fraction of the recorded values are, in microseconds. It is the upper bound
+     * of the bucket where the quantile falls, so it may be ~3% over the real value, but never over {@link #getMax}
+     */
+    public long percentile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+}
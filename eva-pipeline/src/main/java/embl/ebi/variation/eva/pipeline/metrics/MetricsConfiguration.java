@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.metrics;
+
+import embl.ebi.variation.eva.pipeline.jobs.VariantJobArgsConfig;
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Listeners shared by all the jobs and steps to collect and export their metrics:
+ * - stepMetricsListener: to be registered in every step
+ * - metricsExportListener: to be registered in every job
+ */
+@Configuration
+@Import(VariantJobArgsConfig.class)
+public class MetricsConfiguration {
+
+    @Autowired
+    private ObjectMap pipelineOptions;
+
+    @Bean
+    public StepMetricsListener stepMetricsListener() {
+        return new StepMetricsListener(pipelineOptions);
+    }
+
+    @Bean
+    public MetricsExportListener metricsExportListener() {
+        return new MetricsExportListener(stepMetricsListener(), pipelineOptions);
+    }
+}
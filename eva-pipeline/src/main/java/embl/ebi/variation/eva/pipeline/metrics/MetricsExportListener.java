@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.metrics;
+
+import org.opencb.datastore.core.ObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Writes the metrics of all the steps of a job execution into "outputDir", as
+ * "jobName_jobExecutionId.metrics.prom" or "jobName_jobExecutionId.metrics.json", depending on "metricsFormat"
+ * ("prometheus", "json" or "none", the default). Nothing is written if there is no "outputDir".
+ *
+ * A summary of the throughput and latency percentiles of every step is logged too, whatever the format.
+ *
+ * A failure writing the metrics is logged but doesn't change the status of the job.
+ */
+public class MetricsExportListener implements JobExecutionListener {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsExportListener.class);
+
+    public static final String METRICS_FORMAT = "metricsFormat";
+
+    private final StepMetricsListener stepMetricsListener;
+    private final ObjectMap pipelineOptions;
+
+    public MetricsExportListener(StepMetricsListener stepMetricsListener, ObjectMap pipelineOptions) {
+        this.stepMetricsListener = stepMetricsListener;
+        this.pipelineOptions = pipelineOptions;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        List<StepMetrics> steps = stepMetricsListener.takeJobMetrics(jobExecution.getId());
+        if (steps.isEmpty()) {
+            return;
+        }
+
+        String jobName = jobExecution.getJobInstance().getJobName();
+        MetricsExporter exporter = new MetricsExporter(jobName, jobExecution.getId(), steps);
+        logger.info(exporter.toSummary());
+
+        String format = pipelineOptions.getString(METRICS_FORMAT, "none");
+        String outputDirOption = pipelineOptions.getString("outputDir", "");
+        if (format.equals("none")) {
+            return;
+        } else if (outputDirOption.isEmpty()) {
+            logger.warn("No outputDir to write the metrics in {} format", format);
+            return;
+        }
+        String prefix = jobName + "_" + jobExecution.getId() + ".metrics";
+        Path outputDir = Paths.get(outputDirOption);
+        try {
+            Path output;
+            if (format.equals("json")) {
+                output = outputDir.resolve(prefix + ".json");
+                Files.write(output, exporter.toJson().getBytes(StandardCharsets.UTF_8));
+            } else if (format.equals("prometheus")) {
+                output = outputDir.resolve(prefix + ".prom");
+                Files.write(output, exporter.toPrometheus().getBytes(StandardCharsets.UTF_8));
+            } else {
+                logger.warn("Unknown {} '{}', metrics not written", METRICS_FORMAT, format);
+                return;
+            }
+            logger.info("Metrics of {} steps written to {}", steps.size(), output);
+        } catch (IOException e) {
+            logger.error("Could not write the metrics of job execution " + jobExecution.getId(), e);
+        }
+    }
+}
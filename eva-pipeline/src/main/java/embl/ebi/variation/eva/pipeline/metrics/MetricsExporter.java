@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.metrics;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Formats the {@link StepMetrics} of a job execution as Prometheus text exposition format (suitable for the
+ * node_exporter textfile collector or a Pushgateway) or as JSON.
+ */
+public class MetricsExporter {
+
+    /** upper bounds of the latency histogram buckets in the Prometheus output, in seconds */
+    private static final double[] PROMETHEUS_BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30,
+            60, 300};
+
+    private final String jobName;
+    private final long jobExecutionId;
+    private final List<StepMetrics> steps;
+
+    public MetricsExporter(String jobName, long jobExecutionId, List<StepMetrics> steps) {
+        this.jobName = jobName;
+        this.jobExecutionId = jobExecutionId;
+        this.steps = steps;
+    }
+
+    public String toPrometheus() {
+        StringBuilder output = new StringBuilder();
+        gauge(output, "eva_step_duration_seconds", "Duration of the step", s -> s.getDurationMillis() / 1000.0);
+        counter(output, "eva_step_items_read_total", "Items read", StepMetrics::getReadCount);
+        counter(output, "eva_step_items_processed_total", "Items processed", StepMetrics::getProcessedCount);
+        counter(output, "eva_step_items_written_total", "Items written", StepMetrics::getWriteCount);
+        counter(output, "eva_step_items_skipped_total", "Items skipped", StepMetrics::getSkipCount);
+        counter(output, "eva_step_commits_total", "Chunks committed", StepMetrics::getCommitCount);
+        gauge(output, "eva_step_items_read_per_second", "Items read per second",
+                s -> s.perSecond(s.getReadCount()));
+        gauge(output, "eva_step_items_written_per_second", "Items written per second",
+                s -> s.perSecond(s.getWriteCount()));
+        counter(output, "eva_step_bytes_read_total", "Bytes read", StepMetrics::getBytesRead);
+        counter(output, "eva_step_bytes_written_total", "Bytes written", StepMetrics::getBytesWritten);
+        gauge(output, "eva_step_bytes_per_second", "Bytes read and written per second",
+                s -> s.perSecond(s.getBytesRead() + s.getBytesWritten()));
+        histogram(output, "eva_step_read_seconds", "Duration of the reads of items", StepMetrics::getReadLatency);
+        histogram(output, "eva_step_process_seconds", "Duration of the processing of items",
+                StepMetrics::getProcessLatency);
+        histogram(output, "eva_step_write_seconds", "Duration of the writes, e.g. round trips to Mongo",
+                StepMetrics::getWriteLatency);
+        histogram(output, "eva_step_commit_seconds", "Duration of the commits, after the writes",
+                StepMetrics::getCommitLatency);
+        histogram(output, "eva_step_chunk_seconds", "Duration of the chunks, until commit",
+                StepMetrics::getChunkLatency);
+        return output.toString();
+    }
+
+    /**
+     * @return a human readable table with the throughput and latency percentiles of every step, for the logs
+     */
+    public String toSummary() {
+        StringBuilder summary = new StringBuilder(String.format("Metrics of %s (execution %d):", jobName,
+                jobExecutionId));
+        for (StepMetrics step : steps) {
+            summary.append(String.format("%n  %s: %s in %.1f s, %d read, %d written (%.1f items/s), %d skipped",
+                    step.getStepName(), step.getStatus(), step.getDurationMillis() / 1000.0, step.getReadCount(),
+                    step.getWriteCount(), step.perSecond(step.getWriteCount()), step.getSkipCount()));
+            for (Map.Entry<String, LatencyHistogram> latency : step.getLatencies().entrySet()) {
+                LatencyHistogram histogram = latency.getValue();
+                summary.append(String.format("%n    %-7s p50 %s, p95 %s, p99 %s, max %s (%d)", latency.getKey(),
+                        millis(histogram.percentile(0.50)), millis(histogram.percentile(0.95)),
+                        millis(histogram.percentile(0.99)), millis(histogram.getMax()), histogram.getCount()));
+            }
+        }
+        return summary.toString();
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f ms", micros / 1000.0);
+    }
+
+    public String toJson() throws JsonProcessingException {
+        List<Map<String, Object>> stepList = new ArrayList<>();
+        for (StepMetrics step : steps) {
+            Map<String, Object> stepMap = new LinkedHashMap<>();
+            stepMap.put("step", step.getStepName());
+            stepMap.put("stepExecutionId", step.getStepExecutionId());
+            stepMap.put("status", step.getStatus());
+            stepMap.put("durationSeconds", step.getDurationMillis() / 1000.0);
+            stepMap.put("itemsRead", step.getReadCount());
+            stepMap.put("itemsProcessed", step.getProcessedCount());
+            stepMap.put("itemsWritten", step.getWriteCount());
+            stepMap.put("itemsSkipped", step.getSkipCount());
+            stepMap.put("commits", step.getCommitCount());
+            stepMap.put("itemsReadPerSecond", step.perSecond(step.getReadCount()));
+            stepMap.put("itemsWrittenPerSecond", step.perSecond(step.getWriteCount()));
+            stepMap.put("bytesRead", step.getBytesRead());
+            stepMap.put("bytesWritten", step.getBytesWritten());
+            stepMap.put("bytesPerSecond", step.perSecond(step.getBytesRead() + step.getBytesWritten()));
+            Map<String, Object> latencies = new LinkedHashMap<>();
+            for (Map.Entry<String, LatencyHistogram> latency : step.getLatencies().entrySet()) {
+                latencies.put(latency.getKey(), latencyToMap(latency.getValue()));
+            }
+            stepMap.put("latency", latencies);
+            stepList.add(stepMap);
+        }
+
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("job", jobName);
+        job.put("jobExecutionId", jobExecutionId);
+        job.put("steps", stepList);
+        return new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(job);
+    }
+
+    private Map<String, Object> latencyToMap(LatencyHistogram histogram) {
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("count", histogram.getCount());
+        latency.put("sumMicros", histogram.getSum());
+        latency.put("p50Micros", histogram.percentile(0.50));
+        latency.put("p95Micros", histogram.percentile(0.95));
+        latency.put("p99Micros", histogram.percentile(0.99));
+        latency.put("maxMicros", histogram.getMax());
+        return latency;
+    }
+
+    private void counter(StringBuilder output, String name, String help, ToDoubleFunction<StepMetrics> value) {
+        metric(output, name, help, "counter", value);
+    }
+
+    private void gauge(StringBuilder output, String name, String help, ToDoubleFunction<StepMetrics> value) {
+        metric(output, name, help, "gauge", value);
+    }
+
+    private void metric(StringBuilder output, String name, String help, String type,
+                        ToDoubleFunction<StepMetrics> value) {
+        header(output, name, help, type);
+        for (StepMetrics step : steps) {
+            output.append(name).append(labels(step, null)).append(' ')
+                    .append(format(value.applyAsDouble(step))).append('\n');
+        }
+    }
+
+    private void histogram(StringBuilder output, String name, String help,
+                           Function<StepMetrics, LatencyHistogram> phase) {
+        header(output, name, help, "histogram");
+        for (StepMetrics step : steps) {
+            LatencyHistogram histogram = phase.apply(step);
+            for (double bucket : PROMETHEUS_BUCKETS) {
+                long cumulative = histogram.countAtOrBelow(Math.round(bucket * 1_000_000));
+                output.append(name).append("_bucket").append(labels(step, format(bucket))).append(' ')
+                        .append(cumulative).append('\n');
+            }
+            output.append(name).append("_bucket").append(labels(step, "+Inf")).append(' ')
+                    .append(histogram.getCount()).append('\n');
+            output.append(name).append("_sum").append(labels(step, null)).append(' ')
+                    .append(format(histogram.getSum() / 1_000_000.0)).append('\n');
+            output.append(name).append("_count").append(labels(step, null)).append(' ')
+                    .append(histogram.getCount()).append('\n');
+        }
+    }
+
+    private void header(StringBuilder output, String name, String help, String type) {
+        output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        output.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private String labels(StepMetrics step, String le) {
+        StringBuilder labels = new StringBuilder("{job=\"").append(escape(jobName))
+                .append("\",job_execution=\"").append(jobExecutionId)
+                .append("\",step=\"").append(escape(step.getStepName())).append('"');
+        if (le != null) {
+            labels.append(",le=\"").append(le).append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.metrics;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures of a single step execution. The latencies are recorded while the step runs, and the counters are copied
+ * from the StepExecution when it finishes.
+ */
+public class StepMetrics {
+
+    /** keys of the step ExecutionContext where tasklets can add the bytes they moved */
+    public static final String BYTES_READ = "metrics.bytesRead";
+    public static final String BYTES_WRITTEN = "metrics.bytesWritten";
+
+    /** latency phases, as named in the ExecutionContext keys and in the logs */
+    public static final String READ = "read";
+    public static final String PROCESS = "process";
+    public static final String WRITE = "write";
+    public static final String COMMIT = "commit";
+    public static final String CHUNK = "chunk";
+
+    /**
+     * prefix of the keys of the step ExecutionContext with the latency percentiles in microseconds, e.g.
+     * "metrics.latency.write.p99"
+     */
+    public static final String LATENCY_PREFIX = "metrics.latency.";
+
+    private final String stepName;
+    private final long stepExecutionId;
+
+    /** duration of every read of an item */
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    /** duration of every processing of an item */
+    private final LatencyHistogram processLatency = new LatencyHistogram();
+    /** duration of every write, i.e. of the round trips to Mongo for the Mongo writers */
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    /** from the end of the write to the end of the chunk: update of the streams and commit of the transaction */
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    /** chunk duration, from the start of the transaction to its commit */
+    private final LatencyHistogram chunkLatency = new LatencyHistogram();
+
+    long chunkStart;
+    long readStart;
+    long processStart;
+    long writeStart;
+    long writeEnd;
+
+    private String status;
+    private long durationMillis;
+    private int readCount;
+    private int processedCount;
+    private int writeCount;
+    private int skipCount;
+    private int commitCount;
+    private long bytesRead;
+    private long bytesWritten;
+
+    public StepMetrics(String stepName, long stepExecutionId) {
+        this.stepName = stepName;
+        this.stepExecutionId = stepExecutionId;
+    }
+
+    void finish(StepExecution stepExecution, long durationMillis) {
+        this.durationMillis = durationMillis;
+        status = stepExecution.getStatus().name();
+        readCount = stepExecution.getReadCount();
+        // filtered items were processed too, they are just not written
+        processedCount = stepExecution.getWriteCount() + stepExecution.getFilterCount();
+        writeCount = stepExecution.getWriteCount();
+        skipCount = stepExecution.getSkipCount();
+        commitCount = stepExecution.getCommitCount();
+
+        ExecutionContext context = stepExecution.getExecutionContext();
+        bytesRead = context.getLong(BYTES_READ, 0);
+        bytesWritten = context.getLong(BYTES_WRITTEN, 0);
+    }
+
+    /**
+     * @return the histograms by phase, in the order of a chunk. Phases that didn't happen in the step (e.g. read and
+     * process in a tasklet step) are not included
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+        latencies.put(READ, readLatency);
+        latencies.put(PROCESS, processLatency);
+        latencies.put(WRITE, writeLatency);
+        latencies.put(COMMIT, commitLatency);
+        latencies.put(CHUNK, chunkLatency);
+        latencies.values().removeIf(histogram -> histogram.getCount() == 0);
+        return latencies;
+    }
+
+    /**
+     * Puts p50, p95, p99 and max of every phase in the context, in microseconds
+     */
+    void putPercentiles(ExecutionContext context) {
+        for (Map.Entry<String, LatencyHistogram> latency : getLatencies().entrySet()) {
+            String prefix = LATENCY_PREFIX + latency.getKey() + ".";
+            LatencyHistogram histogram = latency.getValue();
+            context.putLong(prefix + "p50", histogram.percentile(0.50));
+            context.putLong(prefix + "p95", histogram.percentile(0.95));
+            context.putLong(prefix + "p99", histogram.percentile(0.99));
+            context.putLong(prefix + "max", histogram.getMax());
+        }
+    }
+
+    public String getStepName() {
+        return stepName;
+    }
+
+    public long getStepExecutionId() {
+        return stepExecutionId;
+    }
+
+    public LatencyHistogram getReadLatency() {
+        return readLatency;
+    }
+
+    public LatencyHistogram getProcessLatency() {
+        return processLatency;
+    }
+
+    public LatencyHistogram getCommitLatency() {
+        return commitLatency;
+    }
+
+    public LatencyHistogram getChunkLatency() {
+        return chunkLatency;
+    }
+
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public int getReadCount() {
+        return readCount;
+    }
+
+    public int getProcessedCount() {
+        return processedCount;
+    }
+
+    public int getWriteCount() {
+        return writeCount;
+    }
+
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    public int getCommitCount() {
+        return commitCount;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public double perSecond(long amount) {
+        return durationMillis == 0 ? 0 : amount * 1000.0 / durationMillis;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.metrics;
+
+import org.opencb.datastore.core.ObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.annotation.*;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects the {@link StepMetrics} of every step it is registered in. The metrics of the finished steps are kept by
+ * job execution until {@link #takeJobMetrics} is called, usually by {@link MetricsExportListener} at the end of the
+ * job.
+ *
+ * It's registered with annotations instead of implementing the listener interfaces, so the same
+ * ".listener(stepMetricsListener)" works for tasklet and chunk oriented steps. A single instance can be shared by
+ * steps running in parallel, each step execution has its own metrics.
+ *
+ * When a step finishes, the percentiles of its latencies are put in its ExecutionContext (see
+ * {@link StepMetrics#LATENCY_PREFIX}), and a warning is logged for every phase whose p99 is over
+ * "latencyWarningThreshold" milliseconds (0 to disable the warnings).
+ */
+public class StepMetricsListener {
+    private static final Logger logger = LoggerFactory.getLogger(StepMetricsListener.class);
+
+    public static final String LATENCY_WARNING_THRESHOLD = "latencyWarningThreshold";
+
+    private final ObjectMap pipelineOptions;
+
+    private final Map<Long, StepMetrics> runningSteps = new ConcurrentHashMap<>();
+    private final Map<Long, ConcurrentLinkedQueue<StepMetrics>> finishedSteps = new ConcurrentHashMap<>();
+
+    public StepMetricsListener(ObjectMap pipelineOptions) {
+        this.pipelineOptions = pipelineOptions;
+    }
+
+    /**
+     * Lets a tasklet report the bytes it read and wrote, e.g. the size of the files or the output of an external
+     * process.
+     */
+    public static void addBytes(ChunkContext chunkContext, long bytesRead, long bytesWritten) {
+        ExecutionContext context = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+        context.putLong(StepMetrics.BYTES_READ, context.getLong(StepMetrics.BYTES_READ, 0) + bytesRead);
+        context.putLong(StepMetrics.BYTES_WRITTEN, context.getLong(StepMetrics.BYTES_WRITTEN, 0) + bytesWritten);
+    }
+
+    @BeforeStep
+    public void beforeStep(StepExecution stepExecution) {
+        runningSteps.put(stepExecution.getId(), new StepMetrics(stepExecution.getStepName(), stepExecution.getId()));
+    }
+
+    @AfterStep
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        StepMetrics metrics = runningSteps.remove(stepExecution.getId());
+        if (metrics != null) {
+            long duration = System.currentTimeMillis() - stepExecution.getStartTime().getTime();
+            metrics.finish(stepExecution, duration);
+            metrics.putPercentiles(stepExecution.getExecutionContext());
+            warnAboutTailLatency(metrics);
+            finishedSteps.computeIfAbsent(stepExecution.getJobExecutionId(), id -> new ConcurrentLinkedQueue<>())
+                    .add(metrics);
+            logger.debug("Step {}: {} items read, {} written in {} ms", metrics.getStepName(),
+                    metrics.getReadCount(), metrics.getWriteCount(), duration);
+        }
+        return null;
+    }
+
+    @BeforeChunk
+    public void beforeChunk(ChunkContext chunkContext) {
+        StepMetrics metrics = runningSteps.get(chunkContext.getStepContext().getStepExecution().getId());
+        if (metrics != null) {
+            metrics.chunkStart = System.nanoTime();
+        }
+    }
+
+    @AfterChunk
+    public void afterChunk(ChunkContext chunkContext) {
+        StepMetrics metrics = runningSteps.get(chunkContext.getStepContext().getStepExecution().getId());
+        if (metrics != null) {
+            long now = System.nanoTime();
+            metrics.getChunkLatency().record((now - metrics.chunkStart) / 1000);
+            if (metrics.writeEnd > metrics.chunkStart) {
+                metrics.getCommitLatency().record((now - metrics.writeEnd) / 1000);
+            }
+        }
+    }
+
+    @BeforeRead
+    public void beforeRead() {
+        StepMetrics metrics = getCurrentStepMetrics();
+        if (metrics != null) {
+            metrics.readStart = System.nanoTime();
+        }
+    }
+
+    @AfterRead
+    public void afterRead(Object item) {
+        StepMetrics metrics = getCurrentStepMetrics();
+        if (metrics != null) {
+            metrics.getReadLatency().record((System.nanoTime() - metrics.readStart) / 1000);
+        }
+    }
+
+    @BeforeProcess
+    public void beforeProcess(Object item) {
+        StepMetrics metrics = getCurrentStepMetrics();
+        if (metrics != null) {
+            metrics.processStart = System.nanoTime();
+        }
+    }
+
+    @AfterProcess
+    public void afterProcess(Object item, Object result) {
+        StepMetrics metrics = getCurrentStepMetrics();
+        if (metrics != null) {
+            metrics.getProcessLatency().record((System.nanoTime() - metrics.processStart) / 1000);
+        }
+    }
+
+    @BeforeWrite
+    public void beforeWrite(List<?> items) {
+        StepMetrics metrics = getCurrentStepMetrics();
+        if (metrics != null) {
+            metrics.writeStart = System.nanoTime();
+        }
+    }
+
+    @AfterWrite
+    public void afterWrite(List<?> items) {
+        StepMetrics metrics = getCurrentStepMetrics();
+        if (metrics != null) {
+            metrics.writeEnd = System.nanoTime();
+            metrics.getWriteLatency().record((metrics.writeEnd - metrics.writeStart) / 1000);
+        }
+    }
+
+    /**
+     * @return the metrics of all the finished steps of the job execution, which are forgotten by this listener
+     */
+    public List<StepMetrics> takeJobMetrics(long jobExecutionId) {
+        ConcurrentLinkedQueue<StepMetrics> jobMetrics = finishedSteps.remove(jobExecutionId);
+        return jobMetrics == null ? new ArrayList<>() : new ArrayList<>(jobMetrics);
+    }
+
+    private void warnAboutTailLatency(StepMetrics metrics) {
+        long thresholdMillis = pipelineOptions.getLong(LATENCY_WARNING_THRESHOLD);
+        if (thresholdMillis <= 0) {
+            return;
+        }
+        for (Map.Entry<String, LatencyHistogram> latency : metrics.getLatencies().entrySet()) {
+            LatencyHistogram histogram = latency.getValue();
+            long p99 = histogram.percentile(0.99);
+            if (p99 > thresholdMillis * 1000) {
+                logger.warn("Step {}: p99 {} latency is {} ms (max {} ms, {} measures), over the threshold of {} ms",
+                        metrics.getStepName(), latency.getKey(), p99 / 1000, histogram.getMax() / 1000,
+                        histogram.getCount(), thresholdMillis);
+            }
+        }
+    }
+
+    private StepMetrics getCurrentStepMetrics() {
+        if (StepSynchronizationManager.getContext() == null) {
+            return null;
+        }
+        return runningSteps.get(StepSynchronizationManager.getContext().getStepExecution().getId());
+    }
+}
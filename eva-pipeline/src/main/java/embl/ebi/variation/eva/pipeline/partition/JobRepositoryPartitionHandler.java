@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.partition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.StepExecutionSplitter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Manager side of the remote partitioning: the partitions are only written in the job repository, with status
+ * STARTING, and this handler waits until {@link PartitionWorker}s, usually in other JVMs or hosts sharing the same
+ * job repository database, have finished all of them.
+ *
+ * No message broker is needed: the job repository is the queue, and the status of every step execution is the reply.
+ *
+ * A worker updates its partition in the job repository on every commit, so if no partition has finished or been
+ * updated in the timeout, the workers are assumed to be gone (or never started) and the step fails, instead of waiting
+ * forever for partitions that nobody is running.
+ */
+public class JobRepositoryPartitionHandler implements PartitionHandler {
+    private static final Logger logger = LoggerFactory.getLogger(JobRepositoryPartitionHandler.class);
+
+    private final JobExplorer jobExplorer;
+    private final long pollInterval;
+    private final long timeout;
+
+    /**
+     * @param pollInterval milliseconds between checks of the status of the partitions
+     * @param timeout milliseconds to wait without any partition finishing or being updated, 0 to wait forever
+     */
+    public JobRepositoryPartitionHandler(JobExplorer jobExplorer, long pollInterval, long timeout) {
+        this.jobExplorer = jobExplorer;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Collection<StepExecution> handle(StepExecutionSplitter stepSplitter, StepExecution managerStepExecution)
+            throws Exception {
+        // the grid size is ignored by our partitioners, the workers decide how many partitions run at once
+        Set<StepExecution> partitions = stepSplitter.split(managerStepExecution, 1);
+        logger.info("{} partitions of step {} are waiting for workers", partitions.size(), stepSplitter.getStepName());
+
+        long lastProgress = System.currentTimeMillis();
+        Map<Long, Integer> versions = new HashMap<>();
+        Map<Long, StepExecution> finished = new LinkedHashMap<>();
+        while (finished.size() < partitions.size()) {
+            if (timeout > 0 && System.currentTimeMillis() - lastProgress > timeout) {
+                throw new TimeoutException(String.format(
+                        "Only %d of %d partitions of step %s finished, and none was updated in the last %d ms",
+                        finished.size(), partitions.size(), stepSplitter.getStepName(), timeout));
+            }
+            Thread.sleep(pollInterval);
+
+            for (StepExecution partition : partitions) {
+                if (finished.containsKey(partition.getId())) {
+                    continue;
+                }
+                StepExecution current = jobExplorer.getStepExecution(partition.getJobExecutionId(), partition.getId());
+                Integer previousVersion = versions.put(current.getId(), current.getVersion());
+                if (previousVersion != null && !previousVersion.equals(current.getVersion())) {
+                    lastProgress = System.currentTimeMillis();
+                }
+                if (!current.getStatus().isRunning()) {
+                    logger.info("Partition {} finished with status {}", current.getStepName(), current.getStatus());
+                    finished.put(current.getId(), current);
+                    lastProgress = System.currentTimeMillis();
+                }
+            }
+        }
+
+        return finished.values();
+    }
+}
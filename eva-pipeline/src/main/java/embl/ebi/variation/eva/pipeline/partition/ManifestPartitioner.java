@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.partition;
+
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates a partition for every file of a manifest, so each file is processed by its own step execution.
+ *
+ * The manifest has one file per line, as "path[TAB]fileId". Relative paths are resolved from the folder of the
+ * manifest, and empty lines and lines starting with '#' are ignored. Every partition ExecutionContext has the
+ * {@link PartitionOptions#INPUT} and {@link PartitionOptions#FILE_ID} of its file, and the options of the job that
+ * every worker must use, see {@link PartitionOptions#putJobOptions}.
+ *
+ * The gridSize is ignored: the number of partitions is the number of files, how many of them run at the same time is
+ * decided by the TaskExecutor.
+ */
+public class ManifestPartitioner implements Partitioner {
+
+    public static final String MANIFEST = "manifest";
+
+    private final ObjectMap pipelineOptions;
+    private final ObjectMap variantOptions;
+
+    public ManifestPartitioner(ObjectMap pipelineOptions, ObjectMap variantOptions) {
+        this.pipelineOptions = pipelineOptions;
+        this.variantOptions = variantOptions;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Path manifest = Paths.get(pipelineOptions.getString(MANIFEST));
+        Map<String, ExecutionContext> partitions;
+        try {
+            partitions = readManifest(manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the manifest " + manifest, e);
+        }
+        for (ExecutionContext context : partitions.values()) {
+            PartitionOptions.putJobOptions(context, pipelineOptions, variantOptions);
+        }
+        return partitions;
+    }
+
+    /**
+     * @return the fileIds of the files of the manifest, in the same order
+     */
+    public List<String> getFileIds() {
+        List<String> fileIds = new ArrayList<>();
+        for (ExecutionContext context : partition(0).values()) {
+            fileIds.add(context.getString(PartitionOptions.FILE_ID));
+        }
+        return fileIds;
+    }
+
+    static Map<String, ExecutionContext> readManifest(Path manifest) throws IOException {
+        Path folder = manifest.toAbsolutePath().getParent();
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(manifest)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\t");
+                if (fields.length != 2 || fields[0].isEmpty() || fields[1].isEmpty()) {
+                    throw new IllegalArgumentException(String.format(
+                            "Line %d of manifest %s should be 'path<TAB>fileId': %s", lineNumber, manifest, line));
+                }
+
+                String fileId = fields[1].trim();
+                String partitionName = "file-" + fileId;
+                if (partitions.containsKey(partitionName)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Duplicated fileId %s in line %d of manifest %s", fileId, lineNumber, manifest));
+                }
+
+                ExecutionContext context = new ExecutionContext();
+                context.putString(PartitionOptions.INPUT, folder.resolve(fields[0].trim()).toString());
+                context.putString(PartitionOptions.FILE_ID, fileId);
+                partitions.put(partitionName, context);
+            }
+        }
+
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("The manifest " + manifest + " has no files");
+        }
+        return partitions;
+    }
+}
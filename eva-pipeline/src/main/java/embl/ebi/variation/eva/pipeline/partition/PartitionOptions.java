@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.partition;
+
+import embl.ebi.variation.eva.pipeline.steps.VariantsAggregatedStatsLoad;
+import embl.ebi.variation.eva.pipeline.steps.VariantsLoad;
+import embl.ebi.variation.eva.pipeline.steps.VariantsStatsCreate;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.biodata.models.variant.VariantStudy;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pipelineOptions and variantOptions beans describe a single file. When a step runs as a partition of a
+ * multi-file job, these methods return copies of them overridden with the file of the partition, so concurrent
+ * partitions don't modify the shared options.
+ *
+ * The options that define where and how the files are loaded (database, study, output folder, cohorts, aggregation...)
+ * are also taken from the partition, where the job wrote them with {@link #putJobOptions}, so a remote worker started
+ * with a different configuration still loads the files into the database and study of the job.
+ *
+ * Outside of a partition the original options are returned.
+ */
+public class PartitionOptions {
+
+    public static final String INPUT = "input";
+    public static final String FILE_ID = "fileId";
+
+    static final String JOB_PIPELINE_OPTIONS = "jobPipelineOptions";
+    static final String JOB_VARIANT_OPTIONS = "jobVariantOptions";
+    static final String JOB_STUDY = "jobStudy";
+
+    private static final List<String> PIPELINE_JOB_KEYS = Arrays.asList(
+            "outputDir", "compressExtension", "pedigree", VariantsStatsCreate.COHORTS,
+            VariantsAggregatedStatsLoad.AGGREGATED_MAPPING_FILE, VariantStorageManager.DB_NAME,
+            "dbCollectionVariantsName", "dbCollectionFilesName", VariantsLoad.SUMMARY_COLLECTION);
+
+    private static final List<String> VARIANT_JOB_KEYS = Arrays.asList(
+            VariantStorageManager.DB_NAME, "compressExtension", VariantStorageManager.INCLUDE_SRC,
+            VariantStorageManager.INCLUDE_SAMPLES, VariantStorageManager.INCLUDE_STATS,
+            VariantStorageManager.COMPRESS_GENOTYPES, VariantStorageManager.OVERWRITE_STATS);
+
+    private static final String STUDY_ID = "studyId";
+    private static final String STUDY_NAME = "studyName";
+    private static final String STUDY_TYPE = "studyType";
+    private static final String AGGREGATION = "aggregation";
+
+    /**
+     * Writes into the ExecutionContext of a partition the options of the job that must be the same in every worker
+     */
+    public static void putJobOptions(ExecutionContext context, ObjectMap pipelineOptions, ObjectMap variantOptions) {
+        context.put(JOB_PIPELINE_OPTIONS, copy(pipelineOptions, PIPELINE_JOB_KEYS));
+        context.put(JOB_VARIANT_OPTIONS, copy(variantOptions, VARIANT_JOB_KEYS));
+
+        VariantSource source = variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class);
+        if (source != null) {
+            HashMap<String, Object> study = new HashMap<>();
+            study.put(STUDY_ID, source.getStudyId());
+            study.put(STUDY_NAME, source.getStudyName());
+            study.put(STUDY_TYPE, source.getType());
+            study.put(AGGREGATION, source.getAggregation());
+            context.put(JOB_STUDY, study);
+        }
+    }
+
+    private static HashMap<String, Object> copy(ObjectMap options, List<String> keys) {
+        HashMap<String, Object> copy = new HashMap<>();
+        for (String key : keys) {
+            if (options.containsKey(key)) {
+                copy.put(key, options.get(key));
+            }
+        }
+        return copy;
+    }
+
+    public static ObjectMap getPipelineOptions(ObjectMap pipelineOptions, ChunkContext chunkContext) {
+        ExecutionContext context = getExecutionContext(chunkContext);
+        if (!context.containsKey(INPUT)) {
+            return pipelineOptions;
+        }
+
+        ObjectMap partitionOptions = new ObjectMap(pipelineOptions);
+        putAll(partitionOptions, context, JOB_PIPELINE_OPTIONS);
+        partitionOptions.put(INPUT, context.getString(INPUT));
+        return partitionOptions;
+    }
+
+    public static ObjectMap getVariantOptions(ObjectMap variantOptions, ChunkContext chunkContext) {
+        ExecutionContext context = getExecutionContext(chunkContext);
+        if (!context.containsKey(INPUT)) {
+            return variantOptions;
+        }
+
+        VariantSource source = variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class);
+        VariantSource partitionSource;
+        if (context.containsKey(JOB_STUDY)) {
+            Map<?, ?> study = (Map<?, ?>) context.get(JOB_STUDY);
+            partitionSource = new VariantSource(
+                    Paths.get(context.getString(INPUT)).getFileName().toString(),
+                    context.getString(FILE_ID),
+                    (String) study.get(STUDY_ID),
+                    (String) study.get(STUDY_NAME),
+                    (VariantStudy.StudyType) study.get(STUDY_TYPE),
+                    (VariantSource.Aggregation) study.get(AGGREGATION));
+        } else {
+            partitionSource = new VariantSource(
+                    Paths.get(context.getString(INPUT)).getFileName().toString(),
+                    context.getString(FILE_ID),
+                    source.getStudyId(),
+                    source.getStudyName(),
+                    source.getType(),
+                    source.getAggregation());
+        }
+
+        ObjectMap partitionOptions = new ObjectMap(variantOptions);
+        putAll(partitionOptions, context, JOB_VARIANT_OPTIONS);
+        partitionOptions.put(VariantStorageManager.VARIANT_SOURCE, partitionSource);
+        return partitionOptions;
+    }
+
+    private static void putAll(ObjectMap options, ExecutionContext context, String key) {
+        if (context.containsKey(key)) {
+            for (Map.Entry<?, ?> option : ((Map<?, ?>) context.get(key)).entrySet()) {
+                options.put((String) option.getKey(), option.getValue());
+            }
+        }
+    }
+
+    private static ExecutionContext getExecutionContext(ChunkContext chunkContext) {
+        return chunkContext.getStepContext().getStepExecution().getExecutionContext();
+    }
+}
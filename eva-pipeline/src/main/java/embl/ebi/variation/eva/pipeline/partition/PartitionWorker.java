@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.partition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobInterruptedException;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.dao.AbstractJdbcBatchMetadataDao;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Worker side of the remote partitioning, see {@link JobRepositoryPartitionHandler}.
+ *
+ * It looks in the job repository for partitions (step executions named "step:partition") still STARTING, of a step
+ * this worker knows and a job execution still STARTED, and claims one with an update conditioned on the version of the
+ * step execution, so only one worker can win it. Then the step is executed as usual, and its final status is saved in
+ * the job repository, where the manager will see it. The partitions left by a manager that failed or timed out are
+ * never run, as its job execution is not STARTED anymore.
+ */
+public class PartitionWorker {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionWorker.class);
+
+    public static final String WORKER_KEY = "partitionWorker";
+
+    private static final String TABLE_PREFIX = AbstractJdbcBatchMetadataDao.DEFAULT_TABLE_PREFIX;
+
+    private static final String FIND_STARTING_PARTITIONS = "SELECT S.STEP_EXECUTION_ID, S.JOB_EXECUTION_ID, "
+            + "S.VERSION, S.STEP_NAME FROM " + TABLE_PREFIX + "STEP_EXECUTION S JOIN " + TABLE_PREFIX
+            + "JOB_EXECUTION J ON S.JOB_EXECUTION_ID = J.JOB_EXECUTION_ID WHERE S.STATUS = ? AND J.STATUS = ? "
+            + "ORDER BY S.STEP_EXECUTION_ID";
+
+    private static final String CLAIM_PARTITION = "UPDATE " + TABLE_PREFIX + "STEP_EXECUTION SET STATUS = ?, "
+            + "VERSION = ?, LAST_UPDATED = ? WHERE STEP_EXECUTION_ID = ? AND VERSION = ? AND STATUS = ?";
+
+    private final JobExplorer jobExplorer;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Step> steps;
+    private final String workerName;
+
+    public PartitionWorker(JobExplorer jobExplorer, DataSource dataSource, Collection<Step> steps, String workerName) {
+        this.jobExplorer = jobExplorer;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.workerName = workerName;
+        this.steps = new HashMap<>();
+        for (Step step : steps) {
+            if (this.steps.containsKey(step.getName())) {
+                logger.warn("There are several steps named {}, partitions will use the first one", step.getName());
+            } else {
+                this.steps.put(step.getName(), step);
+            }
+        }
+    }
+
+    /**
+     * Runs partitions until no partition is found for idleTimeout milliseconds.
+     *
+     * @param pollInterval milliseconds to wait before looking for partitions again when there are none
+     * @param idleTimeout 0 to run forever
+     */
+    public void run(long pollInterval, long idleTimeout) throws InterruptedException {
+        logger.info("Worker {} waiting for partitions of steps {}", workerName, steps.keySet());
+        long idleSince = System.currentTimeMillis();
+        while (true) {
+            if (runNextPartition()) {
+                idleSince = System.currentTimeMillis();
+            } else if (idleTimeout > 0 && System.currentTimeMillis() - idleSince > idleTimeout) {
+                logger.info("Worker {} stopping, no partitions found in {} ms", workerName, idleTimeout);
+                return;
+            } else {
+                Thread.sleep(pollInterval);
+            }
+        }
+    }
+
+    /**
+     * @return true if a partition was claimed and executed, whatever its final status
+     */
+    public boolean runNextPartition() {
+        List<PartitionCandidate> candidates = jdbcTemplate.query(FIND_STARTING_PARTITIONS,
+                (resultSet, rowNumber) -> new PartitionCandidate(resultSet.getLong(1), resultSet.getLong(2),
+                        resultSet.getInt(3), resultSet.getString(4)),
+                BatchStatus.STARTING.name(), BatchStatus.STARTED.name());
+
+        for (PartitionCandidate candidate : candidates) {
+            Step step = getWorkerStep(candidate.stepName);
+            if (step != null && claim(candidate)) {
+                execute(step, jobExplorer.getStepExecution(candidate.jobExecutionId, candidate.stepExecutionId));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Step getWorkerStep(String partitionName) {
+        int separator = partitionName.indexOf(':');
+        return separator < 0 ? null : steps.get(partitionName.substring(0, separator));
+    }
+
+    private boolean claim(PartitionCandidate candidate) {
+        int updated = jdbcTemplate.update(CLAIM_PARTITION, BatchStatus.STARTED.name(), candidate.version + 1,
+                new Timestamp(System.currentTimeMillis()), candidate.stepExecutionId, candidate.version,
+                BatchStatus.STARTING.name());
+        return updated == 1;
+    }
+
+    private void execute(Step step, StepExecution stepExecution) {
+        logger.info("Worker {} running partition {} of job execution {}", workerName, stepExecution.getStepName(),
+                stepExecution.getJobExecutionId());
+        stepExecution.getExecutionContext().putString(WORKER_KEY, workerName);
+        try {
+            step.execute(stepExecution);
+        } catch (JobInterruptedException e) {
+            logger.warn("Partition {} was interrupted", stepExecution.getStepName());
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Partition {} finished with status {}", stepExecution.getStepName(), stepExecution.getStatus());
+    }
+
+    private static class PartitionCandidate {
+        private final long stepExecutionId;
+        private final long jobExecutionId;
+        private final int version;
+        private final String stepName;
+
+        PartitionCandidate(long stepExecutionId, long jobExecutionId, int version, String stepName) {
+            this.stepExecutionId = stepExecutionId;
+            this.jobExecutionId = jobExecutionId;
+            this.version = version;
+            this.stepName = stepName;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.stats;
+
+import org.opencb.biodata.models.variant.*;
+import org.springframework.batch.item.ItemProcessor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Converts a line of an aggregated VCF into its normalized {@link Variant}s, with the statistics of every cohort
+ * taken from the INFO column (AC, AN, AF, GTC...), without looking at any genotype.
+ *
+ * Which INFO keys belong to each cohort is configured with a mapping properties file, in the format understood by
+ * {@link VariantAggregatedVcfFactory}, e.g.:
+ *
+ * ALL.AC = AC
+ * ALL.AN = AN
+ * AFR.AC = AFR_AC
+ * AFR.AN = AFR_AN
+ *
+ * Without a mapping file only the default cohort is filled, from the standard keys.
+ */
+public class AggregatedVcfStatsProcessor implements ItemProcessor<String, List<Variant>> {
+
+    private final VariantSource source;
+    private final VariantFactory factory;
+
+    public AggregatedVcfStatsProcessor(VariantSource source, Properties mapping) {
+        this.source = source;
+        this.factory = getFactory(source.getAggregation(), mapping);
+    }
+
+    private static VariantFactory getFactory(VariantSource.Aggregation aggregation, Properties mapping) {
+        switch (aggregation) {
+            case EVS:
+                return new VariantVcfEVSFactory(mapping);
+            case EXAC:
+                return new VariantVcfExacFactory(mapping);
+            case BASIC:
+                return new VariantAggregatedVcfFactory(mapping);
+            default:
+                throw new IllegalArgumentException(
+                        "Statistics can only be taken from the INFO column of aggregated files, not " + aggregation);
+        }
+    }
+
+    /**
+     * @param mappingFile path to a properties file, may be null or empty
+     * @return the mapping, or null if there is no mapping file, so the factories use their default keys
+     */
+    public static Properties loadMapping(String mappingFile) throws IOException {
+        if (mappingFile == null || mappingFile.isEmpty()) {
+            return null;
+        }
+        Properties mapping = new Properties();
+        try (InputStream input = Files.newInputStream(Paths.get(mappingFile))) {
+            mapping.load(input);
+        }
+        return mapping;
+    }
+
+    @Override
+    public List<Variant> process(String line) throws Exception {
+        return factory.create(source, line);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.stats;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Reads the cohorts (named sets of samples) to calculate statistics for.
+ *
+ * Cohorts may come from:
+ * - the `cohorts` parameter, as "COHORT1:sample1,sample2;COHORT2:sample3"
+ * - a pedigree (PED) file, grouping the individuals by the "population" column. A pedigree without that column
+ * defines no cohorts, so the statistics are calculated as before. Example:
+ *
+ * #family  individual  father  mother  sex  phenotype  population
+ * FAM1     HG00096     0       0       1    1          GBR
+ */
+public class CohortDefinitions {
+
+    private static final String COHORT_SEPARATOR = ";";
+    private static final String NAME_SEPARATOR = ":";
+    private static final String SAMPLE_SEPARATOR = ",";
+
+    private static final int NO_COLUMN = -1;
+    private static final int INDIVIDUAL_COLUMN = 1;
+    private static final String POPULATION_HEADER = "population";
+
+    public static Map<String, Set<String>> parse(String cohorts) {
+        Map<String, Set<String>> cohortSamples = new LinkedHashMap<>();
+        if (cohorts == null || cohorts.trim().isEmpty()) {
+            return cohortSamples;
+        }
+
+        for (String cohort : cohorts.split(COHORT_SEPARATOR)) {
+            String[] nameAndSamples = cohort.split(NAME_SEPARATOR);
+            if (nameAndSamples.length != 2 || nameAndSamples[0].trim().isEmpty()) {
+                throw new IllegalArgumentException(String.format(
+                        "Malformed cohort definition \"%s\", it should be like COHORT:sample1,sample2", cohort));
+            }
+            Set<String> samples = cohortSamples.computeIfAbsent(nameAndSamples[0].trim(), k -> new LinkedHashSet<>());
+            for (String sample : nameAndSamples[1].split(SAMPLE_SEPARATOR)) {
+                if (!sample.trim().isEmpty()) {
+                    samples.add(sample.trim());
+                }
+            }
+        }
+        return cohortSamples;
+    }
+
+    public static Map<String, Set<String>> fromPedigree(Path pedigree) throws IOException {
+        Map<String, Set<String>> cohortSamples = new LinkedHashMap<>();
+        int cohortColumn = NO_COLUMN;
+
+        try (BufferedReader reader = Files.newBufferedReader(pedigree, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.trim().split("\\s+");
+                if (line.startsWith("#")) {
+                    for (int i = 0; i < fields.length; i++) {
+                        if (fields[i].replace("#", "").equalsIgnoreCase(POPULATION_HEADER)) {
+                            cohortColumn = i;
+                        }
+                    }
+                } else if (cohortColumn == NO_COLUMN) {
+                    break;
+                } else if (fields.length > Math.max(cohortColumn, INDIVIDUAL_COLUMN)) {
+                    cohortSamples.computeIfAbsent(fields[cohortColumn], k -> new LinkedHashSet<>())
+                            .add(fields[INDIVIDUAL_COLUMN]);
+                } else {
+                    throw new IllegalArgumentException("Malformed line in pedigree " + pedigree + ": " + line);
+                }
+            }
+        }
+        return cohortSamples;
+    }
+
+    /**
+     * Merges the cohorts from the `cohorts` parameter and from the pedigree file, if it exists. The cohorts
+     * explicitly defined in the parameter take precedence.
+     */
+    public static Map<String, Set<String>> load(String cohorts, String pedigree) throws IOException {
+        Map<String, Set<String>> cohortSamples = new LinkedHashMap<>();
+        if (pedigree != null && !pedigree.isEmpty() && Files.isRegularFile(Paths.get(pedigree))) {
+            cohortSamples.putAll(fromPedigree(Paths.get(pedigree)));
+        }
+        cohortSamples.putAll(parse(cohorts));
+        return cohortSamples;
+    }
+}
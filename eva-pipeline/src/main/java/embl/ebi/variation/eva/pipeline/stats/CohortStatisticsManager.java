@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.stats;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.biodata.models.variant.VariantSourceEntry;
+import org.opencb.biodata.models.variant.stats.VariantSourceStats;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.io.json.VariantStatsJsonMixin;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Creates the statistics of several cohorts with a single scan of the variants of a file.
+ *
+ * The output files have the same names and format as the ones written by
+ * {@link org.opencb.opencga.storage.core.variant.stats.VariantStatisticsManager#createStats}, so they can be loaded
+ * with {@link org.opencb.opencga.storage.core.variant.stats.VariantStatisticsManager#loadStats} as usual.
+ */
+public class CohortStatisticsManager {
+    private static final Logger logger = LoggerFactory.getLogger(CohortStatisticsManager.class);
+
+    public static final String VARIANT_STATS_SUFFIX = ".variants.stats.json.gz";
+    public static final String SOURCE_STATS_SUFFIX = ".source.stats.json.gz";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final ObjectMapper jsonObjectMapper;
+
+    public CohortStatisticsManager() {
+        jsonObjectMapper = new ObjectMapper();
+        jsonObjectMapper.addMixIn(VariantStats.class, VariantStatsJsonMixin.class);
+    }
+
+    /**
+     * @param output prefix of the output files, the suffixes {@link #VARIANT_STATS_SUFFIX} and
+     *               {@link #SOURCE_STATS_SUFFIX} will be appended
+     * @return the output prefix
+     */
+    public URI createStats(VariantDBAdaptor dbAdaptor, URI output, VariantSource source,
+                           Map<String, Set<String>> cohorts, QueryOptions options) throws IOException {
+        SampleCohorts sampleCohorts = SampleCohorts.compile(cohorts, getLoadedSamplesPosition(dbAdaptor, source));
+        CohortStatsCalculator calculator = new CohortStatsCalculator(sampleCohorts);
+        VariantSourceStats sourceStats = new VariantSourceStats(source.getFileId(), source.getStudyId());
+
+        ObjectWriter variantsWriter = jsonObjectMapper.writerFor(VariantStatsWrapper.class);
+        ObjectWriter sourceWriter = jsonObjectMapper.writerFor(VariantSourceStats.class);
+
+        QueryOptions iteratorOptions = new QueryOptions(options);
+        iteratorOptions.put(VariantDBAdaptor.STUDIES, Collections.singletonList(source.getStudyId()));
+        iteratorOptions.put(VariantDBAdaptor.FILES, Collections.singletonList(source.getFileId()));
+
+        logger.info("Calculating statistics of {} cohorts in a single pass", sampleCohorts.size());
+        long variants = 0;
+        try (OutputStream variantsOutput = new GZIPOutputStream(
+                new FileOutputStream(Paths.get(output.getPath() + VARIANT_STATS_SUFFIX).toFile()));
+             OutputStream sourceOutput = new GZIPOutputStream(
+                     new FileOutputStream(Paths.get(output.getPath() + SOURCE_STATS_SUFFIX).toFile()))) {
+
+            List<Variant> batch = new ArrayList<>(BATCH_SIZE);
+            VariantDBIterator iterator = dbAdaptor.iterator(iteratorOptions);
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                VariantSourceEntry sourceEntry = variant.getSourceEntry(source.getFileId(), source.getStudyId());
+                if (sourceEntry == null) {
+                    continue;
+                }
+
+                Map<String, VariantStats> cohortStats = calculator.calculate(variant, sourceEntry);
+                variantsOutput.write(variantsWriter.writeValueAsBytes(
+                        new VariantStatsWrapper(variant.getChromosome(), variant.getStart(), cohortStats)));
+                variantsOutput.write('\n');
+
+                batch.add(variant);
+                if (batch.size() == BATCH_SIZE) {
+                    updateSourceStats(sourceStats, batch);
+                }
+                variants++;
+            }
+            updateSourceStats(sourceStats, batch);
+
+            sourceOutput.write(sourceWriter.writeValueAsBytes(sourceStats));
+        }
+        logger.info("Statistics calculated for {} variants", variants);
+
+        return output;
+    }
+
+    /**
+     * The samples are only known after the file is transformed, so they are taken from the files collection instead
+     * of the VariantSource built from the job parameters.
+     */
+    private Map<String, Integer> getLoadedSamplesPosition(VariantDBAdaptor dbAdaptor, VariantSource source) {
+        List<VariantSource> loadedSources = dbAdaptor.getVariantSourceDBAdaptor()
+                .getAllSourcesByStudyIds(Collections.singletonList(source.getStudyId()), new QueryOptions()).getResult();
+        for (VariantSource loadedSource : loadedSources) {
+            if (loadedSource.getFileId().equals(source.getFileId())) {
+                return loadedSource.getSamplesPosition();
+            }
+        }
+        throw new IllegalStateException(String.format("File %s of study %s is not loaded, can't calculate its stats",
+                source.getFileId(), source.getStudyId()));
+    }
+
+    private void updateSourceStats(VariantSourceStats sourceStats, List<Variant> batch) {
+        if (!batch.isEmpty()) {
+            sourceStats.updateFileStats(batch);
+            sourceStats.updateSampleStats(batch, null);
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.stats;
+
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantSourceEntry;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+
+import java.util.*;
+
+/**
+ * Calculates the statistics of every cohort in {@link SampleCohorts} with a single loop over the genotypes of a
+ * variant.
+ *
+ * Genotype strings ("0|1", "1/1", "./.") are parsed once and given a small integer code. For every sample, the
+ * counter of its genotype code is incremented in each cohort the sample belongs to, and allele counts are derived
+ * from the genotype counts at the end. The cost per variant is then one map lookup per sample plus one increment per
+ * (sample, cohort) membership.
+ *
+ * Instances are not thread safe.
+ */
+public class CohortStatsCalculator {
+
+    public static final String GENOTYPE_KEY = "GT";
+
+    private static final int INITIAL_GENOTYPE_CODES = 16;
+
+    private final SampleCohorts cohorts;
+
+    private final Map<String, Integer> genotypeCodes;
+    private String[] genotypeStrings;
+    private int[] refAllelesInGenotype;
+    private int[] altAllelesInGenotype;
+    private int[] missingAllelesInGenotype;
+
+    /** [cohort][genotype code] counters, reset for every variant */
+    private int[][] genotypeCounts;
+
+    public CohortStatsCalculator(SampleCohorts cohorts) {
+        this.cohorts = cohorts;
+        this.genotypeCodes = new HashMap<>();
+        this.genotypeStrings = new String[INITIAL_GENOTYPE_CODES];
+        this.refAllelesInGenotype = new int[INITIAL_GENOTYPE_CODES];
+        this.altAllelesInGenotype = new int[INITIAL_GENOTYPE_CODES];
+        this.missingAllelesInGenotype = new int[INITIAL_GENOTYPE_CODES];
+        this.genotypeCounts = new int[cohorts.size()][INITIAL_GENOTYPE_CODES];
+    }
+
+    /**
+     * @return statistics by cohort name, for every cohort in the {@link SampleCohorts}
+     */
+    public Map<String, VariantStats> calculate(Variant variant, VariantSourceEntry sourceEntry) {
+        for (int[] cohortCounts : genotypeCounts) {
+            Arrays.fill(cohortCounts, 0, genotypeCodes.size(), 0);
+        }
+
+        for (Map.Entry<String, Map<String, String>> sample : sourceEntry.getSamplesData().entrySet()) {
+            int[] sampleCohorts = cohorts.getCohortsOfSample(sample.getKey());
+            if (sampleCohorts.length > 0) {
+                int code = getGenotypeCode(sample.getValue().get(GENOTYPE_KEY));
+                for (int cohort : sampleCohorts) {
+                    genotypeCounts[cohort][code]++;
+                }
+            }
+        }
+
+        Map<String, VariantStats> cohortStats = new LinkedHashMap<>();
+        for (int cohort = 0; cohort < cohorts.size(); cohort++) {
+            cohortStats.put(cohorts.getCohortName(cohort), buildStats(variant, genotypeCounts[cohort]));
+        }
+        return cohortStats;
+    }
+
+    private VariantStats buildStats(Variant variant, int[] counts) {
+        VariantStats stats = new VariantStats(variant.getReference(), variant.getAlternate(), variant.getType());
+
+        int refAlleles = 0;
+        int altAlleles = 0;
+        int missingAlleles = 0;
+        int missingGenotypes = 0;
+        int calledGenotypes = 0;
+        for (int code = 0; code < genotypeCodes.size(); code++) {
+            if (counts[code] == 0) {
+                continue;
+            }
+            refAlleles += counts[code] * refAllelesInGenotype[code];
+            altAlleles += counts[code] * altAllelesInGenotype[code];
+            missingAlleles += counts[code] * missingAllelesInGenotype[code];
+            if (missingAllelesInGenotype[code] > 0) {
+                missingGenotypes += counts[code];
+            } else {
+                calledGenotypes += counts[code];
+            }
+        }
+
+        stats.setRefAlleleCount(refAlleles);
+        stats.setAltAlleleCount(altAlleles);
+        stats.setMissingAlleles(missingAlleles);
+        stats.setMissingGenotypes(missingGenotypes);
+
+        int totalAlleles = refAlleles + altAlleles;
+        if (totalAlleles > 0) {
+            float refAlleleFreq = (float) refAlleles / totalAlleles;
+            float altAlleleFreq = (float) altAlleles / totalAlleles;
+            stats.setRefAlleleFreq(refAlleleFreq);
+            stats.setAltAlleleFreq(altAlleleFreq);
+            if (refAlleleFreq <= altAlleleFreq) {
+                stats.setMaf(refAlleleFreq);
+                stats.setMafAllele(variant.getReference());
+            } else {
+                stats.setMaf(altAlleleFreq);
+                stats.setMafAllele(variant.getAlternate());
+            }
+        }
+
+        // the setter is not public, but the map of the statistics is mutable
+        Map<Genotype, Float> genotypesFreq = stats.getGenotypesFreq();
+        float mgf = Float.MAX_VALUE;
+        String mgfGenotype = null;
+        for (int code = 0; code < genotypeCodes.size(); code++) {
+            if (counts[code] == 0) {
+                continue;
+            }
+            Genotype genotype = new Genotype(genotypeStrings[code], variant.getReference(), variant.getAlternate());
+            stats.addGenotype(genotype, counts[code]);
+            if (missingAllelesInGenotype[code] == 0) {
+                float frequency = (float) counts[code] / calledGenotypes;
+                genotypesFreq.put(genotype, frequency);
+                if (frequency < mgf) {
+                    mgf = frequency;
+                    mgfGenotype = genotypeStrings[code];
+                }
+            }
+        }
+        if (mgfGenotype != null) {
+            stats.setMgf(mgf);
+            stats.setMgfGenotype(mgfGenotype);
+        }
+
+        return stats;
+    }
+
+    private int getGenotypeCode(String genotype) {
+        if (genotype == null) {
+            genotype = ".";
+        }
+        Integer code = genotypeCodes.get(genotype);
+        if (code == null) {
+            code = addGenotypeCode(genotype);
+        }
+        return code;
+    }
+
+    private int addGenotypeCode(String genotype) {
+        int code = genotypeCodes.size();
+        if (code == genotypeStrings.length) {
+            int capacity = code * 2;
+            genotypeStrings = Arrays.copyOf(genotypeStrings, capacity);
+            refAllelesInGenotype = Arrays.copyOf(refAllelesInGenotype, capacity);
+            altAllelesInGenotype = Arrays.copyOf(altAllelesInGenotype, capacity);
+            missingAllelesInGenotype = Arrays.copyOf(missingAllelesInGenotype, capacity);
+            for (int cohort = 0; cohort < genotypeCounts.length; cohort++) {
+                genotypeCounts[cohort] = Arrays.copyOf(genotypeCounts[cohort], capacity);
+            }
+        }
+
+        genotypeStrings[code] = genotype;
+        for (String allele : genotype.split("[|/]")) {
+            if (allele.equals("0")) {
+                refAllelesInGenotype[code]++;
+            } else if (allele.equals("1")) {
+                altAllelesInGenotype[code]++;
+            } else if (allele.equals(".") || allele.isEmpty()) {
+                missingAllelesInGenotype[code]++;
+            }
+            // other indexes belong to secondary alternates, not counted for the main reference/alternate pair
+        }
+        genotypeCodes.put(genotype, code);
+        return code;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.stats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Cohort definitions compiled against the sample positions of a file.
+ *
+ * Every cohort is stored as a {@link BitSet} over the sample indexes, and the bitsets are inverted into a per-sample
+ * list of cohort indexes. This way a single loop over the genotypes of a variant is enough to update the counters of
+ * every cohort: adding cohorts adds some increments per sample, but never another scan.
+ *
+ * Samples in a cohort that are not present in the file are ignored (and logged), so a pedigree covering several
+ * files can be used for all of them.
+ */
+public class SampleCohorts {
+    private static final Logger logger = LoggerFactory.getLogger(SampleCohorts.class);
+
+    public static final String ALL_COHORT = "ALL";
+
+    private static final int[] NO_COHORTS = new int[0];
+
+    private final String[] cohortNames;
+    private final BitSet[] cohortMasks;
+    private final int[] cohortSizes;
+    private final Map<String, int[]> cohortsBySampleName;
+
+    private SampleCohorts(String[] cohortNames, BitSet[] cohortMasks, Map<String, int[]> cohortsBySampleName) {
+        this.cohortNames = cohortNames;
+        this.cohortMasks = cohortMasks;
+        this.cohortsBySampleName = cohortsBySampleName;
+        this.cohortSizes = new int[cohortMasks.length];
+        for (int i = 0; i < cohortMasks.length; i++) {
+            cohortSizes[i] = cohortMasks[i].cardinality();
+        }
+    }
+
+    /**
+     * @param cohorts cohort name to sample names. An {@link #ALL_COHORT} including every sample is added if missing
+     * @param samplesPosition sample name to column index in the file, as in
+     *                        {@link org.opencb.biodata.models.variant.VariantSource#getSamplesPosition()}
+     */
+    public static SampleCohorts compile(Map<String, Set<String>> cohorts, Map<String, Integer> samplesPosition) {
+        Map<String, Set<String>> allCohorts = new LinkedHashMap<>();
+        if (!cohorts.containsKey(ALL_COHORT)) {
+            allCohorts.put(ALL_COHORT, samplesPosition.keySet());
+        }
+        allCohorts.putAll(cohorts);
+
+        String[] cohortNames = allCohorts.keySet().toArray(new String[allCohorts.size()]);
+        BitSet[] cohortMasks = new BitSet[cohortNames.length];
+        for (int cohort = 0; cohort < cohortNames.length; cohort++) {
+            BitSet mask = new BitSet(samplesPosition.size());
+            for (String sample : allCohorts.get(cohortNames[cohort])) {
+                Integer position = samplesPosition.get(sample);
+                if (position == null) {
+                    logger.warn("Sample {} from cohort {} is not present in the file, ignoring it", sample,
+                            cohortNames[cohort]);
+                } else {
+                    mask.set(position);
+                }
+            }
+            cohortMasks[cohort] = mask;
+        }
+
+        // invert the masks: for every sample, the list of cohorts it belongs to
+        Map<String, int[]> cohortsBySampleName = new HashMap<>(samplesPosition.size() * 2);
+        for (Map.Entry<String, Integer> sample : samplesPosition.entrySet()) {
+            int[] sampleCohorts = new int[cohortNames.length];
+            int count = 0;
+            for (int cohort = 0; cohort < cohortNames.length; cohort++) {
+                if (cohortMasks[cohort].get(sample.getValue())) {
+                    sampleCohorts[count++] = cohort;
+                }
+            }
+            cohortsBySampleName.put(sample.getKey(), count == 0 ? NO_COHORTS : Arrays.copyOf(sampleCohorts, count));
+        }
+
+        return new SampleCohorts(cohortNames, cohortMasks, cohortsBySampleName);
+    }
+
+    public int size() {
+        return cohortNames.length;
+    }
+
+    public String getCohortName(int cohort) {
+        return cohortNames[cohort];
+    }
+
+    public int getCohortSize(int cohort) {
+        return cohortSizes[cohort];
+    }
+
+    /**
+     * @return a copy of the sample index bitset of the cohort, or null if there is no such cohort
+     */
+    public BitSet getCohortMask(String cohortName) {
+        for (int cohort = 0; cohort < cohortNames.length; cohort++) {
+            if (cohortNames[cohort].equals(cohortName)) {
+                return (BitSet) cohortMasks[cohort].clone();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return indexes of the cohorts the sample belongs to. Never null, empty for unknown samples
+     */
+    public int[] getCohortsOfSample(String sampleName) {
+        int[] cohorts = cohortsBySampleName.get(sampleName);
+        return cohorts == null ? NO_COHORTS : cohorts;
+    }
+}
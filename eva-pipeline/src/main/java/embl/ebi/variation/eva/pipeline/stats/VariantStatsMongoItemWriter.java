@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.stats;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import embl.ebi.variation.eva.pipeline.MongoDBHelper;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantSourceEntry;
+import org.opencb.opencga.storage.mongodb.variant.DBObjectToVariantConverter;
+import org.opencb.opencga.storage.mongodb.variant.DBObjectToVariantStatsConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.util.List;
+
+/**
+ * Writes the cohort statistics of already loaded variants into their "st" field.
+ *
+ * The statistics of the same study and file are replaced, and all the updates of a chunk are sent in a single bulk
+ * operation.
+ */
+public class VariantStatsMongoItemWriter implements ItemWriter<List<Variant>> {
+    private static final Logger logger = LoggerFactory.getLogger(VariantStatsMongoItemWriter.class);
+
+    private final MongoOperations mongoOperations;
+    private final String collection;
+    private final String studyId;
+    private final String fileId;
+    private final DBObjectToVariantStatsConverter statsConverter;
+
+    public VariantStatsMongoItemWriter(MongoOperations mongoOperations, String collection, String studyId,
+                                       String fileId) {
+        this.mongoOperations = mongoOperations;
+        this.collection = collection;
+        this.studyId = studyId;
+        this.fileId = fileId;
+        this.statsConverter = new DBObjectToVariantStatsConverter();
+    }
+
+    @Override
+    public void write(List<? extends List<Variant>> variantLists) throws Exception {
+        DBCollection variantsCollection = mongoOperations.getCollection(collection);
+        BulkWriteOperation bulk = variantsCollection.initializeOrderedBulkOperation();
+        DBObject previousStats = new BasicDBObject(DBObjectToVariantConverter.STATS_FIELD,
+                new BasicDBObject("sid", studyId).append("fid", fileId));
+
+        int updates = 0;
+        for (List<Variant> variants : variantLists) {
+            for (Variant variant : variants) {
+                VariantSourceEntry sourceEntry = variant.getSourceEntry(fileId, studyId);
+                if (sourceEntry == null || sourceEntry.getCohortStats().isEmpty()) {
+                    continue;
+                }
+
+                List<DBObject> cohortStats = statsConverter.convertCohortsToStorageType(
+                        sourceEntry.getCohortStats(), studyId, fileId);
+                BasicDBObject find = new BasicDBObject("_id", MongoDBHelper.buildStorageId(variant.getChromosome(),
+                        variant.getStart(), variant.getReference(), variant.getAlternate()));
+
+                bulk.find(find).updateOne(new BasicDBObject("$pull", previousStats));
+                bulk.find(find).updateOne(new BasicDBObject("$push", new BasicDBObject(
+                        DBObjectToVariantConverter.STATS_FIELD, new BasicDBObject("$each", cohortStats))));
+                updates++;
+            }
+        }
+
+        if (updates > 0) {
+            logger.debug("Writing stats of {} variants", updates);
+            bulk.execute();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package embl.ebi.variation.eva.pipeline.steps;
+
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.MongoDBHelper;
+import embl.ebi.variation.eva.pipeline.annotation.GzipLazyResource;
+import embl.ebi.variation.eva.pipeline.jobs.VariantJobArgsConfig;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
+import embl.ebi.variation.eva.pipeline.stats.AggregatedVcfStatsProcessor;
+import embl.ebi.variation.eva.pipeline.stats.VariantStatsMongoItemWriter;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.mapping.PassThroughLineMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Step class that, for aggregated files:
+ * - READ: read the data lines of the input VCF
+ * - PROCESS: take the statistics of every cohort from the INFO column, using the mapping in "aggregatedMappingFile"
+ * - LOAD: write the statistics into the "st" field of the loaded variants, with one bulk operation per chunk
+ *
+ * The reader and processor are step scoped because the input and the VariantSource are only known when the step runs.
+ */
+
+@Configuration
+@EnableBatchProcessing
+@Import({VariantJobArgsConfig.class, MetricsConfiguration.class})
+public class VariantsAggregatedStatsLoad {
+
+    public static final String AGGREGATED_MAPPING_FILE = "aggregatedMappingFile";
+
+    @Autowired
+    private StepBuilderFactory steps;
+
+    @Autowired
+    private ObjectMap pipelineOptions;
+
+    @Autowired
+    private MongoClient mongoClient;
+
+    @Autowired
+    private StepMetricsListener stepMetricsListener;
+
+    @Autowired
+    private ObjectMap variantOptions;
+
+    @Bean
+    @Qualifier("aggregatedStatsLoadBatchStep")
+    public Step aggregatedStatsLoadBatchStep() throws IOException {
+        return steps.get("aggregatedStatsLoadBatchStep").<String, List<Variant>> chunk(pipelineOptions.getInt(VariantJobArgsConfig.CHUNK_SIZE))
+                .reader(aggregatedVcfReader())
+                .processor(aggregatedVcfStatsProcessor())
+                .writer(aggregatedStatsWriter())
+                .listener(stepMetricsListener)
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public FlatFileItemReader<String> aggregatedVcfReader() throws IOException {
+        String input = pipelineOptions.getString("input");
+        Resource resource = input.endsWith(".gz") ? new GzipLazyResource(input) : new FileSystemResource(input);
+        FlatFileItemReader<String> reader = new FlatFileItemReader<>();
+        reader.setResource(resource);
+        reader.setComments(new String[]{"#"});
+        reader.setLineMapper(new PassThroughLineMapper());
+        return reader;
+    }
+
+    @Bean
+    @StepScope
+    public AggregatedVcfStatsProcessor aggregatedVcfStatsProcessor() throws IOException {
+        VariantSource source = variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class);
+        return new AggregatedVcfStatsProcessor(source,
+                AggregatedVcfStatsProcessor.loadMapping(pipelineOptions.getString(AGGREGATED_MAPPING_FILE)));
+    }
+
+    @Bean
+    @StepScope
+    public VariantStatsMongoItemWriter aggregatedStatsWriter() {
+        VariantSource source = variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class);
+        return new VariantStatsMongoItemWriter(MongoDBHelper.getMongoOperations(mongoClient, pipelineOptions),
+                pipelineOptions.getString("dbCollectionVariantsName"), source.getStudyId(), source.getFileId());
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package embl.ebi.variation.eva.pipeline.steps;
 
+import embl.ebi.variation.eva.pipeline.cache.StepOutputCache;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
 import org.opencb.datastore.core.ObjectMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,7 +27,11 @@ import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -48,6 +54,14 @@ public class VariantsAnnotCreate implements Tasklet {
             logger.info("skipping annotation creation step, skipAnnotCreate is set to {} ",
                     pipelineOptions.getBoolean(SKIP_ANNOT_CREATE));
         } else {
+            StepOutputCache cache = StepOutputCache.fromOptions(pipelineOptions);
+            StepOutputCache.Key cacheKey = cache == null ? null : buildCacheKey();
+            List<Path> vepOutput = Collections.singletonList(Paths.get(pipelineOptions.getString("vepOutput")));
+            if (cache != null && cache.restore(cacheKey, vepOutput)) {
+                logger.info("Same VEP input and options as a previous annotation, skipping VEP");
+                return RepeatStatus.FINISHED;
+            }
+
             ProcessBuilder processBuilder = new ProcessBuilder("perl",
                     pipelineOptions.getString("vepPath"),
                     "--cache",
@@ -74,6 +88,7 @@ public class VariantsAnnotCreate implements Tasklet {
             
             int exitValue = process.waitFor();
             logger.info("Finishing read from VEP output, bytes written: " + written);
+            StepMetricsListener.addBytes(chunkContext, new File(pipelineOptions.getString("vepInput")).length(), written);
             
             if (exitValue > 0) {
                 String errorLog = pipelineOptions.getString("vepOutput") + ".errors.txt";
@@ -81,11 +96,28 @@ public class VariantsAnnotCreate implements Tasklet {
                 throw new Exception("Error while running VEP (exit status " + exitValue + "). See "
                         + errorLog  + " for the errors description from VEP.");
             }
+
+            if (cache != null) {
+                cache.store(cacheKey, vepOutput);
+            }
         }
 
         return RepeatStatus.FINISHED;
     }
 
+    /**
+     * The annotation depends on the variants to annotate and on the VEP version, cache and species
+     */
+    private StepOutputCache.Key buildCacheKey() throws IOException {
+        return StepOutputCache.key("annotationCreate")
+                .addFile(Paths.get(pipelineOptions.getString("vepInput")))
+                .addOption("vepPath", pipelineOptions.getString("vepPath"))
+                .addOption("vepCacheDirectory", pipelineOptions.getString("vepCacheDirectory"))
+                .addOption("vepCacheVersion", pipelineOptions.getString("vepCacheVersion"))
+                .addOption("vepSpecies", pipelineOptions.getString("vepSpecies"))
+                .addOption("vepFasta", pipelineOptions.getString("vepFasta"));
+    }
+
     /**
      * read all the inputStream and write it into the outputStream
      *
@@ -15,11 +15,18 @@
  */
 package embl.ebi.variation.eva.pipeline.steps;
 
+import com.mongodb.MongoClient;
 import com.mongodb.DBObject;
 import embl.ebi.variation.eva.pipeline.MongoDBHelper;
 import embl.ebi.variation.eva.pipeline.annotation.generateInput.VariantAnnotationItemProcessor;
 import embl.ebi.variation.eva.pipeline.annotation.generateInput.VariantWrapper;
+import embl.ebi.variation.eva.pipeline.async.AsyncItemProcessor;
+import embl.ebi.variation.eva.pipeline.async.AsyncItemWriter;
+import embl.ebi.variation.eva.pipeline.async.AsyncProcessingConfiguration;
+import embl.ebi.variation.eva.pipeline.async.PrefetchingItemReader;
 import embl.ebi.variation.eva.pipeline.jobs.VariantJobArgsConfig;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
 import org.opencb.datastore.core.ObjectMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,10 +44,12 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.domain.Sort;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * @author Diego Poggioli
@@ -64,7 +73,7 @@ import java.util.Map;
 
 @Configuration
 @EnableBatchProcessing
-@Import(VariantJobArgsConfig.class)
+@Import({VariantJobArgsConfig.class, MetricsConfiguration.class, AsyncProcessingConfiguration.class})
 public class VariantsAnnotGenerateInput {
 
     private static final Logger logger = LoggerFactory.getLogger(VariantsAnnotGenerateInput.class);
@@ -75,13 +84,36 @@ public class VariantsAnnotGenerateInput {
     @Autowired
     private ObjectMap pipelineOptions;
 
+    @Autowired
+    private MongoClient mongoClient;
+
+    @Autowired
+    private StepMetricsListener stepMetricsListener;
+
+    @Autowired
+    private TaskExecutor itemProcessingTaskExecutor;
+
+    /**
+     * With several "processingThreads" the variants are converted in parallel by an {@link AsyncItemProcessor}, and
+     * written in the same order by an {@link AsyncItemWriter}. With "prefetchSize" the next pages of variants are
+     * read from MongoDB while the current ones are processed.
+     */
     @Bean
     @Qualifier("variantsAnnotGenerateInputBatchStep")
     public Step variantsAnnotGenerateInputBatchStep() throws Exception {
-        return steps.get("variantsAnnotGenerateInputBatchStep").<DBObject, VariantWrapper> chunk(10)
-                .reader(variantReader())
+        if (AsyncProcessingConfiguration.isAsync(pipelineOptions)) {
+            return steps.get("variantsAnnotGenerateInputBatchStep").<DBObject, Future<VariantWrapper>> chunk(pipelineOptions.getInt(VariantJobArgsConfig.CHUNK_SIZE))
+                    .reader(PrefetchingItemReader.fromOptions(variantReader(), pipelineOptions))
+                    .processor(new AsyncItemProcessor<>(vepInputLineProcessor(), itemProcessingTaskExecutor))
+                    .writer(new AsyncItemWriter<>(vepInputWriter())).allowStartIfComplete(false)
+                    .listener(stepMetricsListener)
+                    .build();
+        }
+        return steps.get("variantsAnnotGenerateInputBatchStep").<DBObject, VariantWrapper> chunk(pipelineOptions.getInt(VariantJobArgsConfig.CHUNK_SIZE))
+                .reader(PrefetchingItemReader.fromOptions(variantReader(), pipelineOptions))
                 .processor(vepInputLineProcessor())
                 .writer(vepInputWriter()).allowStartIfComplete(false)
+                .listener(stepMetricsListener)
                 .build();
     }
 
@@ -93,7 +125,7 @@ public class VariantsAnnotGenerateInput {
         reader.setQuery("{ annot : { $exists : false } }");
         reader.setFields("{ chr : 1, start : 1, end : 1, ref : 1, alt : 1, type : 1}");
         reader.setTargetType(DBObject.class);
-        reader.setTemplate(MongoDBHelper.getMongoOperationsFromPipelineOptions(pipelineOptions));
+        reader.setTemplate(MongoDBHelper.getMongoOperations(mongoClient, pipelineOptions));
 
         Map<String, Sort.Direction> coordinatesSort = new HashMap<>();
         coordinatesSort.put("chr", Sort.Direction.ASC);
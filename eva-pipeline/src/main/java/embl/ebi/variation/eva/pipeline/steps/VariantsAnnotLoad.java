@@ -16,11 +16,21 @@
 
 package embl.ebi.variation.eva.pipeline.steps;
 
+import com.mongodb.MongoClient;
 import embl.ebi.variation.eva.pipeline.MongoDBHelper;
 import embl.ebi.variation.eva.pipeline.annotation.GzipLazyResource;
 import embl.ebi.variation.eva.pipeline.annotation.load.VariantAnnotationLineMapper;
 import embl.ebi.variation.eva.pipeline.annotation.load.VariantAnnotationMongoItemWriter;
+import embl.ebi.variation.eva.pipeline.async.AsyncItemProcessor;
+import embl.ebi.variation.eva.pipeline.async.AsyncItemWriter;
+import embl.ebi.variation.eva.pipeline.async.AsyncProcessingConfiguration;
+import embl.ebi.variation.eva.pipeline.async.LineMappingProcessor;
+import embl.ebi.variation.eva.pipeline.async.NumberedLine;
+import embl.ebi.variation.eva.pipeline.async.PrefetchingItemReader;
 import embl.ebi.variation.eva.pipeline.jobs.VariantJobArgsConfig;
+import embl.ebi.variation.eva.pipeline.metrics.MetricsConfiguration;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
+import embl.ebi.variation.eva.pipeline.listener.DeadLetterSkipListener;
 import embl.ebi.variation.eva.pipeline.listener.SkipCheckingListener;
 import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
 import org.opencb.datastore.core.ObjectMap;
@@ -37,9 +47,13 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.mongodb.core.MongoOperations;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Future;
 
 /**
  * @author Diego Poggioli
@@ -52,23 +66,55 @@ import java.io.IOException;
 
 @Configuration
 @EnableBatchProcessing
-@Import(VariantJobArgsConfig.class)
+@Import({VariantJobArgsConfig.class, MetricsConfiguration.class, AsyncProcessingConfiguration.class})
 public class VariantsAnnotLoad {
 
+    public static final String SKIP_LIMIT = "annotLoadSkipLimit";
+    public static final String DEAD_LETTER_FILE = "annotDeadLetterFile";
+
     @Autowired
     private StepBuilderFactory steps;
 
     @Autowired
     private ObjectMap pipelineOptions;
 
+    @Autowired
+    private MongoClient mongoClient;
+
+    @Autowired
+    private StepMetricsListener stepMetricsListener;
+
+    @Autowired
+    private TaskExecutor itemProcessingTaskExecutor;
+
+    /**
+     * With several "processingThreads" the reader only splits the VEP output in lines, which are parsed in parallel
+     * by an {@link AsyncItemProcessor}. The annotations are written in the order of the file, so the lines of the
+     * same variant are still merged as they come. A malformed line then fails when writing, and the chunk is retried
+     * line by line to skip it, with the same limit and dead-letter file.
+     */
     @Bean
     @Qualifier("variantAnnotLoadBatchStep")
     public Step variantAnnotLoadBatchStep() throws IOException {
-        return steps.get("variantAnnotLoadBatchStep").<VariantAnnotation, VariantAnnotation> chunk(10)
-                .reader(variantAnnotationReader())
+        if (AsyncProcessingConfiguration.isAsync(pipelineOptions)) {
+            return steps.get("variantAnnotLoadBatchStep").<NumberedLine, Future<VariantAnnotation>> chunk(pipelineOptions.getInt(VariantJobArgsConfig.CHUNK_SIZE))
+                    .reader(PrefetchingItemReader.fromOptions(vepOutputLineReader(), pipelineOptions))
+                    .processor(new AsyncItemProcessor<>(new LineMappingProcessor<>(new VariantAnnotationLineMapper()),
+                                                        itemProcessingTaskExecutor))
+                    .writer(new AsyncItemWriter<>(variantAnnotationWriter()))
+                    .faultTolerant().skipLimit(pipelineOptions.getInt(SKIP_LIMIT)).skip(FlatFileParseException.class)
+                    .listener(skipCheckingListener())
+                    .listener(annotationDeadLetterListener())
+                    .listener(stepMetricsListener)
+                    .build();
+        }
+        return steps.get("variantAnnotLoadBatchStep").<VariantAnnotation, VariantAnnotation> chunk(pipelineOptions.getInt(VariantJobArgsConfig.CHUNK_SIZE))
+                .reader(PrefetchingItemReader.fromOptions(variantAnnotationReader(), pipelineOptions))
                 .writer(variantAnnotationWriter())
-                .faultTolerant().skipLimit(50).skip(FlatFileParseException.class)
+                .faultTolerant().skipLimit(pipelineOptions.getInt(SKIP_LIMIT)).skip(FlatFileParseException.class)
                 .listener(skipCheckingListener())
+                .listener(annotationDeadLetterListener())
+                .listener(stepMetricsListener)
                 .build();
     }
 
@@ -81,9 +127,16 @@ public class VariantsAnnotLoad {
         return reader;
     }
 
+    private FlatFileItemReader<NumberedLine> vepOutputLineReader() throws IOException {
+        FlatFileItemReader<NumberedLine> reader = new FlatFileItemReader<>();
+        reader.setResource(new GzipLazyResource(pipelineOptions.getString("vepOutput")));
+        reader.setLineMapper(NumberedLine.MAPPER);
+        return reader;
+    }
+
     @Bean
     public ItemWriter<VariantAnnotation> variantAnnotationWriter(){
-        MongoOperations mongoOperations = MongoDBHelper.getMongoOperationsFromPipelineOptions(pipelineOptions);
+        MongoOperations mongoOperations = MongoDBHelper.getMongoOperations(mongoClient, pipelineOptions);
         MongoItemWriter<VariantAnnotation> writer = new VariantAnnotationMongoItemWriter(mongoOperations);
         writer.setCollection(pipelineOptions.getString("dbCollectionVariantsName"));
         writer.setTemplate(mongoOperations);
@@ -95,4 +148,21 @@ public class VariantsAnnotLoad {
         return new SkipCheckingListener();
     }
 
+    @Bean
+    public DeadLetterSkipListener annotationDeadLetterListener() {
+        return new DeadLetterSkipListener(getDeadLetterFile(pipelineOptions));
+    }
+
+    /**
+     * @return the file where the VEP output lines that could not be loaded are written, by default next to the VEP
+     * output
+     */
+    public static Path getDeadLetterFile(ObjectMap pipelineOptions) {
+        String deadLetterFile = pipelineOptions.getString(DEAD_LETTER_FILE);
+        if (deadLetterFile == null || deadLetterFile.isEmpty()) {
+            deadLetterFile = pipelineOptions.getString("vepOutput") + ".deadletter.json";
+        }
+        return Paths.get(deadLetterFile);
+    }
+
 }
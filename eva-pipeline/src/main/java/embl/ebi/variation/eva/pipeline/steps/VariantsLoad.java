@@ -15,6 +15,14 @@
  */
 package embl.ebi.variation.eva.pipeline.steps;
 
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.LoadedFileState;
+import embl.ebi.variation.eva.pipeline.MongoDBHelper;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
+import embl.ebi.variation.eva.pipeline.partition.PartitionOptions;
+import embl.ebi.variation.eva.pipeline.summary.StudySummary;
+import embl.ebi.variation.eva.pipeline.summary.StudySummaryBuilder;
+import org.opencb.biodata.models.variant.VariantSource;
 import org.opencb.datastore.core.ObjectMap;
 import org.opencb.opencga.storage.core.StorageManagerFactory;
 import org.opencb.opencga.storage.core.variant.VariantStorageManager;
@@ -25,9 +33,12 @@ import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -39,14 +50,21 @@ import java.nio.file.Paths;
 public class VariantsLoad implements Tasklet {
     private static final Logger logger = LoggerFactory.getLogger(VariantsLoad.class);
     public static final String SKIP_LOAD = "skipLoad";
+    public static final String SUMMARY_WINDOW_SIZE = "summaryWindowSize";
+    public static final String SUMMARY_COLLECTION = "dbCollectionSummaryName";
 
     @Autowired
     private ObjectMap variantOptions;
     @Autowired
     private ObjectMap pipelineOptions;
+    @Autowired
+    private MongoClient mongoClient;
 
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        // the options of the file of this partition, if running in a multi-file job
+        ObjectMap pipelineOptions = PartitionOptions.getPipelineOptions(this.pipelineOptions, chunkContext);
+        ObjectMap variantOptions = PartitionOptions.getVariantOptions(this.variantOptions, chunkContext);
 
         if (pipelineOptions.getBoolean(SKIP_LOAD)) {
             logger.info("skipping load step, skipLoad is set to {}", pipelineOptions.getBoolean(SKIP_LOAD));
@@ -67,6 +85,13 @@ public class VariantsLoad implements Tasklet {
             variantStorageManager.preLoad(transformedVariantsUri, outdirUri, variantOptions);
             logger.info("-- Load variants -- {}", nextFileUri);
             variantStorageManager.load(transformedVariantsUri, variantOptions);
+            StepMetricsListener.addBytes(chunkContext, Files.size(Paths.get(transformedVariantsUri)), 0);
+            logger.info("-- Summarize variants -- {}", nextFileUri);
+            saveSummary(Paths.get(transformedVariantsUri), pipelineOptions, variantOptions);
+            // only now the file is completely loaded, so a rerun of the same VCF can skip the load
+            JobExecution jobExecution = chunkContext.getStepContext().getStepExecution().getJobExecution();
+            LoadedFileState.fromOptions(mongoClient, pipelineOptions, variantOptions)
+                    .setChecksum(LoadedFileState.checksum(input, jobExecution));
 //          logger.info("-- PostLoad variants -- {}", nextFileUri);
 //          variantStorageManager.postLoad(transformedVariantsUri, outdirUri, variantOptions);
         }
@@ -74,6 +99,28 @@ public class VariantsLoad implements Tasklet {
         return RepeatStatus.FINISHED;
     }
 
+    /**
+     * Counts the loaded variants by chromosome, type and window, and replaces the summary of this study and file, so
+     * those numbers don't need a scan of the variants collection.
+     */
+    private void saveSummary(Path transformedVariants, ObjectMap pipelineOptions, ObjectMap variantOptions)
+            throws IOException {
+        String compressExtension = pipelineOptions.getString("compressExtension");
+        if (!compressExtension.isEmpty() && !compressExtension.equals(".gz")) {
+            logger.warn("Can't summarize variants compressed with {}, skipping summary", compressExtension);
+            return;
+        }
+
+        VariantSource source = variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class);
+        StudySummary summary = new StudySummaryBuilder().build(transformedVariants, source.getStudyId(),
+                source.getFileId(), pipelineOptions.getInt(SUMMARY_WINDOW_SIZE));
+
+        // same database the variants were loaded into
+        MongoOperations mongoOperations = MongoDBHelper.getMongoOperations(
+                mongoClient, variantOptions.getString(VariantStorageManager.DB_NAME), pipelineOptions);
+        mongoOperations.getCollection(pipelineOptions.getString(SUMMARY_COLLECTION)).save(summary.toDBObject());
+    }
+
     public static URI createUri(String input) throws URISyntaxException {
         URI sourceUri = new URI(input);
         if (sourceUri.getScheme() == null || sourceUri.getScheme().isEmpty()) {
@@ -15,6 +15,12 @@
  */
 package embl.ebi.variation.eva.pipeline.steps;
 
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.LoadedFileState;
+import embl.ebi.variation.eva.pipeline.cache.StepOutputCache;
+import embl.ebi.variation.eva.pipeline.partition.PartitionOptions;
+import embl.ebi.variation.eva.pipeline.stats.CohortDefinitions;
+import embl.ebi.variation.eva.pipeline.stats.CohortStatisticsManager;
 import org.opencb.biodata.models.variant.VariantSource;
 import org.opencb.datastore.core.ObjectMap;
 import org.opencb.datastore.core.QueryOptions;
@@ -30,9 +36,16 @@ import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by jmmut on 2015-11-10.
@@ -42,6 +55,7 @@ import java.nio.file.Paths;
 public class VariantsStatsCreate implements Tasklet {
     private static final Logger logger = LoggerFactory.getLogger(VariantsStatsCreate.class);
     public static final String SKIP_STATS_CREATE = "skipStatsCreate";
+    public static final String COHORTS = "cohorts";
 
     @Autowired
     private ObjectMap variantOptions;
@@ -49,10 +63,14 @@ public class VariantsStatsCreate implements Tasklet {
     @Autowired
     private ObjectMap pipelineOptions;
 
+    @Autowired
+    private MongoClient mongoClient;
+
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
-//                HashMap<String, Set<String>> samples = new HashMap<>(); // TODO fill properly. if this is null overwrite will take on
-//                samples.put("SOME", new HashSet<>(Arrays.asList("HG00096", "HG00097")));
+        // the options of the file of this partition, if running in a multi-file job
+        ObjectMap pipelineOptions = PartitionOptions.getPipelineOptions(this.pipelineOptions, chunkContext);
+        ObjectMap variantOptions = PartitionOptions.getVariantOptions(this.variantOptions, chunkContext);
         //JobParameters parameters = chunkContext.getStepContext().getStepExecution().getJobParameters();
 
         if (pipelineOptions.getBoolean(SKIP_STATS_CREATE)) {
@@ -64,16 +82,75 @@ public class VariantsStatsCreate implements Tasklet {
             URI outdirUri = createUri(pipelineOptions.getString("outputDir"));
             URI statsOutputUri = outdirUri.resolve(VariantStorageManager.buildFilename(variantSource));
 
-            VariantStatisticsManager variantStatisticsManager = new VariantStatisticsManager();
             QueryOptions statsOptions = new QueryOptions(variantOptions);
 
+            Map<String, Set<String>> cohorts = CohortDefinitions.load(pipelineOptions.getString(COHORTS),
+                    pipelineOptions.getString("pedigree"));
+
+            List<Path> outputs = Arrays.asList(
+                    Paths.get(statsOutputUri.getPath() + CohortStatisticsManager.VARIANT_STATS_SUFFIX),
+                    Paths.get(statsOutputUri.getPath() + CohortStatisticsManager.SOURCE_STATS_SUFFIX));
+            StepOutputCache cache = StepOutputCache.fromOptions(pipelineOptions);
+            StepOutputCache.Key cacheKey = null;
+            if (cache != null) {
+                String loadedChecksum = LoadedFileState.fromOptions(mongoClient, pipelineOptions, variantOptions)
+                        .getChecksum();
+                cacheKey = buildCacheKey(pipelineOptions, variantOptions, loadedChecksum);
+            }
+            if (cacheKey != null && cache.restore(cacheKey, outputs)) {
+                logger.info("Same loaded file and cohorts as a previous stats creation, skipping it");
+                return RepeatStatus.FINISHED;
+            }
+
             // actual stats creation
-            variantStatisticsManager.createStats(dbAdaptor, statsOutputUri, null, statsOptions);    // TODO allow subset of samples
+            if (cohorts.isEmpty()) {
+                VariantStatisticsManager variantStatisticsManager = new VariantStatisticsManager();
+                variantStatisticsManager.createStats(dbAdaptor, statsOutputUri, null, statsOptions);
+            } else {
+                logger.info("Creating stats for cohorts {}", cohorts.keySet());
+                CohortStatisticsManager cohortStatisticsManager = new CohortStatisticsManager();
+                cohortStatisticsManager.createStats(dbAdaptor, statsOutputUri, variantSource, cohorts, statsOptions);
+            }
+
+            if (cacheKey != null) {
+                cache.store(cacheKey, outputs);
+            }
         }
 
         return RepeatStatus.FINISHED;
     }
 
+    /**
+     * The statistics of a file are calculated from its loaded variants, so they are identified by the database, the
+     * checksum of the VCF recorded when the file was loaded there, and the transformed file it was loaded from, along
+     * with the description of the file and the cohorts
+     *
+     * @param loadedChecksum see {@link LoadedFileState#getChecksum()}
+     * @return null if the file is not marked as loaded or the transformed file is not available, so the statistics
+     * can't be cached
+     */
+    static StepOutputCache.Key buildCacheKey(ObjectMap pipelineOptions, ObjectMap variantOptions,
+                                             String loadedChecksum) throws IOException, URISyntaxException {
+        if (loadedChecksum == null) {
+            logger.info("The file is not marked as loaded in the database, statistics won't be cached");
+            return null;
+        }
+        Path input = Paths.get(createUri(pipelineOptions.getString("input")).getPath());
+        Path transformedVariants = Paths.get(createUri(pipelineOptions.getString("outputDir")).getPath()).resolve(
+                input.getFileName().toString() + ".variants.json" + pipelineOptions.getString("compressExtension"));
+        if (!Files.isRegularFile(transformedVariants)) {
+            logger.info("Transformed file {} not found, statistics won't be cached", transformedVariants);
+            return null;
+        }
+        return StepOutputCache.key("statsCreate")
+                .addOption(VariantStorageManager.DB_NAME, variantOptions.getString(VariantStorageManager.DB_NAME))
+                .addOption(LoadedFileState.CHECKSUM_FIELD, loadedChecksum)
+                .addFile(transformedVariants)
+                .addSource(variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class))
+                .addFileOrOption(COHORTS, pipelineOptions.getString(COHORTS))
+                .addFileOrOption("pedigree", pipelineOptions.getString("pedigree"));
+    }
+
     private static URI createUri(String input) throws URISyntaxException {
         URI sourceUri = new URI(input);
         if (sourceUri.getScheme() == null || sourceUri.getScheme().isEmpty()) {
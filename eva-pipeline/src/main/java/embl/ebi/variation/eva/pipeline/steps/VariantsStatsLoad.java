@@ -15,6 +15,9 @@
  */
 package embl.ebi.variation.eva.pipeline.steps;
 
+import com.mongodb.MongoClient;
+import embl.ebi.variation.eva.pipeline.LoadedFileState;
+import embl.ebi.variation.eva.pipeline.partition.PartitionOptions;
 import org.opencb.biodata.models.variant.VariantSource;
 import org.opencb.datastore.core.ObjectMap;
 import org.opencb.datastore.core.QueryOptions;
@@ -49,8 +52,14 @@ public class VariantsStatsLoad implements Tasklet {
     @Autowired
     private ObjectMap pipelineOptions;
 
+    @Autowired
+    private MongoClient mongoClient;
+
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        // the options of the file of this partition, if running in a multi-file job
+        ObjectMap pipelineOptions = PartitionOptions.getPipelineOptions(this.pipelineOptions, chunkContext);
+        ObjectMap variantOptions = PartitionOptions.getVariantOptions(this.variantOptions, chunkContext);
 
         if (pipelineOptions.getBoolean(SKIP_STATS_LOAD)) {
             logger.info("skipping stats loading");
@@ -65,6 +74,13 @@ public class VariantsStatsLoad implements Tasklet {
 
             // actual stats load
             variantStatisticsManager.loadStats(dbAdaptor, statsOutputUri, statsOptions);
+
+            // the statistics are up to date with the loaded variants, until another VCF is loaded for this file
+            LoadedFileState fileState = LoadedFileState.fromOptions(mongoClient, pipelineOptions, variantOptions);
+            String fileChecksum = fileState.getChecksum();
+            if (fileChecksum != null) {
+                fileState.setStatsChecksum(LoadedFileState.statsChecksum(fileChecksum, pipelineOptions));
+            }
         }
 
         return RepeatStatus.FINISHED;
@@ -15,20 +15,31 @@
  */
 package embl.ebi.variation.eva.pipeline.steps;
 
+import embl.ebi.variation.eva.pipeline.LoadedFileState;
+import embl.ebi.variation.eva.pipeline.cache.StepOutputCache;
+import embl.ebi.variation.eva.pipeline.metrics.StepMetricsListener;
+import embl.ebi.variation.eva.pipeline.partition.PartitionOptions;
+import org.opencb.biodata.models.variant.VariantSource;
 import org.opencb.datastore.core.ObjectMap;
 import org.opencb.opencga.storage.core.StorageManagerFactory;
 import org.opencb.opencga.storage.core.variant.VariantStorageManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.StepContribution;
 import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Created by jmmut on 2015-11-10.
@@ -46,6 +57,9 @@ public class VariantsTransform implements Tasklet {
 
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        // the options of the file of this partition, if running in a multi-file job
+        ObjectMap pipelineOptions = PartitionOptions.getPipelineOptions(this.pipelineOptions, chunkContext);
+        ObjectMap variantOptions = PartitionOptions.getVariantOptions(this.variantOptions, chunkContext);
 
         URI outdirUri = createUri(pipelineOptions.getString("outputDir"));
         URI nextFileUri = createUri(pipelineOptions.getString("input"));
@@ -53,6 +67,25 @@ public class VariantsTransform implements Tasklet {
 
         logger.info("Transform file {} to {}", pipelineOptions.getString("input"), pipelineOptions.getString("outputDir"));
 
+        Path input = Paths.get(nextFileUri.getPath());
+        String compressExtension = pipelineOptions.getString("compressExtension");
+        Path output = Paths.get(outdirUri.getPath());
+        Path transformedVariants = output.resolve(input.getFileName().toString() + ".variants.json" + compressExtension);
+        Path transformedFile = output.resolve(input.getFileName().toString() + ".file.json" + compressExtension);
+        List<Path> outputs = Arrays.asList(transformedVariants, transformedFile);
+
+        StepOutputCache cache = StepOutputCache.fromOptions(pipelineOptions);
+        StepOutputCache.Key cacheKey = null;
+        if (cache != null) {
+            JobExecution jobExecution = chunkContext.getStepContext().getStepExecution().getJobExecution();
+            cacheKey = buildCacheKey(LoadedFileState.checksum(input, jobExecution), pipelineOptions, variantOptions);
+            if (cache.restore(cacheKey, outputs)) {
+                logger.info("Same file and options as a previous transform, skipping it");
+                StepMetricsListener.addBytes(chunkContext, fileSize(input), fileSize(transformedVariants));
+                return RepeatStatus.FINISHED;
+            }
+        }
+
         logger.info("Extract variants '{}'", nextFileUri);
         VariantStorageManager variantStorageManager = StorageManagerFactory.getVariantStorageManager();
         variantStorageManager.extract(nextFileUri, outdirUri, variantOptions);
@@ -63,9 +96,38 @@ public class VariantsTransform implements Tasklet {
         variantStorageManager.transform(nextFileUri, pedigreeUri, outdirUri, variantOptions);
         logger.info("PostTransform variants '{}'", nextFileUri);
         variantStorageManager.postTransform(nextFileUri, variantOptions);
+
+        if (cache != null) {
+            cache.store(cacheKey, outputs);
+        }
+
+        StepMetricsListener.addBytes(chunkContext, fileSize(input), fileSize(transformedVariants));
         return RepeatStatus.FINISHED;
     }
 
+    /**
+     * The transformed files depend on the content of the VCF and the pedigree, the description of the file, and the
+     * options about what is kept from the VCF. The content of the VCF is given by its checksum, kept for the rest of
+     * the job so the load doesn't read the VCF again
+     */
+    private static StepOutputCache.Key buildCacheKey(String inputChecksum, ObjectMap pipelineOptions,
+                                                     ObjectMap variantOptions) throws IOException {
+        return StepOutputCache.key("transform")
+                .addOption(LoadedFileState.CHECKSUM_FIELD, inputChecksum)
+                .addFileOrOption("pedigree", pipelineOptions.getString("pedigree"))
+                .addSource(variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class))
+                .addOption(VariantStorageManager.INCLUDE_SRC, variantOptions.get(VariantStorageManager.INCLUDE_SRC))
+                .addOption(VariantStorageManager.INCLUDE_SAMPLES,
+                        variantOptions.getBoolean(VariantStorageManager.INCLUDE_SAMPLES))
+                .addOption(VariantStorageManager.COMPRESS_GENOTYPES,
+                        variantOptions.getBoolean(VariantStorageManager.COMPRESS_GENOTYPES))
+                .addOption("compressExtension", pipelineOptions.getString("compressExtension"));
+    }
+
+    private static long fileSize(Path file) throws IOException {
+        return Files.exists(file) ? Files.size(file) : 0;
+    }
+
     public static URI createUri(String input) throws URISyntaxException {
         URI sourceUri = new URI(input);
         if (sourceUri.getScheme() == null || sourceUri.getScheme().isEmpty()) {
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.summary;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of the variants of a file that is updated one variant at a time, without keeping the variants:
+ * - exact counts per chromosome and per variant type
+ * - number of variants per window of {@link #getWindowSize()} bases, for every chromosome
+ * - estimated number of distinct positions, with a {@link HyperLogLog}
+ *
+ * Chromosome names may contain dots, so they are stored as values and not as keys of the document.
+ */
+public class StudySummary {
+
+    public static final String ID_FIELD = "_id";
+    public static final String STUDY_FIELD = "sid";
+    public static final String FILE_FIELD = "fid";
+    public static final String TOTAL_FIELD = "total";
+    public static final String TYPES_FIELD = "types";
+    public static final String CHROMOSOMES_FIELD = "chromosomes";
+    public static final String CHROMOSOME_FIELD = "chr";
+    public static final String COUNT_FIELD = "count";
+    public static final String WINDOW_SIZE_FIELD = "windowSize";
+    public static final String DENSITY_FIELD = "density";
+    public static final String DISTINCT_POSITIONS_FIELD = "distinctPositions";
+    public static final String HLL_FIELD = "hll";
+
+    private static final int INITIAL_WINDOWS = 64;
+
+    private final String studyId;
+    private final String fileId;
+    private final int windowSize;
+
+    private long total;
+    private final Map<String, Long> typeCounts;
+    private final Map<String, ChromosomeSummary> chromosomes;
+    private final HyperLogLog distinctPositions;
+
+    public StudySummary(String studyId, String fileId, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("The window size must be positive, not " + windowSize);
+        }
+        this.studyId = studyId;
+        this.fileId = fileId;
+        this.windowSize = windowSize;
+        this.typeCounts = new TreeMap<>();
+        this.chromosomes = new TreeMap<>();
+        this.distinctPositions = new HyperLogLog();
+    }
+
+    public void add(String chromosome, int start, String type) {
+        total++;
+        Long typeCount = typeCounts.get(type);
+        typeCounts.put(type, typeCount == null ? 1 : typeCount + 1);
+
+        ChromosomeSummary chromosomeSummary = chromosomes.get(chromosome);
+        if (chromosomeSummary == null) {
+            chromosomeSummary = new ChromosomeSummary();
+            chromosomes.put(chromosome, chromosomeSummary);
+        }
+        chromosomeSummary.add(start / windowSize);
+
+        long positionKey = ((long) chromosome.hashCode() << 32) | (start & 0xffffffffL);
+        distinctPositions.addHash(HyperLogLog.hash(positionKey));
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<String, Long> getTypeCounts() {
+        return typeCounts;
+    }
+
+    public long getChromosomeCount(String chromosome) {
+        ChromosomeSummary chromosomeSummary = chromosomes.get(chromosome);
+        return chromosomeSummary == null ? 0 : chromosomeSummary.count;
+    }
+
+    /**
+     * @return number of variants in every window of the chromosome, the first one starting at position 0
+     */
+    public long[] getDensity(String chromosome) {
+        ChromosomeSummary chromosomeSummary = chromosomes.get(chromosome);
+        return chromosomeSummary == null ? new long[0] : chromosomeSummary.getDensity();
+    }
+
+    public long getDistinctPositions() {
+        return distinctPositions.estimate();
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public String getId() {
+        return studyId + "_" + fileId;
+    }
+
+    public DBObject toDBObject() {
+        BasicDBList chromosomeList = new BasicDBList();
+        for (Map.Entry<String, ChromosomeSummary> chromosome : chromosomes.entrySet()) {
+            BasicDBList density = new BasicDBList();
+            for (long windowCount : chromosome.getValue().getDensity()) {
+                density.add(windowCount);
+            }
+            chromosomeList.add(new BasicDBObject(CHROMOSOME_FIELD, chromosome.getKey())
+                    .append(COUNT_FIELD, chromosome.getValue().count)
+                    .append(DENSITY_FIELD, density));
+        }
+
+        return new BasicDBObject(ID_FIELD, getId())
+                .append(STUDY_FIELD, studyId)
+                .append(FILE_FIELD, fileId)
+                .append(TOTAL_FIELD, total)
+                .append(TYPES_FIELD, new BasicDBObject(typeCounts))
+                .append(WINDOW_SIZE_FIELD, windowSize)
+                .append(CHROMOSOMES_FIELD, chromosomeList)
+                .append(DISTINCT_POSITIONS_FIELD, distinctPositions.estimate())
+                .append(HLL_FIELD, distinctPositions.getRegisters());
+    }
+
+    private static class ChromosomeSummary {
+        private long count;
+        private long[] windows = new long[INITIAL_WINDOWS];
+        private int usedWindows;
+
+        void add(int window) {
+            if (window >= windows.length) {
+                windows = Arrays.copyOf(windows, Math.max(window + 1, windows.length * 2));
+            }
+            windows[window]++;
+            usedWindows = Math.max(usedWindows, window + 1);
+            count++;
+        }
+
+        long[] getDensity() {
+            return Arrays.copyOf(windows, usedWindows);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.summary;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Builds a {@link StudySummary} streaming the transformed variants file (one JSON variant per line) that is loaded
+ * into the variants collection, so the summary describes exactly what was loaded.
+ *
+ * Only the chromosome, start and type of every variant are read: the rest of the document (e.g. the data of every
+ * sample) is skipped by the parser without building any object from it.
+ */
+public class StudySummaryBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(StudySummaryBuilder.class);
+
+    private static final String CHROMOSOME_FIELD = "chromosome";
+    private static final String START_FIELD = "start";
+    private static final String TYPE_FIELD = "type";
+
+    private final JsonFactory jsonFactory;
+
+    public StudySummaryBuilder() {
+        jsonFactory = new JsonFactory();
+    }
+
+    public StudySummary build(Path transformedVariants, String studyId, String fileId, int windowSize)
+            throws IOException {
+        StudySummary summary = new StudySummary(studyId, fileId, windowSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(transformedVariants)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                addVariant(summary, line);
+            }
+        }
+
+        logger.info("Summary of {}: {} variants, ~{} distinct positions", transformedVariants, summary.getTotal(),
+                summary.getDistinctPositions());
+        return summary;
+    }
+
+    private void addVariant(StudySummary summary, String line) throws IOException {
+        String chromosome = null;
+        Integer start = null;
+        String type = null;
+
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("A variant should be a JSON object: " + line);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME
+                    && (chromosome == null || start == null || type == null)) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (CHROMOSOME_FIELD.equals(field)) {
+                    chromosome = parser.getValueAsString();
+                } else if (START_FIELD.equals(field)) {
+                    start = parser.getValueAsInt();
+                } else if (TYPE_FIELD.equals(field)) {
+                    type = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        if (chromosome == null || start == null || type == null) {
+            throw new IOException("A variant should have a chromosome, start and type: " + line);
+        }
+        summary.add(chromosome, start, type);
+    }
+
+    private InputStream open(Path transformedVariants) throws IOException {
+        InputStream inputStream = Files.newInputStream(transformedVariants);
+        if (transformedVariants.toString().endsWith(".gz")) {
+            return new GZIPInputStream(inputStream);
+        }
+        return inputStream;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+import org.springframework.batch.core.JobExecution;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test {@link AnnotationDecider}
+ */
+public class AnnotationDeciderTest {
+
+    @Test
+    public void annotationIsSkippedWhenAllTheVariantsAreAnnotated() {
+        assertEquals(OptionalDecider.SKIP_STEP, decide(false));
+        assertEquals(OptionalDecider.DO_STEP, decide(true));
+    }
+
+    @Test
+    public void onlyTheVariantsOfTheFileAreChecked() {
+        DBObject query = new AnnotationDecider(new ObjectMap(), variantOptions(), null).notAnnotatedQuery();
+        assertEquals(new BasicDBObject("$elemMatch", new BasicDBObject("sid", "7").append("fid", "5")),
+                     query.get("files"));
+        assertEquals(new BasicDBObject("$exists", false), query.get("annot"));
+    }
+
+    @Test
+    public void theVariantsOfAllTheGivenFilesAreChecked() {
+        DBObject query = new AnnotationDecider(new ObjectMap(), variantOptions(), null, () -> Arrays.asList("5", "6"))
+                .notAnnotatedQuery();
+        assertEquals(new BasicDBObject("$elemMatch", new BasicDBObject("sid", "7")
+                             .append("fid", new BasicDBObject("$in", Arrays.asList("5", "6")))),
+                     query.get("files"));
+        assertEquals(new BasicDBObject("$exists", false), query.get("annot"));
+    }
+
+    private ObjectMap variantOptions() {
+        ObjectMap variantOptions = new ObjectMap();
+        variantOptions.put(VariantStorageManager.VARIANT_SOURCE, new VariantSource("file.vcf", "5", "7", "study"));
+        return variantOptions;
+    }
+
+    private String decide(boolean hasVariantsWithoutAnnotation) {
+        AnnotationDecider decider = new AnnotationDecider(new ObjectMap(), new ObjectMap(), null) {
+            @Override
+            protected boolean hasVariantsWithoutAnnotation() {
+                return hasVariantsWithoutAnnotation;
+            }
+        };
+        return decider.decide(new JobExecution(1L), null).getName();
+    }
+}
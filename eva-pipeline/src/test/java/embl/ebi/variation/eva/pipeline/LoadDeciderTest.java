@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline;
+
+import embl.ebi.variation.eva.pipeline.steps.VariantsLoad;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.batch.core.JobExecution;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test {@link LoadDecider}
+ */
+public class LoadDeciderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path vcf;
+    private ObjectMap pipelineOptions;
+    private JobExecution jobExecution;
+
+    @Before
+    public void setUp() throws IOException {
+        vcf = temporaryFolder.newFile("file.vcf").toPath();
+        Files.write(vcf, Collections.singletonList("##fileformat=VCFv4.1"), StandardCharsets.UTF_8);
+        pipelineOptions = new ObjectMap();
+        pipelineOptions.put(VariantsLoad.SKIP_LOAD, "false");
+        pipelineOptions.put("input", vcf.toUri().toString());
+        jobExecution = new JobExecution(1L);
+    }
+
+    @Test
+    public void skipLoadDoesNotLookIntoTheDatabase() {
+        pipelineOptions.put(VariantsLoad.SKIP_LOAD, "true");
+        assertEquals(OptionalDecider.SKIP_STEP, decider(null, true).decide(jobExecution, null).getName());
+    }
+
+    @Test
+    public void fileNotLoadedIsLoaded() {
+        assertEquals(OptionalDecider.DO_STEP, decider(null, false).decide(jobExecution, null).getName());
+    }
+
+    @Test
+    public void fileLoadedFromTheSameVcfIsSkipped() throws IOException {
+        String checksum = LoadedFileState.checksum(vcf);
+        assertEquals(OptionalDecider.SKIP_STEP, decider(checksum, false).decide(jobExecution, null).getName());
+        assertEquals(OptionalDecider.SKIP_STEP,
+                     jobExecution.getExecutionContext().getString(OptionalDecider.DECISION_PREFIX + "load"));
+    }
+
+    @Test
+    public void fileLoadedFromAnotherVcfIsLoaded() {
+        assertEquals(OptionalDecider.DO_STEP, decider("other", false).decide(jobExecution, null).getName());
+    }
+
+    @Test
+    public void checksumIsOnlyCalculatedOncePerJob() throws IOException {
+        String checksum = LoadedFileState.checksum(vcf, jobExecution);
+        String key = LoadedFileState.INPUT_CHECKSUM_PREFIX + vcf.toAbsolutePath();
+        String kept = jobExecution.getExecutionContext().getString(key);
+        assertTrue(kept.endsWith(checksum));
+
+        // a different value with the same size and modification time of the file is not calculated again
+        String version = kept.substring(0, kept.length() - checksum.length());
+        jobExecution.getExecutionContext().putString(key, version + "kept");
+        assertEquals(OptionalDecider.SKIP_STEP, decider("kept", false).decide(jobExecution, null).getName());
+    }
+
+    @Test
+    public void checksumIsCalculatedAgainIfTheFileChanged() throws IOException {
+        LoadedFileState.checksum(vcf, jobExecution);
+        Files.write(vcf, Arrays.asList("##fileformat=VCFv4.1", "#CHROM"), StandardCharsets.UTF_8);
+        assertEquals(LoadedFileState.checksum(vcf), LoadedFileState.checksum(vcf, jobExecution));
+    }
+
+    private LoadDecider decider(String loadedChecksum, boolean failIfAsked) {
+        return new LoadDecider(pipelineOptions, new ObjectMap(), null) {
+            @Override
+            protected LoadedFileState loadedFileState() {
+                if (failIfAsked) {
+                    throw new AssertionError("The database should not be asked");
+                }
+                return fileState(loadedChecksum, null);
+            }
+        };
+    }
+
+    static LoadedFileState fileState(String checksum, String statsChecksum) {
+        return new LoadedFileState(null, new VariantSource("file.vcf", "1", "1", "study")) {
+            @Override
+            public String getChecksum() {
+                return checksum;
+            }
+
+            @Override
+            public String getStatsChecksum() {
+                return statsChecksum;
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline;
+
+import embl.ebi.variation.eva.pipeline.steps.VariantsStatsCreate;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+import org.springframework.batch.core.JobExecution;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test {@link StatsDecider}
+ */
+public class StatsDeciderTest {
+
+    private ObjectMap pipelineOptions;
+    private ObjectMap variantOptions;
+
+    @Before
+    public void setUp() {
+        pipelineOptions = new ObjectMap();
+        pipelineOptions.put(VariantsStatsCreate.COHORTS, "ALL:s1,s2");
+        variantOptions = new ObjectMap();
+    }
+
+    @Test
+    public void overwriteStatsAlwaysCalculatesThem() {
+        variantOptions.put(VariantStorageManager.OVERWRITE_STATS, true);
+        assertEquals(OptionalDecider.DO_STEP, decide(null, null));
+    }
+
+    @Test
+    public void filesWithoutChecksumGetStatistics() {
+        assertEquals(OptionalDecider.DO_STEP, decide(null, null));
+    }
+
+    @Test
+    public void statisticsOfTheSameVariantsAndCohortsAreSkipped() throws IOException {
+        String statsChecksum = LoadedFileState.statsChecksum("loaded", pipelineOptions);
+        assertEquals(OptionalDecider.SKIP_STEP, decide("loaded", statsChecksum));
+    }
+
+    @Test
+    public void statisticsOfOtherCohortsAreCalculated() throws IOException {
+        String statsChecksum = LoadedFileState.statsChecksum("loaded", pipelineOptions);
+        pipelineOptions.put(VariantsStatsCreate.COHORTS, "ALL:s1,s2,s3");
+        assertEquals(OptionalDecider.DO_STEP, decide("loaded", statsChecksum));
+    }
+
+    @Test
+    public void statisticsOfOtherVariantsAreCalculated() throws IOException {
+        String statsChecksum = LoadedFileState.statsChecksum("loaded", pipelineOptions);
+        assertEquals(OptionalDecider.DO_STEP, decide("reloaded", statsChecksum));
+    }
+
+    private String decide(String checksum, String statsChecksum) {
+        StatsDecider decider = new StatsDecider(pipelineOptions, variantOptions, null) {
+            @Override
+            protected LoadedFileState loadedFileState() {
+                return LoadDeciderTest.fileState(checksum, statsChecksum);
+            }
+        };
+        return decider.decide(new JobExecution(1L), null).getName();
+    }
+}
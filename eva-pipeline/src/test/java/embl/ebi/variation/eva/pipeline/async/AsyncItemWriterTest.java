@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.async;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Test {@link AsyncItemProcessor}, {@link AsyncItemWriter} and {@link LineMappingProcessor}
+ */
+public class AsyncItemWriterTest {
+
+    private ThreadPoolTaskExecutor taskExecutor;
+
+    @Before
+    public void setUp() {
+        taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(4);
+        taskExecutor.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        taskExecutor.shutdown();
+    }
+
+    @Test
+    public void itemsAreWrittenInReadOrder() throws Exception {
+        // the first items take longer, so they finish last
+        AsyncItemProcessor<Integer, Integer> processor = new AsyncItemProcessor<>(item -> {
+            Thread.sleep(10 * (6 - item));
+            return item == 0 || item == 3 ? null : item * 10;
+        }, taskExecutor);
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(processor.process(i));
+        }
+
+        List<Integer> written = new ArrayList<>();
+        new AsyncItemWriter<Integer>(written::addAll).write(futures);
+
+        // 0 and 3 are filtered
+        assertEquals(4, written.size());
+        assertEquals(Integer.valueOf(10), written.get(0));
+        assertEquals(Integer.valueOf(20), written.get(1));
+        assertEquals(Integer.valueOf(40), written.get(2));
+        assertEquals(Integer.valueOf(50), written.get(3));
+    }
+
+    @Test
+    public void parseErrorsAreThrownWhenWriting() throws Exception {
+        AsyncItemProcessor<NumberedLine, Integer> processor = new AsyncItemProcessor<>(
+                new LineMappingProcessor<>((line, lineNumber) -> Integer.valueOf(line)), taskExecutor);
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        futures.add(processor.process(new NumberedLine("1", 1)));
+        futures.add(processor.process(new NumberedLine("two", 2)));
+
+        List<Integer> written = new ArrayList<>();
+        try {
+            new AsyncItemWriter<Integer>(written::addAll).write(futures);
+            fail("The malformed line should fail the write");
+        } catch (FlatFileParseException e) {
+            assertEquals("two", e.getInput());
+            assertEquals(2, e.getLineNumber());
+        }
+        assertEquals(0, written.size());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.async;
+
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Test {@link PrefetchingItemReader}
+ */
+public class PrefetchingItemReaderTest {
+
+    @Test
+    public void onlyTheConsumedItemsAreSavedForRestarts() throws Exception {
+        PrefetchingItemReader<Integer> reader = new PrefetchingItemReader<>(new NumbersReader(10, -1), 5);
+        ExecutionContext executionContext = new ExecutionContext();
+        reader.open(executionContext);
+        assertEquals(Integer.valueOf(0), reader.read());
+        assertEquals(Integer.valueOf(1), reader.read());
+        assertEquals(Integer.valueOf(2), reader.read());
+
+        // let the background thread fill the queue
+        Thread.sleep(100);
+        reader.update(executionContext);
+        reader.close();
+        assertEquals(3, executionContext.getInt("numbers.read.count"));
+
+        PrefetchingItemReader<Integer> restarted = new PrefetchingItemReader<>(new NumbersReader(10, -1), 5);
+        restarted.open(executionContext);
+        for (int i = 3; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), restarted.read());
+        }
+        assertNull(restarted.read());
+        assertNull(restarted.read());
+        restarted.close();
+    }
+
+    @Test
+    public void exceptionsAreThrownInTheirPosition() throws Exception {
+        PrefetchingItemReader<Integer> reader = new PrefetchingItemReader<>(new NumbersReader(4, 1), 2);
+        reader.open(new ExecutionContext());
+        assertEquals(Integer.valueOf(0), reader.read());
+        try {
+            reader.read();
+            fail("The second item should fail");
+        } catch (IllegalStateException e) {
+            assertEquals("1", e.getMessage());
+        }
+        // the reading goes on after the failure, as with a skip policy
+        assertEquals(Integer.valueOf(2), reader.read());
+        assertEquals(Integer.valueOf(3), reader.read());
+        assertNull(reader.read());
+        reader.close();
+    }
+
+    @Test(timeout = 5000)
+    public void closeDoesntHangIfTheDelegateSwallowsTheInterrupt() throws Exception {
+        CountDownLatch readingSecondItem = new CountDownLatch(1);
+        PrefetchingItemReader<Integer> reader = new PrefetchingItemReader<>(new NumbersReader(10, -1) {
+            @Override
+            protected Integer doRead() throws Exception {
+                if (getCurrentItemCount() == 2) {
+                    readingSecondItem.countDown();
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        // like a driver that catches the interrupt and finishes the read
+                    }
+                }
+                return super.doRead();
+            }
+        }, 1);
+        reader.open(new ExecutionContext());
+
+        // the first item fills the queue, and close() interrupts the read of the second one
+        readingSecondItem.await();
+        reader.close();
+    }
+
+    private static class NumbersReader extends AbstractItemCountingItemStreamItemReader<Integer> {
+
+        private final int size;
+        private final int failing;
+        private int next;
+
+        NumbersReader(int size, int failing) {
+            this.size = size;
+            this.failing = failing;
+            setName("numbers");
+        }
+
+        @Override
+        protected Integer doRead() throws Exception {
+            if (next >= size) {
+                return null;
+            }
+            int number = next++;
+            if (number == failing) {
+                throw new IllegalStateException(String.valueOf(number));
+            }
+            return number;
+        }
+
+        @Override
+        protected void doOpen() throws Exception {
+            next = 0;
+        }
+
+        @Override
+        protected void doClose() throws Exception {
+        }
+
+        @Override
+        protected void jumpToItem(int itemIndex) throws Exception {
+            next = itemIndex;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link StepOutputCache}
+ */
+public class StepOutputCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void keysDependOnContentAndOptions() throws Exception {
+        Path input = write(temporaryFolder.newFile("input.vcf").toPath(), "content");
+        Path sameContent = write(temporaryFolder.newFile("copy.vcf").toPath(), "content");
+
+        String key = StepOutputCache.key("transform").addFile(input).addOption("includeSrc", "NO").toString();
+        assertEquals(key, StepOutputCache.key("transform").addFile(sameContent).addOption("includeSrc", "NO").toString());
+        assertNotEquals(key, StepOutputCache.key("transform").addFile(input).addOption("includeSrc", "FULL").toString());
+        assertNotEquals(key, StepOutputCache.key("statsCreate").addFile(input).addOption("includeSrc", "NO").toString());
+
+        write(input, "other content");
+        assertNotEquals(key, StepOutputCache.key("transform").addFile(input).addOption("includeSrc", "NO").toString());
+    }
+
+    @Test
+    public void storedOutputsAreRestored() throws Exception {
+        StepOutputCache cache = new StepOutputCache(temporaryFolder.newFolder("cache").toPath(), 1024 * 1024);
+        Path output = write(temporaryFolder.newFile("output.json").toPath(), "transformed");
+
+        StepOutputCache.Key key = StepOutputCache.key("transform").addOption("input", "a");
+        assertFalse(cache.restore(key, Collections.singletonList(output)));
+        cache.store(key, Collections.singletonList(output));
+
+        write(output, "overwritten");
+        assertTrue(cache.restore(key, Collections.singletonList(output)));
+        assertEquals("transformed", new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() throws Exception {
+        Path cacheDir = temporaryFolder.newFolder("cache").toPath();
+        StepOutputCache cache = new StepOutputCache(cacheDir, 25);
+        Path output = write(temporaryFolder.newFile("output.json").toPath(), "0123456789");
+
+        StepOutputCache.Key first = StepOutputCache.key("step").addOption("input", "first");
+        StepOutputCache.Key second = StepOutputCache.key("step").addOption("input", "second");
+        StepOutputCache.Key third = StepOutputCache.key("step").addOption("input", "third");
+        cache.store(first, Collections.singletonList(output));
+        cache.store(second, Collections.singletonList(output));
+
+        // the first entry is used after the second, so the second is the one evicted
+        Files.setLastModifiedTime(cacheDir.resolve(second.toString()), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(cacheDir.resolve(first.toString()), FileTime.fromMillis(2000));
+        cache.store(third, Collections.singletonList(output));
+
+        assertTrue(Files.exists(cacheDir.resolve(first.toString())));
+        assertFalse(Files.exists(cacheDir.resolve(second.toString())));
+        assertTrue(Files.exists(cacheDir.resolve(third.toString())));
+    }
+
+    private Path write(Path file, String content) throws IOException {
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.configuration;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.jmx.ConnectionPool;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the connection pool of {@link PostgreDatasourceConfiguration}, against an embedded database instead of
+ * PostgreSQL
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ActiveProfiles("production")
+@ContextConfiguration(classes = {PostgreDatasourceConfiguration.class})
+@TestPropertySource(properties = {
+        "job.repository.driverClassName=org.h2.Driver",
+        "job.repository.url=jdbc:h2:mem:jobRepositoryPool",
+        "job.repository.username=sa",
+        "job.repository.password=",
+        "job.repository.pool.maxActive=3",
+        "job.repository.pool.initialSize=1",
+        "job.repository.pool.minIdle=1",
+        "job.repository.pool.statementCacheSize=20",
+        "job.repository.pool.slowQueryThreshold=500"})
+public class PostgreDatasourceConfigurationTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ConnectionPool pool;
+
+    @Test
+    public void poolIsConfiguredFromTheProperties() {
+        assertEquals(3, dataSource.getMaxActive());
+        assertEquals(3, dataSource.getMaxIdle());
+        assertEquals(1, dataSource.getInitialSize());
+        assertEquals(1, dataSource.getMinIdle());
+        assertTrue(dataSource.isTestOnBorrow());
+        assertEquals("StatementCache(prepared=true,callable=false,max=20);SlowQueryReportJmx(threshold=500)",
+                     dataSource.getJdbcInterceptors());
+    }
+
+    @Test
+    public void connectionsAreReturnedToThePool() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT 1")) {
+            assertTrue(resultSet.next());
+            assertEquals(1, pool.getActive());
+        }
+        assertEquals(0, pool.getActive());
+        assertTrue(pool.getIdle() >= 1);
+    }
+}
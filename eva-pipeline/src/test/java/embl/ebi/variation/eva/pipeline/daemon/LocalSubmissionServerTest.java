@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import embl.ebi.variation.eva.pipeline.jobs.VariantLoadConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Test {@link LocalSubmissionServer}
+ */
+public class LocalSubmissionServerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path tokenFile;
+    private PipelineScheduler scheduler;
+    private LocalSubmissionServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        tokenFile = temporaryFolder.getRoot().toPath().resolve("token");
+        scheduler = new PipelineScheduler(new ResourceBudget(new ResourceDemand(1, 1, 1)), submission -> true,
+                                          PipelineSchedulerTest.daemonOptions());
+        server = new LocalSubmissionServer(0, scheduler, tokenFile);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void tokenIsOnlyReadableByTheOwner() throws IOException {
+        assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE),
+                     Files.getPosixFilePermissions(tokenFile));
+    }
+
+    @Test
+    public void requestsWithoutTheTokenAreRejected() throws IOException {
+        assertEquals(401, post(null));
+        assertEquals(401, post("Bearer wrong"));
+        assertEquals(0, scheduler.getSubmissions().size());
+    }
+
+    @Test
+    public void requestsWithTheTokenAreAccepted() throws IOException {
+        String token = new String(Files.readAllBytes(tokenFile), StandardCharsets.US_ASCII);
+        assertEquals(201, post("Bearer " + token));
+        assertEquals(1, scheduler.getSubmissions().size());
+    }
+
+    @Test
+    public void tokenIsDeletedWhenTheServerStops() {
+        server.stop();
+        assertFalse(Files.exists(tokenFile));
+    }
+
+    private int post(String authorization) throws IOException {
+        URL url = new URL("http://localhost:" + server.getPort() + "/jobs");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write((JobSubmission.JOB_NAMES + "=" + VariantLoadConfiguration.jobName + "\n")
+                               .getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+}
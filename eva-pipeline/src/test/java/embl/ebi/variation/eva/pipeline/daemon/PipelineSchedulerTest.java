@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import embl.ebi.variation.eva.pipeline.configuration.PipelineDaemonConfiguration;
+import embl.ebi.variation.eva.pipeline.jobs.VariantConfiguration;
+import embl.ebi.variation.eva.pipeline.jobs.VariantLoadConfiguration;
+import org.junit.Test;
+import org.opencb.datastore.core.ObjectMap;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test {@link PipelineScheduler}, {@link FairJobQueue} and {@link ResourceBudget}
+ */
+public class PipelineSchedulerTest {
+
+    private long lastId;
+
+    @Test
+    public void studiesAreServedFairlyAndByPriority() {
+        FairJobQueue queue = new FairJobQueue();
+        JobSubmission big1 = submission("big", 0);
+        JobSubmission big2 = submission("big", 0);
+        JobSubmission big3 = submission("big", 0);
+        JobSubmission small1 = submission("small", 0);
+        JobSubmission urgent = submission("big", 5);
+        queue.add(big1);
+        queue.add(big2);
+        queue.add(big3);
+        queue.add(small1);
+
+        assertSame(big1, start(queue));
+        // "small" has nothing running
+        assertSame(small1, start(queue));
+        assertSame(big2, start(queue));
+
+        queue.add(urgent);
+        assertSame(urgent, start(queue));
+        assertSame(big3, start(queue));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void jobsOnlyStartWhenTheyFitInTheBudget() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+        PipelineScheduler scheduler = new PipelineScheduler(
+                new ResourceBudget(new ResourceDemand(4, 2, 0)),
+                submission -> {
+                    release.await();
+                    finished.countDown();
+                    return true;
+                },
+                daemonOptions());
+
+        for (int i = 0; i < 3; i++) {
+            Properties options = options("study");
+            options.setProperty(ResourceDemand.DEMAND_PREFIX + "mongoWriters", "1");
+            scheduler.submit("test", options);
+        }
+
+        // only 2 MongoDB writers
+        assertEquals(2, scheduler.startEligible());
+        assertEquals(0, scheduler.startEligible());
+
+        release.countDown();
+        while (finished.getCount() > 0) {
+            scheduler.awaitChange(100);
+            scheduler.startEligible();
+        }
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        scheduler.shutdown(1000);
+
+        for (JobSubmission submission : scheduler.getSubmissions()) {
+            assertEquals(JobSubmission.Status.COMPLETED, submission.getStatus());
+        }
+        assertEquals(2, scheduler.getBudget().getAvailable().getMongoWriters());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void submissionsMustNameAJob() {
+        JobSubmission.parse(1, "test", new Properties(), new ObjectMap());
+    }
+
+    @Test
+    public void submissionsCanOnlySetTheAllowedOptions() {
+        Properties options = options("study");
+        options.setProperty("input", "/data/file1.vcf.gz");
+        options.setProperty(JobSubmission.PRIORITY, "1");
+        options.setProperty(ResourceDemand.DEMAND_PREFIX + "cpus", "2");
+        assertEquals("study", JobSubmission.parse(1, "test", options, daemonOptions()).getStudy());
+
+        for (String forbidden : new String[]{"vepPath", "outputDir", "spring.profiles.active"}) {
+            Properties overriding = options("study");
+            overriding.setProperty(forbidden, "/tmp/x");
+            try {
+                JobSubmission.parse(2, "test", overriding, daemonOptions());
+                fail(forbidden + " should not be allowed");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains(forbidden));
+            }
+        }
+    }
+
+    @Test
+    public void demandsCanOnlyBeRaisedAboveTheEstimate() {
+        Properties options = options("study");
+        options.setProperty(JobSubmission.JOB_NAMES, VariantConfiguration.jobName);
+        options.setProperty(ResourceDemand.DEMAND_PREFIX + "vepProcesses", "6");
+        ObjectMap daemonOptions = daemonOptions();
+        daemonOptions.put(VariantConfiguration.MAX_CONCURRENT_FLOWS, 2);
+        daemonOptions.put("vepNumForks", 4);
+
+        ResourceDemand demand = JobSubmission.parse(1, "test", options, daemonOptions).getDemand();
+        assertEquals(2 + 4, demand.getCpus());
+        assertEquals(2, demand.getMongoWriters());
+        assertEquals(6, demand.getVepProcesses());
+
+        for (String resource : new String[]{"cpus", "mongoWriters", "vepProcesses"}) {
+            Properties understated = options("study");
+            understated.setProperty(JobSubmission.JOB_NAMES, VariantConfiguration.jobName);
+            understated.setProperty(ResourceDemand.DEMAND_PREFIX + resource, "0");
+            try {
+                JobSubmission.parse(2, "test", understated, daemonOptions);
+                fail("demand." + resource + "=0 should be rejected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains(resource));
+            }
+        }
+    }
+
+    @Test
+    public void onlyTheLastFinishedSubmissionsAreKept() throws Exception {
+        PipelineScheduler scheduler = new PipelineScheduler(new ResourceBudget(new ResourceDemand(4, 4, 4)),
+                                                            submission -> true, daemonOptions());
+        int total = PipelineScheduler.MAX_FINISHED_SUBMISSIONS + 10;
+        for (int i = 0; i < total; i++) {
+            scheduler.submit("test", options("study"));
+            while (scheduler.startEligible() == 0) {
+                scheduler.awaitChange(100);
+            }
+        }
+        scheduler.shutdown(10000);
+
+        List<JobSubmission> submissions = scheduler.getSubmissions();
+        assertEquals(PipelineScheduler.MAX_FINISHED_SUBMISSIONS, submissions.size());
+        assertEquals(total, submissions.get(submissions.size() - 1).getId());
+    }
+
+    private JobSubmission start(FairJobQueue queue) {
+        JobSubmission next = queue.peekNext();
+        queue.start(next);
+        return next;
+    }
+
+    private JobSubmission submission(String study, int priority) {
+        Properties options = options(study);
+        options.setProperty(JobSubmission.PRIORITY, String.valueOf(priority));
+        return JobSubmission.parse(++lastId, "test", options, daemonOptions());
+    }
+
+    static ObjectMap daemonOptions() {
+        ObjectMap daemonOptions = new ObjectMap();
+        daemonOptions.put(PipelineDaemonConfiguration.DAEMON_ALLOWED_OPTIONS, "input, " + JobSubmission.STUDY_ID);
+        return daemonOptions;
+    }
+
+    private Properties options(String study) {
+        Properties options = new Properties();
+        options.setProperty(JobSubmission.JOB_NAMES, VariantLoadConfiguration.jobName);
+        options.setProperty(JobSubmission.STUDY_ID, study);
+        return options;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import embl.ebi.variation.eva.pipeline.jobs.VariantLoadConfiguration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test {@link SpoolDirectory}
+ */
+public class SpoolDirectoryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private PipelineScheduler scheduler;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = temporaryFolder.getRoot().toPath();
+        scheduler = new PipelineScheduler(new ResourceBudget(new ResourceDemand(1, 1, 1)), submission -> true,
+                                          PipelineSchedulerTest.daemonOptions());
+    }
+
+    @Test
+    public void fileWithTheNameOfARunningOneDoesNotReplaceIt() throws Exception {
+        SpoolDirectory spool = new SpoolDirectory(directory);
+        write("file1.properties", "study1");
+        spool.poll(scheduler);
+        write("file1.properties", "study2");
+        spool.poll(scheduler);
+
+        List<JobSubmission> submissions = scheduler.getSubmissions();
+        assertEquals(2, submissions.size());
+        assertNotEquals(submissions.get(0).getSource(), submissions.get(1).getSource());
+
+        JobSubmission first = submissions.get(0);
+        first.setStatus(JobSubmission.Status.COMPLETED);
+        spool.finished(first);
+        JobSubmission second = submissions.get(1);
+        second.setStatus(JobSubmission.Status.FAILED);
+        spool.finished(second);
+
+        assertTrue(Files.exists(directory.resolve("done").resolve(Paths.get(first.getSource()).getFileName())));
+        assertTrue(Files.exists(directory.resolve("failed").resolve(Paths.get(second.getSource()).getFileName())));
+    }
+
+    @Test
+    public void invalidSubmissionsAreMovedIntoFailedWithoutStoppingTheRest() throws Exception {
+        SpoolDirectory spool = new SpoolDirectory(directory);
+        Files.write(directory.resolve("invalid.properties"), Collections.singletonList("studyId=study1"),
+                    StandardCharsets.UTF_8);
+        write("valid.properties", "study2");
+        spool.poll(scheduler);
+
+        assertEquals(1, scheduler.getSubmissions().size());
+        assertEquals("study2", scheduler.getSubmissions().get(0).getStudy());
+        assertEquals(1, count("failed"));
+        assertEquals(1, count("running"));
+    }
+
+    @Test
+    public void finishingAFileThatIsNotThereAnymoreDoesNotThrow() throws Exception {
+        SpoolDirectory spool = new SpoolDirectory(directory);
+        write("file1.properties", "study1");
+        spool.poll(scheduler);
+
+        JobSubmission submission = scheduler.getSubmissions().get(0);
+        Files.delete(Paths.get(submission.getSource()));
+        submission.setStatus(JobSubmission.Status.COMPLETED);
+        spool.finished(submission);
+    }
+
+    @Test
+    public void filesLeftRunningAreSubmittedAgain() throws Exception {
+        new SpoolDirectory(directory);
+        write("running/1-file1.properties", "study1");
+
+        new SpoolDirectory(directory).poll(scheduler);
+
+        assertEquals(1, scheduler.getSubmissions().size());
+        JobSubmission submission = scheduler.getSubmissions().get(0);
+        assertEquals(directory.resolve("running").resolve("1-file1.properties").toString(), submission.getSource());
+        assertFalse(Files.exists(directory.resolve("1-file1.properties")));
+    }
+
+    private long count(String folder) throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve(folder))) {
+            return files.count();
+        }
+    }
+
+    private void write(String name, String study) throws IOException {
+        Files.write(directory.resolve(name),
+                    Arrays.asList(JobSubmission.JOB_NAMES + "=" + VariantLoadConfiguration.jobName,
+                                            JobSubmission.STUDY_ID + "=" + study),
+                    StandardCharsets.UTF_8);
+    }
+}
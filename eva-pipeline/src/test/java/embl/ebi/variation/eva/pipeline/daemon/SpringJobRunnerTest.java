@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.daemon;
+
+import embl.ebi.variation.eva.pipeline.jobs.VariantAnnotConfiguration;
+import embl.ebi.variation.eva.pipeline.steps.VariantsAnnotLoad;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test {@link SpringJobRunner}
+ */
+public class SpringJobRunnerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void everySubmissionHasItsOwnAnnotationFiles() throws Exception {
+        Path submissionsDir = temporaryFolder.getRoot().toPath().resolve("output");
+        SpringJobRunner runner = new SpringJobRunner(
+                Collections.singletonMap(SpringJobRunner.VEP_OUTPUT, "/tmp/variants_annotation.tsv.gz"), "production",
+                submissionsDir);
+
+        Map<String, String> first = runner.getOptions(submission(1));
+        Map<String, String> second = runner.getOptions(submission(2));
+        // the ids start again when the daemon is restarted
+        Map<String, String> firstAfterRestart = runner.getOptions(submission(1));
+
+        for (String file : new String[]{SpringJobRunner.VEP_INPUT, SpringJobRunner.VEP_OUTPUT,
+                VariantsAnnotLoad.DEAD_LETTER_FILE}) {
+            Path firstFile = Paths.get(first.get(file));
+            assertEquals(submissionsDir, firstFile.getParent().getParent());
+            assertTrue(firstFile.getParent().toFile().isDirectory());
+            assertTrue(firstFile.getParent().getFileName().toString().startsWith("submission-1-"));
+            assertNotEquals(first.get(file), second.get(file));
+            assertNotEquals(first.get(file), firstAfterRestart.get(file));
+        }
+        assertEquals(first.get(SpringJobRunner.VEP_OUTPUT) + ".deadletter.json",
+                     first.get(VariantsAnnotLoad.DEAD_LETTER_FILE));
+        assertEquals(VariantAnnotConfiguration.jobName, first.get(JobSubmission.JOB_NAMES));
+        assertEquals("production", first.get("spring.profiles.active"));
+    }
+
+    private JobSubmission submission(long id) {
+        Properties options = new Properties();
+        options.setProperty(JobSubmission.JOB_NAMES, VariantAnnotConfiguration.jobName);
+        return JobSubmission.parse(id, "test", options, PipelineSchedulerTest.daemonOptions());
+    }
+}
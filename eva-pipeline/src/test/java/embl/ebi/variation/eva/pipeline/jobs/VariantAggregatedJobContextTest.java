@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.jobs;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.step.StepLocator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the wiring of {@link VariantAggregatedConfiguration}, without running the job, so it doesn't need a database
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {VariantAggregatedConfiguration.class, CommonConfig.class})
+public class VariantAggregatedJobContextTest {
+
+    @Autowired
+    private Job job;
+
+    @Test
+    public void jobHasTheStepsOfBothBranchesOfTheDeciders() {
+        assertEquals(VariantAggregatedConfiguration.jobName, job.getName());
+        assertTrue(job instanceof StepLocator);
+        assertEquals(new HashSet<>(Arrays.asList("transform", "load", "aggregatedStatsLoadBatchStep")),
+                     new HashSet<>(((StepLocator) job).getStepNames()));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.jobs;
+
+import embl.ebi.variation.eva.pipeline.listener.DeadLetterSkipListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test the dead-letter reader of {@link VariantAnnotReplayConfiguration}
+ */
+public class VariantAnnotReplayConfigurationTest {
+
+    private static final String VALID_LINE = "20_63351_A/G\t20:63351\tG\tENSG00000178591\tENST00000608838\tTranscript\t" +
+            "upstream_gene_variant\t-\t-\t-\t-\t-\trs181305519\tDISTANCE=4540;STRAND=1;SYMBOL=DEFB125";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void missingDeadLetterFileHasNothingToReplay() throws Exception {
+        Path deadLetterFile = temporaryFolder.getRoot().toPath().resolve("annot.deadletter.json");
+
+        FlatFileItemReader<VariantAnnotation> reader = VariantAnnotReplayConfiguration.deadLetterReader(deadLetterFile);
+        reader.open(new ExecutionContext());
+        assertNull(reader.read());
+        reader.close();
+    }
+
+    @Test
+    public void deadLettersAreReplayed() throws Exception {
+        Path deadLetterFile = temporaryFolder.getRoot().toPath().resolve("annot.deadletter.json");
+        DeadLetterSkipListener listener = new DeadLetterSkipListener(deadLetterFile);
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        listener.beforeStep(stepExecution);
+        listener.onSkipInRead(new FlatFileParseException("fixed later", VALID_LINE, 3));
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        listener.afterStep(stepExecution);
+
+        FlatFileItemReader<VariantAnnotation> reader = VariantAnnotReplayConfiguration.deadLetterReader(deadLetterFile);
+        reader.open(new ExecutionContext());
+        assertEquals(63351, reader.read().getStart());
+        assertNull(reader.read());
+        reader.close();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.jobs;
+
+import embl.ebi.variation.eva.VariantJobsArgs;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.job.builder.FlowBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.State;
+import org.springframework.batch.core.job.flow.support.SimpleFlow;
+import org.springframework.batch.core.job.flow.support.state.SplitState;
+import org.springframework.batch.core.step.StepHolder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.step.StepLocator;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the wiring of {@link VariantConfiguration}, without running its steps, so it doesn't need a database
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {VariantConfiguration.class, VariantConfig.class})
+public class VariantJobContextTest {
+
+    @Autowired
+    @Qualifier("variantJob")
+    private Job job;
+
+    @Autowired
+    private VariantConfiguration variantConfiguration;
+
+    @Autowired
+    private VariantJobsArgs variantJobsArgs;
+
+    @Autowired
+    private TaskExecutor flowsTaskExecutor;
+
+    @Autowired
+    private JobBuilderFactory jobBuilderFactory;
+
+    @Autowired
+    private StepBuilderFactory stepBuilderFactory;
+
+    @Autowired
+    private JobLauncher jobLauncher;
+
+    @Test
+    public void jobTransformsAndLoadsBeforeTheSplit() {
+        assertEquals(VariantConfiguration.jobName, job.getName());
+        assertTrue(job instanceof StepLocator);
+        assertTrue(((StepLocator) job).getStepNames().containsAll(Arrays.asList("transform", "load")));
+    }
+
+    @Test
+    public void statisticsAndAnnotationAreBranchesOfASplit() throws Exception {
+        Map<String, Set<String>> branchSteps = new HashMap<>();
+        for (State state : getStates(variantConfiguration.statsAndAnnotationFlow())) {
+            if (state instanceof SplitState) {
+                for (Flow branch : ((SplitState) state).getFlows()) {
+                    branchSteps.put(branch.getName(), getStepNames(branch));
+                }
+            }
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList("statsCreate", "statsLoad")), branchSteps.get("statsFlow"));
+        assertEquals(new HashSet<>(Arrays.asList("variantsAnnotGenerateInputBatchStep", "annotationCreate",
+                                                 "variantAnnotLoadBatchStep")), branchSteps.get("annotationFlow"));
+        assertEquals(2, branchSteps.size());
+    }
+
+    @Test
+    public void defaultOptionsRunTwoBranchesAtOnce() {
+        assertEquals(2, variantJobsArgs.getPipelineOptions().getInt(VariantConfiguration.MAX_CONCURRENT_FLOWS));
+        assertEquals(2, ((SimpleAsyncTaskExecutor) flowsTaskExecutor).getConcurrencyLimit());
+    }
+
+    @Test
+    public void chunkOrientedStepsCommitEveryThousandItemsByDefault() {
+        assertEquals(1000, variantJobsArgs.getPipelineOptions().getInt(VariantJobArgsConfig.CHUNK_SIZE));
+    }
+
+    @Test
+    public void branchesOfTheSplitRunAtTheSameTime() throws Exception {
+        // each branch waits for the other one, so it only completes if both are running at once
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Flow split = new FlowBuilder<Flow>("split")
+                .split(flowsTaskExecutor)
+                .add(branch("first", barrier), branch("second", barrier))
+                .build();
+        Job splitJob = jobBuilderFactory.get("splitJob").start(split).end().build();
+
+        JobExecution jobExecution = jobLauncher.run(splitJob, new JobParameters());
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        assertEquals(2, jobExecution.getStepExecutions().size());
+    }
+
+    /**
+     * The states of a flow are only known after it is initialized, which the job does when it runs it
+     */
+    private Collection<State> getStates(Flow flow) throws Exception {
+        ((SimpleFlow) flow).afterPropertiesSet();
+        return flow.getStates();
+    }
+
+    private Set<String> getStepNames(Flow flow) throws Exception {
+        Set<String> stepNames = new HashSet<>();
+        for (State state : getStates(flow)) {
+            if (state instanceof StepHolder) {
+                stepNames.add(((StepHolder) state).getStep().getName());
+            }
+        }
+        return stepNames;
+    }
+
+    private Flow branch(String name, CyclicBarrier barrier) {
+        Step step = stepBuilderFactory.get(name).tasklet((contribution, chunkContext) -> {
+            barrier.await(10, TimeUnit.SECONDS);
+            return RepeatStatus.FINISHED;
+        }).build();
+        return new FlowBuilder<Flow>(name + "Flow").start(step).build();
+    }
+}
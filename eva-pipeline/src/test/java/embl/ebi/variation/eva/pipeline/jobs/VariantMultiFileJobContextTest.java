@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.jobs;
+
+import com.mongodb.BasicDBObject;
+import embl.ebi.variation.eva.pipeline.AnnotationDecider;
+import embl.ebi.variation.eva.pipeline.partition.ManifestPartitioner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test the wiring of {@link VariantMultiFileConfiguration}, without running its steps, so it doesn't need a database
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {VariantMultiFileConfiguration.class, VariantConfig.class})
+public class VariantMultiFileJobContextTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Autowired
+    private AnnotationDecider filesAnnotationDecider;
+
+    @Autowired
+    private ObjectMap pipelineOptions;
+
+    @Test
+    public void annotationChecksTheVariantsOfTheManifestFiles() throws Exception {
+        File manifest = temporaryFolder.newFile("manifest.tsv");
+        Files.write(manifest.toPath(), Arrays.asList("chr1.vcf.gz\tchr1", "chr2.vcf.gz\tchr2"));
+        pipelineOptions.put(ManifestPartitioner.MANIFEST, manifest.getAbsolutePath());
+
+        // not the fileId of the job, which is none of the files of the manifest
+        BasicDBObject filesCondition = (BasicDBObject) filesAnnotationDecider.notAnnotatedQuery().get("files");
+        assertEquals(new BasicDBObject("$in", Arrays.asList("chr1", "chr2")),
+                     ((BasicDBObject) filesCondition.get("$elemMatch")).get("fid"));
+    }
+}
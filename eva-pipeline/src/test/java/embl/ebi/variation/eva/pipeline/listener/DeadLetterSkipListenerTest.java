@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.listener;
+
+import embl.ebi.variation.eva.pipeline.annotation.load.VariantAnnotationLineMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test {@link DeadLetterSkipListener} and {@link DeadLetterLineMapper}
+ */
+public class DeadLetterSkipListenerTest {
+
+    private static final String VALID_LINE = "20_63351_A/G\t20:63351\tG\tENSG00000178591\tENST00000608838\tTranscript\t" +
+            "upstream_gene_variant\t-\t-\t-\t-\t-\trs181305519\tDISTANCE=4540;STRAND=1;SYMBOL=DEFB125";
+
+    // missing ':' in the coordinates
+    private static final String MALFORMED_LINE = "20_63360_C/T\t20_63360\tT\tENSG00000178591\tENST00000382410\t" +
+            "Transcript\tupstream_gene_variant\t-\t-\t-\t-\t-\trs186156309\tDISTANCE=4991;STRAND=1";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void skippedLinesAreReplayedAndTheFailingOnesKept() throws Exception {
+        Path deadLetterFile = temporaryFolder.getRoot().toPath().resolve("annot.deadletter.json");
+
+        DeadLetterSkipListener listener = new DeadLetterSkipListener(deadLetterFile);
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        listener.beforeStep(stepExecution);
+        listener.onSkipInRead(new FlatFileParseException("fixed later", VALID_LINE, 3));
+        listener.onSkipInRead(new FlatFileParseException("still malformed", MALFORMED_LINE, 7));
+        listener.onSkipInWrite("20:100 A/C", new RuntimeException("write failed"));
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        listener.afterStep(stepExecution);
+
+        assertEquals(3, stepExecution.getExecutionContext().getLong(DeadLetterSkipListener.DEAD_LETTER_COUNT));
+        List<String> letters = Files.readAllLines(deadLetterFile, StandardCharsets.UTF_8);
+        assertEquals(3, letters.size());
+
+        // replay
+        Path remainingFile = temporaryFolder.getRoot().toPath().resolve("annot.deadletter.json.remaining");
+        DeadLetterSkipListener replayListener = new DeadLetterSkipListener(remainingFile, deadLetterFile);
+        StepExecution replayExecution = MetaDataInstanceFactory.createStepExecution();
+        replayListener.beforeStep(replayExecution);
+
+        DeadLetterLineMapper<VariantAnnotation> lineMapper = new DeadLetterLineMapper<>(new VariantAnnotationLineMapper());
+        VariantAnnotation annotation = lineMapper.mapLine(letters.get(0), 1);
+        assertEquals(63351, annotation.getStart());
+
+        for (String letter : letters.subList(1, 3)) {
+            try {
+                lineMapper.mapLine(letter, 2);
+                fail("The entry should not be replayed: " + letter);
+            } catch (DeadLetterLineMapper.ReplayException e) {
+                replayListener.onSkipInRead(e);
+            }
+        }
+        replayExecution.setStatus(BatchStatus.COMPLETED);
+        replayListener.afterStep(replayExecution);
+
+        // the entries that failed again replace the replayed file, with their original line and line number
+        assertFalse(Files.exists(remainingFile));
+        List<String> remaining = Files.readAllLines(deadLetterFile, StandardCharsets.UTF_8);
+        assertEquals(2, remaining.size());
+        assertTrue(remaining.get(0).contains("\"lineNumber\":7"));
+        assertTrue(remaining.get(1).contains("\"phase\":\"write\""));
+    }
+}
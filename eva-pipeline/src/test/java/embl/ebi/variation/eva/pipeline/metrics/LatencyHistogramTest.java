@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link LatencyHistogram}
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void valuesAreCountedInTheirBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(1000);
+        histogram.record(1000);
+        histogram.record(2_000_000);
+
+        assertEquals(4, histogram.getCount());
+        assertEquals(2_002_010, histogram.getSum());
+        assertEquals(2_000_000, histogram.getMax());
+
+        assertEquals(0, histogram.countAtOrBelow(9));
+        assertEquals(1, histogram.countAtOrBelow(10));
+        assertEquals(3, histogram.countAtOrBelow(1000));
+        assertEquals(3, histogram.countAtOrBelow(1_000_000));
+        assertEquals(4, histogram.countAtOrBelow(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void bucketsAreContiguousAndBounded() {
+        int previous = LatencyHistogram.bucketOf(0);
+        for (long value = 1; value < 1_000_000; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(bucket == previous || bucket == previous + 1);
+            previous = bucket;
+        }
+        assertEquals(LatencyHistogram.bucketOf(1L << 50), LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesAreWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.99));
+
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(5000, histogram.percentile(0.50), 5000 / 32);
+        assertEquals(9500, histogram.percentile(0.95), 9500 / 32);
+        assertEquals(9900, histogram.percentile(0.99), 9900 / 32);
+        assertEquals(10_000, histogram.percentile(1));
+        assertEquals(1, histogram.percentile(0));
+    }
+
+    @Test
+    public void aFewSlowValuesShowOnlyInTheTail() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 990; i++) {
+            histogram.record(1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(3_000_000);
+        }
+        assertTrue(histogram.percentile(0.95) < 1100);
+        assertTrue(histogram.percentile(0.99) < 1100);
+        assertTrue(histogram.percentile(0.999) > 2_900_000);
+        assertEquals(3_000_000, histogram.getMax());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.metrics;
+
+import org.junit.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link MetricsExporter}
+ */
+public class MetricsExporterTest {
+
+    @Test
+    public void prometheusOutputHasOneFamilyPerMetricAndCumulativeBuckets() {
+        StepMetrics load = buildMetrics("load", 1, 2000, 0);
+        StepMetrics annotation = buildMetrics("variantAnnotLoadBatchStep", 2, 500, 500);
+        annotation.getWriteLatency().record(2000);
+        annotation.getWriteLatency().record(300_000);
+
+        String output = new MetricsExporter("variantJob", 7, Arrays.asList(load, annotation)).toPrometheus();
+
+        assertEquals(1, occurrences(output, "# TYPE eva_step_items_written_total counter"));
+        assertTrue(output.contains(
+                "eva_step_items_written_total{job=\"variantJob\",job_execution=\"7\",step=\"load\"} 1000\n"));
+        assertTrue(output.contains(
+                "eva_step_items_written_per_second{job=\"variantJob\",job_execution=\"7\",step=\"load\"} 500\n"));
+        assertTrue(output.contains("eva_step_bytes_read_total{job=\"variantJob\",job_execution=\"7\"," +
+                "step=\"variantAnnotLoadBatchStep\"} 500\n"));
+
+        String annotationLabels = "job=\"variantJob\",job_execution=\"7\",step=\"variantAnnotLoadBatchStep\"";
+        assertTrue(output.contains("eva_step_write_seconds_bucket{" + annotationLabels + ",le=\"0.005\"} 1\n"));
+        assertTrue(output.contains("eva_step_write_seconds_bucket{" + annotationLabels + ",le=\"0.5\"} 2\n"));
+        assertTrue(output.contains("eva_step_write_seconds_bucket{" + annotationLabels + ",le=\"+Inf\"} 2\n"));
+        assertTrue(output.contains("eva_step_write_seconds_count{" + annotationLabels + "} 2\n"));
+        assertTrue(output.contains("eva_step_write_seconds_sum{" + annotationLabels + "} 0.302\n"));
+    }
+
+    private StepMetrics buildMetrics(String stepName, long stepExecutionId, long durationMillis, long bytesRead) {
+        StepExecution stepExecution = new StepExecution(stepName, new JobExecution(7L), stepExecutionId);
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        stepExecution.setReadCount(1000);
+        stepExecution.setWriteCount(1000);
+        stepExecution.getExecutionContext().putLong(StepMetrics.BYTES_READ, bytesRead);
+
+        StepMetrics metrics = new StepMetrics(stepName, stepExecutionId);
+        metrics.finish(stepExecution, durationMillis);
+        return metrics;
+    }
+
+    private int occurrences(String text, String substring) {
+        int occurrences = 0;
+        for (int index = text.indexOf(substring); index >= 0; index = text.indexOf(substring, index + 1)) {
+            occurrences++;
+        }
+        return occurrences;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.partition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.partition.StepExecutionSplitter;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link JobRepositoryPartitionHandler} against a job repository in an embedded database
+ */
+public class JobRepositoryPartitionHandlerTest {
+
+    private static final long POLL_INTERVAL = 20;
+    private static final long TIMEOUT = 300;
+
+    private EmbeddedDatabase database;
+    private JobRepository jobRepository;
+    private JobExplorer jobExplorer;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("classpath:org/springframework/batch/core/schema-h2.sql")
+                .build();
+
+        JobRepositoryFactoryBean repositoryFactory = new JobRepositoryFactoryBean();
+        repositoryFactory.setDataSource(database);
+        repositoryFactory.setTransactionManager(new DataSourceTransactionManager(database));
+        repositoryFactory.afterPropertiesSet();
+        jobRepository = repositoryFactory.getObject();
+
+        JobExplorerFactoryBean explorerFactory = new JobExplorerFactoryBean();
+        explorerFactory.setDataSource(database);
+        explorerFactory.afterPropertiesSet();
+        jobExplorer = explorerFactory.getObject();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void partitionsWithoutWorkersTimeOut() throws Exception {
+        StepExecution partition = createPartition();
+
+        new JobRepositoryPartitionHandler(jobExplorer, POLL_INTERVAL, TIMEOUT).handle(splitter(partition), null);
+    }
+
+    @Test
+    public void partitionsUpdatedByAWorkerDontTimeOut() throws Exception {
+        StepExecution partition = createPartition();
+        Thread worker = new Thread(() -> {
+            try {
+                // runs for several timeouts, but updates the partition much more often
+                for (int commit = 0; commit < 10; commit++) {
+                    Thread.sleep(TIMEOUT / 3);
+                    partition.incrementCommitCount();
+                    jobRepository.update(partition);
+                }
+                partition.setStatus(BatchStatus.COMPLETED);
+                jobRepository.update(partition);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        partition.setStatus(BatchStatus.STARTED);
+        jobRepository.update(partition);
+        worker.start();
+
+        Collection<StepExecution> finished = new JobRepositoryPartitionHandler(jobExplorer, POLL_INTERVAL, TIMEOUT)
+                .handle(splitter(partition), null);
+        worker.join();
+
+        assertEquals(1, finished.size());
+        assertEquals(BatchStatus.COMPLETED, finished.iterator().next().getStatus());
+    }
+
+    private StepExecution createPartition() throws Exception {
+        JobExecution jobExecution = jobRepository.createJobExecution("job", new JobParameters());
+        StepExecution partition = jobExecution.createStepExecution("load:file-1");
+        jobRepository.add(partition);
+        return partition;
+    }
+
+    private StepExecutionSplitter splitter(StepExecution partition) {
+        return new StepExecutionSplitter() {
+            @Override
+            public String getStepName() {
+                return "load";
+            }
+
+            @Override
+            public Set<StepExecution> split(StepExecution stepExecution, int gridSize) {
+                return Collections.singleton(partition);
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.partition;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.datastore.core.ObjectMap;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test {@link ManifestPartitioner}
+ */
+public class ManifestPartitionerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void aPartitionIsCreatedForEveryFile() throws Exception {
+        File manifest = writeManifest("# study files", "chr1.vcf.gz\t1", "", "/data/chr2.vcf.gz\t2");
+
+        ObjectMap pipelineOptions = new ObjectMap(ManifestPartitioner.MANIFEST, manifest.getAbsolutePath());
+        Map<String, ExecutionContext> partitions = new ManifestPartitioner(pipelineOptions, new ObjectMap()).partition(1);
+
+        assertEquals(2, partitions.size());
+        ExecutionContext first = partitions.get("file-1");
+        assertEquals(new File(temporaryFolder.getRoot(), "chr1.vcf.gz").getAbsolutePath(),
+                first.getString(PartitionOptions.INPUT));
+        assertEquals("1", first.getString(PartitionOptions.FILE_ID));
+        assertEquals("/data/chr2.vcf.gz", partitions.get("file-2").getString(PartitionOptions.INPUT));
+        assertEquals(Arrays.asList("1", "2"), new ManifestPartitioner(pipelineOptions, new ObjectMap()).getFileIds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicatedFileIdsAreRejected() throws Exception {
+        ManifestPartitioner.readManifest(writeManifest("a.vcf\t1", "b.vcf\t1").toPath());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void linesWithoutFileIdAreRejected() throws Exception {
+        ManifestPartitioner.readManifest(writeManifest("a.vcf").toPath());
+    }
+
+    private File writeManifest(String... lines) throws Exception {
+        File manifest = temporaryFolder.newFile("manifest.tsv");
+        Files.write(manifest.toPath(), Arrays.asList(lines));
+        return manifest;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.partition;
+
+import embl.ebi.variation.eva.pipeline.steps.VariantsStatsCreate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.biodata.models.variant.VariantStudy;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test {@link PartitionOptions}, with the partitions saved in and read from a job repository in an embedded database,
+ * as a remote worker does
+ */
+public class PartitionOptionsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private EmbeddedDatabase database;
+    private JobRepository jobRepository;
+    private JobExplorer jobExplorer;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("classpath:org/springframework/batch/core/schema-h2.sql")
+                .build();
+
+        JobRepositoryFactoryBean repositoryFactory = new JobRepositoryFactoryBean();
+        repositoryFactory.setDataSource(database);
+        repositoryFactory.setTransactionManager(new DataSourceTransactionManager(database));
+        repositoryFactory.afterPropertiesSet();
+        jobRepository = repositoryFactory.getObject();
+
+        JobExplorerFactoryBean explorerFactory = new JobExplorerFactoryBean();
+        explorerFactory.setDataSource(database);
+        explorerFactory.afterPropertiesSet();
+        jobExplorer = explorerFactory.getObject();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void workersUseTheOptionsOfTheJob() throws Exception {
+        File manifest = temporaryFolder.newFile("manifest.tsv");
+        Files.write(manifest.toPath(), Collections.singletonList("/data/chr1.vcf.gz\tchr1"));
+        ObjectMap managerPipelineOptions = pipelineOptions("managerDb", "/manager/output", "ALL:s1,s2");
+        managerPipelineOptions.put(ManifestPartitioner.MANIFEST, manifest.getAbsolutePath());
+        ObjectMap managerVariantOptions = variantOptions("managerDb", "study1", VariantSource.Aggregation.NONE);
+
+        ExecutionContext partitionContext = new ManifestPartitioner(managerPipelineOptions, managerVariantOptions)
+                .partition(1).get("file-chr1");
+        JobExecution jobExecution = jobRepository.createJobExecution("job", new JobParameters());
+        StepExecution partition = jobExecution.createStepExecution("load:file-chr1");
+        partition.setExecutionContext(partitionContext);
+        jobRepository.add(partition);
+
+        // a worker configured for another database and study
+        ChunkContext workerContext = new ChunkContext(new StepContext(
+                jobExplorer.getStepExecution(jobExecution.getId(), partition.getId())));
+        ObjectMap workerPipelineOptions = pipelineOptions("workerDb", "/worker/output", "");
+        ObjectMap workerVariantOptions = variantOptions("workerDb", "study2", VariantSource.Aggregation.BASIC);
+
+        ObjectMap pipelineOptions = PartitionOptions.getPipelineOptions(workerPipelineOptions, workerContext);
+        assertEquals("/data/chr1.vcf.gz", pipelineOptions.getString(PartitionOptions.INPUT));
+        assertEquals("managerDb", pipelineOptions.getString(VariantStorageManager.DB_NAME));
+        assertEquals("/manager/output", pipelineOptions.getString("outputDir"));
+        assertEquals("ALL:s1,s2", pipelineOptions.getString(VariantsStatsCreate.COHORTS));
+        // the connection to the database is still the one of the worker
+        assertEquals("workerHost", pipelineOptions.getString("dbHosts"));
+
+        ObjectMap variantOptions = PartitionOptions.getVariantOptions(workerVariantOptions, workerContext);
+        assertEquals("managerDb", variantOptions.getString(VariantStorageManager.DB_NAME));
+        assertSame(VariantStorageManager.IncludeSrc.FIRST_8_COLUMNS,
+                   variantOptions.get(VariantStorageManager.INCLUDE_SRC, VariantStorageManager.IncludeSrc.class));
+        VariantSource source = variantOptions.get(VariantStorageManager.VARIANT_SOURCE, VariantSource.class);
+        assertEquals("chr1", source.getFileId());
+        assertEquals("chr1.vcf.gz", source.getFileName());
+        assertEquals("study1", source.getStudyId());
+        assertEquals("study1 name", source.getStudyName());
+        assertEquals(VariantSource.Aggregation.NONE, source.getAggregation());
+
+        // the options of the worker are not modified
+        assertEquals("workerDb", workerVariantOptions.getString(VariantStorageManager.DB_NAME));
+    }
+
+    private ObjectMap pipelineOptions(String dbName, String outputDir, String cohorts) {
+        ObjectMap pipelineOptions = new ObjectMap();
+        pipelineOptions.put(VariantStorageManager.DB_NAME, dbName);
+        pipelineOptions.put("outputDir", outputDir);
+        pipelineOptions.put(VariantsStatsCreate.COHORTS, cohorts);
+        pipelineOptions.put("dbHosts", dbName.startsWith("worker") ? "workerHost" : "managerHost");
+        return pipelineOptions;
+    }
+
+    private ObjectMap variantOptions(String dbName, String studyId, VariantSource.Aggregation aggregation) {
+        ObjectMap variantOptions = new ObjectMap();
+        variantOptions.put(VariantStorageManager.DB_NAME, dbName);
+        variantOptions.put(VariantStorageManager.INCLUDE_SRC, VariantStorageManager.IncludeSrc.FIRST_8_COLUMNS);
+        variantOptions.put(VariantStorageManager.VARIANT_SOURCE, new VariantSource("file.vcf", "fileId", studyId,
+                studyId + " name", VariantStudy.StudyType.COLLECTION, aggregation));
+        return variantOptions;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.partition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link PartitionWorker} against a job repository in an embedded database
+ */
+public class PartitionWorkerTest {
+
+    private EmbeddedDatabase database;
+    private DataSourceTransactionManager transactionManager;
+    private JobRepository jobRepository;
+    private JobExplorer jobExplorer;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("classpath:org/springframework/batch/core/schema-h2.sql")
+                .build();
+        transactionManager = new DataSourceTransactionManager(database);
+
+        JobRepositoryFactoryBean repositoryFactory = new JobRepositoryFactoryBean();
+        repositoryFactory.setDataSource(database);
+        repositoryFactory.setTransactionManager(transactionManager);
+        repositoryFactory.afterPropertiesSet();
+        jobRepository = repositoryFactory.getObject();
+
+        JobExplorerFactoryBean explorerFactory = new JobExplorerFactoryBean();
+        explorerFactory.setDataSource(database);
+        explorerFactory.afterPropertiesSet();
+        jobExplorer = explorerFactory.getObject();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void startingPartitionIsClaimedAndRunOnlyOnce() throws Exception {
+        JobExecution jobExecution = startJobExecution();
+        StepExecution partition = jobExecution.createStepExecution("load:file-1");
+        partition.getExecutionContext().putString(PartitionOptions.FILE_ID, "1");
+        jobRepository.add(partition);
+
+        PartitionWorker worker = newWorker("load", "worker1");
+        PartitionWorker otherWorker = newWorker("load", "worker2");
+
+        assertTrue(worker.runNextPartition());
+        assertFalse(otherWorker.runNextPartition());
+
+        StepExecution finished = jobExplorer.getStepExecution(jobExecution.getId(), partition.getId());
+        assertEquals(BatchStatus.COMPLETED, finished.getStatus());
+        assertEquals("worker1", finished.getExecutionContext().getString(PartitionWorker.WORKER_KEY));
+    }
+
+    @Test
+    public void partitionsOfUnknownStepsAreIgnored() throws Exception {
+        JobExecution jobExecution = startJobExecution();
+        StepExecution partition = jobExecution.createStepExecution("transform:file-1");
+        jobRepository.add(partition);
+
+        assertFalse(newWorker("load", "worker1").runNextPartition());
+        assertEquals(BatchStatus.STARTING,
+                jobExplorer.getStepExecution(jobExecution.getId(), partition.getId()).getStatus());
+    }
+
+    @Test
+    public void partitionsOfFinishedJobsAreIgnored() throws Exception {
+        JobExecution jobExecution = startJobExecution();
+        StepExecution partition = jobExecution.createStepExecution("load:file-1");
+        jobRepository.add(partition);
+        // the manager timed out waiting for the workers
+        jobExecution.setStatus(BatchStatus.FAILED);
+        jobRepository.update(jobExecution);
+
+        assertFalse(newWorker("load", "worker1").runNextPartition());
+        assertEquals(BatchStatus.STARTING,
+                jobExplorer.getStepExecution(jobExecution.getId(), partition.getId()).getStatus());
+    }
+
+    private JobExecution startJobExecution() throws Exception {
+        JobExecution jobExecution = jobRepository.createJobExecution("job", new JobParameters());
+        jobExecution.setStatus(BatchStatus.STARTED);
+        jobRepository.update(jobExecution);
+        return jobExecution;
+    }
+
+    private PartitionWorker newWorker(String stepName, String workerName) {
+        TaskletStep step = new TaskletStep(stepName);
+        step.setJobRepository(jobRepository);
+        step.setTransactionManager(transactionManager);
+        step.setTasklet((contribution, chunkContext) -> RepeatStatus.FINISHED);
+        return new PartitionWorker(jobExplorer, database, Collections.singletonList(step), workerName);
+    }
+}
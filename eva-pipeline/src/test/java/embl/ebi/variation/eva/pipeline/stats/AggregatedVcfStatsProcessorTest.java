@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.stats;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.biodata.models.variant.VariantStudy;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Test {@link AggregatedVcfStatsProcessor}
+ */
+public class AggregatedVcfStatsProcessorTest {
+
+    private static final String FILE_ID = "fileId";
+    private static final String STUDY_ID = "studyId";
+
+    @Test
+    public void cohortStatsAreTakenFromMappedInfoKeys() throws Exception {
+        VariantSource source = new VariantSource("name", FILE_ID, STUDY_ID, "studyName",
+                VariantStudy.StudyType.AGGREGATE, VariantSource.Aggregation.BASIC);
+
+        Properties mapping = new Properties();
+        mapping.put("ALL.AC", "AC");
+        mapping.put("ALL.AN", "AN");
+        mapping.put("AFR.AC", "AFR_AC");
+        mapping.put("AFR.AN", "AFR_AN");
+
+        AggregatedVcfStatsProcessor processor = new AggregatedVcfStatsProcessor(source, mapping);
+        String line = String.join("\t", "1", "1000", "id", "C", "A", "100", "PASS", "AC=3;AN=10;AFR_AC=1;AFR_AN=4");
+        List<Variant> variants = processor.process(line);
+
+        assertEquals(1, variants.size());
+        Map<String, VariantStats> cohortStats = variants.get(0).getSourceEntry(FILE_ID, STUDY_ID).getCohortStats();
+
+        VariantStats all = cohortStats.get("ALL");
+        assertNotNull(all);
+        assertEquals(3, all.getAltAlleleCount());
+        assertEquals(7, all.getRefAlleleCount());
+
+        VariantStats afr = cohortStats.get("AFR");
+        assertNotNull(afr);
+        assertEquals(1, afr.getAltAlleleCount());
+        assertEquals(3, afr.getRefAlleleCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonAggregatedFilesAreRejected() {
+        VariantSource source = new VariantSource("name", FILE_ID, STUDY_ID, "studyName",
+                VariantStudy.StudyType.COLLECTION, VariantSource.Aggregation.NONE);
+        new AggregatedVcfStatsProcessor(source, null);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.stats;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link CohortDefinitions}
+ */
+public class CohortDefinitionsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void pedigreeIsGroupedByPopulation() throws IOException {
+        Path pedigree = writePedigree(
+                "#family\tindividual\tfather\tmother\tsex\tphenotype\tpopulation",
+                "FAM1\ts1\t0\t0\t1\t1\tGBR",
+                "FAM1\ts2\t0\t0\t2\t1\tGBR",
+                "FAM2\ts3\t0\t0\t1\t1\tYRI");
+
+        Map<String, Set<String>> cohorts = CohortDefinitions.fromPedigree(pedigree);
+
+        assertEquals(new HashSet<>(Arrays.asList("s1", "s2")), cohorts.get("GBR"));
+        assertEquals(Collections.singleton("s3"), cohorts.get("YRI"));
+        assertEquals(2, cohorts.size());
+    }
+
+    @Test
+    public void pedigreeWithoutPopulationDefinesNoCohorts() throws IOException {
+        Path pedigree = writePedigree(
+                "#family\tindividual\tfather\tmother\tsex\tphenotype",
+                "FAM1\ts1\t0\t0\t1\t1",
+                "FAM2\ts3\t0\t0\t1\t1");
+
+        assertTrue(CohortDefinitions.fromPedigree(pedigree).isEmpty());
+        assertTrue(CohortDefinitions.load("", pedigree.toString()).isEmpty());
+    }
+
+    @Test
+    public void cohortsParameterIsAddedToThePedigreeWithoutPopulation() throws IOException {
+        Path pedigree = writePedigree("FAM1\ts1\t0\t0\t1\t1");
+
+        Map<String, Set<String>> cohorts = CohortDefinitions.load("EVEN:s2,s4", pedigree.toString());
+
+        assertEquals(Collections.singleton("EVEN"), cohorts.keySet());
+    }
+
+    private Path writePedigree(String... lines) throws IOException {
+        Path pedigree = temporaryFolder.newFile("pedigree.ped").toPath();
+        Files.write(pedigree, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return pedigree;
+    }
+}
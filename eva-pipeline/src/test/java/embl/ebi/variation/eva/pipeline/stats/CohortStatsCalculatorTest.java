@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.stats;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.biodata.models.variant.VariantVcfFactory;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link SampleCohorts} and {@link CohortStatsCalculator}
+ */
+public class CohortStatsCalculatorTest {
+
+    private static final String FILE_ID = "fileId";
+    private static final String STUDY_ID = "studyId";
+
+    private VariantSource source;
+
+    @Before
+    public void setUp() throws Exception {
+        source = new VariantSource("name", FILE_ID, STUDY_ID, "studyName");
+        source.setSamples(Arrays.asList("s1", "s2", "s3", "s4", "s5", "s6"));
+    }
+
+    @Test
+    public void cohortsAreCompiledToSampleIndexBitsets() {
+        Map<String, Set<String>> cohorts = CohortDefinitions.parse("EVEN:s2,s4,s6;FIRST:s1,s2,unknownSample");
+        SampleCohorts sampleCohorts = SampleCohorts.compile(cohorts, source.getSamplesPosition());
+
+        assertEquals(3, sampleCohorts.size());
+        assertEquals(6, sampleCohorts.getCohortMask(SampleCohorts.ALL_COHORT).cardinality());
+
+        BitSet even = sampleCohorts.getCohortMask("EVEN");
+        assertEquals(3, even.cardinality());
+        assertTrue(even.get(source.getSamplesPosition().get("s4")));
+        assertFalse(even.get(source.getSamplesPosition().get("s1")));
+
+        assertEquals(2, sampleCohorts.getCohortMask("FIRST").cardinality());
+        assertEquals(3, sampleCohorts.getCohortsOfSample("s2").length);
+        assertEquals(1, sampleCohorts.getCohortsOfSample("s3").length);
+        assertEquals(0, sampleCohorts.getCohortsOfSample("unknownSample").length);
+    }
+
+    @Test
+    public void allCohortsAreCalculatedInOnePass() {
+        String line = String.join("\t", "1", "1000", "id", "C", "A", "100", "PASS", ".", "GT",
+                "0|0", "0|1", "1|1", "0|1", "./.", "0|0");
+        Variant variant = new VariantVcfFactory().create(source, line).get(0);
+
+        Map<String, Set<String>> cohorts = CohortDefinitions.parse("EVEN:s2,s4,s6;ODD:s1,s3,s5");
+        CohortStatsCalculator calculator = new CohortStatsCalculator(
+                SampleCohorts.compile(cohorts, source.getSamplesPosition()));
+
+        Map<String, VariantStats> stats = calculator.calculate(variant, variant.getSourceEntry(FILE_ID, STUDY_ID));
+        assertEquals(3, stats.size());
+
+        VariantStats all = stats.get(SampleCohorts.ALL_COHORT);
+        assertEquals(6, all.getRefAlleleCount());
+        assertEquals(4, all.getAltAlleleCount());
+        assertEquals(2, all.getMissingAlleles());
+        assertEquals(1, all.getMissingGenotypes());
+
+        VariantStats even = stats.get("EVEN");
+        assertEquals(4, even.getRefAlleleCount());
+        assertEquals(2, even.getAltAlleleCount());
+        assertEquals(0, even.getMissingGenotypes());
+        assertEquals("A", even.getMafAllele());
+        assertEquals(2f / 6, even.getMaf(), 0.0001);
+
+        VariantStats odd = stats.get("ODD");
+        assertEquals(2, odd.getRefAlleleCount());
+        assertEquals(2, odd.getAltAlleleCount());
+        assertEquals(1, odd.getMissingGenotypes());
+        assertEquals("C", odd.getMafAllele());
+
+        // counters must be reset between variants
+        stats = calculator.calculate(variant, variant.getSourceEntry(FILE_ID, STUDY_ID));
+        assertEquals(6, stats.get(SampleCohorts.ALL_COHORT).getRefAlleleCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedCohortsAreRejected() {
+        CohortDefinitions.parse("COHORT_WITHOUT_SAMPLES");
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.steps;
+
+import embl.ebi.variation.eva.pipeline.cache.StepOutputCache;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.biodata.models.variant.VariantStudy;
+import org.opencb.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the key that {@link VariantsStatsCreate} uses to cache the statistics of a file
+ */
+public class VariantsStatsCreateTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ObjectMap pipelineOptions;
+    private StepOutputCache cache;
+    private List<Path> outputs;
+
+    @Before
+    public void setUp() throws Exception {
+        Path outputDir = temporaryFolder.newFolder("output").toPath();
+        Files.write(outputDir.resolve("file1.vcf.gz.variants.json.gz"), Collections.singletonList("{}"));
+
+        pipelineOptions = new ObjectMap();
+        pipelineOptions.put("input", "/data/file1.vcf.gz");
+        pipelineOptions.put("outputDir", outputDir.toString());
+        pipelineOptions.put("compressExtension", ".gz");
+        pipelineOptions.put(VariantsStatsCreate.COHORTS, "");
+        pipelineOptions.put("pedigree", "");
+
+        cache = new StepOutputCache(temporaryFolder.newFolder("cache").toPath(), 1024 * 1024);
+        outputs = Collections.singletonList(outputDir.resolve("1_1.variants.stats.json.gz"));
+        Files.write(outputs.get(0), Collections.singletonList("stats"));
+        cache.store(VariantsStatsCreate.buildCacheKey(pipelineOptions, variantOptions("db1"), "checksum1"), outputs);
+    }
+
+    @Test
+    public void statisticsOfTheSameLoadedFileAreRestored() throws Exception {
+        assertTrue(cache.restore(VariantsStatsCreate.buildCacheKey(pipelineOptions, variantOptions("db1"),
+                                                                   "checksum1"), outputs));
+    }
+
+    @Test
+    public void anotherDatabaseMissesTheCache() throws Exception {
+        assertFalse(cache.restore(VariantsStatsCreate.buildCacheKey(pipelineOptions, variantOptions("db2"),
+                                                                    "checksum1"), outputs));
+    }
+
+    @Test
+    public void anotherLoadedFileMissesTheCache() throws Exception {
+        assertFalse(cache.restore(VariantsStatsCreate.buildCacheKey(pipelineOptions, variantOptions("db1"),
+                                                                    "checksum2"), outputs));
+    }
+
+    @Test
+    public void filesNotMarkedAsLoadedAreNotCached() throws Exception {
+        assertNull(VariantsStatsCreate.buildCacheKey(pipelineOptions, variantOptions("db1"), null));
+    }
+
+    private ObjectMap variantOptions(String dbName) {
+        ObjectMap variantOptions = new ObjectMap();
+        variantOptions.put(VariantStorageManager.DB_NAME, dbName);
+        variantOptions.put(VariantStorageManager.VARIANT_SOURCE, new VariantSource("file1.vcf.gz", "1", "1", "study",
+                VariantStudy.StudyType.COLLECTION, VariantSource.Aggregation.NONE));
+        return variantOptions;
+    }
+}
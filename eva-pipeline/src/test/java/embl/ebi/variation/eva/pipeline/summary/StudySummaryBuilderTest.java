@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.summary;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test {@link StudySummaryBuilder}
+ */
+public class StudySummaryBuilderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void onlyTheChromosomeStartAndTypeAreRead() throws IOException {
+        Path transformedVariants = temporaryFolder.newFile("variants.json").toPath();
+        Files.write(transformedVariants, Arrays.asList(
+                "{\"type\":\"SNV\",\"chromosome\":\"1\",\"start\":10,\"sourceEntries\":{\"s_f\":{\"samplesData\":{\"S1\":{\"GT\":\"0|1\"}}}}}",
+                "",
+                "{\"sourceEntries\":{\"s_f\":{\"type\":\"nested\",\"start\":0}},\"ids\":[\"rs1\",\"rs2\"],\"start\":20,\"chromosome\":\"1\",\"type\":\"INDEL\"}",
+                "{\"chromosome\":\"2\",\"start\":20,\"type\":\"SNV\",\"end\":20}"), StandardCharsets.UTF_8);
+
+        StudySummary summary = new StudySummaryBuilder().build(transformedVariants, "studyId", "fileId", 100);
+
+        assertEquals(3, summary.getTotal());
+        assertEquals(2, summary.getChromosomeCount("1"));
+        assertEquals(1, summary.getChromosomeCount("2"));
+        assertEquals(Long.valueOf(2), summary.getTypeCounts().get("SNV"));
+        assertEquals(Long.valueOf(1), summary.getTypeCounts().get("INDEL"));
+    }
+
+    @Test
+    public void everyVariantOfATransformedFileIsCounted() throws Exception {
+        Path transformedVariants = Paths.get(StudySummaryBuilderTest.class.getResource(
+                "/small20.vcf.gz.variants.json.gz").toURI());
+
+        StudySummary summary = new StudySummaryBuilder().build(transformedVariants, "studyId", "fileId", 100);
+
+        assertEquals(countLines(transformedVariants), summary.getTotal());
+        assertEquals(summary.getTotal(), summary.getChromosomeCount("20"));
+    }
+
+    @Test(expected = IOException.class)
+    public void variantsWithoutTypeAreRejected() throws IOException {
+        Path transformedVariants = temporaryFolder.newFile("variants.json").toPath();
+        Files.write(transformedVariants, Arrays.asList("{\"chromosome\":\"1\",\"start\":10}"), StandardCharsets.UTF_8);
+
+        new StudySummaryBuilder().build(transformedVariants, "studyId", "fileId", 100);
+    }
+
+    private long countLines(Path gzipFile) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(gzipFile.toFile())), StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isEmpty()).count();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.pipeline.summary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test {@link StudySummary} and {@link HyperLogLog}
+ */
+public class StudySummaryTest {
+
+    @Test
+    public void countersAndDensityAreExact() {
+        StudySummary summary = new StudySummary("studyId", "fileId", 100);
+        summary.add("1", 10, "SNV");
+        summary.add("1", 10, "INDEL");
+        summary.add("1", 250, "SNV");
+        summary.add("GL000192.1", 5, "SNV");
+
+        assertEquals(4, summary.getTotal());
+        assertEquals(3L, (long) summary.getTypeCounts().get("SNV"));
+        assertEquals(1L, (long) summary.getTypeCounts().get("INDEL"));
+        assertEquals(3, summary.getChromosomeCount("1"));
+        assertEquals(1, summary.getChromosomeCount("GL000192.1"));
+        assertArrayEquals(new long[]{2, 0, 1}, summary.getDensity("1"));
+        assertEquals(3, summary.getDistinctPositions());
+    }
+
+    @Test
+    public void hyperLogLogEstimateIsClose() {
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        int distinct = 200000;
+        for (int repetition = 0; repetition < 2; repetition++) {
+            for (long i = 0; i < distinct; i++) {
+                hyperLogLog.addHash(HyperLogLog.hash(i));
+            }
+        }
+        // standard error with 2^14 registers is ~0.8%
+        assertEquals(distinct, hyperLogLog.estimate(), distinct * 0.03);
+    }
+
+    @Test
+    public void hyperLogLogsCanBeMerged() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (long i = 0; i < 1000; i++) {
+            first.addHash(HyperLogLog.hash(i));
+            second.addHash(HyperLogLog.hash(i + 500));
+        }
+
+        HyperLogLog merged = new HyperLogLog(first.getRegisters());
+        merged.merge(second);
+        assertEquals(1500, merged.estimate(), 1500 * 0.03);
+    }
+}
@@ -18,8 +18,8 @@
 
 package embl.ebi.variation.eva.vcfdump;
 
-import embl.ebi.variation.eva.vcfdump.cellbasewsclient.CellbaseWSClient;
 import embl.ebi.variation.eva.vcfdump.exception.CellbaseSequenceDownloadError;
+import embl.ebi.variation.eva.vcfdump.referencesequence.ReferenceSequenceProvider;
 import htsjdk.variant.variantcontext.*;
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.biodata.models.variant.Variant;
@@ -27,7 +27,6 @@ import org.opencb.biodata.models.variant.VariantSource;
 import org.opencb.biodata.models.variant.VariantSourceEntry;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Created by pagarcia on 27/06/2016.
@@ -37,45 +36,121 @@ public class BiodataVariantToVariantContextConverter {
     public static final String GENOTYPE_KEY = "GT";
     private final VariantContextBuilder variantContextBuilder;
     private List<VariantSource> sources;
-    private CellbaseWSClient cellbaseClient;
+    private ReferenceSequenceProvider referenceSequenceProvider;
     private String regionSequence;
     private Map<String, Map<String,String>> filesSampleNamesEquivalences;
     private static final int NO_CALL_ALLELE_INDEX = 2;
 
-    public BiodataVariantToVariantContextConverter(CellbaseWSClient cellbaseWSClient) {
-        this(null, cellbaseWSClient, null);
+    /**
+     * The alleles of the SNVs are created once, so the allele lists of their genotypes can be shared by all the SNVs
+     * with the same bases. They are indexed by reference base * 4 + alternate base, in the order of SNV_BASES.
+     */
+    private static final String SNV_BASES = "ACGT";
+    private static final Allele[][] SNV_ALLELES = createSnvAlleles();
+    private static final int MAX_CACHED_GENOTYPE_PATTERNS = 256;
+
+    private final GenotypeBuilder genotypeBuilder;
+    private final Map<String, GenotypePattern> genotypePatterns;
+    /**
+     * Genotype alleles by SNV alleles and genotype pattern id, and the ones of the current variant if it is not a SNV
+     */
+    private final List<Allele>[][] snvGenotypeAlleles;
+    private final List<Allele>[] variantGenotypeAlleles;
+
+    /**
+     * Column of every sample in the genotypes. If not provided, it is built from the sources on the first conversion
+     */
+    private SampleDictionary sampleDictionary;
+    private Genotype[] sampleGenotypes;
+    /**
+     * The sequence of longer regions is not downloaded in one go, only the nucleotide needed by each indel
+     */
+    static final int MAX_CACHED_REGION_LENGTH = 100000;
+
+    public BiodataVariantToVariantContextConverter(ReferenceSequenceProvider referenceSequenceProvider) {
+        this(null, referenceSequenceProvider, null);
     }
 
-    public BiodataVariantToVariantContextConverter(List<VariantSource> sources, CellbaseWSClient cellbaseWSClient,
+    /**
+     * @param referenceSequenceProvider CellBase or a local FASTA, to fill empty alleles. nullable.
+     */
+    public BiodataVariantToVariantContextConverter(List<VariantSource> sources,
+                                                   ReferenceSequenceProvider referenceSequenceProvider,
                                                    Map<String, Map<String,String>> filesSampleNamesEquivalences)
     {
         this.sources = sources;
-        this.cellbaseClient = cellbaseWSClient;
+        this.referenceSequenceProvider = referenceSequenceProvider;
         this.filesSampleNamesEquivalences = filesSampleNamesEquivalences;
         variantContextBuilder = new VariantContextBuilder();
+        genotypeBuilder = new GenotypeBuilder();
+        genotypePatterns = new HashMap<>();
+        snvGenotypeAlleles = newAlleleListArray(SNV_ALLELES.length, MAX_CACHED_GENOTYPE_PATTERNS);
+        variantGenotypeAlleles = newAlleleListArray(1, MAX_CACHED_GENOTYPE_PATTERNS)[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Allele>[][] newAlleleListArray(int rows, int columns) {
+        return new List[rows][columns];
+    }
+
+    private static Allele[][] createSnvAlleles() {
+        Allele[][] snvAlleles = new Allele[SNV_BASES.length() * SNV_BASES.length()][];
+        for (int reference = 0; reference < SNV_BASES.length(); reference++) {
+            for (int alternate = 0; alternate < SNV_BASES.length(); alternate++) {
+                snvAlleles[reference * SNV_BASES.length() + alternate] = new Allele[]{
+                        Allele.create(SNV_BASES.substring(reference, reference + 1), true),
+                        Allele.create(SNV_BASES.substring(alternate, alternate + 1)),
+                        Allele.NO_CALL};
+            }
+        }
+        return snvAlleles;
     }
 
     public VariantContext transform(Variant variant, Region region) throws CellbaseSequenceDownloadError {
         String[] allelesArray = getAllelesArray(variant, region);
 
-        Set<Genotype> genotypes = getGenotypes(variant, allelesArray);
+        Allele[] variantAlleles;
+        List<Allele>[] genotypeAllelesByPattern;
+        int snvIndex = getSnvIndex(allelesArray);
+        if (snvIndex >= 0) {
+            variantAlleles = SNV_ALLELES[snvIndex];
+            genotypeAllelesByPattern = snvGenotypeAlleles[snvIndex];
+        } else {
+            variantAlleles = new Allele[]{Allele.create(allelesArray[0], true), Allele.create(allelesArray[1]), Allele.NO_CALL};
+            genotypeAllelesByPattern = variantGenotypeAlleles;
+            Arrays.fill(genotypeAllelesByPattern, null);
+        }
+
+        GenotypesContext genotypes = getGenotypes(variant, variantAlleles, genotypeAllelesByPattern);
 
         VariantContext variantContext = variantContextBuilder
                 .chr(variant.getChromosome())
                 .start(variant.getStart())
                 .stop(variant.getEnd())
                 .noID()
-                .alleles(allelesArray)
+                .alleles(Arrays.asList(variantAlleles[0], variantAlleles[1]))
                 .unfiltered()
                 .genotypes(genotypes).make();
         return variantContext;
     }
 
+    /**
+     * @return the index of the alleles in SNV_ALLELES, or -1 if the variant is not a SNV of the bases A, C, G or T
+     */
+    private static int getSnvIndex(String[] allelesArray) {
+        if (allelesArray[0].length() != 1 || allelesArray[1].length() != 1) {
+            return -1;
+        }
+        int reference = SNV_BASES.indexOf(allelesArray[0].charAt(0));
+        int alternate = SNV_BASES.indexOf(allelesArray[1].charAt(0));
+        return reference >= 0 && alternate >= 0 ? reference * SNV_BASES.length() + alternate : -1;
+    }
+
     private String[] getAllelesArray(Variant variant, Region region) throws CellbaseSequenceDownloadError {
         String[] allelesArray;
-        // if there are indels, we cannot use the normalized alleles, (hts forbids empty alleles) so we have to take them from cellbase
+        // if there are indels, we cannot use the normalized alleles, (hts forbids empty alleles) so we have to take them from the reference
         if (variant.getReference().isEmpty() || variant.getAlternate().isEmpty()) {
-            String contextNucleotide = getContextNucleotideFromCellbase(variant, variant.getStart(), region);
+            String contextNucleotide = getContextNucleotide(variant, variant.getStart(), region);
             // update variant ref, alt, start and end adding the context nucleotide
             variant.setReference(contextNucleotide + variant.getReference());
             variant.setAlternate(contextNucleotide + variant.getAlternate());
@@ -87,38 +162,38 @@ public class BiodataVariantToVariantContextConverter {
         return allelesArray;
     }
 
-    private String getContextNucleotideFromCellbase(Variant variant, Integer start, Region region) throws CellbaseSequenceDownloadError {
-        if (cellbaseClient != null) {
+    private String getContextNucleotide(Variant variant, Integer start, Region region) throws CellbaseSequenceDownloadError {
+        if (referenceSequenceProvider != null) {
             String contextNucleotide;
             int contextNucleotidePosition = start - 1;
-            if (region != null) {
-                contextNucleotide = getContextNucleotideFromCellbaseCachingRegions(variant.getChromosome(), contextNucleotidePosition, region);
+            if (region != null && region.getEnd() - region.getStart() + 1 <= MAX_CACHED_REGION_LENGTH) {
+                contextNucleotide = getContextNucleotideCachingRegions(variant.getChromosome(), contextNucleotidePosition, region);
             } else {
                 try {
-                    contextNucleotide = cellbaseClient.getSequence(new Region(variant.getChromosome(), contextNucleotidePosition, contextNucleotidePosition));
+                    contextNucleotide = referenceSequenceProvider.getSequence(new Region(variant.getChromosome(), contextNucleotidePosition, contextNucleotidePosition));
                 } catch (Exception e) {
-                    throw new CellbaseSequenceDownloadError("Error getting from Cellbase sequence for Region " + variant.getChromosome() + ":" +
+                    throw new CellbaseSequenceDownloadError("Error getting the reference sequence for Region " + variant.getChromosome() + ":" +
                             contextNucleotidePosition + "-" + contextNucleotidePosition, e);
                 }
             }
             return contextNucleotide;
         } else {
             throw new IllegalStateException(String.format(
-                    "CellBase was not provided, needed to fill empty alleles in variant %s:%d:%s>%s", variant.getChromosome(),
+                    "CellBase or a reference FASTA was not provided, needed to fill empty alleles in variant %s:%d:%s>%s", variant.getChromosome(),
                     variant.getStart(), variant.getReference(), variant.getAlternate()));
         }
     }
 
-    private String getContextNucleotideFromCellbaseCachingRegions(String chromosome, int contextNucleotidePosition, Region region) throws CellbaseSequenceDownloadError {
+    private String getContextNucleotideCachingRegions(String chromosome, int contextNucleotidePosition, Region region) throws CellbaseSequenceDownloadError {
         int regionStart = region.getStart() - 1;
         if (regionSequence == null) {
             // if an indel start is the first nucleotide of the region, we will need the previous nucleotide, so we are adding
             // the preceding nucleotide to the region (region.getStart()-1)
             int regionEnd = region.getEnd();
             try {
-                regionSequence = cellbaseClient.getSequence(new Region(chromosome, regionStart, regionEnd));
+                regionSequence = referenceSequenceProvider.getSequence(new Region(chromosome, regionStart, regionEnd));
             } catch (Exception e) {
-                throw new CellbaseSequenceDownloadError("Error getting from Cellbase sequence for Region " + chromosome + ":"
+                throw new CellbaseSequenceDownloadError("Error getting the reference sequence for Region " + chromosome + ":"
                         + regionStart + "-" + regionEnd, e);
             }
         }
@@ -131,60 +206,105 @@ public class BiodataVariantToVariantContextConverter {
         return regionSequence.substring(relativePosition, relativePosition + 1);
     }
 
-    private Set<Genotype> getGenotypes(Variant variant, String[] allelesArray) {
-        Set<Genotype> genotypes = new HashSet<>();
-
-        Allele[] variantAlleles =
-                {Allele.create(allelesArray[0], true), Allele.create(allelesArray[1]), Allele.create(Allele.NO_CALL, false)};
+    private GenotypesContext getGenotypes(Variant variant, Allele[] variantAlleles, List<Allele>[] genotypeAllelesByPattern) {
+        if (sampleDictionary == null) {
+            sampleDictionary = SampleDictionary.fromEquivalences(sources, filesSampleNamesEquivalences);
+        }
+        if (sampleGenotypes == null || sampleGenotypes.length != sampleDictionary.size()) {
+            sampleGenotypes = new Genotype[sampleDictionary.size()];
+        } else {
+            Arrays.fill(sampleGenotypes, null);
+        }
+        int orderedGenotypes = 0;
+        List<Genotype> unorderedGenotypes = null;
 
-        for (VariantSource source : sources) {
-            List<VariantSourceEntry> variantStudyEntries =
-                    variant.getSourceEntries().values().stream().filter(s -> s.getStudyId().equals(source.getStudyId())).collect(Collectors.toList());
-            for (VariantSourceEntry variantStudyEntry : variantStudyEntries) {
-                genotypes = getStudyGenotypes(genotypes, variantAlleles, variantStudyEntry);
+        for (VariantSourceEntry variantStudyEntry : variant.getSourceEntries().values()) {
+            if (!sampleDictionary.containsStudy(variantStudyEntry.getStudyId())) {
+                continue;
+            }
+            String fileId = variantStudyEntry.getFileId();
+            Map<String, Integer> fileSampleColumns = sampleDictionary.getSampleColumns(fileId);
+            for (Map.Entry<String, Map<String, String>> sampleEntry : variantStudyEntry.getSamplesData().entrySet()) {
+                Integer column = fileSampleColumns.get(sampleEntry.getKey());
+                String sampleName = column != null ? sampleDictionary.getSampleName(column)
+                                                   : sampleDictionary.getOutputSampleName(fileId, sampleEntry.getKey());
+                Genotype sampleGenotype = parseSampleGenotype(variantAlleles, genotypeAllelesByPattern, sampleName,
+                                                              sampleEntry.getValue().get(GENOTYPE_KEY));
+                if (column != null) {
+                    if (sampleGenotypes[column] == null) {
+                        orderedGenotypes++;
+                    }
+                    sampleGenotypes[column] = sampleGenotype;
+                } else {
+                    // samples not declared in the sources, only found in the variant
+                    if (unorderedGenotypes == null) {
+                        unorderedGenotypes = new ArrayList<>();
+                    }
+                    unorderedGenotypes.add(sampleGenotype);
+                }
             }
         }
-        return genotypes;
-    }
 
-    private Set<Genotype> getStudyGenotypes(Set<Genotype> genotypes, Allele[] variantAlleles, VariantSourceEntry variantStudyEntry) {
-        for (Map.Entry<String, Map<String, String>> sampleEntry : variantStudyEntry.getSamplesData().entrySet()) {
-            String sampleGenotypeString = sampleEntry.getValue().get(GENOTYPE_KEY);
-            Genotype sampleGenotype =
-                    parseSampleGenotype(variantAlleles, variantStudyEntry.getFileId(), sampleEntry.getKey(), sampleGenotypeString);
-            genotypes.add(sampleGenotype);
+        if (unorderedGenotypes == null && orderedGenotypes == sampleGenotypes.length) {
+            // the usual case: every sample has a genotype, so the sample lookup tables can be shared by all the variants
+            return GenotypesContext.create(new ArrayList<>(Arrays.asList(sampleGenotypes)),
+                                           sampleDictionary.getSampleNameColumns(), sampleDictionary.getSortedSampleNames());
+        }
+        ArrayList<Genotype> genotypes = new ArrayList<>(orderedGenotypes + (unorderedGenotypes != null ? unorderedGenotypes.size() : 0));
+        for (Genotype sampleGenotype : sampleGenotypes) {
+            if (sampleGenotype != null) {
+                genotypes.add(sampleGenotype);
+            }
         }
-        return genotypes;
+        if (unorderedGenotypes != null) {
+            genotypes.addAll(unorderedGenotypes);
+        }
+        return GenotypesContext.create(genotypes);
     }
 
-    private Genotype parseSampleGenotype(Allele[] variantAlleles, String fileId, String sampleName, String sampleGenotypeString) {
-        // use opencb biodata-models Genotype class for parsing the genotype string and get the list of genotype allele indexes
-        org.opencb.biodata.models.feature.Genotype genotype =
-                new org.opencb.biodata.models.feature.Genotype(sampleGenotypeString, variantAlleles[0].getBaseString(), variantAlleles[1].getBaseString());
-        List<Allele> genotypeAlleles = new ArrayList<>(2);
-        for (int index : genotype.getAllelesIdx()) {
-            // every allele not 0 or 1 will be considered no call
-            if (index == -1 || index > NO_CALL_ALLELE_INDEX) {
-                index = NO_CALL_ALLELE_INDEX;
+    private Genotype parseSampleGenotype(Allele[] variantAlleles, List<Allele>[] genotypeAllelesByPattern, String sampleName,
+                                         String sampleGenotypeString) {
+        GenotypePattern pattern = getGenotypePattern(sampleGenotypeString, variantAlleles);
+        List<Allele> genotypeAlleles;
+        if (pattern.id != GenotypePattern.NOT_CACHED) {
+            genotypeAlleles = genotypeAllelesByPattern[pattern.id];
+            if (genotypeAlleles == null) {
+                genotypeAlleles = pattern.getAlleles(variantAlleles);
+                genotypeAllelesByPattern[pattern.id] = genotypeAlleles;
             }
-            genotypeAlleles.add(variantAlleles[index]);
+        } else {
+            genotypeAlleles = pattern.getAlleles(variantAlleles);
         }
 
-        GenotypeBuilder builder = new GenotypeBuilder()
-                .name(getFixedSampleName(fileId, sampleName))
-                .phased(genotype.isPhased())
-                .alleles(genotypeAlleles);
+        genotypeBuilder.reset(false);
+        return genotypeBuilder.name(sampleName).phased(pattern.phased).alleles(genotypeAlleles).make();
+    }
 
-        return builder.make();
+    private GenotypePattern getGenotypePattern(String sampleGenotypeString, Allele[] variantAlleles) {
+        GenotypePattern pattern = genotypePatterns.get(sampleGenotypeString);
+        if (pattern == null) {
+            // use opencb biodata-models Genotype class for parsing the genotype string and get the list of genotype allele indexes
+            org.opencb.biodata.models.feature.Genotype genotype = new org.opencb.biodata.models.feature.Genotype(
+                    sampleGenotypeString, variantAlleles[0].getBaseString(), variantAlleles[1].getBaseString());
+            // genotypes written with bases instead of indexes (like A/T) depend on the alleles of each variant
+            boolean cacheable = isNumericGenotype(sampleGenotypeString) && genotypePatterns.size() < MAX_CACHED_GENOTYPE_PATTERNS;
+            pattern = new GenotypePattern(cacheable ? genotypePatterns.size() : GenotypePattern.NOT_CACHED,
+                                          genotype.getAllelesIdx(), genotype.isPhased());
+            if (cacheable) {
+                genotypePatterns.put(sampleGenotypeString, pattern);
+            }
+        }
+        return pattern;
     }
 
-    private String getFixedSampleName(String fileId, String sampleName) {
-        // this method returns the "studyId appended" sample name if there are sample name conflicts
-        if (filesSampleNamesEquivalences != null) {
-            return filesSampleNamesEquivalences.get(fileId).get(sampleName);
-        } else {
-            return sampleName;
+    private static boolean isNumericGenotype(String sampleGenotypeString) {
+        for (int i = 0; i < sampleGenotypeString.length(); i++) {
+            char c = sampleGenotypeString.charAt(i);
+            if (!(c >= '0' && c <= '9') && c != '.' && c != '-' && c != '/' && c != '|') {
+                return false;
+            }
         }
+        return true;
     }
 
     public void cleanCachedRegionSequence() {
@@ -193,9 +313,48 @@ public class BiodataVariantToVariantContextConverter {
 
     public void setSources(List<VariantSource> sources) {
         this.sources = sources;
+        sampleDictionary = null;
     }
 
     public void setFilesSampleNamesEquivalences(Map<String, Map<String, String>> filesSampleNamesEquivalences) {
         this.filesSampleNamesEquivalences = filesSampleNamesEquivalences;
+        sampleDictionary = null;
+    }
+
+    /**
+     * Replaces the sources and sample names equivalences, which are only used to build a dictionary if there is none
+     */
+    public void setSampleDictionary(SampleDictionary sampleDictionary) {
+        this.sampleDictionary = sampleDictionary;
+    }
+
+    /**
+     * Allele indexes and phase of a genotype string like "0|1", independent of the alleles of the variant. Every
+     * allele index other than 0 and 1 is a no call.
+     */
+    private static final class GenotypePattern {
+        static final int NOT_CACHED = -1;
+
+        private final int id;
+        private final int[] alleleIndexes;
+        private final boolean phased;
+
+        GenotypePattern(int id, int[] allelesIdx, boolean phased) {
+            this.id = id;
+            this.alleleIndexes = new int[allelesIdx.length];
+            for (int i = 0; i < allelesIdx.length; i++) {
+                int index = allelesIdx[i];
+                this.alleleIndexes[i] = index == -1 || index > NO_CALL_ALLELE_INDEX ? NO_CALL_ALLELE_INDEX : index;
+            }
+            this.phased = phased;
+        }
+
+        List<Allele> getAlleles(Allele[] variantAlleles) {
+            Allele[] genotypeAlleles = new Allele[alleleIndexes.length];
+            for (int i = 0; i < alleleIndexes.length; i++) {
+                genotypeAlleles[i] = variantAlleles[alleleIndexes[i]];
+            }
+            return Collections.unmodifiableList(Arrays.asList(genotypeAlleles));
+        }
     }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import embl.ebi.variation.eva.vcfdump.referencesequence.CachingSequenceProvider;
+
+/**
+ * Tuning of an export: concurrency, reference sequence and output format. Every option has a default, so only the
+ * ones that differ need to be set, e.g. new ExportOptions().setThreads(4).setOutputFormat(OutputFormat.BCF)
+ */
+public class ExportOptions {
+
+    public static final int DEFAULT_THREADS = 1;
+    public static final int DEFAULT_MAX_PENDING_REGIONS = 16;
+    public static final int DEFAULT_BUFFER_SIZE = 1000;
+    public static final int DEFAULT_VARIANTS_PER_REGION = 10000;
+    public static final int DEFAULT_REFERENCE_CACHE_SEGMENTS = 64;
+    public static final OutputFormat DEFAULT_OUTPUT_FORMAT = OutputFormat.VCF_GZ;
+    public static final int DEFAULT_COMPRESSION_THREADS = 1;
+    public static final int DEFAULT_COMPRESSION_LEVEL = ParallelBlockCompressedOutputStream.DEFAULT_COMPRESSION_LEVEL;
+
+    private int threads = DEFAULT_THREADS;
+    private int maxPendingRegions = DEFAULT_MAX_PENDING_REGIONS;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int variantsPerRegion = DEFAULT_VARIANTS_PER_REGION;
+    private String referenceFasta;
+    private int referenceCacheSegments = DEFAULT_REFERENCE_CACHE_SEGMENTS;
+    private OutputFormat outputFormat = DEFAULT_OUTPUT_FORMAT;
+    private int compressionThreads = DEFAULT_COMPRESSION_THREADS;
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+
+    /**
+     * @param threads number of threads that query and convert the regions. With 1, everything is done in the thread
+     *                calling {@link VariantExporterController#run}
+     */
+    public ExportOptions setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("'threads' must be at least 1");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @param maxPendingRegions maximum number of regions being exported or waiting for a previous region to be written,
+     *                          which bounds the memory used when threads > 1
+     */
+    public ExportOptions setMaxPendingRegions(int maxPendingRegions) {
+        if (maxPendingRegions < 1) {
+            throw new IllegalArgumentException("'maxPendingRegions' must be at least 1");
+        }
+        this.maxPendingRegions = maxPendingRegions;
+        return this;
+    }
+
+    /**
+     * @param bufferSize maximum number of variants queued between the database and the conversion, and between the
+     *                   conversion and the output file
+     */
+    public ExportOptions setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("'bufferSize' must be at least 1");
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * @param variantsPerRegion number of variants exported in every region, or 0 to use regions of a fixed size
+     */
+    public ExportOptions setVariantsPerRegion(int variantsPerRegion) {
+        this.variantsPerRegion = variantsPerRegion;
+        return this;
+    }
+
+    /**
+     * @param referenceFasta FASTA file, indexed with samtools faidx, used for the context nucleotide of the indels.
+     *                       If null, the sequence is downloaded from CellBase
+     */
+    public ExportOptions setReferenceFasta(String referenceFasta) {
+        this.referenceFasta = referenceFasta;
+        return this;
+    }
+
+    /**
+     * @param referenceCacheSegments number of segments of the reference sequence, of
+     *                               {@link CachingSequenceProvider#DEFAULT_SEGMENT_SIZE} bases, kept in memory
+     */
+    public ExportOptions setReferenceCacheSegments(int referenceCacheSegments) {
+        this.referenceCacheSegments = referenceCacheSegments;
+        return this;
+    }
+
+    /**
+     * @param outputFormat VCF compressed with BGZF or BCF, indexed while written. VCF_GZ is the one to share, the BCF
+     *                     is only readable by htsjdk, see {@link OutputFormat#BCF}
+     */
+    public ExportOptions setOutputFormat(OutputFormat outputFormat) {
+        if (outputFormat == null) {
+            throw new IllegalArgumentException("'outputFormat' is required");
+        }
+        this.outputFormat = outputFormat;
+        return this;
+    }
+
+    /**
+     * @param compressionThreads number of threads compressing the blocks of a VCF_GZ output
+     */
+    public ExportOptions setCompressionThreads(int compressionThreads) {
+        if (compressionThreads < 1) {
+            throw new IllegalArgumentException("'compressionThreads' must be at least 1");
+        }
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
+    /**
+     * @param compressionLevel from 0 to 9, for a VCF_GZ output
+     */
+    public ExportOptions setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("'compressionLevel' must be between 0 and 9");
+        }
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getMaxPendingRegions() {
+        return maxPendingRegions;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getVariantsPerRegion() {
+        return variantsPerRegion;
+    }
+
+    public String getReferenceFasta() {
+        return referenceFasta;
+    }
+
+    public int getReferenceCacheSegments() {
+        return referenceCacheSegments;
+    }
+
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Creates the tabix index of a VCF while it is written into a {@link ParallelBlockCompressedOutputStream}.
+ *
+ * The index needs the position of every variant in the compressed file, which is not known until the block of the
+ * variant is compressed and written. The variants are kept until then, which is at most the blocks being compressed.
+ */
+public class OnTheFlyTabixIndexer implements ParallelBlockCompressedOutputStream.BlockListener {
+
+    private final ParallelBlockCompressedOutputStream outputStream;
+    private final TabixIndexCreator indexCreator;
+    private final Deque<PendingFeature> pendingFeatures;
+
+    /**
+     * @param sequenceDictionary nullable; if present, the index also lists the sequences without variants
+     */
+    public OnTheFlyTabixIndexer(ParallelBlockCompressedOutputStream outputStream, SAMSequenceDictionary sequenceDictionary) {
+        this.outputStream = outputStream;
+        this.indexCreator = sequenceDictionary != null ? new TabixIndexCreator(sequenceDictionary, TabixFormat.VCF)
+                                                       : new TabixIndexCreator(TabixFormat.VCF);
+        this.pendingFeatures = new ArrayDeque<>();
+        outputStream.setBlockListener(this);
+    }
+
+    /**
+     * Must be called right before writing the feature into the stream, and in the same order
+     */
+    public void addFeature(Feature feature) {
+        pendingFeatures.add(new PendingFeature(feature, outputStream.getPosition()));
+    }
+
+    @Override
+    public void blockWritten(long blockIndex, long compressedOffset) {
+        while (!pendingFeatures.isEmpty()
+                && pendingFeatures.peekFirst().position / ParallelBlockCompressedOutputStream.BLOCK_SIZE == blockIndex) {
+            PendingFeature pendingFeature = pendingFeatures.removeFirst();
+            int offsetInBlock = (int) (pendingFeature.position % ParallelBlockCompressedOutputStream.BLOCK_SIZE);
+            indexCreator.addFeature(pendingFeature.feature,
+                                    makeFilePointer(compressedOffset, offsetInBlock));
+        }
+    }
+
+    /**
+     * Writes the index next to the VCF, with the extension .tbi. The stream must be closed before.
+     */
+    public void writeIndex(File vcfFile) throws IOException {
+        if (!pendingFeatures.isEmpty()) {
+            throw new IllegalStateException("The output stream must be closed before writing the index");
+        }
+        long endOfData = makeFilePointer(outputStream.getCompressedPosition(), 0);
+        Index index = indexCreator.finalizeIndex(endOfData);
+        index.writeBasedOnFeatureFile(vcfFile);
+    }
+
+    /**
+     * Virtual file pointer of BGZF: offset of the compressed block in the upper 48 bits, and offset inside the
+     * uncompressed block in the lower 16. The htsjdk method that builds it is not public.
+     */
+    static long makeFilePointer(long blockAddress, int offsetInBlock) {
+        return blockAddress << 16 | offsetInBlock;
+    }
+
+    private static class PendingFeature {
+        private final Feature feature;
+        private final long position;
+
+        PendingFeature(Feature feature, long position) {
+            this.feature = feature;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import htsjdk.tribble.Tribble;
+import htsjdk.tribble.util.TabixUtils;
+
+/**
+ * Formats of the exported file. Both are indexed while they are written, if the VCF header has a sequence dictionary.
+ * VCF_GZ is the default, and the one readable by every tool.
+ */
+public enum OutputFormat {
+
+    /**
+     * VCF compressed with BGZF, indexed with tabix
+     */
+    VCF_GZ(".vcf.gz", TabixUtils.STANDARD_INDEX_EXTENSION),
+
+    /**
+     * BCF, indexed with a Tribble index. The variants are encoded in binary, without formatting them as text.
+     *
+     * htsjdk writes BCF 2.1, which bcftools and the rest of htslib (that need BCF 2.2) can't read, and the ".idx"
+     * index is only understood by htsjdk, so this format is only for tools based on htsjdk (e.g. GATK or Picard). The
+     * htsjdk version used can't write BCF 2.2 or CSI indexes.
+     */
+    BCF(".bcf", Tribble.STANDARD_INDEX_EXTENSION);
+
+    private final String extension;
+    private final String indexExtension;
+
+    OutputFormat(String extension, String indexExtension) {
+        this.extension = extension;
+        this.indexExtension = indexExtension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return extension appended to the name of the exported file to get the name of its index
+     */
+    public String getIndexExtension() {
+        return indexExtension;
+    }
+}
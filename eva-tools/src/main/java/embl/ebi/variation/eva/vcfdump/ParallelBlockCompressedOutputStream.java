@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes BGZF (the block compressed gzip of tabix and samtools), compressing the blocks in a pool of threads.
+ *
+ * The data is cut in blocks of {@link #BLOCK_SIZE} bytes, which are compressed in parallel and written in order by
+ * the thread that writes into this stream, through a {@link ReorderBuffer}. Every block but the last one is full, so
+ * the block of any position of the uncompressed data is known before the block is compressed, see
+ * {@link BlockListener}. {@link #flush} writes the blocks already complete, but doesn't cut the current one.
+ *
+ * Instances are not thread safe. {@link #close} writes the last block and the empty block that marks the end of a BGZF
+ * file.
+ */
+public class ParallelBlockCompressedOutputStream extends OutputStream {
+
+    /**
+     * Uncompressed bytes per block, like samtools, so even incompressible data fits in the maximum BGZF block size
+     */
+    public static final int BLOCK_SIZE = 0xff00;
+    public static final int DEFAULT_COMPRESSION_LEVEL = 5;
+
+    private static final int MAX_COMPRESSED_BLOCK_SIZE = 64 * 1024;
+    private static final int BLOCK_HEADER_LENGTH = 18;
+    private static final int BLOCK_FOOTER_LENGTH = 8;
+    private static final byte[] EMPTY_BLOCK = {31, -117, 8, 4, 0, 0, 0, 0, 0, -1, 6, 0, 66, 67, 2, 0, 27, 0, 3, 0, 0, 0,
+            0, 0, 0, 0, 0, 0};
+
+    /**
+     * Gets the position of every block in the compressed output, in the same order the blocks are written
+     */
+    public interface BlockListener {
+        /**
+         * @param blockIndex number of the block, starting at 0. It contains the uncompressed data from
+         *                   blockIndex * BLOCK_SIZE
+         * @param compressedOffset position of the block in the compressed output
+         */
+        void blockWritten(long blockIndex, long compressedOffset);
+    }
+
+    private final OutputStream out;
+    private final ExecutorService compressors;
+    private final BlockingQueue<Deflater> deflaters;
+    private final ReorderBuffer<byte[]> pendingBlocks;
+    private BlockListener blockListener;
+    private byte[] currentBlock;
+    private int currentBlockLength;
+    private long submittedBlocks;
+    private long writtenBlocks;
+    private long compressedPosition;
+    private boolean closed;
+
+    /**
+     * @param threads number of threads compressing blocks
+     * @param compressionLevel from 0 (no compression) to 9 (best compression)
+     */
+    public ParallelBlockCompressedOutputStream(OutputStream out, int threads, int compressionLevel) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of compression threads must be at least 1, not " + threads);
+        }
+        if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("The compression level must be between 0 and 9, not " + compressionLevel);
+        }
+        this.out = out;
+        this.compressors = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bgzf-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deflaters = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < threads; i++) {
+            deflaters.add(new Deflater(compressionLevel, true));
+        }
+        // a few blocks per thread, so the threads don't wait while the oldest block is written
+        this.pendingBlocks = new ReorderBuffer<>(threads * 4, this::writeBlock);
+        this.currentBlock = new byte[BLOCK_SIZE];
+    }
+
+    public void setBlockListener(BlockListener blockListener) {
+        this.blockListener = blockListener;
+    }
+
+    /**
+     * @return number of uncompressed bytes written into the stream
+     */
+    public long getPosition() {
+        return submittedBlocks * BLOCK_SIZE + currentBlockLength;
+    }
+
+    /**
+     * @return number of compressed bytes already written into the underlying stream, excluding the end of file block
+     */
+    public long getCompressedPosition() {
+        return compressedPosition;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkOpen();
+        currentBlock[currentBlockLength++] = (byte) b;
+        if (currentBlockLength == BLOCK_SIZE) {
+            submitCurrentBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        checkOpen();
+        while (length > 0) {
+            int copied = Math.min(length, BLOCK_SIZE - currentBlockLength);
+            System.arraycopy(bytes, offset, currentBlock, currentBlockLength, copied);
+            currentBlockLength += copied;
+            offset += copied;
+            length -= copied;
+            if (currentBlockLength == BLOCK_SIZE) {
+                submitCurrentBlock();
+            }
+        }
+    }
+
+    /**
+     * Waits for the complete blocks to be compressed and written. The data of the current block stays in memory.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        try {
+            pendingBlocks.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (currentBlockLength > 0) {
+                submitCurrentBlock();
+            }
+            pendingBlocks.flush();
+            out.write(EMPTY_BLOCK);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pendingBlocks.cancel();
+            compressors.shutdownNow();
+            deflaters.forEach(Deflater::end);
+            out.close();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The stream is closed");
+        }
+    }
+
+    private void submitCurrentBlock() throws IOException {
+        byte[] block = currentBlock;
+        int length = currentBlockLength;
+        currentBlock = new byte[BLOCK_SIZE];
+        currentBlockLength = 0;
+        submittedBlocks++;
+        try {
+            pendingBlocks.add(compressors.submit(() -> compressBlock(block, length)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeBlock(byte[] compressedBlock) {
+        try {
+            out.write(compressedBlock);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (blockListener != null) {
+            blockListener.blockWritten(writtenBlocks, compressedPosition);
+        }
+        writtenBlocks++;
+        compressedPosition += compressedBlock.length;
+    }
+
+    private byte[] compressBlock(byte[] data, int length) throws InterruptedException {
+        byte[] block = new byte[MAX_COMPRESSED_BLOCK_SIZE];
+        int maxCompressedLength = MAX_COMPRESSED_BLOCK_SIZE - BLOCK_HEADER_LENGTH - BLOCK_FOOTER_LENGTH;
+        Deflater deflater = deflaters.take();
+        int compressedLength;
+        try {
+            compressedLength = deflate(deflater, data, length, block, maxCompressedLength);
+        } finally {
+            deflaters.put(deflater);
+        }
+        if (compressedLength < 0) {
+            // the data grew when compressed, store it as it is
+            Deflater noCompression = new Deflater(Deflater.NO_COMPRESSION, true);
+            try {
+                compressedLength = deflate(noCompression, data, length, block, maxCompressedLength);
+            } finally {
+                noCompression.end();
+            }
+            if (compressedLength < 0) {
+                throw new IllegalStateException("A block of " + length + " bytes doesn't fit in a BGZF block");
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        int blockSize = BLOCK_HEADER_LENGTH + compressedLength + BLOCK_FOOTER_LENGTH;
+        System.arraycopy(EMPTY_BLOCK, 0, block, 0, BLOCK_HEADER_LENGTH);
+        writeLittleEndianShort(block, 16, blockSize - 1);
+        writeLittleEndianInt(block, BLOCK_HEADER_LENGTH + compressedLength, (int) crc.getValue());
+        writeLittleEndianInt(block, BLOCK_HEADER_LENGTH + compressedLength + 4, length);
+        return Arrays.copyOf(block, blockSize);
+    }
+
+    /**
+     * @return the compressed length, or -1 if it is longer than maxCompressedLength
+     */
+    private int deflate(Deflater deflater, byte[] data, int length, byte[] block, int maxCompressedLength) {
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        int compressedLength = deflater.deflate(block, BLOCK_HEADER_LENGTH, maxCompressedLength);
+        return deflater.finished() ? compressedLength : -1;
+    }
+
+    private static void writeLittleEndianShort(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void writeLittleEndianInt(byte[] bytes, int offset, int value) {
+        for (int i = 0; i < 4; i++) {
+            bytes[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Iterates another iterator in a background thread, so the next items are being read (e.g. from the database) while
+ * the current ones are processed. At most `capacity` items are kept in memory: the background thread waits while the
+ * queue is full.
+ *
+ * An exception of the source iterator is thrown by {@link #hasNext} once the items read before it are consumed.
+ * {@link #close} must be called if the iteration is not finished, to stop the background thread.
+ */
+public class PrefetchingIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private Object next;
+    private boolean finished;
+
+    public PrefetchingIterator(Iterator<T> source, int capacity, String threadName) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the queue must be at least 1, not " + capacity);
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(() -> prefetch(source), threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void prefetch(Iterator<T> source) {
+        Object last = END;
+        try {
+            while (source.hasNext()) {
+                queue.put(source.next());
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (RuntimeException e) {
+            last = new Failure(e);
+        } catch (Error e) {
+            last = new Failure(new RuntimeException(e));
+        }
+        try {
+            queue.put(last);
+        } catch (InterruptedException e) {
+            // closed before the end was consumed, nobody is waiting for it
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return false;
+        }
+        if (next == null) {
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the next item", e);
+            }
+        }
+        if (next == END) {
+            finished = true;
+            return false;
+        } else if (next instanceof Failure) {
+            finished = true;
+            throw ((Failure) next).exception;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T item = (T) next;
+        next = null;
+        return item;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        thread.interrupt();
+        queue.clear();
+    }
+
+    private static class Failure {
+        private final RuntimeException exception;
+
+        Failure(RuntimeException exception) {
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands the items to another consumer (e.g. a VCF writer) that runs in a background thread, in the same order. At
+ * most `capacity` items are waiting: {@link #accept} blocks while the queue is full.
+ *
+ * If the delegate fails, its exception is thrown by the next call to {@link #accept} or {@link #close}. {@link #close}
+ * waits until all the queued items are consumed.
+ */
+public class QueuedConsumer<T> implements Consumer<T>, AutoCloseable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private volatile RuntimeException failure;
+    private boolean closed;
+
+    public QueuedConsumer(Consumer<T> delegate, int capacity, String threadName) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the queue must be at least 1, not " + capacity);
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(() -> consume(delegate), threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consume(Consumer<T> delegate) {
+        try {
+            Object item;
+            while ((item = queue.take()) != END) {
+                delegate.accept((T) item);
+            }
+        } catch (InterruptedException e) {
+            // the producer gave up
+        } catch (RuntimeException e) {
+            failure = e;
+            // let a producer blocked on a full queue notice the failure
+            queue.clear();
+        }
+    }
+
+    @Override
+    public void accept(T item) {
+        checkFailure();
+        put(item);
+    }
+
+    /**
+     * Waits until all the queued items are consumed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        put(END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the queued items to be consumed", e);
+        }
+        checkFailure();
+    }
+
+    private void put(Object item) {
+        try {
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing an item", e);
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Hands the results of tasks that may complete in any order to a consumer in the order the tasks were added.
+ *
+ * At most `capacity` results are pending (running, or completed but waiting for an earlier one): adding another one
+ * blocks until the oldest is consumed, which bounds the memory used by the completed results. The consumer is only
+ * called from the thread that adds the tasks. Instances are not thread safe.
+ */
+public class ReorderBuffer<T> {
+
+    private final int capacity;
+    private final Consumer<T> consumer;
+    private final Deque<Future<T>> pending;
+
+    public ReorderBuffer(int capacity, Consumer<T> consumer) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the reorder buffer must be at least 1, not " + capacity);
+        }
+        this.capacity = capacity;
+        this.consumer = consumer;
+        this.pending = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Consumes the results that are already complete and in order, and waits for the oldest ones while the buffer is
+     * full.
+     *
+     * @throws RuntimeException if any of the consumed tasks failed; the rest of the pending tasks are cancelled
+     */
+    public void add(Future<T> result) {
+        while (pending.size() >= capacity) {
+            consumeOldest();
+        }
+        pending.addLast(result);
+        while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+            consumeOldest();
+        }
+    }
+
+    /**
+     * Waits for all the pending tasks and consumes their results.
+     */
+    public void flush() {
+        while (!pending.isEmpty()) {
+            consumeOldest();
+        }
+    }
+
+    /**
+     * Cancels the tasks that were not consumed yet, without waiting for them.
+     */
+    public void cancel() {
+        pending.forEach(future -> future.cancel(true));
+        pending.clear();
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    private void consumeOldest() {
+        T result;
+        try {
+            result = pending.peekFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new RuntimeException("Interrupted while waiting for a pending task", e);
+        } catch (ExecutionException | CancellationException e) {
+            cancel();
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+        pending.removeFirst();
+        consumer.accept(result);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import org.opencb.biodata.models.variant.VariantSource;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Column of every sample of the exported files in the output VCF, built once per export.
+ *
+ * The columns follow the order of the sources and of the samples in each source. If the same sample name is in more
+ * than one file, all the samples are renamed to "fileId_sampleName" so they don't collide. Both the conflict check and
+ * the assignment of columns take linear time in the total number of samples. Instances are immutable, so they can be
+ * shared by the threads of a parallel export.
+ */
+public class SampleDictionary {
+
+    private final Set<String> studyIds;
+    private final Map<String, Map<String, Integer>> filesSampleColumns;
+    private final List<String> sampleNames;
+    private final Map<String, Integer> sampleColumns;
+    private final List<String> sortedSampleNames;
+    private final boolean conflicts;
+    private final BiFunction<String, String, String> sampleNaming;
+
+    public SampleDictionary(Collection<VariantSource> sources) {
+        this(sources, hasSampleNameConflicts(sources));
+    }
+
+    private SampleDictionary(Collection<VariantSource> sources, boolean conflicts) {
+        this(sources, conflicts, conflicts ? (fileId, sampleName) -> fileId + "_" + sampleName : (fileId, sampleName) -> sampleName);
+    }
+
+    private SampleDictionary(Collection<VariantSource> sources, boolean conflicts,
+                             BiFunction<String, String, String> sampleNaming) {
+        this.conflicts = conflicts;
+        this.sampleNaming = sampleNaming;
+        Set<String> studies = new HashSet<>();
+        Map<String, Map<String, Integer>> filesColumns = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> columns = new HashMap<>();
+        for (VariantSource source : sources) {
+            studies.add(source.getStudyId());
+            Map<String, Integer> fileColumns = filesColumns.computeIfAbsent(source.getFileId(), fileId -> new HashMap<>());
+            for (String sampleName : source.getSamples()) {
+                String outputSampleName = sampleNaming.apply(source.getFileId(), sampleName);
+                Integer column = columns.get(outputSampleName);
+                if (column == null) {
+                    column = names.size();
+                    names.add(outputSampleName);
+                    columns.put(outputSampleName, column);
+                }
+                fileColumns.put(sampleName, column);
+            }
+        }
+        filesColumns.replaceAll((fileId, fileColumns) -> Collections.unmodifiableMap(fileColumns));
+        List<String> sortedNames = new ArrayList<>(names);
+        Collections.sort(sortedNames);
+
+        this.studyIds = Collections.unmodifiableSet(studies);
+        this.filesSampleColumns = Collections.unmodifiableMap(filesColumns);
+        this.sampleNames = Collections.unmodifiableList(names);
+        this.sampleColumns = Collections.unmodifiableMap(columns);
+        this.sortedSampleNames = Collections.unmodifiableList(sortedNames);
+    }
+
+    /**
+     * Dictionary with the sample names already resolved by the caller
+     *
+     * @param filesSampleNamesEquivalences output name of every sample of every file, or null to keep the names
+     */
+    static SampleDictionary fromEquivalences(Collection<VariantSource> sources,
+                                             Map<String, Map<String, String>> filesSampleNamesEquivalences) {
+        if (filesSampleNamesEquivalences == null) {
+            return new SampleDictionary(sources, false);
+        }
+        return new SampleDictionary(sources, true,
+                                    (fileId, sampleName) -> filesSampleNamesEquivalences.get(fileId).get(sampleName));
+    }
+
+    private static boolean hasSampleNameConflicts(Collection<VariantSource> sources) {
+        if (sources.size() < 2) {
+            return false;
+        }
+        Set<String> seenSampleNames = new HashSet<>();
+        for (VariantSource source : sources) {
+            for (String sampleName : source.getSamples()) {
+                if (!seenSampleNames.add(sampleName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean containsStudy(String studyId) {
+        return studyIds.contains(studyId);
+    }
+
+    /**
+     * @return column of every sample of the file by its original name, empty if the file is not exported
+     */
+    public Map<String, Integer> getSampleColumns(String fileId) {
+        return filesSampleColumns.getOrDefault(fileId, Collections.emptyMap());
+    }
+
+    /**
+     * @return name of the sample in the output, also for samples of the variants that are not declared in their file
+     */
+    public String getOutputSampleName(String fileId, String sampleName) {
+        Integer column = getSampleColumns(fileId).get(sampleName);
+        return column != null ? sampleNames.get(column) : sampleNaming.apply(fileId, sampleName);
+    }
+
+    public String getSampleName(int column) {
+        return sampleNames.get(column);
+    }
+
+    /**
+     * @return output sample names, in column order
+     */
+    public List<String> getSampleNames() {
+        return sampleNames;
+    }
+
+    /**
+     * @return column of every output sample name
+     */
+    public Map<String, Integer> getSampleNameColumns() {
+        return sampleColumns;
+    }
+
+    public List<String> getSortedSampleNames() {
+        return sortedSampleNames;
+    }
+
+    public int size() {
+        return sampleNames.size();
+    }
+
+    public boolean hasConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @return output name of every sample by file and original name, or null if there are no conflicts, so the
+     * samples keep their names
+     */
+    public Map<String, Map<String, String>> getFilesSampleNamesEquivalences() {
+        if (!conflicts) {
+            return null;
+        }
+        Map<String, Map<String, String>> filesSampleNamesEquivalences = new HashMap<>();
+        filesSampleColumns.forEach((fileId, fileColumns) -> {
+            Map<String, String> fileSampleNamesEquivalences = new HashMap<>();
+            fileColumns.forEach((sampleName, column) -> fileSampleNamesEquivalences.put(sampleName, sampleNames.get(column)));
+            filesSampleNamesEquivalences.put(fileId, fileSampleNamesEquivalences);
+        });
+        return filesSampleNamesEquivalences;
+    }
+}
@@ -31,7 +31,9 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * the EVA database.
  * 
  * Mandatory arguments are: species, database name, studies and files
- * Optional arguments are: output directory
+ * Optional arguments are: output directory, threads, maximum pending regions, buffer size,
+ * variants per region, reference FASTA, reference cache size, output format, compression threads and
+ * compression level
  * 
  * @author Jose Miguel Mut Lopez &lt;jmmut@ebi.ac.uk&gt;
  * @author Cristina Yenyxe Gonzalez Garcia &lt;cyenyxe@ebi.ac.uk&gt;
@@ -69,13 +71,18 @@ public class VariantExportBootApplication implements CommandLineRunner {
         Config.setOpenCGAHome(System.getenv("OPENCGA_HOME") != null ? System.getenv("OPENCGA_HOME") : "/opt/opencga");
         
         try {
-                    new VariantExporterController(
-                            command.species, 
-                            command.database, 
-                            command.studies, 
-                            command.files, 
-                            command.outdir,
-                            new MultivaluedHashMap<>()).run();
+            ExportOptions options = new ExportOptions()
+                    .setThreads(command.threads)
+                    .setMaxPendingRegions(command.maxPendingRegions)
+                    .setBufferSize(command.bufferSize)
+                    .setVariantsPerRegion(command.variantsPerRegion)
+                    .setReferenceFasta(command.reference)
+                    .setReferenceCacheSegments(command.referenceCacheSegments)
+                    .setOutputFormat(command.outputFormat)
+                    .setCompressionThreads(command.compressionThreads)
+                    .setCompressionLevel(command.compressionLevel);
+            new VariantExporterController(command.species, command.database, command.studies, command.files,
+                                          command.outdir, new MultivaluedHashMap<>(), options).run();
         } catch (Exception e) {
             logger.error("Unsuccessful VCF export: {}", e.getMessage());
             logger.debug("Exception details: ", e);
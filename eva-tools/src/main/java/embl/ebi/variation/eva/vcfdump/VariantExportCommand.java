@@ -41,6 +41,43 @@ public class VariantExportCommand {
 
     @Parameter(names = "--files", required = true, description = "Comma-separated list of files to query")
     List<String> files;
+
+    @Parameter(names = "--threads", description = "Number of threads querying and converting regions of the genome")
+    int threads = ExportOptions.DEFAULT_THREADS;
+
+    @Parameter(names = "--max-pending-regions", description = "Maximum number of regions kept in memory waiting to "
+            + "be written, when using several threads")
+    int maxPendingRegions = ExportOptions.DEFAULT_MAX_PENDING_REGIONS;
+
+    @Parameter(names = "--buffer-size", description = "Maximum number of variants queued between reading from the "
+            + "database, converting and writing")
+    int bufferSize = ExportOptions.DEFAULT_BUFFER_SIZE;
+
+    @Parameter(names = "--variants-per-region", description = "Number of variants queried at a time; the regions are "
+            + "sized according to the density of variants. 0 to use regions of a fixed size")
+    int variantsPerRegion = ExportOptions.DEFAULT_VARIANTS_PER_REGION;
+
+    @Parameter(names = "--reference", description = "FASTA file with the reference sequence, indexed with samtools "
+            + "faidx, to fill the indels without downloading the sequence from CellBase")
+    String reference;
+
+    @Parameter(names = "--reference-cache-segments", description = "Number of segments of 100 kb of the reference "
+            + "sequence kept in memory")
+    int referenceCacheSegments = ExportOptions.DEFAULT_REFERENCE_CACHE_SEGMENTS;
+
+    @Parameter(names = "--output-format", description = "VCF_GZ (default, recommended) for a VCF compressed with BGZF "
+            + "and indexed with tabix, readable by any tool, or BCF. The BCF is version 2.1 with a Tribble .idx index, "
+            + "only readable by htsjdk based tools (e.g. GATK or Picard), not by bcftools/htslib, which need BCF 2.2 "
+            + "and a CSI index")
+    OutputFormat outputFormat = ExportOptions.DEFAULT_OUTPUT_FORMAT;
+
+    @Parameter(names = "--compression-threads", description = "Number of threads compressing the blocks of a VCF_GZ "
+            + "output")
+    int compressionThreads = ExportOptions.DEFAULT_COMPRESSION_THREADS;
+
+    @Parameter(names = "--compression-level", description = "Compression level of a VCF_GZ output, from 0 (no "
+            + "compression) to 9 (smallest output)")
+    int compressionLevel = ExportOptions.DEFAULT_COMPRESSION_LEVEL;
     
     
     public static class PathValidator implements IValueValidator {
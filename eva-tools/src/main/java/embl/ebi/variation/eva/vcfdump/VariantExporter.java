@@ -15,7 +15,7 @@
  */
 package embl.ebi.variation.eva.vcfdump;
 
-import embl.ebi.variation.eva.vcfdump.cellbasewsclient.CellbaseWSClient;
+import embl.ebi.variation.eva.vcfdump.referencesequence.ReferenceSequenceProvider;
 import htsjdk.tribble.FeatureCodecHeader;
 import htsjdk.tribble.readers.LineIterator;
 import htsjdk.variant.variantcontext.*;
@@ -33,6 +33,7 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -44,7 +45,7 @@ public class VariantExporter {
 
     private static final Logger logger = LoggerFactory.getLogger(VariantExporter.class);
 
-    private CellbaseWSClient cellbaseClient;
+    private ReferenceSequenceProvider referenceSequenceProvider;
     /**
      * Read only. Keeps track of the total failed variants across several dumps. To accumulate, use the same instance of
      * VariantExporter to dump several VCFs. If you just want to count on one dump, use a `new VariantExporter` each time.
@@ -52,43 +53,66 @@ public class VariantExporter {
     private int failedVariants;
     private BiodataVariantToVariantContextConverter variantToVariantContextConverter;
     private Set<String> outputSampleNames;
+    private SampleDictionary sampleDictionary;
 
     /**
-     * if the variants will have empty alleles (such as normalized deletions: "A" to "") CellBase is mandatory to
-     * retrieve the context, (for instance "GA" to "G").
+     * if the variants will have empty alleles (such as normalized deletions: "A" to "") the reference sequence, from
+     * CellBase or a local FASTA, is mandatory to retrieve the context, (for instance "GA" to "G").
      *
      * This context may be different from the alleles in the original VCF.
      *
-     * If there won't be empty alleles, CellBase is not needed, and the parameter may be null.
-     *  @param cellbaseClient for empty alleles. nullable.
+     * If there won't be empty alleles, the reference is not needed, and the parameter may be null.
+     *  @param referenceSequenceProvider for empty alleles. nullable.
      */
-    public VariantExporter(CellbaseWSClient cellbaseClient) {
-        this.cellbaseClient = cellbaseClient;
-        outputSampleNames = new HashSet<>();
-        variantToVariantContextConverter = new BiodataVariantToVariantContextConverter(cellbaseClient);
+    public VariantExporter(ReferenceSequenceProvider referenceSequenceProvider) {
+        this.referenceSequenceProvider = referenceSequenceProvider;
+        outputSampleNames = new LinkedHashSet<>();
+        variantToVariantContextConverter = new BiodataVariantToVariantContextConverter(referenceSequenceProvider);
     }
 
     public List<VariantContext> export(VariantDBIterator iterator, Region region) {
         List<VariantContext> variantsToExport = new ArrayList<>();
+        export(iterator, region, variantsToExport::add);
+        return variantsToExport;
+    }
+
+    /**
+     * Converts the variants of the region and hands them to the consumer one by one, so the region is never kept in
+     * memory.
+     *
+     * If the iterator returns the variants sorted by start, they are consumed sorted by start too. The conversion may
+     * move the start of an indel one position back (to add the context nucleotide), so the converted variants are
+     * only held until the iterator is past their position.
+     */
+    public void export(Iterator<Variant> iterator, Region region, Consumer<VariantContext> consumer) {
         failedVariants = 0;
+        PriorityQueue<PendingVariant> pendingVariants = new PriorityQueue<>();
+        long readVariants = 0;
 
-        // region sequence contains the last exported region: we set it to null to get the new region sequence from cellbase if needed
+        // region sequence contains the last exported region: we set it to null to get the new region sequence if needed
         variantToVariantContextConverter.cleanCachedRegionSequence();
 
         while (iterator.hasNext()) {
             Variant variant = iterator.next();
-            if (region.contains(variant.getChromosome(), variant.getStart())) {
+            int start = variant.getStart();
+            if (region.contains(variant.getChromosome(), start)) {
                 try {
                     VariantContext variantContext = variantToVariantContextConverter.transform(variant, region);
-                    variantsToExport.add(variantContext);
+                    pendingVariants.add(new PendingVariant(variantContext, readVariants++));
                 } catch (Exception e) {
                     logger.warn("Variant {}:{}:{}>{} dump failed: {}", variant.getChromosome(), variant.getStart(), variant.getReference(),
                             variant.getAlternate(), e.getMessage());
                     failedVariants++;
                 }
             }
+            // the next variants start at this position or later, so after conversion they can't start before start-1
+            while (!pendingVariants.isEmpty() && pendingVariants.peek().variantContext.getStart() < start - 1) {
+                consumer.accept(pendingVariants.poll().variantContext);
+            }
+        }
+        while (!pendingVariants.isEmpty()) {
+            consumer.accept(pendingVariants.poll().variantContext);
         }
-        return variantsToExport;
     }
 
     public Map<String, VariantSource> getSources(VariantSourceDBAdaptor sourceDBAdaptor, List<String> studyIds) throws IllegalArgumentException {
@@ -102,8 +126,9 @@ public class VariantExporter {
         }
 
         // check if there are conflicts in sample names and create new ones if needed
-        Map<String, Map<String, String>> studiesSampleNamesMapping = createNonConflictingSampleNames(sourcesList);
-        variantToVariantContextConverter.setFilesSampleNamesEquivalences(studiesSampleNamesMapping);
+        sampleDictionary = new SampleDictionary(sourcesList);
+        outputSampleNames.addAll(sampleDictionary.getSampleNames());
+        variantToVariantContextConverter.setSampleDictionary(sampleDictionary);
 
         return sources;
     }
@@ -117,42 +142,26 @@ public class VariantExporter {
     }
 
     public Map<String, Map<String, String>> createNonConflictingSampleNames(Collection<VariantSource> sources) {
-        Map<String, Map<String, String>> filesSampleNamesMapping = null;
-
-        // create a list containing the sample names of every input study
-        // if a sample name is in more than one study, it will be several times in the list)
-        List<String> originalSampleNames = sources.stream().map(VariantSource::getSamples).flatMap(l -> l.stream()).collect(Collectors.toList());
-        boolean someSampleNameInMoreThanOneStudy = false;
-        if (sources.size() > 1) {
-            // if there are several studies, check if there are duplicate elements
-            someSampleNameInMoreThanOneStudy = originalSampleNames.stream().anyMatch(s -> Collections.frequency(originalSampleNames, s) > 1);
-            if (someSampleNameInMoreThanOneStudy) {
-                filesSampleNamesMapping = resolveConflictsInSampleNamesPrefixingFileId(sources);
-            }
-        }
-
-        if (!someSampleNameInMoreThanOneStudy) {
-            outputSampleNames.addAll(originalSampleNames);
-        }
-
-        return filesSampleNamesMapping;
+        SampleDictionary dictionary = new SampleDictionary(sources);
+        outputSampleNames.addAll(dictionary.getSampleNames());
+        return dictionary.getFilesSampleNamesEquivalences();
     }
 
-    private Map<String, Map<String, String>> resolveConflictsInSampleNamesPrefixingFileId(Collection<VariantSource> sources) {
-        // each study will have a map translating from original sample name to "conflict free" one
-        Map<String, Map<String, String>> filesSampleNamesMapping = new HashMap<>();
-        for (VariantSource source : sources) {
-            // create a map from original to "conflict free" sample name (prefixing with study id)
-            Map<String, String> fileSampleNamesMapping = new HashMap<>();
-            source.getSamples().stream().forEach(name -> fileSampleNamesMapping.put(name, source.getFileId() + "_" + name));
-
-            // add "conflict free" names to output sample names set
-            outputSampleNames.addAll(fileSampleNamesMapping.values());
+    /**
+     * @return the columns of the samples of the sources of the last call to getSources, null before that
+     */
+    public SampleDictionary getSampleDictionary() {
+        return sampleDictionary;
+    }
 
-            // add study map to the "super map" containing all studies
-            filesSampleNamesMapping.put(source.getFileId(), fileSampleNamesMapping);
-        }
-        return filesSampleNamesMapping;
+    /**
+     * Converts the variants with a sample dictionary already built for the same sources, instead of reading them
+     * with getSources. The dictionary can be shared by several exporters.
+     */
+    public void setSampleDictionary(SampleDictionary sampleDictionary) {
+        this.sampleDictionary = sampleDictionary;
+        outputSampleNames.addAll(sampleDictionary.getSampleNames());
+        variantToVariantContextConverter.setSampleDictionary(sampleDictionary);
     }
 
     /**
@@ -192,4 +201,23 @@ public class VariantExporter {
     public int getFailedVariants() {
         return failedVariants;
     }
+
+    /**
+     * Sorted by start, and variants with the same start keep the order they were read in.
+     */
+    private static class PendingVariant implements Comparable<PendingVariant> {
+        private final VariantContext variantContext;
+        private final long readOrder;
+
+        PendingVariant(VariantContext variantContext, long readOrder) {
+            this.variantContext = variantContext;
+            this.readOrder = readOrder;
+        }
+
+        @Override
+        public int compareTo(PendingVariant other) {
+            int compareStart = Integer.compare(variantContext.getStart(), other.variantContext.getStart());
+            return compareStart != 0 ? compareStart : Long.compare(readOrder, other.readOrder);
+        }
+    }
 }
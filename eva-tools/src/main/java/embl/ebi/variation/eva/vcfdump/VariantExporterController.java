@@ -16,16 +16,24 @@
 package embl.ebi.variation.eva.vcfdump;
 
 import embl.ebi.variation.eva.vcfdump.cellbasewsclient.CellbaseWSClient;
+import embl.ebi.variation.eva.vcfdump.referencesequence.CachingSequenceProvider;
+import embl.ebi.variation.eva.vcfdump.referencesequence.FastaSequenceProvider;
+import embl.ebi.variation.eva.vcfdump.regionutils.ChromosomeBounds;
+import embl.ebi.variation.eva.vcfdump.regionutils.DatabaseChromosomeFinder;
 import embl.ebi.variation.eva.vcfdump.regionutils.RegionFactory;
+import com.mongodb.BasicDBObject;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.tribble.TribbleException;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.writer.Options;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFContigHeaderLine;
 import htsjdk.variant.vcf.VCFHeader;
 import org.opencb.biodata.models.feature.Region;
+import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.VariantSource;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.opencga.storage.core.StorageManagerException;
@@ -38,12 +46,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.MultivaluedMap;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -57,7 +70,10 @@ public class VariantExporterController {
     private static final int WINDOW_SIZE = 20000;
 
     private final CellbaseWSClient cellBaseClient;
+    private final FastaSequenceProvider fastaSequenceProvider;
+    private final CachingSequenceProvider referenceSequenceCache;
     private final String species;
+    private final String dbName;
     private final List<String> studies;
     private final List<String> files;
     private final String outputDir;
@@ -66,8 +82,17 @@ public class VariantExporterController {
     private final QueryOptions query;
     private final RegionFactory regionFactory;
     private final VariantExporter exporter;
+    private final int threads;
+    private final int maxPendingRegions;
+    private final int bufferSize;
+    private final OutputFormat outputFormat;
+    private final int compressionThreads;
+    private final int compressionLevel;
     private Path outputFilePath;
+    private Path outputIndexFilePath;
+    private OnTheFlyTabixIndexer outputIndexer;
     private int failedVariants;
+    private long lastReferenceRequests;
 
     public VariantExporterController(String species, String dbName, List<String> studies, String outputDir,
                                      MultivaluedMap<String, String> queryParameters)
@@ -78,17 +103,41 @@ public class VariantExporterController {
     public VariantExporterController(String species, String dbName, List<String> studies, List<String> files,
                                      String outputDir, MultivaluedMap<String, String> queryParameters)
             throws IllegalAccessException, ClassNotFoundException, InstantiationException, StorageManagerException, URISyntaxException {
+        this(species, dbName, studies, files, outputDir, queryParameters, new ExportOptions());
+    }
+
+    /**
+     * @param options concurrency, reference sequence and output format of the export
+     */
+    public VariantExporterController(String species, String dbName, List<String> studies, List<String> files,
+                                     String outputDir, MultivaluedMap<String, String> queryParameters,
+                                     ExportOptions options)
+            throws IllegalAccessException, ClassNotFoundException, InstantiationException, StorageManagerException, URISyntaxException {
         checkParams(species, studies, outputDir, dbName);
         this.species = species;
+        this.dbName = dbName;
         this.studies = studies;
         this.files = files;
         this.outputDir = outputDir;
         cellBaseClient = new CellbaseWSClient(species);
+        fastaSequenceProvider = getFastaSequenceProvider(options.getReferenceFasta());
+        referenceSequenceCache = new CachingSequenceProvider(
+                fastaSequenceProvider != null ? fastaSequenceProvider : cellBaseClient, options.getReferenceCacheSegments());
         variantDBAdaptor = getVariantDBAdaptor(dbName);
         query = getQuery(queryParameters);
         variantSourceDBAdaptor = variantDBAdaptor.getVariantSourceDBAdaptor();
-        regionFactory = new RegionFactory(WINDOW_SIZE, variantDBAdaptor, query);
-        exporter = new VariantExporter(cellBaseClient);
+        regionFactory = new RegionFactory(WINDOW_SIZE, options.getVariantsPerRegion(), variantDBAdaptor, query);
+        exporter = new VariantExporter(referenceSequenceCache);
+        this.threads = options.getThreads();
+        this.maxPendingRegions = options.getMaxPendingRegions();
+        this.bufferSize = options.getBufferSize();
+        this.outputFormat = options.getOutputFormat();
+        if (outputFormat == OutputFormat.BCF) {
+            logger.warn("The BCF output is version 2.1 with a Tribble index, which bcftools and htslib can't read. "
+                                + "Export a VCF_GZ to use the file outside htsjdk based tools");
+        }
+        this.compressionThreads = options.getCompressionThreads();
+        this.compressionLevel = options.getCompressionLevel();
         failedVariants = 0;
     }
 
@@ -104,6 +153,17 @@ public class VariantExporterController {
         }
     }
 
+    private FastaSequenceProvider getFastaSequenceProvider(String referenceFasta) {
+        if (referenceFasta == null || referenceFasta.isEmpty()) {
+            return null;
+        }
+        try {
+            return new FastaSequenceProvider(referenceFasta);
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
     public VariantDBAdaptor getVariantDBAdaptor(String dbName) throws StorageManagerException, IllegalAccessException, ClassNotFoundException, InstantiationException {
         VariantStorageManager variantStorageManager = StorageManagerFactory.getVariantStorageManager();
         return variantStorageManager.getDBAdaptor(dbName, null);
@@ -125,16 +185,59 @@ public class VariantExporterController {
 
     public void run() {
         VCFHeader header = getOutputVcfHeader();
-        VariantContextWriter writer = getWriter(header);
-        writer.writeHeader(header);
 
         // get all chromosomes in the query or organism, and export the variants for each chromosome
         Set<String> chromosomes = getChromosomes(query);
-        for (String chromosome : chromosomes) {
-            exportChromosomeVariants(writer, chromosome);
+
+        VariantContextWriter writer = getWriter(header, chromosomes);
+        writer.writeHeader(header);
+        Consumer<VariantContext> variantWriter = outputIndexer == null ? writer::add : variant -> {
+            outputIndexer.addFeature(variant);
+            writer.add(variant);
+        };
+        try (QueuedConsumer<VariantContext> output = new QueuedConsumer<>(variantWriter, bufferSize, "vcf-writer")) {
+            if (threads > 1) {
+                exportVariantsInParallel(output, chromosomes);
+            } else {
+                for (String chromosome : chromosomes) {
+                    exportChromosomeVariants(output, chromosome);
+                }
+            }
         }
 
         writer.close();
+        if (outputIndexer != null) {
+            writeOutputIndex();
+        }
+        closeReference();
+    }
+
+    private void writeOutputIndex() {
+        try {
+            outputIndexer.writeIndex(outputFilePath.toFile());
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing the index of " + outputFilePath + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void closeReference() {
+        logger.info("Reference sequence cache: {} hits, {} misses ({}% hit rate), {} segments fetched, mean fetch "
+                            + "latency {} ms, max {} ms", referenceSequenceCache.getHits(),
+                    referenceSequenceCache.getMisses(), String.format("%.1f", referenceSequenceCache.getHitRate() * 100),
+                    referenceSequenceCache.getFetches(), String.format("%.1f", referenceSequenceCache.getMeanFetchMillis()),
+                    String.format("%.1f", referenceSequenceCache.getMaxFetchMillis()));
+        try {
+            referenceSequenceCache.close();
+        } catch (IOException e) {
+            logger.warn("Error closing the reference sequence cache: {}", e.getMessage());
+        }
+        if (fastaSequenceProvider != null) {
+            try {
+                fastaSequenceProvider.close();
+            } catch (IOException e) {
+                logger.warn("Error closing the reference FASTA: {}", e.getMessage());
+            }
+        }
     }
 
     private VCFHeader getOutputVcfHeader() {
@@ -150,46 +253,175 @@ public class VariantExporterController {
         return header;
     }
 
-    private void exportChromosomeVariants(VariantContextWriter writer, String chromosome) {
+    /**
+     * The variants are streamed from the database, through the conversion, to the output file, with bounded queues
+     * between them, so the memory used doesn't depend on how many variants each region has.
+     */
+    private void exportChromosomeVariants(QueuedConsumer<VariantContext> output, String chromosome) {
         List<Region> allRegionsInChromosome = regionFactory.getRegionsForChromosome(chromosome);
-        for (Region region : allRegionsInChromosome) {
+        for (int i = 0; i < allRegionsInChromosome.size(); i++) {
+            Region region = allRegionsInChromosome.get(i);
+            if (i + 1 < allRegionsInChromosome.size()) {
+                prefetchReferenceSequence(allRegionsInChromosome.get(i + 1));
+            }
             VariantDBIterator regionVariantsIterator = variantDBAdaptor.iterator(getRegionQuery(region));
-            List<VariantContext> exportedVariants = exporter.export(regionVariantsIterator, region);
-            Collections.sort(exportedVariants, (v1, v2) -> v1.getStart() - v2.getStart());
+            try (PrefetchingIterator<Variant> variants =
+                         new PrefetchingIterator<>(regionVariantsIterator, bufferSize, "vcf-reader")) {
+                exporter.export(variants, region, output);
+            }
             failedVariants += exporter.getFailedVariants();
-            exportedVariants.forEach(writer::add);
         }
     }
 
+    /**
+     * The regions are queried and converted in a pool of threads, each one with its own VariantExporter because the
+     * conversion caches the sequence of the current region. The exported regions are written in the same order as in
+     * the serial export, so the output is identical.
+     */
+    private void exportVariantsInParallel(QueuedConsumer<VariantContext> output, Set<String> chromosomes) {
+        logger.info("Exporting regions using {} threads, up to {} regions pending", threads, maxPendingRegions);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ThreadLocal<VariantExporter> workerExporters = ThreadLocal.withInitial(this::createWorkerExporter);
+        ReorderBuffer<ExportedRegion> reorderBuffer = new ReorderBuffer<>(maxPendingRegions,
+                exportedRegion -> writeRegion(output, exportedRegion));
+        try {
+            for (String chromosome : chromosomes) {
+                for (Region region : regionFactory.getRegionsForChromosome(chromosome)) {
+                    prefetchReferenceSequence(region);
+                    reorderBuffer.add(executor.submit(() -> exportRegion(workerExporters.get(), region)));
+                }
+            }
+            reorderBuffer.flush();
+        } finally {
+            reorderBuffer.cancel();
+            executor.shutdownNow();
+        }
+    }
+
+    private VariantExporter createWorkerExporter() {
+        // the reference sequence cache does all the downloads in its own thread, so it can be shared
+        VariantExporter workerExporter = new VariantExporter(referenceSequenceCache);
+        workerExporter.setSampleDictionary(exporter.getSampleDictionary());
+        return workerExporter;
+    }
+
+    /**
+     * Starts downloading the reference sequence the converter will ask for if the region has indels, so it is
+     * already there when the region is converted. Only done if the reference was used since the previous call, i.e.
+     * the previous regions had indels, so an export without indels doesn't download the whole genome.
+     */
+    private void prefetchReferenceSequence(Region region) {
+        long referenceRequests = referenceSequenceCache.getRequests();
+        if (referenceRequests > lastReferenceRequests) {
+            referenceSequenceCache.prefetch(new Region(region.getChromosome(), region.getStart() - 1, region.getEnd()));
+        }
+        lastReferenceRequests = referenceRequests;
+    }
+
+    private ExportedRegion exportRegion(VariantExporter regionExporter, Region region) {
+        VariantDBIterator regionVariantsIterator = variantDBAdaptor.iterator(getRegionQuery(region));
+        List<VariantContext> exportedVariants = regionExporter.export(regionVariantsIterator, region);
+        return new ExportedRegion(exportedVariants, regionExporter.getFailedVariants());
+    }
+
+    private void writeRegion(QueuedConsumer<VariantContext> output, ExportedRegion exportedRegion) {
+        failedVariants += exportedRegion.failedVariants;
+        exportedRegion.variants.forEach(output);
+    }
+
+    /**
+     * The variants of the region are returned sorted by start, so they can be written as they are converted instead
+     * of sorting the whole region in memory
+     */
     private QueryOptions getRegionQuery(Region region) {
         QueryOptions regionQuery = new QueryOptions(query);
         regionQuery.put(VariantDBAdaptor.REGION, region.toString());
+        regionQuery.put("sort", new BasicDBObject("chr", 1).append("start", 1));
         return regionQuery;
     }
 
-    private VariantContextWriter getWriter(VCFHeader vcfHeader) {
+    /**
+     * The index is created while the variants are written, because they are written sorted, so the output doesn't
+     * need another pass to index it. That needs the sequence dictionary of the header.
+     */
+    private VariantContextWriter getWriter(VCFHeader vcfHeader, Set<String> chromosomes) {
         LocalDateTime now = LocalDateTime.now();
-        String fileName = species + "_exported_" + now + ".vcf.gz";
+        String fileName = species + "_exported_" + now + outputFormat.getExtension();
         outputFilePath = Paths.get(outputDir).resolve(fileName);
 
         // get sequence dictionary from header
         SAMSequenceDictionary sequenceDictionary;
         try {
             sequenceDictionary = vcfHeader.getSequenceDictionary();
-        } catch (SAMException e) {
+        } catch (SAMException | TribbleException e) {
             logger.warn("Incorrect sequence / contig meta-data: ", e.getMessage());
             logger.warn("It won't be included in output VCF header");
             sequenceDictionary = null;
         }
 
+        if (outputFormat == OutputFormat.BCF) {
+            // the contigs of BCF records are offsets in the contig lines of the header
+            addMissingContigs(vcfHeader, chromosomes);
+        }
+
+        if (outputFormat == OutputFormat.VCF_GZ
+                && (compressionThreads > 1 || compressionLevel != ExportOptions.DEFAULT_COMPRESSION_LEVEL)) {
+            return getParallelCompressionWriter(sequenceDictionary);
+        }
+
         // setup writer
-        VariantContextWriterBuilder builder = new VariantContextWriterBuilder();
-        VariantContextWriter writer = builder.setOutputFile(outputFilePath.toFile())
+        VariantContextWriterBuilder builder = new VariantContextWriterBuilder()
+                .setOutputFile(outputFilePath.toFile())
+                .setReferenceDictionary(sequenceDictionary);
+        if (sequenceDictionary != null) {
+            builder.setOption(Options.INDEX_ON_THE_FLY);
+            outputIndexFilePath = Paths.get(outputFilePath + outputFormat.getIndexExtension());
+        } else {
+            logger.warn("The output file won't be indexed because the VCF header doesn't have a sequence dictionary");
+            builder.unsetOption(Options.INDEX_ON_THE_FLY);
+            outputIndexFilePath = null;
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * htsjdk compresses the VCF in the thread that writes it, so the BGZF blocks are compressed by another stream. The
+     * writer doesn't know where the blocks start, so the tabix index is created by {@link OnTheFlyTabixIndexer}. As in
+     * the rest of the formats, the index is only created if there is a sequence dictionary.
+     */
+    private VariantContextWriter getParallelCompressionWriter(SAMSequenceDictionary sequenceDictionary) {
+        ParallelBlockCompressedOutputStream outputStream;
+        try {
+            outputStream = new ParallelBlockCompressedOutputStream(new FileOutputStream(outputFilePath.toFile()),
+                                                                   compressionThreads, compressionLevel);
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("Could not create the output file: " + e.getMessage(), e);
+        }
+        if (sequenceDictionary != null) {
+            outputIndexer = new OnTheFlyTabixIndexer(outputStream, sequenceDictionary);
+            outputIndexFilePath = Paths.get(outputFilePath + outputFormat.getIndexExtension());
+        } else {
+            logger.warn("The output file won't be indexed because the VCF header doesn't have a sequence dictionary");
+            outputIndexer = null;
+            outputIndexFilePath = null;
+        }
+
+        return new VariantContextWriterBuilder()
+                .setOutputStream(outputStream)
                 .setReferenceDictionary(sequenceDictionary)
                 .unsetOption(Options.INDEX_ON_THE_FLY)
                 .build();
+    }
 
-        return writer;
+    private void addMissingContigs(VCFHeader vcfHeader, Set<String> chromosomes) {
+        Set<String> contigs = vcfHeader.getContigLines().stream().map(VCFContigHeaderLine::getID).collect(Collectors.toSet());
+        int contigIndex = contigs.size();
+        for (String chromosome : chromosomes) {
+            if (!contigs.contains(chromosome)) {
+                vcfHeader.addMetaDataLine(new VCFContigHeaderLine(Collections.singletonMap("ID", chromosome), contigIndex++));
+            }
+        }
     }
 
     private Set<String> getChromosomes(QueryOptions options) {
@@ -199,16 +431,31 @@ public class VariantExporterController {
         if (regions.size() > 0) {
             chromosomes = getChromosomesFromRegionFilter(regions);
         } else {
-            chromosomes = cellBaseClient.getChromosomes();
+            chromosomes = getChromosomesFromDatabase();
         }
         if (chromosomes.isEmpty()) {
             throw new RuntimeException("Chromosomes for species " + species + " not found");
-            // TODO distinct query for getting all the chromosomes from the database
         }
         logger.debug("Chromosomes: {}", String.join(", ", chromosomes));
         return chromosomes;
     }
 
+    /**
+     * The chromosomes with variants of the studies and files, and their first and last start, are taken from the
+     * database in one query, so the regions are not queried for every chromosome and supercontig of the species.
+     * CellBase is used if that query fails.
+     */
+    private Set<String> getChromosomesFromDatabase() {
+        try (DatabaseChromosomeFinder chromosomeFinder = new DatabaseChromosomeFinder(dbName)) {
+            Map<String, ChromosomeBounds> chromosomeBounds = chromosomeFinder.getChromosomeBounds(studies, files);
+            regionFactory.setChromosomeBounds(chromosomeBounds);
+            return new LinkedHashSet<>(chromosomeBounds.keySet());
+        } catch (Exception e) {
+            logger.warn("Could not get the chromosomes from the database, asking CellBase: {}", e.getMessage());
+            return cellBaseClient.getChromosomes();
+        }
+    }
+
     private Set<String> getChromosomesFromRegionFilter(List<String> regions) {
         return regions.stream().map(r -> r.split(":")[0]).collect(Collectors.toSet());
     }
@@ -232,7 +479,24 @@ public class VariantExporterController {
         return outputFilePath.toString();
     }
 
+    /**
+     * @return path of the index of the output file, or null if it was not indexed
+     */
+    public String getOutputIndexFilePath() {
+        return outputIndexFilePath != null ? outputIndexFilePath.toString() : null;
+    }
+
     public int getFailedVariants() {
         return failedVariants;
     }
+
+    private static class ExportedRegion {
+        private final List<VariantContext> variants;
+        private final int failedVariants;
+
+        ExportedRegion(List<VariantContext> variants, int failedVariants) {
+            this.variants = variants;
+            this.failedVariants = failedVariants;
+        }
+    }
 }
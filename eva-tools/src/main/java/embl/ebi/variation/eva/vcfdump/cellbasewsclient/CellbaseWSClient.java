@@ -15,6 +15,7 @@
  */
 package embl.ebi.variation.eva.vcfdump.cellbasewsclient;
 
+import embl.ebi.variation.eva.vcfdump.referencesequence.ReferenceSequenceProvider;
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.cellbase.core.client.CellBaseClient;
 import org.opencb.cellbase.core.common.GenomeSequenceFeature;
@@ -37,7 +38,7 @@ import java.util.Set;
  * Created by pagarcia on 12/05/2016.
  * This class encapsulates CellBaseClient adding some operations to its API
  */
-public class CellbaseWSClient {
+public class CellbaseWSClient implements ReferenceSequenceProvider {
     private final String species;
     private final CellBaseClient cellbaseClient;
     private final String cellbaseRestURL;
@@ -56,6 +57,7 @@ public class CellbaseWSClient {
         return cellBaseClient;
     }
 
+    @Override
     public String getSequence(Region region) throws IOException {
         String regionSequence = null;
         List<Region> regions = Collections.singletonList(region);
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump.referencesequence;
+
+import org.opencb.biodata.models.feature.Region;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps the most recently used segments of the reference sequence, so the regions of an export don't download the
+ * same sequence again, and can download in advance (see {@link #prefetch}) the sequence of the next regions while the
+ * current one is converted.
+ *
+ * The sequence is fetched in segments of a fixed size, the segment i covering the 1-based positions
+ * [i * size + 1, (i + 1) * size], and at most `maxSegments` are kept. Positions before 1 are returned as 'N', so
+ * the returned sequence always starts at the start of the region. All the fetches are done by a single background
+ * thread, so the delegate doesn't need to be thread safe, while this class is.
+ */
+public class CachingSequenceProvider implements ReferenceSequenceProvider, Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 100000;
+
+    private static final char MISSING_BASE = 'N';
+
+    private final ReferenceSequenceProvider delegate;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Map<SegmentKey, Future<String>> segments;
+    private final ExecutorService fetcher;
+
+    private long hits;
+    private long misses;
+    private long fetches;
+    private long fetchNanos;
+    private long maxFetchNanos;
+
+    public CachingSequenceProvider(ReferenceSequenceProvider delegate, int maxSegments) {
+        this(delegate, DEFAULT_SEGMENT_SIZE, maxSegments);
+    }
+
+    public CachingSequenceProvider(ReferenceSequenceProvider delegate, int segmentSize, int maxSegments) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("The segment size must be at least 1, not " + segmentSize);
+        } else if (maxSegments < 1) {
+            throw new IllegalArgumentException("The cache must keep at least 1 segment, not " + maxSegments);
+        }
+        this.delegate = delegate;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.segments = new LinkedHashMap<SegmentKey, Future<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SegmentKey, Future<String>> eldest) {
+                return size() > CachingSequenceProvider.this.maxSegments;
+            }
+        };
+        this.fetcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reference-fetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String getSequence(Region region) throws IOException {
+        String chromosome = region.getChromosome();
+        StringBuilder sequence = new StringBuilder(Math.max(region.getEnd() - region.getStart() + 1, 0));
+        int start = region.getStart();
+        for (; start < 1 && start <= region.getEnd(); start++) {
+            sequence.append(MISSING_BASE);
+        }
+        for (int index = segmentOf(start); index <= segmentOf(region.getEnd()); index++) {
+            String segment = getSegment(new SegmentKey(chromosome, index));
+            if (segment == null) {
+                return null;
+            }
+            int segmentStart = segmentStart(index);
+            int from = Math.max(start, segmentStart) - segmentStart;
+            int to = Math.min(region.getEnd() - segmentStart + 1, segment.length());
+            if (from < to) {
+                sequence.append(segment, from, to);
+            }
+            if (segment.length() < segmentSize) {
+                // the end of the chromosome
+                break;
+            }
+        }
+        return sequence.toString();
+    }
+
+    /**
+     * Starts downloading the segments of the region that are not in the cache yet, without waiting for them. At most
+     * half of the cache is used, so a long region doesn't evict the segments in use.
+     */
+    public void prefetch(Region region) {
+        int firstSegment = segmentOf(Math.max(region.getStart(), 1));
+        int lastSegment = Math.min(segmentOf(region.getEnd()), firstSegment + Math.max(1, maxSegments / 2) - 1);
+        synchronized (segments) {
+            for (int index = firstSegment; index <= lastSegment; index++) {
+                SegmentKey key = new SegmentKey(region.getChromosome(), index);
+                if (!segments.containsKey(key)) {
+                    segments.put(key, fetch(key));
+                }
+            }
+        }
+    }
+
+    private String getSegment(SegmentKey key) throws IOException {
+        Future<String> segment;
+        synchronized (segments) {
+            segment = segments.get(key);
+            if (segment == null) {
+                misses++;
+                segment = fetch(key);
+                segments.put(key, segment);
+            } else {
+                hits++;
+            }
+        }
+
+        try {
+            String sequence = segment.get();
+            if (sequence == null) {
+                forget(key, segment);
+            }
+            return sequence;
+        } catch (ExecutionException e) {
+            forget(key, segment);
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the reference sequence of " + key);
+        }
+    }
+
+    private Future<String> fetch(SegmentKey key) {
+        return fetcher.submit(() -> {
+            long start = System.nanoTime();
+            int segmentStart = segmentStart(key.index);
+            String sequence = delegate.getSequence(new Region(key.chromosome, segmentStart, segmentStart + segmentSize - 1));
+            recordFetch(System.nanoTime() - start);
+            return sequence;
+        });
+    }
+
+    private void forget(SegmentKey key, Future<String> segment) {
+        synchronized (segments) {
+            segments.remove(key, segment);
+        }
+    }
+
+    private synchronized void recordFetch(long nanos) {
+        fetches++;
+        fetchNanos += nanos;
+        maxFetchNanos = Math.max(maxFetchNanos, nanos);
+    }
+
+    private int segmentOf(int position) {
+        return Math.floorDiv(position - 1, segmentSize);
+    }
+
+    private int segmentStart(int index) {
+        return index * segmentSize + 1;
+    }
+
+    /**
+     * @return how many times a segment was requested and it was in the cache, or being prefetched
+     */
+    public long getHits() {
+        synchronized (segments) {
+            return hits;
+        }
+    }
+
+    /**
+     * @return how many times a segment was requested and had to be fetched
+     */
+    public long getMisses() {
+        synchronized (segments) {
+            return misses;
+        }
+    }
+
+    /**
+     * @return how many times a segment was requested, not counting the prefetches
+     */
+    public long getRequests() {
+        synchronized (segments) {
+            return hits + misses;
+        }
+    }
+
+    public double getHitRate() {
+        synchronized (segments) {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    /**
+     * @return number of segments fetched from the delegate, including the prefetched ones
+     */
+    public synchronized long getFetches() {
+        return fetches;
+    }
+
+    public synchronized double getMeanFetchMillis() {
+        return fetches == 0 ? 0 : fetchNanos / 1e6 / fetches;
+    }
+
+    public synchronized double getMaxFetchMillis() {
+        return maxFetchNanos / 1e6;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fetcher.shutdownNow();
+    }
+
+    private static class SegmentKey {
+        private final String chromosome;
+        private final int index;
+
+        SegmentKey(String chromosome, int index) {
+            this.chromosome = chromosome;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SegmentKey that = (SegmentKey) o;
+            return index == that.index && chromosome.equals(that.chromosome);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(chromosome, index);
+        }
+
+        @Override
+        public String toString() {
+            return chromosome + ":" + index;
+        }
+    }
+}
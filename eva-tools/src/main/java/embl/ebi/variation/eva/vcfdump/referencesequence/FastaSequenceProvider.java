@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump.referencesequence;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+import org.opencb.biodata.models.feature.Region;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the reference sequence from a local FASTA file, indexed with `samtools faidx` (FILE.fai), so no network is
+ * needed and only the bases of the requested region are read.
+ *
+ * The positions before the start or after the end of a chromosome are returned as 'N', so the position of every
+ * base in the returned sequence is always its position in the region. Instances are thread safe.
+ */
+public class FastaSequenceProvider implements ReferenceSequenceProvider, Closeable {
+
+    private static final char MISSING_BASE = 'N';
+
+    private final IndexedFastaSequenceFile fastaFile;
+    private final Map<String, Long> chromosomeLengths;
+
+    public FastaSequenceProvider(String fastaPath) throws FileNotFoundException {
+        File fasta = new File(fastaPath);
+        File indexFile = new File(fastaPath + ".fai");
+        if (!fasta.isFile()) {
+            throw new FileNotFoundException("Reference FASTA " + fastaPath + " not found");
+        } else if (!indexFile.isFile()) {
+            throw new FileNotFoundException("Index " + indexFile + " not found, please create it with 'samtools faidx "
+                    + fastaPath + "'");
+        }
+        this.fastaFile = new IndexedFastaSequenceFile(fasta, new FastaSequenceIndex(indexFile));
+        this.chromosomeLengths = readChromosomeLengths(indexFile);
+    }
+
+    /**
+     * The entries of FastaSequenceIndex are not public, but the lengths are the second column of the index
+     */
+    private static Map<String, Long> readChromosomeLengths(File indexFile) throws FileNotFoundException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(indexFile.toPath());
+        } catch (IOException e) {
+            throw new FileNotFoundException("Index " + indexFile + " could not be read: " + e.getMessage());
+        }
+        Map<String, Long> chromosomeLengths = new HashMap<>();
+        for (String line : lines) {
+            String[] columns = line.split("\t");
+            if (columns.length >= 2) {
+                chromosomeLengths.put(columns[0], Long.parseLong(columns[1]));
+            }
+        }
+        return chromosomeLengths;
+    }
+
+    @Override
+    public synchronized String getSequence(Region region) throws IOException {
+        String chromosome = region.getChromosome();
+        Long chromosomeLength = chromosomeLengths.get(chromosome);
+        if (chromosomeLength == null) {
+            throw new IOException("Chromosome " + chromosome + " not found in the reference FASTA");
+        }
+        int start = region.getStart();
+        int end = region.getEnd();
+        int readStart = Math.max(start, 1);
+        int readEnd = (int) Math.min(end, chromosomeLength);
+
+        StringBuilder sequence = new StringBuilder(end - start + 1);
+        appendMissingBases(sequence, readStart - start);
+        if (readStart <= readEnd) {
+            try {
+                // soft-masked (lower case) bases are returned in upper case
+                byte[] bases = fastaFile.getSubsequenceAt(chromosome, readStart, readEnd).getBases();
+                sequence.append(new String(bases).toUpperCase());
+            } catch (SAMException e) {
+                throw new IOException("Error reading region " + region + " from the reference FASTA", e);
+            }
+        }
+        appendMissingBases(sequence, end - Math.max(readEnd, readStart - 1));
+        return sequence.toString();
+    }
+
+    private static void appendMissingBases(StringBuilder sequence, int count) {
+        if (count > 0) {
+            char[] missing = new char[count];
+            Arrays.fill(missing, MISSING_BASE);
+            sequence.append(missing);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fastaFile.close();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump.referencesequence;
+
+import org.opencb.biodata.models.feature.Region;
+
+import java.io.IOException;
+
+/**
+ * Source of the reference sequence, needed to add the context nucleotide to the indels.
+ */
+public interface ReferenceSequenceProvider {
+
+    /**
+     * @param region 1-based, both ends included
+     * @return the bases of the region, or null if it is not available
+     */
+    String getSequence(Region region) throws IOException;
+}
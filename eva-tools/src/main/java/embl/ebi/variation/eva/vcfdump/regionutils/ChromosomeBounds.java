@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump.regionutils;
+
+/**
+ * First and last start positions of the variants of a chromosome.
+ */
+public class ChromosomeBounds {
+
+    private final String chromosome;
+    private final int minStart;
+    private final int maxStart;
+
+    public ChromosomeBounds(String chromosome, int minStart, int maxStart) {
+        this.chromosome = chromosome;
+        this.minStart = minStart;
+        this.maxStart = maxStart;
+    }
+
+    public String getChromosome() {
+        return chromosome;
+    }
+
+    public int getMinStart() {
+        return minStart;
+    }
+
+    public int getMaxStart() {
+        return maxStart;
+    }
+
+    @Override
+    public String toString() {
+        return chromosome + ":" + minStart + "-" + maxStart;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump.regionutils;
+
+import com.mongodb.*;
+import org.opencb.opencga.lib.common.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.UnknownHostException;
+import java.util.*;
+
+/**
+ * Finds the chromosomes that have variants of some studies and files, with the first and last start of each one, in
+ * a single aggregation over the variants collection, instead of asking CellBase for all the chromosomes and
+ * supercontigs of the species and querying the bounds of each one.
+ *
+ * The connection is configured with the same storage properties as OpenCGA.
+ */
+public class DatabaseChromosomeFinder implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseChromosomeFinder.class);
+
+    public static final String HOSTS_PROPERTY = "OPENCGA.STORAGE.MONGODB.VARIANT.DB.HOSTS";
+    public static final String AUTHENTICATION_DB_PROPERTY = "OPENCGA.STORAGE.MONGODB.VARIANT.DB.AUTHENTICATION.DB";
+    public static final String USER_PROPERTY = "OPENCGA.STORAGE.MONGODB.VARIANT.DB.USER";
+    public static final String PASSWORD_PROPERTY = "OPENCGA.STORAGE.MONGODB.VARIANT.DB.PASS";
+    public static final String VARIANTS_COLLECTION_PROPERTY = "OPENCGA.STORAGE.MONGODB.VARIANT.DB.COLLECTION.VARIANTS";
+
+    private static final String CHROMOSOME_FIELD = "chr";
+    private static final String START_FIELD = "start";
+    private static final String STUDY_FIELD = "files.sid";
+    private static final String FILE_FIELD = "files.fid";
+    private static final String MIN_START_FIELD = "minStart";
+    private static final String MAX_START_FIELD = "maxStart";
+
+    private final MongoClient mongoClient;
+    private final DBCollection variantsCollection;
+
+    public DatabaseChromosomeFinder(String dbName) throws UnknownHostException {
+        Properties properties = Config.getStorageProperties();
+        this.mongoClient = getMongoClient(properties, dbName);
+        DB db = mongoClient.getDB(dbName);
+        this.variantsCollection = db.getCollection(properties.getProperty(VARIANTS_COLLECTION_PROPERTY, "variants"));
+    }
+
+    private static MongoClient getMongoClient(Properties properties, String dbName) throws UnknownHostException {
+        List<ServerAddress> serverAddresses = new ArrayList<>();
+        for (String hostPort : properties.getProperty(HOSTS_PROPERTY, "localhost").split(",")) {
+            String[] split = hostPort.trim().split(":");
+            serverAddresses.add(new ServerAddress(split[0], split.length > 1 ? Integer.parseInt(split[1]) : 27017));
+        }
+
+        String user = properties.getProperty(USER_PROPERTY, "");
+        if (user.isEmpty()) {
+            return new MongoClient(serverAddresses);
+        } else {
+            String authenticationDb = properties.getProperty(AUTHENTICATION_DB_PROPERTY, "");
+            MongoCredential credential = MongoCredential.createCredential(user,
+                    authenticationDb.isEmpty() ? dbName : authenticationDb,
+                    properties.getProperty(PASSWORD_PROPERTY, "").toCharArray());
+            return new MongoClient(serverAddresses, Collections.singletonList(credential));
+        }
+    }
+
+    /**
+     * @param files may be null or empty to include all the files of the studies
+     * @return bounds of every chromosome with variants, sorted by chromosome name
+     */
+    @SuppressWarnings("deprecation")
+    public Map<String, ChromosomeBounds> getChromosomeBounds(List<String> studies, List<String> files) {
+        BasicDBObject filter = new BasicDBObject(STUDY_FIELD, new BasicDBObject("$in", studies));
+        if (files != null && !files.isEmpty()) {
+            filter.append(FILE_FIELD, new BasicDBObject("$in", files));
+        }
+
+        String startField = "$" + START_FIELD;
+        DBObject group = new BasicDBObject("_id", "$" + CHROMOSOME_FIELD)
+                .append(MIN_START_FIELD, new BasicDBObject("$min", startField))
+                .append(MAX_START_FIELD, new BasicDBObject("$max", startField));
+
+        long start = System.currentTimeMillis();
+        AggregationOutput output = variantsCollection.aggregate(Arrays.asList(
+                new BasicDBObject("$match", filter), new BasicDBObject("$group", group)));
+
+        Map<String, ChromosomeBounds> bounds = new TreeMap<>();
+        for (DBObject result : output.results()) {
+            String chromosome = result.get("_id").toString();
+            bounds.put(chromosome, new ChromosomeBounds(chromosome, ((Number) result.get(MIN_START_FIELD)).intValue(),
+                                                        ((Number) result.get(MAX_START_FIELD)).intValue()));
+        }
+        logger.debug("Found {} chromosomes in {} ms: {}", bounds.size(), System.currentTimeMillis() - start,
+                     bounds.values());
+        return Collections.unmodifiableMap(bounds);
+    }
+
+    @Override
+    public void close() {
+        mongoClient.close();
+    }
+}
@@ -30,29 +30,63 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Created by pagarcia on 27/05/2016.
+ *
+ * The regions are windows of a fixed number of bases, or, if a number of variants per region is given, windows that
+ * end where that number of variants matching the query is reached. The latter asks the database for the position of
+ * the last variant of every window, but avoids lots of almost empty regions in sparse chromosomes and huge regions in
+ * dense ones.
  */
 public class RegionFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(RegionFactory.class);
 
     private int windowSize;
+    private final int variantsPerRegion;
     private final VariantDBAdaptor variantAdaptor;
     private final QueryOptions query;
     private List<Region> regionsInFilter;
+    private Map<String, ChromosomeBounds> chromosomeBounds;
 
     public RegionFactory(int windowSize, VariantDBAdaptor variantAdaptor, QueryOptions query) {
+        this(windowSize, 0, variantAdaptor, query);
+    }
+
+    /**
+     * @param variantsPerRegion number of variants that each region should contain. If 0, the regions are windows of
+     *                          windowSize bases
+     */
+    public RegionFactory(int windowSize, int variantsPerRegion, VariantDBAdaptor variantAdaptor, QueryOptions query) {
+        if (variantsPerRegion < 0) {
+            throw new IllegalArgumentException("The number of variants per region can't be negative");
+        }
         this.windowSize = windowSize;
+        this.variantsPerRegion = variantsPerRegion;
         this.variantAdaptor = variantAdaptor;
         this.query = query;
     }
 
+    /**
+     * @param chromosomeBounds first and last start of the variants of every chromosome, if already known, so they
+     *                         are not queried again. The chromosomes not in the map have no variants
+     */
+    public void setChromosomeBounds(Map<String, ChromosomeBounds> chromosomeBounds) {
+        this.chromosomeBounds = chromosomeBounds;
+    }
+
     public List<Region> getRegionsForChromosome(String chromosome) {
         String regionFilter = query.getString(VariantDBAdaptor.REGION);
-        if (regionFilter == null || regionFilter.isEmpty()) {
+        if ((regionFilter == null || regionFilter.isEmpty()) && chromosomeBounds != null) {
+            ChromosomeBounds bounds = chromosomeBounds.get(chromosome);
+            if (bounds == null) {
+                return Collections.EMPTY_LIST;
+            }
+            return divideChromosomeInChunks(chromosome, bounds.getMinStart(), bounds.getMaxStart());
+        } else if (regionFilter == null || regionFilter.isEmpty()) {
             int minStart = getMinStart(chromosome);
             if (minStart == -1) {
                 return Collections.EMPTY_LIST;
@@ -75,7 +109,7 @@ public class RegionFactory {
     }
 
     private List<Region> divideChromosomeInChunks(String chromosome, int chromosomeMinStart, int chromosomeMaxStart) {
-        List<Region> regions = divideRegionInChunks(chromosome, chromosomeMinStart, chromosomeMaxStart);
+        List<Region> regions = divideRegion(chromosome, chromosomeMinStart, chromosomeMaxStart);
         logger.debug("Number of regions in chromosome{}: {}", chromosome, regions.size());
         if (!regions.isEmpty()) {
             logger.debug("First region: {}", regions.get(0));
@@ -131,11 +165,48 @@ public class RegionFactory {
     private List<Region> divideRegionListInChunks(List<Region> regionsFromQuery) {
         List<Region> regions = new ArrayList<>();
         for (Region region : regionsFromQuery) {
-            regions.addAll(divideRegionInChunks(region.getChromosome(), region.getStart(), region.getEnd()));
+            regions.addAll(divideRegion(region.getChromosome(), region.getStart(), region.getEnd()));
+        }
+        return regions;
+    }
+
+    private List<Region> divideRegion(String chromosome, int minStart, int maxStart) {
+        if (variantsPerRegion > 0) {
+            return divideRegionByVariantCount(chromosome, minStart, maxStart);
+        } else {
+            return divideRegionInChunks(chromosome, minStart, maxStart);
+        }
+    }
+
+    private List<Region> divideRegionByVariantCount(String chromosome, int minStart, int maxStart) {
+        List<Region> regions = new ArrayList<>();
+        if (minStart == -1) {
+            return regions;
+        }
+        int nextStart = minStart;
+        while (nextStart <= maxStart) {
+            int lastVariantStart = getStartOfLastVariantInRegion(chromosome, nextStart, maxStart);
+            // variants starting before the region may be returned because they overlap it
+            int end = lastVariantStart == -1 ? maxStart : Math.max(lastVariantStart, nextStart);
+            regions.add(new Region(chromosome, nextStart, end));
+            nextStart = end + 1;
         }
         return regions;
     }
 
+    /**
+     * @return start of the variant number `variantsPerRegion` from `start`, or -1 if there are fewer variants until
+     * `maxStart`. All the variants with that same start go into the same region
+     */
+    private int getStartOfLastVariantInRegion(String chromosome, int start, int maxStart) {
+        QueryOptions lastVariantQuery = new QueryOptions(query);
+        lastVariantQuery.put(VariantDBAdaptor.REGION, new Region(chromosome, start, maxStart).toString());
+        lastVariantQuery.put("sort", new BasicDBObject("chr", 1).append("start", 1));
+        lastVariantQuery.put("skip", variantsPerRegion - 1);
+        lastVariantQuery.put("limit", 1);
+        return getVariantStart(lastVariantQuery);
+    }
+
     public List<Region> divideRegionInChunks(String chromosome, int minStart, int maxStart) {
         if (minStart == -1) {
             return Collections.EMPTY_LIST;
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantSource;
+import org.opencb.biodata.models.variant.VariantSourceEntry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Conversion of variants with many samples into VariantContexts, compared with the conversion that parsed and built
+ * every genotype from scratch (the "baseline" benchmarks). Run it with the main method, from the test classpath:
+ *
+ * java -cp target/test-classes:target/classes:&lt;dependencies&gt; embl.ebi.variation.eva.vcfdump.BiodataVariantToVariantContextConverterBenchmark
+ *
+ * Add "-prof gc" to the JMH options to compare the bytes allocated per conversion.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BiodataVariantToVariantContextConverterBenchmark {
+
+    private static final String FILE_ID = "fileId";
+    private static final String STUDY_ID = "studyId";
+    private static final String[] GENOTYPES = {"0|0", "0|0", "0|0", "0|1", "1|0", "1|1", "0/0", "./."};
+
+    @Param({"100", "10000"})
+    private int samples;
+
+    private BiodataVariantToVariantContextConverter converter;
+    private BaselineConverter baselineConverter;
+    private Variant snv;
+    private Variant mnv;
+
+    @Setup
+    public void setUp() {
+        List<String> sampleNames = new ArrayList<>(samples);
+        for (int i = 0; i < samples; i++) {
+            sampleNames.add("sample_" + i);
+        }
+        VariantSource source = new VariantSource("file", FILE_ID, STUDY_ID, "study");
+        source.setSamples(sampleNames);
+
+        converter = new BiodataVariantToVariantContextConverter(Collections.singletonList(source), null, null);
+        baselineConverter = new BaselineConverter(Collections.singletonList(source));
+        snv = createVariant(sampleNames, 1000, "C", "T");
+        mnv = createVariant(sampleNames, 2000, "CT", "GA");
+    }
+
+    private Variant createVariant(List<String> sampleNames, int start, String reference, String alternate) {
+        Variant variant = new Variant("1", start, start + reference.length() - 1, reference, alternate);
+        VariantSourceEntry sourceEntry = new VariantSourceEntry(FILE_ID, STUDY_ID);
+        Random random = new Random(start);
+        for (String sampleName : sampleNames) {
+            Map<String, String> sampleData = new HashMap<>();
+            sampleData.put(BiodataVariantToVariantContextConverter.GENOTYPE_KEY, GENOTYPES[random.nextInt(GENOTYPES.length)]);
+            sourceEntry.addSampleData(sampleName, sampleData);
+        }
+        variant.addSourceEntry(sourceEntry);
+        return variant;
+    }
+
+    @Benchmark
+    public VariantContext convertSnv() throws Exception {
+        return converter.transform(snv, null);
+    }
+
+    @Benchmark
+    public VariantContext convertMultiNucleotideVariant() throws Exception {
+        return converter.transform(mnv, null);
+    }
+
+    @Benchmark
+    public VariantContext baselineConvertSnv() {
+        return baselineConverter.transform(snv);
+    }
+
+    @Benchmark
+    public VariantContext baselineConvertMultiNucleotideVariant() {
+        return baselineConverter.transform(mnv);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BiodataVariantToVariantContextConverterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * The conversion of the genotypes before they were converted with cached allele lists and a fixed sample order:
+     * every genotype string is parsed with biodata, and every genotype gets a new builder and allele list. Indels are
+     * not supported, as they need the reference sequence and are converted in the same way by both converters.
+     */
+    static class BaselineConverter {
+
+        private static final int NO_CALL_ALLELE_INDEX = 2;
+
+        private final List<VariantSource> sources;
+        private final VariantContextBuilder variantContextBuilder = new VariantContextBuilder();
+
+        BaselineConverter(List<VariantSource> sources) {
+            this.sources = sources;
+        }
+
+        VariantContext transform(Variant variant) {
+            String[] allelesArray = {variant.getReference(), variant.getAlternate()};
+            Set<Genotype> genotypes = getGenotypes(variant, allelesArray);
+            return variantContextBuilder
+                    .chr(variant.getChromosome())
+                    .start(variant.getStart())
+                    .stop(variant.getEnd())
+                    .noID()
+                    .alleles(allelesArray)
+                    .unfiltered()
+                    .genotypes(genotypes).make();
+        }
+
+        private Set<Genotype> getGenotypes(Variant variant, String[] allelesArray) {
+            Set<Genotype> genotypes = new HashSet<>();
+            Allele[] variantAlleles =
+                    {Allele.create(allelesArray[0], true), Allele.create(allelesArray[1]), Allele.create(Allele.NO_CALL, false)};
+
+            for (VariantSource source : sources) {
+                List<VariantSourceEntry> variantStudyEntries = variant.getSourceEntries().values().stream()
+                        .filter(s -> s.getStudyId().equals(source.getStudyId())).collect(Collectors.toList());
+                for (VariantSourceEntry variantStudyEntry : variantStudyEntries) {
+                    for (Map.Entry<String, Map<String, String>> sampleEntry : variantStudyEntry.getSamplesData().entrySet()) {
+                        genotypes.add(parseSampleGenotype(variantAlleles, sampleEntry.getKey(),
+                                                          sampleEntry.getValue().get(BiodataVariantToVariantContextConverter.GENOTYPE_KEY)));
+                    }
+                }
+            }
+            return genotypes;
+        }
+
+        private Genotype parseSampleGenotype(Allele[] variantAlleles, String sampleName, String sampleGenotypeString) {
+            org.opencb.biodata.models.feature.Genotype genotype = new org.opencb.biodata.models.feature.Genotype(
+                    sampleGenotypeString, variantAlleles[0].getBaseString(), variantAlleles[1].getBaseString());
+            List<Allele> genotypeAlleles = new ArrayList<>(2);
+            for (int index : genotype.getAllelesIdx()) {
+                if (index == -1 || index > NO_CALL_ALLELE_INDEX) {
+                    index = NO_CALL_ALLELE_INDEX;
+                }
+                genotypeAlleles.add(variantAlleles[index]);
+            }
+            return new GenotypeBuilder().name(sampleName).phased(genotype.isPhased()).alleles(genotypeAlleles).make();
+        }
+    }
+}
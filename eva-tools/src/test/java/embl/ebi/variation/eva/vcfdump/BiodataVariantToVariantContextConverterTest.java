@@ -20,6 +20,8 @@ package embl.ebi.variation.eva.vcfdump;
 
 import embl.ebi.variation.eva.vcfdump.cellbasewsclient.CellbaseWSClient;
 import embl.ebi.variation.eva.vcfdump.exception.CellbaseSequenceDownloadError;
+import embl.ebi.variation.eva.vcfdump.referencesequence.CachingSequenceProvider;
+import embl.ebi.variation.eva.vcfdump.referencesequence.ReferenceSequenceProvider;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
@@ -158,6 +160,26 @@ public class BiodataVariantToVariantContextConverterTest {
         checkVariantContext(variantContext, CHR_1, 1100, 1101, "TA", "T", variants.get(0).getSourceEntries(), false);
     }
 
+    @Test
+    public void singleStudyInsertionAtPositionTwoCachedRegionStartingAtOne() throws Exception {
+        VariantSource variantSource = createTestVariantSource(STUDY_1);
+        String variantLine =  String.join("\t", CHR_1, "1", "id", "C", "CG", "100", "PASS", ".", "GT", "0|0", "0|0", "0|1", "1|1", "1|1", "0|1");
+        List<Variant> variants = variantFactory.create(variantSource, variantLine);
+        assertEquals(1, variants.size());
+        assertEquals(2, variants.get(0).getStart());
+
+        // the cached region starts at position 0, before the chromosome, to take the context nucleotide of the indels
+        String chromosomeStart = "CATGGATTAC";
+        ReferenceSequenceProvider reference = region -> chromosomeStart.substring(region.getStart() - 1,
+                                                                                  Math.min(region.getEnd(), chromosomeStart.length()));
+        try (CachingSequenceProvider cachingReference = new CachingSequenceProvider(reference, 5, 2)) {
+            BiodataVariantToVariantContextConverter variantConverter =
+                    new BiodataVariantToVariantContextConverter(Collections.singletonList(variantSource), cachingReference, noSampleNamesConflictSampleNameCorrections);
+            VariantContext variantContext = variantConverter.transform(variants.get(0), new Region("1", 1, 10));
+            checkVariantContext(variantContext, CHR_1, 1, 1, "C", "CG", variants.get(0).getSourceEntries(), false);
+        }
+    }
+
     @Test(expected=IllegalStateException.class)
     public void singleStudyInsertionMissingCellbase() throws CellbaseSequenceDownloadError {
         // create SNV variant
@@ -308,6 +330,67 @@ public class BiodataVariantToVariantContextConverterTest {
         checkVariantContext(variantContext, CHR_1, 1000, 1000, "T", "G", variant.getSourceEntries(), true);
     }
 
+    @Test
+    public void genotypesFollowTheOrderOfTheSourceSamples() throws CellbaseSequenceDownloadError {
+        VariantSource variantSource = createTestVariantSource(STUDY_1);
+        String variantLine =  String.join("\t", CHR_1, "1000", "id", "C", "A", "100", "PASS", ".", "GT", "0|0", "0/1", "./.", "1|1", "1|0", "0|1");
+        List<Variant> variants = variantFactory.create(variantSource, variantLine);
+
+        BiodataVariantToVariantContextConverter variantConverter =
+                new BiodataVariantToVariantContextConverter(Collections.singletonList(variantSource), null, noSampleNamesConflictSampleNameCorrections);
+        VariantContext variantContext = variantConverter.transform(variants.get(0), null);
+
+        List<String> sampleNames = new ArrayList<>();
+        variantContext.getGenotypes().forEach(genotype -> sampleNames.add(genotype.getSampleName()));
+        assertEquals(new ArrayList<>(variantSource.getSamples()), sampleNames);
+
+        assertTrue(variantContext.getGenotype("s2").isHet());
+        assertFalse(variantContext.getGenotype("s2").isPhased());
+        assertTrue(variantContext.getGenotype("s3").isNoCall());
+        assertEquals(Arrays.asList(Allele.create("A"), Allele.create("C", true)), variantContext.getGenotype("s5").getAlleles());
+        assertTrue(variantContext.getGenotype("s6").isPhased());
+    }
+
+    @Test
+    public void cachedGenotypesDependOnTheAllelesOfEachVariant() throws CellbaseSequenceDownloadError {
+        VariantSource variantSource = createTestVariantSource(STUDY_1);
+        BiodataVariantToVariantContextConverter variantConverter =
+                new BiodataVariantToVariantContextConverter(Collections.singletonList(variantSource), null, noSampleNamesConflictSampleNameCorrections);
+
+        // the same genotype strings in a SNV, a multi nucleotide variant and a SNV with other bases
+        String[][] alleles = {{"C", "A"}, {"CT", "AG"}, {"G", "T"}, {"C", "A"}};
+        for (String[] variantAlleles : alleles) {
+            String variantLine = String.join("\t", CHR_1, "1000", "id", variantAlleles[0], variantAlleles[1], "100", "PASS", ".", "GT",
+                                             "0|0", "0|1", "1|0", "1|1", "./.", "0|1");
+            Variant variant = variantFactory.create(variantSource, variantLine).get(0);
+            VariantContext variantContext = variantConverter.transform(variant, null);
+            checkVariantContext(variantContext, CHR_1, 1000, 1000 + variantAlleles[0].length() - 1, variantAlleles[0], variantAlleles[1],
+                                variant.getSourceEntries(), false);
+            assertEquals(Arrays.asList(Allele.create(variantAlleles[1]), Allele.create(variantAlleles[0], true)),
+                         variantContext.getGenotype("s3").getAlleles());
+        }
+    }
+
+    @Test
+    public void samplesWithoutGenotypeAreNotInTheVariantContext() throws CellbaseSequenceDownloadError {
+        Variant variant = new Variant(CHR_1, 1000, 1000, "T", "G");
+        VariantSource source = createTestVariantSource(STUDY_1);
+        VariantSourceEntry sourceEntry = new VariantSourceEntry(FILE_ID, STUDY_1);
+        addGenotype(sourceEntry, "s1", "0|1");
+        addGenotype(sourceEntry, "s2", "1/2");
+        addGenotype(sourceEntry, "s4", "1|1");
+        variant.addSourceEntry(sourceEntry);
+
+        BiodataVariantToVariantContextConverter variantConverter =
+                new BiodataVariantToVariantContextConverter(Collections.singletonList(source), null, noSampleNamesConflictSampleNameCorrections);
+        VariantContext variantContext = variantConverter.transform(variant, null);
+
+        assertEquals(new HashSet<>(Arrays.asList("s1", "s2", "s4")), variantContext.getSampleNames());
+        // alleles other than the reference and the alternate are no calls
+        assertEquals(Arrays.asList(Allele.create("G"), Allele.NO_CALL), variantContext.getGenotype("s2").getAlleles());
+        checkVariantContext(variantContext, CHR_1, 1000, 1000, "T", "G", variant.getSourceEntries(), false);
+    }
+
     private void addGenotype(VariantSourceEntry sourceEntry, String sampleName, String genotype) {
         Map<String, String> sampleData = new HashMap<>();
         sampleData.put("GT", genotype);
@@ -348,14 +431,16 @@ public class BiodataVariantToVariantContextConverterTest {
             }
             Genotype outputVariantSampleGenotype = variantContext.getGenotype(sampleNameInOutputVariant);
             String[] inputAlleles = inputVariantSampleGenotype.split("/|\\|");
-            compareAlleles(Integer.valueOf(inputAlleles[0]), outputVariantSampleGenotype.getAllele(0));
-            compareAlleles(Integer.valueOf(inputAlleles[1]), outputVariantSampleGenotype.getAllele(1));
+            compareAlleles(inputAlleles[0], outputVariantSampleGenotype.getAllele(0));
+            compareAlleles(inputAlleles[1], outputVariantSampleGenotype.getAllele(1));
             assertEquals(inputVariantSampleGenotype.charAt(inputAlleles[0].length()) == '|', outputVariantSampleGenotype.isPhased());
         }
     }
 
-    private void compareAlleles(int inputAlleleIndex, Allele allele) {
-        if (inputAlleleIndex == 0) {
+    private void compareAlleles(String inputAllele, Allele allele) {
+        if (inputAllele.equals(".")) {
+            assertTrue(allele.isNoCall());
+        } else if (Integer.valueOf(inputAllele) == 0) {
             assertTrue(allele.isReference());
         } else {
             assertTrue(allele.isNonReference());
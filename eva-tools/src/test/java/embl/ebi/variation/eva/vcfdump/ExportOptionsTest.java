@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link ExportOptions}
+ */
+public class ExportOptionsTest {
+
+    @Test
+    public void unsetOptionsHaveTheDefaultValues() {
+        ExportOptions options = new ExportOptions().setThreads(4).setOutputFormat(OutputFormat.BCF);
+
+        assertEquals(4, options.getThreads());
+        assertEquals(OutputFormat.BCF, options.getOutputFormat());
+        assertEquals(ExportOptions.DEFAULT_MAX_PENDING_REGIONS, options.getMaxPendingRegions());
+        assertEquals(ExportOptions.DEFAULT_BUFFER_SIZE, options.getBufferSize());
+        assertEquals(ExportOptions.DEFAULT_VARIANTS_PER_REGION, options.getVariantsPerRegion());
+        assertNull(options.getReferenceFasta());
+        assertEquals(ExportOptions.DEFAULT_REFERENCE_CACHE_SEGMENTS, options.getReferenceCacheSegments());
+        assertEquals(ExportOptions.DEFAULT_COMPRESSION_THREADS, options.getCompressionThreads());
+        assertEquals(ExportOptions.DEFAULT_COMPRESSION_LEVEL, options.getCompressionLevel());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroThreadsThrowsIllegalArgumentException() {
+        new ExportOptions().setThreads(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroMaxPendingRegionsThrowsIllegalArgumentException() {
+        new ExportOptions().setMaxPendingRegions(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroBufferSizeThrowsIllegalArgumentException() {
+        new ExportOptions().setBufferSize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingOutputFormatThrowsIllegalArgumentException() {
+        new ExportOptions().setOutputFormat(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCompressionThreadsThrowsIllegalArgumentException() {
+        new ExportOptions().setCompressionThreads(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCompressionLevelThrowsIllegalArgumentException() {
+        new ExportOptions().setCompressionLevel(10);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link ParallelBlockCompressedOutputStream}
+ */
+public class ParallelBlockCompressedOutputStreamTest {
+
+    private static final int EMPTY_BLOCK_LENGTH = 28;
+
+    @Test
+    public void compressedDataIsReadBackUnchanged() throws IOException {
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        for (int line = 0; line < 100000; line++) {
+            uncompressed.write(("22\t" + (16050000 + line) + "\trs" + line + "\tA\tG\t.\tPASS\t.\tGT\t0|1\n").getBytes());
+        }
+        byte[] data = uncompressed.toByteArray();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelBlockCompressedOutputStream output = new ParallelBlockCompressedOutputStream(compressed, 4, 6)) {
+            // small and unaligned writes, so the lines are split between blocks
+            for (int offset = 0; offset < data.length; offset += 1000) {
+                output.write(data, offset, Math.min(1000, data.length - offset));
+            }
+            assertEquals(data.length, output.getPosition());
+        }
+
+        assertTrue(compressed.size() < data.length);
+        assertArrayEquals(data, decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    public void incompressibleDataIsReadBackUnchanged() throws IOException {
+        byte[] data = new byte[3 * ParallelBlockCompressedOutputStream.BLOCK_SIZE + 123];
+        new Random(42).nextBytes(data);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelBlockCompressedOutputStream output = new ParallelBlockCompressedOutputStream(compressed, 2, 9)) {
+            output.write(data);
+        }
+
+        assertArrayEquals(data, decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    public void blocksAreWrittenInOrderAtTheNotifiedOffsets() throws IOException {
+        byte[] data = new byte[10 * ParallelBlockCompressedOutputStream.BLOCK_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('A' + i % 7);
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        List<Long> blockIndexes = new ArrayList<>();
+        List<Long> compressedOffsets = new ArrayList<>();
+        long compressedLength;
+        try (ParallelBlockCompressedOutputStream output = new ParallelBlockCompressedOutputStream(compressed, 4, 5)) {
+            output.setBlockListener((blockIndex, compressedOffset) -> {
+                blockIndexes.add(blockIndex);
+                compressedOffsets.add(compressedOffset);
+            });
+            output.write(data);
+            output.close();
+            compressedLength = output.getCompressedPosition();
+        }
+
+        byte[] bytes = compressed.toByteArray();
+        assertEquals(10, blockIndexes.size());
+        for (int block = 0; block < blockIndexes.size(); block++) {
+            assertEquals(block, blockIndexes.get(block).longValue());
+            int offset = compressedOffsets.get(block).intValue();
+            assertEquals(31, bytes[offset]);
+            assertEquals((byte) 139, bytes[offset + 1]);
+        }
+        assertEquals(0, compressedOffsets.get(0).longValue());
+        assertEquals(bytes.length - EMPTY_BLOCK_LENGTH, compressedLength);
+    }
+
+    @Test
+    public void emptyStreamOnlyHasTheEndOfFileBlock() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelBlockCompressedOutputStream(compressed, 2, 5).close();
+
+        assertEquals(EMPTY_BLOCK_LENGTH, compressed.size());
+        assertEquals(0, decompress(compressed.toByteArray()).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroThreadsThrowsIllegalArgumentException() {
+        new ParallelBlockCompressedOutputStream(new ByteArrayOutputStream(), 0, 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCompressionLevelThrowsIllegalArgumentException() {
+        new ParallelBlockCompressedOutputStream(new ByteArrayOutputStream(), 1, 10);
+    }
+
+    private byte[] decompress(byte[] compressed) throws IOException {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed));
+             ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+}
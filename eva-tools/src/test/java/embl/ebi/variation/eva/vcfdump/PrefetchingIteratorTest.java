@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link PrefetchingIterator}
+ */
+public class PrefetchingIteratorTest {
+
+    @Test
+    public void allItemsAreReturnedInOrder() {
+        List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+        List<Integer> iterated = new ArrayList<>();
+        try (PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(items.iterator(), 10, "test-reader")) {
+            iterator.forEachRemaining(iterated::add);
+            assertFalse(iterator.hasNext());
+        }
+        assertEquals(items, iterated);
+    }
+
+    @Test
+    public void failureIsThrownAfterTheItemsReadBeforeIt() {
+        Iterator<Integer> failingSource = new Iterator<Integer>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                if (next == 3) {
+                    throw new IllegalStateException("database down");
+                }
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return next++;
+            }
+        };
+
+        List<Integer> iterated = new ArrayList<>();
+        try (PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(failingSource, 2, "test-reader")) {
+            iterator.forEachRemaining(iterated::add);
+            fail("The failure of the source should be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("database down", e.getMessage());
+        }
+        assertEquals(3, iterated.size());
+    }
+
+    @Test
+    public void closingStopsAnUnfinishedIteration() throws Exception {
+        Iterator<Integer> endlessSource = IntStream.iterate(0, i -> i + 1).iterator();
+
+        PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(endlessSource, 5, "test-reader");
+        assertEquals(0, (int) iterator.next());
+        iterator.close();
+        assertFalse(iterator.hasNext());
+    }
+}
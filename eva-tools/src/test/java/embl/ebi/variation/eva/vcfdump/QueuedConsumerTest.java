@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link QueuedConsumer}
+ */
+public class QueuedConsumerTest {
+
+    @Test
+    public void allItemsAreConsumedInOrderBeforeClosing() {
+        List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+        List<Integer> consumed = new ArrayList<>();
+        try (QueuedConsumer<Integer> queue = new QueuedConsumer<>(consumed::add, 10, "test-writer")) {
+            items.forEach(queue);
+        }
+        assertEquals(items, consumed);
+    }
+
+    @Test
+    public void failureOfTheDelegateIsThrown() {
+        QueuedConsumer<Integer> queue = new QueuedConsumer<>(item -> {
+            if (item == 5) {
+                throw new IllegalStateException("disk full");
+            }
+        }, 2, "test-writer");
+
+        try {
+            for (int i = 0; i < 1000; i++) {
+                queue.accept(i);
+            }
+            queue.close();
+            fail("The failure of the delegate should be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+}
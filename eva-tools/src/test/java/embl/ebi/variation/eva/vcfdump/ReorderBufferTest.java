@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link ReorderBuffer}
+ */
+public class ReorderBufferTest {
+
+    @Test
+    public void resultsAreConsumedInTheOrderTheyWereAdded() {
+        List<Integer> consumed = new ArrayList<>();
+        ReorderBuffer<Integer> buffer = new ReorderBuffer<>(10, consumed::add);
+
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        CompletableFuture<Integer> second = new CompletableFuture<>();
+        CompletableFuture<Integer> third = new CompletableFuture<>();
+        buffer.add(first);
+        buffer.add(second);
+        third.complete(3);
+        second.complete(2);
+        buffer.add(third);
+        assertTrue(consumed.isEmpty());
+        assertEquals(3, buffer.getPending());
+
+        first.complete(1);
+        buffer.flush();
+        assertEquals(Arrays.asList(1, 2, 3), consumed);
+        assertEquals(0, buffer.getPending());
+    }
+
+    @Test
+    public void addingToAFullBufferWaitsForTheOldestResult() {
+        List<Integer> consumed = new ArrayList<>();
+        ReorderBuffer<Integer> buffer = new ReorderBuffer<>(2, consumed::add);
+
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        buffer.add(first);
+        buffer.add(new CompletableFuture<>());
+        CompletableFuture.runAsync(() -> {
+            sleep(100);
+            first.complete(1);
+        });
+        buffer.add(new CompletableFuture<>());
+
+        assertEquals(Arrays.asList(1), consumed);
+        assertEquals(2, buffer.getPending());
+    }
+
+    @Test
+    public void orderIsKeptWithTasksFinishingAtRandom() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Integer> consumed = new ArrayList<>();
+        ReorderBuffer<Integer> buffer = new ReorderBuffer<>(5, consumed::add);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int task = i;
+            expected.add(task);
+            buffer.add(executor.submit(() -> {
+                sleep((task * 7) % 11);
+                return task;
+            }));
+            assertTrue(buffer.getPending() <= 5);
+        }
+        buffer.flush();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+
+        assertEquals(expected, consumed);
+    }
+
+    @Test
+    public void failedTaskIsRethrownAndTheRestAreCancelled() {
+        List<Integer> consumed = new ArrayList<>();
+        ReorderBuffer<Integer> buffer = new ReorderBuffer<>(3, consumed::add);
+
+        CompletableFuture<Integer> failed = new CompletableFuture<>();
+        CompletableFuture<Integer> next = new CompletableFuture<>();
+        buffer.add(failed);
+        buffer.add(next);
+        failed.completeExceptionally(new IllegalStateException("region failed"));
+
+        try {
+            buffer.flush();
+            fail("The failure of the task should be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("region failed", e.getMessage());
+        }
+        assertTrue(next.isCancelled());
+        assertEquals(0, buffer.getPending());
+        assertTrue(consumed.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() {
+        new ReorderBuffer<Integer>(0, result -> {});
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
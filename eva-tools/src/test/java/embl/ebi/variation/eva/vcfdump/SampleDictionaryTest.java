@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.VariantSource;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link SampleDictionary}
+ */
+public class SampleDictionaryTest {
+
+    @Test
+    public void samplesWithoutConflictsKeepTheirNames() {
+        VariantSource source1 = createSource("file_1", "study_1", "s1", "s2", "s3");
+        VariantSource source2 = createSource("file_2", "study_2", "c1", "c2");
+
+        SampleDictionary dictionary = new SampleDictionary(Arrays.asList(source1, source2));
+
+        assertFalse(dictionary.hasConflicts());
+        assertNull(dictionary.getFilesSampleNamesEquivalences());
+        assertEquals(5, dictionary.size());
+        assertEquals(new HashSet<>(Arrays.asList("s1", "s2", "s3", "c1", "c2")), new HashSet<>(dictionary.getSampleNames()));
+        assertEquals(Arrays.asList("c1", "c2", "s1", "s2", "s3"), dictionary.getSortedSampleNames());
+        assertTrue(dictionary.containsStudy("study_2"));
+        assertFalse(dictionary.containsStudy("study_3"));
+        checkColumns(dictionary, source1);
+        checkColumns(dictionary, source2);
+    }
+
+    @Test
+    public void conflictingSamplesArePrefixedWithTheirFileId() {
+        VariantSource source1 = createSource("file_1", "study_1", "s1", "s2", "s3");
+        VariantSource source2 = createSource("file_2", "study_2", "c1", "c2");
+        VariantSource source3 = createSource("file_3", "study_3", "s2", "s3");
+
+        SampleDictionary dictionary = new SampleDictionary(Arrays.asList(source1, source2, source3));
+
+        assertTrue(dictionary.hasConflicts());
+        assertEquals(7, dictionary.size());
+        for (VariantSource source : Arrays.asList(source1, source2, source3)) {
+            for (String sampleName : source.getSamples()) {
+                String outputSampleName = source.getFileId() + "_" + sampleName;
+                assertEquals(outputSampleName, dictionary.getOutputSampleName(source.getFileId(), sampleName));
+                assertEquals(outputSampleName, dictionary.getFilesSampleNamesEquivalences().get(source.getFileId()).get(sampleName));
+            }
+            checkColumns(dictionary, source);
+        }
+    }
+
+    @Test
+    public void samplesOfASingleFileKeepTheirNames() {
+        VariantSource source = createSource("file_1", "study_1", "s1", "s2");
+
+        SampleDictionary dictionary = new SampleDictionary(Collections.singletonList(source));
+
+        assertFalse(dictionary.hasConflicts());
+        assertEquals("s2", dictionary.getOutputSampleName("file_1", "s2"));
+        // samples not declared in the source are named like the declared ones, without a column
+        assertEquals("s9", dictionary.getOutputSampleName("file_1", "s9"));
+        assertNull(dictionary.getSampleColumns("file_1").get("s9"));
+        assertTrue(dictionary.getSampleColumns("file_2").isEmpty());
+    }
+
+    @Test
+    public void manyStudiesWithConflicts() {
+        int files = 50;
+        int samplesPerFile = 2000;
+        List<VariantSource> sources = new ArrayList<>();
+        for (int file = 0; file < files; file++) {
+            String[] sampleNames = new String[samplesPerFile];
+            for (int sample = 0; sample < samplesPerFile; sample++) {
+                // half of the sample names are shared with the previous file
+                sampleNames[sample] = "sample_" + (file * samplesPerFile / 2 + sample);
+            }
+            sources.add(createSource("file_" + file, "study_" + file, sampleNames));
+        }
+
+        SampleDictionary dictionary = new SampleDictionary(sources);
+
+        assertTrue(dictionary.hasConflicts());
+        assertEquals(files * samplesPerFile, dictionary.size());
+        assertEquals(files * samplesPerFile, new HashSet<>(dictionary.getSampleNames()).size());
+        sources.forEach(source -> checkColumns(dictionary, source));
+    }
+
+    private void checkColumns(SampleDictionary dictionary, VariantSource source) {
+        Map<String, Integer> columns = dictionary.getSampleColumns(source.getFileId());
+        assertEquals(source.getSamples().size(), columns.size());
+        for (String sampleName : source.getSamples()) {
+            int column = columns.get(sampleName);
+            String outputSampleName = dictionary.getSampleName(column);
+            assertEquals(outputSampleName, dictionary.getOutputSampleName(source.getFileId(), sampleName));
+            assertEquals(column, (int) dictionary.getSampleNameColumns().get(outputSampleName));
+        }
+    }
+
+    private VariantSource createSource(String fileId, String studyId, String... sampleNames) {
+        VariantSource source = new VariantSource("name", fileId, studyId, "studyName");
+        source.setSamples(Arrays.asList(sampleNames));
+        return source;
+    }
+}
@@ -37,6 +37,8 @@ import javax.ws.rs.core.MultivaluedMap;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.zip.GZIPInputStream;
 
@@ -245,6 +247,168 @@ public class VariantExporterControllerTest {
         checkOrderInOutputFile(outputFile);
     }
 
+    @Test
+    public void testParallelExportIsIdenticalToSerialExport() throws Exception {
+        List<String> studies = Arrays.asList("PRJEB6119", "PRJEB7061");
+
+        VariantExporterController serialController = new VariantExporterController("btaurus",
+                VariantExporterTestDB.COW_TEST_DB_NAME, studies, null, OUTPUT_DIR, emptyFilter);
+        serialController.run();
+        String serialOutputFile = serialController.getOuputFilePath();
+        testOutputFiles.add(serialOutputFile);
+
+        VariantExporterController parallelController = new VariantExporterController("btaurus",
+                VariantExporterTestDB.COW_TEST_DB_NAME, studies, null, OUTPUT_DIR, emptyFilter,
+                new ExportOptions().setThreads(4).setMaxPendingRegions(3).setBufferSize(2).setVariantsPerRegion(0));
+        parallelController.run();
+        String parallelOutputFile = parallelController.getOuputFilePath();
+        testOutputFiles.add(parallelOutputFile);
+
+        assertNotEquals(serialOutputFile, parallelOutputFile);
+        assertEquals(serialController.getFailedVariants(), parallelController.getFailedVariants());
+        assertArrayEquals(Files.readAllBytes(Paths.get(serialOutputFile)), Files.readAllBytes(Paths.get(parallelOutputFile)));
+    }
+
+    @Test
+    public void testRegionsByVariantCountExportTheSameVariants() throws Exception {
+        List<String> studies = Collections.singletonList("PRJEB6119");
+
+        VariantExporterController fixedRegionsController = new VariantExporterController("btaurus",
+                VariantExporterTestDB.COW_TEST_DB_NAME, studies, null, OUTPUT_DIR, emptyFilter,
+                new ExportOptions().setMaxPendingRegions(1).setBufferSize(100).setVariantsPerRegion(0));
+        fixedRegionsController.run();
+        String fixedRegionsOutputFile = fixedRegionsController.getOuputFilePath();
+        testOutputFiles.add(fixedRegionsOutputFile);
+
+        // few variants per region, so there are many of them, some with the same start in the boundaries
+        VariantExporterController variantCountController = new VariantExporterController("btaurus",
+                VariantExporterTestDB.COW_TEST_DB_NAME, studies, null, OUTPUT_DIR, emptyFilter,
+                new ExportOptions().setMaxPendingRegions(1).setBufferSize(100).setVariantsPerRegion(3));
+        variantCountController.run();
+        String variantCountOutputFile = variantCountController.getOuputFilePath();
+        testOutputFiles.add(variantCountOutputFile);
+
+        assertEquals(fixedRegionsController.getFailedVariants(), variantCountController.getFailedVariants());
+        assertArrayEquals(Files.readAllBytes(Paths.get(fixedRegionsOutputFile)),
+                          Files.readAllBytes(Paths.get(variantCountOutputFile)));
+    }
+
+    @Test
+    public void testBcfExportHasTheSameVariantsAsVcfExport() throws Exception {
+        List<String> studies = Arrays.asList("PRJEB6119", "PRJEB7061");
+
+        VariantExporterController vcfController = new VariantExporterController("btaurus",
+                VariantExporterTestDB.COW_TEST_DB_NAME, studies, null, OUTPUT_DIR, emptyFilter);
+        vcfController.run();
+        String vcfOutputFile = vcfController.getOuputFilePath();
+        testOutputFiles.add(vcfOutputFile);
+
+        VariantExporterController bcfController = new VariantExporterController("btaurus",
+                VariantExporterTestDB.COW_TEST_DB_NAME, studies, null, OUTPUT_DIR, emptyFilter,
+                new ExportOptions().setMaxPendingRegions(1).setBufferSize(100).setVariantsPerRegion(0)
+                                   .setOutputFormat(OutputFormat.BCF));
+        bcfController.run();
+        String bcfOutputFile = bcfController.getOuputFilePath();
+        testOutputFiles.add(bcfOutputFile);
+        assertTrue(bcfOutputFile.endsWith(".bcf"));
+
+        for (VariantExporterController controller : Arrays.asList(vcfController, bcfController)) {
+            String indexFile = controller.getOutputIndexFilePath();
+            if (indexFile != null) {
+                testOutputFiles.add(indexFile);
+                assertTrue(new File(indexFile).exists());
+            }
+        }
+
+        assertEquals(vcfController.getFailedVariants(), bcfController.getFailedVariants());
+        List<String> vcfVariants = getVariantsWithGenotypes(vcfOutputFile);
+        assertFalse(vcfVariants.isEmpty());
+        assertEquals(vcfVariants, getVariantsWithGenotypes(bcfOutputFile));
+        assertVcfOrderedByCoordinate(bcfOutputFile);
+    }
+
+    @Test
+    public void testParallelCompressionHasTheSameContentAsSerialCompression() throws Exception {
+        List<String> studies = Arrays.asList("PRJEB6119", "PRJEB7061");
+
+        VariantExporterController serialController = new VariantExporterController("btaurus",
+                VariantExporterTestDB.COW_TEST_DB_NAME, studies, null, OUTPUT_DIR, emptyFilter);
+        serialController.run();
+        String serialOutputFile = serialController.getOuputFilePath();
+        testOutputFiles.add(serialOutputFile);
+
+        VariantExporterController parallelController = new VariantExporterController("btaurus",
+                VariantExporterTestDB.COW_TEST_DB_NAME, studies, null, OUTPUT_DIR, emptyFilter,
+                new ExportOptions().setMaxPendingRegions(1).setBufferSize(100).setVariantsPerRegion(0)
+                                   .setCompressionThreads(4).setCompressionLevel(6));
+        parallelController.run();
+        String parallelOutputFile = parallelController.getOuputFilePath();
+        testOutputFiles.add(parallelOutputFile);
+        String parallelIndexFile = parallelController.getOutputIndexFilePath();
+        testOutputFiles.add(parallelIndexFile);
+        if (serialController.getOutputIndexFilePath() != null) {
+            testOutputFiles.add(serialController.getOutputIndexFilePath());
+        }
+
+        assertEquals(serialController.getFailedVariants(), parallelController.getFailedVariants());
+        assertArrayEquals(readUncompressed(serialOutputFile), readUncompressed(parallelOutputFile));
+        assertTrue(new File(parallelIndexFile).exists());
+
+        // every variant is found through the index, in the right contig
+        Map<String, Integer> variantsPerContig = new HashMap<>();
+        try (VCFFileReader vcfReader = new VCFFileReader(new File(parallelOutputFile), false)) {
+            for (VariantContext variant : vcfReader) {
+                variantsPerContig.merge(variant.getContig(), 1, Integer::sum);
+            }
+        }
+        assertFalse(variantsPerContig.isEmpty());
+        try (VCFFileReader indexedReader = new VCFFileReader(new File(parallelOutputFile), true)) {
+            for (Map.Entry<String, Integer> contig : variantsPerContig.entrySet()) {
+                int variantsInContig = 0;
+                Iterator<VariantContext> variants = indexedReader.query(contig.getKey(), 1, Integer.MAX_VALUE);
+                while (variants.hasNext()) {
+                    assertEquals(contig.getKey(), variants.next().getContig());
+                    variantsInContig++;
+                }
+                assertEquals(contig.getValue().intValue(), variantsInContig);
+            }
+        }
+    }
+
+    private byte[] readUncompressed(String fileName) throws IOException {
+        try (InputStream input = new GZIPInputStream(new FileInputStream(fileName));
+             ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    private List<String> getVariantsWithGenotypes(String fileName) {
+        List<String> variants = new ArrayList<>();
+        try (VCFFileReader vcfReader = new VCFFileReader(new File(fileName), false)) {
+            List<String> samples = vcfReader.getFileHeader().getGenotypeSamples();
+            for (VariantContext variant : vcfReader) {
+                StringBuilder variantWithGenotypes = new StringBuilder(variant.getContig()).append(":")
+                        .append(variant.getStart()).append(":").append(variant.getAlleles());
+                samples.forEach(sample -> variantWithGenotypes.append(" ").append(sample).append("=")
+                                                              .append(variant.getGenotype(sample).getGenotypeString()));
+                variants.add(variantWithGenotypes.toString());
+            }
+        }
+        return variants;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingReferenceFastaThrowsIllegalArgumentException() throws Exception {
+        List<String> studies = Collections.singletonList("8");
+        new VariantExporterController("hsapiens", DB_NAME, studies, null, OUTPUT_DIR, emptyFilter,
+                                      new ExportOptions().setReferenceFasta("/nonexistent/reference.fa"));
+    }
+
     private void checkOrderInOutputFile(String outputFile) {
         assertVcfOrderedByCoordinate(outputFile);
         this.logger.info("Deleting output temp file {}", outputFile);
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump.referencesequence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.feature.Region;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link CachingSequenceProvider}
+ */
+public class CachingSequenceProviderTest {
+
+    private static final String BASES = "ACGT";
+    private static final int CHROMOSOME_LENGTH = 95;
+
+    private List<Region> fetchedRegions;
+    private boolean failFetches;
+    private CachingSequenceProvider cache;
+
+    @Before
+    public void setUp() throws Exception {
+        fetchedRegions = Collections.synchronizedList(new ArrayList<>());
+        failFetches = false;
+        // the base at every position is BASES[position % 4], and the chromosome ends at CHROMOSOME_LENGTH
+        ReferenceSequenceProvider reference = region -> {
+            fetchedRegions.add(region);
+            if (failFetches) {
+                throw new IOException("CellBase down");
+            }
+            StringBuilder sequence = new StringBuilder();
+            for (int position = region.getStart(); position <= Math.min(region.getEnd(), CHROMOSOME_LENGTH); position++) {
+                sequence.append(BASES.charAt(position % BASES.length()));
+            }
+            return sequence.toString();
+        };
+        cache = new CachingSequenceProvider(reference, 10, 3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.close();
+    }
+
+    @Test
+    public void sequencesAreAssembledFromAlignedSegments() throws IOException {
+        assertEquals("CGTACG", cache.getSequence(new Region("1", 9, 14)));
+        assertEquals(2, fetchedRegions.size());
+        assertTrue(fetchedRegions.contains(new Region("1", 1, 10)));
+        assertTrue(fetchedRegions.contains(new Region("1", 11, 20)));
+
+        // segments are shared by the following regions
+        assertEquals("GTAC", cache.getSequence(new Region("1", 14, 17)));
+        assertEquals(2, fetchedRegions.size());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getFetches());
+    }
+
+    @Test
+    public void leastRecentlyUsedSegmentsAreEvicted() throws IOException {
+        cache.getSequence(new Region("1", 1, 1));
+        cache.getSequence(new Region("1", 11, 11));
+        cache.getSequence(new Region("1", 21, 21));
+        cache.getSequence(new Region("1", 1, 1));
+        cache.getSequence(new Region("1", 31, 31));
+        assertEquals(4, fetchedRegions.size());
+
+        // the segment of position 11 was the least recently used
+        cache.getSequence(new Region("1", 1, 1));
+        assertEquals(4, fetchedRegions.size());
+        cache.getSequence(new Region("1", 11, 11));
+        assertEquals(5, fetchedRegions.size());
+    }
+
+    @Test
+    public void prefetchedSegmentsAreHits() throws IOException {
+        cache.prefetch(new Region("1", 41, 60));
+        assertEquals("TACGT", cache.getSequence(new Region("1", 43, 47)));
+        assertEquals(0, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getRequests());
+        // only half of the cache is used by a prefetch
+        assertEquals(1, cache.getFetches());
+    }
+
+    @Test
+    public void segmentsStartAtPositionOne() throws IOException {
+        assertEquals("CGTACGTACG", cache.getSequence(new Region("1", 1, 10)));
+        assertEquals(Collections.singletonList(new Region("1", 1, 10)), fetchedRegions);
+
+        // the base before the first one, asked for the context of an indel, doesn't exist, but keeps the offsets
+        assertEquals("NCGT", cache.getSequence(new Region("1", 0, 3)));
+        assertEquals("NN", cache.getSequence(new Region("1", -1, 0)));
+        cache.prefetch(new Region("1", 0, 10));
+        assertEquals(1, fetchedRegions.size());
+    }
+
+    @Test
+    public void sequenceIsCutAtTheEndOfTheChromosome() throws IOException {
+        assertEquals("TACGT", cache.getSequence(new Region("1", 91, 120)));
+    }
+
+    @Test
+    public void failedFetchesAreNotCached() throws IOException {
+        failFetches = true;
+        try {
+            cache.getSequence(new Region("1", 5, 5));
+            fail("The failure of the reference should be thrown");
+        } catch (IOException e) {
+            assertEquals("CellBase down", e.getMessage());
+        }
+
+        failFetches = false;
+        assertEquals("C", cache.getSequence(new Region("1", 5, 5)));
+        assertEquals(2, fetchedRegions.size());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump.referencesequence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.feature.Region;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link FastaSequenceProvider}
+ */
+public class FastaSequenceProviderTest {
+
+    private Path fasta;
+    private FastaSequenceProvider provider;
+
+    @Before
+    public void setUp() throws Exception {
+        fasta = Files.createTempFile("reference", ".fa");
+        // two chromosomes with lines of 10 bases, the second one soft-masked
+        Files.write(fasta, Arrays.asList(
+                ">1", "ACGTACGTAC", "GGGGCCCCTT", "AAA",
+                ">2", "acgtnacgtn"));
+        Files.write(fasta.resolveSibling(fasta.getFileName() + ".fai"), Arrays.asList(
+                "1\t23\t3\t10\t11",
+                "2\t10\t32\t10\t11"));
+        provider = new FastaSequenceProvider(fasta.toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        provider.close();
+        Files.deleteIfExists(fasta.resolveSibling(fasta.getFileName() + ".fai"));
+        Files.deleteIfExists(fasta);
+    }
+
+    @Test
+    public void sequencesAreReadAcrossLines() throws IOException {
+        assertEquals("A", provider.getSequence(new Region("1", 1, 1)));
+        assertEquals("ACGGGGCCCCTTA", provider.getSequence(new Region("1", 9, 21)));
+        assertEquals("TAAA", provider.getSequence(new Region("1", 20, 23)));
+    }
+
+    @Test
+    public void softMaskedBasesAreReturnedInUpperCase() throws IOException {
+        assertEquals("ACGTNACGTN", provider.getSequence(new Region("2", 1, 10)));
+    }
+
+    @Test
+    public void positionsOutsideTheChromosomeAreFilledWithN() throws IOException {
+        // the converter asks for the base before the region, which is position 0 for regions starting at 1
+        assertEquals("NACG", provider.getSequence(new Region("1", 0, 3)));
+        assertEquals("AAANN", provider.getSequence(new Region("1", 21, 25)));
+        assertEquals("NNN", provider.getSequence(new Region("2", 20, 22)));
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownChromosomeThrowsIOException() throws IOException {
+        provider.getSequence(new Region("3", 1, 10));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingIndexThrowsFileNotFoundException() throws IOException {
+        Path fastaWithoutIndex = Files.createTempFile("withoutIndex", ".fa");
+        try {
+            new FastaSequenceProvider(fastaWithoutIndex.toString());
+        } finally {
+            Files.delete(fastaWithoutIndex);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package embl.ebi.variation.eva.vcfdump.regionutils;
+
+import embl.ebi.variation.eva.vcfdump.VariantExporterTestDB;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.opencga.lib.common.Config;
+import org.opencb.opencga.storage.core.StorageManagerFactory;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link DatabaseChromosomeFinder}
+ */
+public class DatabaseChromosomeFinderTest {
+
+    private static final String STUDY_ID = "PRJEB6119";
+
+    private static VariantDBAdaptor variantDBAdaptor;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        VariantExporterTestDB.cleanDBs();
+        VariantExporterTestDB.fillDB();
+
+        Config.setOpenCGAHome(System.getenv("OPENCGA_HOME") != null ? System.getenv("OPENCGA_HOME") : "/opt/opencga");
+        variantDBAdaptor = StorageManagerFactory.getVariantStorageManager()
+                .getDBAdaptor(VariantExporterTestDB.COW_TEST_DB_NAME, null);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        VariantExporterTestDB.cleanDBs();
+    }
+
+    @Test
+    public void boundsOfEveryChromosomeAreFoundInOneQuery() throws Exception {
+        List<String> studies = Collections.singletonList(STUDY_ID);
+        Map<String, ChromosomeBounds> expectedBounds = getBoundsIteratingVariants(studies);
+        assertFalse(expectedBounds.isEmpty());
+
+        try (DatabaseChromosomeFinder finder = new DatabaseChromosomeFinder(VariantExporterTestDB.COW_TEST_DB_NAME)) {
+            Map<String, ChromosomeBounds> bounds = finder.getChromosomeBounds(studies, null);
+            assertEquals(expectedBounds.keySet(), bounds.keySet());
+            for (ChromosomeBounds expected : expectedBounds.values()) {
+                ChromosomeBounds found = bounds.get(expected.getChromosome());
+                assertEquals(expected.getMinStart(), found.getMinStart());
+                assertEquals(expected.getMaxStart(), found.getMaxStart());
+            }
+        }
+    }
+
+    @Test
+    public void unknownStudyHasNoChromosomes() throws Exception {
+        try (DatabaseChromosomeFinder finder = new DatabaseChromosomeFinder(VariantExporterTestDB.COW_TEST_DB_NAME)) {
+            assertTrue(finder.getChromosomeBounds(Collections.singletonList("unknownStudy"), null).isEmpty());
+        }
+    }
+
+    private Map<String, ChromosomeBounds> getBoundsIteratingVariants(List<String> studies) {
+        Map<String, ChromosomeBounds> bounds = new HashMap<>();
+        VariantDBIterator iterator = variantDBAdaptor.iterator(new QueryOptions(VariantDBAdaptor.STUDIES, studies));
+        while (iterator.hasNext()) {
+            Variant variant = iterator.next();
+            ChromosomeBounds previous = bounds.get(variant.getChromosome());
+            int minStart = previous == null ? variant.getStart() : Math.min(previous.getMinStart(), variant.getStart());
+            int maxStart = previous == null ? variant.getStart() : Math.max(previous.getMaxStart(), variant.getStart());
+            bounds.put(variant.getChromosome(), new ChromosomeBounds(variant.getChromosome(), minStart, maxStart));
+        }
+        return bounds;
+    }
+}
@@ -88,4 +88,9 @@ public class RegionFactoryTest {
         regions = regionFactory.divideRegionInChunks("1", 3000, 2500);
         assertTrue(regions.size() == 0);
     }
-}
\ No newline at end of file
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeVariantsPerRegionThrowsIllegalArgumentException() {
+        new RegionFactory(1000, -1, null, null);
+    }
+}